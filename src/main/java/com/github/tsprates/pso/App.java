@@ -67,7 +67,17 @@ public class App
             Connection db = new DB().conectar();
             Properties config = carregarArquivoDeConfig( args[0] );
 
-            Pso pso = new Pso( db, config, RANDOM, FORMAT, K );
+            // conjunto de conexões quando as regras são avaliadas pela tabela (consultas SQL ou blocos lidos por
+            // cursor): consultas simultâneas de um mesmo lote e uma conexão própria por ilha ou nicho paralelo (0:
+            // somente a conexão principal)
+            final String avaliacao = config.getProperty( "avaliacao", "sql" );
+            final boolean emMemoria = "memoria".equalsIgnoreCase( avaliacao )
+                            || "blocos".equalsIgnoreCase( avaliacao ) && config.getProperty( "armazenamento" ) != null;
+            final int numConexoes = Integer.valueOf( config.getProperty( "conexoes", "0" ) );
+            final PoolConexoes conexoes = numConexoes > 0 && !emMemoria ? new PoolConexoes( new DB(), numConexoes )
+                            : null;
+
+            Pso pso = null;
 
             Weka weka = new Weka( config );
 
@@ -86,94 +96,111 @@ public class App
             final Map<String, Map<String, List<Double>>> efetCls = new HashMap<>();
             final Map<String, Map<String, List<Double>>> acurCls = new HashMap<>();
 
-            for ( int iter = 0; iter < EXECS; iter++ )
+            try
             {
-                System.out.printf( "\n\nExecução: %d\n\n", iter + 1 );
+                pso = new Pso( db, conexoes, config, RANDOM, FORMAT, K );
 
-                pso.carregar();
+                for ( int iter = 0; iter < EXECS; iter++ )
+                {
+                    System.out.printf( "\n\nExecução: %d\n\n", iter + 1 );
 
-                // valor médio global da efetividade e acurácia
-                final double[] resultado = pso.valorMedioGlobal();
-                efetPSO.add( resultado[0] );
-                acurPSO.add( resultado[1] );
+                    pso.carregar();
 
-                // weka
-                weka.classificar( K, pso.getKPasta() );
-                final double[][] efetWeka = weka.efetividade();
-                final double[][] acurWeka = weka.acuracia();
-                final int numClasses = weka.numClasses();
+                    // valor médio global da efetividade e acurácia
+                    final double[] resultado = pso.valorMedioGlobal();
+                    efetPSO.add( resultado[0] );
+                    acurPSO.add( resultado[1] );
 
-                // valor médio da efetividade global (weka)
-                double medEfetJ48 = 0.0;
-                double medEfetSMO = 0.0;
-                double medEfetRBF = 0.0;
+                    // weka
+                    weka.classificar( K, pso.getKPasta() );
+                    final double[][] efetWeka = weka.efetividade();
+                    final double[][] acurWeka = weka.acuracia();
+                    final int numClasses = weka.numClasses();
 
-                // valor médio da acurácia global (weka)
-                double medAcurJ48 = 0.0;
-                double medAcurSMO = 0.0;
-                double medAcurRBF = 0.0;
+                    // valor médio da efetividade global (weka)
+                    double medEfetJ48 = 0.0;
+                    double medEfetSMO = 0.0;
+                    double medEfetRBF = 0.0;
 
-                for ( int i = 0; i < numClasses; i++ )
-                {
-                    medEfetJ48 += efetWeka[0][i];
-                    medEfetSMO += efetWeka[1][i];
-                    medEfetRBF += efetWeka[2][i];
+                    // valor médio da acurácia global (weka)
+                    double medAcurJ48 = 0.0;
+                    double medAcurSMO = 0.0;
+                    double medAcurRBF = 0.0;
 
-                    medAcurJ48 += acurWeka[0][i];
-                    medAcurSMO += acurWeka[1][i];
-                    medAcurRBF += acurWeka[2][i];
-                }
+                    for ( int i = 0; i < numClasses; i++ )
+                    {
+                        medEfetJ48 += efetWeka[0][i];
+                        medEfetSMO += efetWeka[1][i];
+                        medEfetRBF += efetWeka[2][i];
 
-                // efetividade global
-                efetJ48.add( medEfetJ48 / numClasses );
-                efetSMO.add( medEfetSMO / numClasses );
-                efetRBF.add( medEfetRBF / numClasses );
+                        medAcurJ48 += acurWeka[0][i];
+                        medAcurSMO += acurWeka[1][i];
+                        medAcurRBF += acurWeka[2][i];
+                    }
 
-                // acurácia global
-                acurJ48.add( medAcurJ48 / numClasses );
-                acurSMO.add( medAcurSMO / numClasses );
-                acurRBF.add( medAcurRBF / numClasses );
+                    // efetividade global
+                    efetJ48.add( medEfetJ48 / numClasses );
+                    efetSMO.add( medEfetSMO / numClasses );
+                    efetRBF.add( medEfetRBF / numClasses );
 
-                // média de cada algoritmo para cada classe
-                if ( iter == 0 )
-                {
-                    for ( String algo : ALGOS )
-                    {
-                        efetCls.put( algo, new HashMap<String, List<Double>>() );
-                        acurCls.put( algo, new HashMap<String, List<Double>>() );
+                    // acurácia global
+                    acurJ48.add( medAcurJ48 / numClasses );
+                    acurSMO.add( medAcurSMO / numClasses );
+                    acurRBF.add( medAcurRBF / numClasses );
 
-                        for ( String cl : pso.classes() )
+                    // média de cada algoritmo para cada classe
+                    if ( iter == 0 )
+                    {
+                        for ( String algo : ALGOS )
                         {
-                            efetCls.get( algo ).put( cl, new ArrayList<Double>() );
-                            acurCls.get( algo ).put( cl, new ArrayList<Double>() );
+                            efetCls.put( algo, new HashMap<String, List<Double>>() );
+                            acurCls.put( algo, new HashMap<String, List<Double>>() );
+
+                            for ( String cl : pso.classes() )
+                            {
+                                efetCls.get( algo ).put( cl, new ArrayList<Double>() );
+                                acurCls.get( algo ).put( cl, new ArrayList<Double>() );
+                            }
                         }
                     }
-                }
 
-                // efetividade e acurácia de cada algoritmo em cada classe
-                List<String> cls = new ArrayList<>( pso.classes() );
-                for ( int i = 0; i < cls.size(); i++ )
-                {
-                    String cl = cls.get( i );
+                    // efetividade e acurácia de cada algoritmo em cada classe
+                    List<String> cls = new ArrayList<>( pso.classes() );
+                    for ( int i = 0; i < cls.size(); i++ )
+                    {
+                        String cl = cls.get( i );
 
-                    efetCls.get( "J48" ).get( cl ).add( efetWeka[0][i] );
-                    efetCls.get( "SMO" ).get( cl ).add( efetWeka[1][i] );
-                    efetCls.get( "RBF" ).get( cl ).add( efetWeka[2][i] );
+                        efetCls.get( "J48" ).get( cl ).add( efetWeka[0][i] );
+                        efetCls.get( "SMO" ).get( cl ).add( efetWeka[1][i] );
+                        efetCls.get( "RBF" ).get( cl ).add( efetWeka[2][i] );
 
-                    acurCls.get( "J48" ).get( cl ).add( acurWeka[0][i] );
-                    acurCls.get( "SMO" ).get( cl ).add( acurWeka[1][i] );
-                    acurCls.get( "RBF" ).get( cl ).add( acurWeka[2][i] );
-                }
+                        acurCls.get( "J48" ).get( cl ).add( acurWeka[0][i] );
+                        acurCls.get( "SMO" ).get( cl ).add( acurWeka[1][i] );
+                        acurCls.get( "RBF" ).get( cl ).add( acurWeka[2][i] );
+                    }
 
-                final Map<String, double[]> resultClasses = pso.valorMedioPorClasses();
+                    final Map<String, double[]> resultClasses = pso.valorMedioPorClasses();
 
-                for ( Entry<String, double[]> item : resultClasses.entrySet() )
+                    for ( Entry<String, double[]> item : resultClasses.entrySet() )
+                    {
+                        final double[] arr = item.getValue();
+                        final String classe = item.getKey();
+
+                        efetCls.get( "mDPSO" ).get( classe ).add( arr[0] );
+                        acurCls.get( "mDPSO" ).get( classe ).add( arr[1] );
+                    }
+                }
+            }
+            finally
+            {
+                if ( pso != null )
                 {
-                    final double[] arr = item.getValue();
-                    final String classe = item.getKey();
+                    pso.encerrar();
+                }
 
-                    efetCls.get( "mDPSO" ).get( classe ).add( arr[0] );
-                    acurCls.get( "mDPSO" ).get( classe ).add( arr[1] );
+                if ( conexoes != null )
+                {
+                    conexoes.close();
                 }
             }
 
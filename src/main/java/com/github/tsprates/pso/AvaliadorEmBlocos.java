@@ -0,0 +1,379 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Avaliação de um lote de regras em uma única passagem sequencial pela base de dados, lida em blocos de tamanho fixo
+ * de um cursor SQL ou das colunas de {@link Dados} (inclusive mapeadas de arquivo). Cada bloco atualiza os
+ * acumuladores de verdadeiros positivos e registros cobertos de todas as regras do lote, de modo que a memória da
+ * passagem (valores do bloco e máscaras) depende do tamanho do bloco e do lote, e não do tamanho da tabela. As
+ * estruturas por registro de {@link KPastas} (IDs, classes e pastas) continuam proporcionais à tabela.
+ *
+ * @author thiago
+ */
+public class AvaliadorEmBlocos
+{
+
+    private final Connection conexao;
+
+    private final String sql;
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final int numColunas;
+
+    private final int tamanhoBloco;
+
+    private int k;
+
+    private MapaDeZonas zonas;
+
+    /**
+     * Construtor (blocos lidos das colunas em memória ou mapeadas de arquivo).
+     *
+     * @param dados        Base de dados.
+     * @param kpastas      K-Pastas.
+     * @param tamanhoBloco Número de registros por bloco.
+     */
+    public AvaliadorEmBlocos( Dados dados, KPastas kpastas, int tamanhoBloco )
+    {
+        this( null, null, dados, dados.numColunas(), kpastas, tamanhoBloco );
+    }
+
+    /**
+     * Construtor (blocos lidos de um cursor SQL).
+     *
+     * @param conexao      Conexão DB.
+     * @param tabela       Nome da tabela no banco de dados.
+     * @param colId        Campo ID.
+     * @param colunas      Colunas (atributos) da tabela.
+     * @param kpastas      K-Pastas.
+     * @param tamanhoBloco Número de registros por bloco (também usado como fetch size).
+     */
+    public AvaliadorEmBlocos( Connection conexao, String tabela, String colId, List<String> colunas, KPastas kpastas,
+                              int tamanhoBloco )
+    {
+        this( conexao, criarSql( tabela, colId, colunas ), null, colunas.size(), kpastas, tamanhoBloco );
+    }
+
+    /**
+     * Construtor.
+     */
+    private AvaliadorEmBlocos( Connection conexao, String sql, Dados dados, int numColunas, KPastas kpastas,
+                               int tamanhoBloco )
+    {
+        if ( tamanhoBloco < 64 )
+        {
+            throw new RuntimeException( "Tamanho do bloco deve ser de pelo menos 64 registros." );
+        }
+
+        this.conexao = conexao;
+        this.sql = sql;
+        this.dados = dados;
+        this.numColunas = numColunas;
+        this.kpastas = kpastas;
+        this.tamanhoBloco = tamanhoBloco;
+    }
+
+    /**
+     * Monta a consulta do cursor.
+     */
+    private static String criarSql( String tabela, String colId, List<String> colunas )
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for ( String entrada : colunas )
+        {
+            sb.append( ", " ).append( entrada );
+        }
+
+        return "SELECT " + colId + " AS col_id" + sb.toString() + " FROM " + tabela;
+    }
+
+    /**
+     * Cópia que lê o cursor por outra conexão (ilhas e nichos paralelos), na mesma pasta de teste.
+     *
+     * @param outra Conexão DB.
+     * @return Avaliação em blocos pela conexão.
+     */
+    public AvaliadorEmBlocos copiar( Connection outra )
+    {
+        final AvaliadorEmBlocos copia = new AvaliadorEmBlocos( outra, sql, dados, numColunas, kpastas, tamanhoBloco );
+        copia.k = k;
+        copia.zonas = zonas;
+
+        return copia;
+    }
+
+    /**
+     * Atualiza a pasta de teste atual.
+     *
+     * @param k Índice da pasta de teste.
+     */
+    public void atualizarPasta( int k )
+    {
+        this.k = k;
+    }
+
+    /**
+     * Retorna a base de dados dos blocos.
+     *
+     * @return Base de dados ou null se os blocos forem lidos de um cursor SQL.
+     */
+    public Dados dados()
+    {
+        return dados;
+    }
+
+    /**
+     * Retorna as K-Pastas dos registros.
+     *
+     * @return K-Pastas.
+     */
+    public KPastas kpastas()
+    {
+        return kpastas;
+    }
+
+    /**
+     * Seta o mapa de zonas (somente blocos lidos de {@link Dados}). Regras com alguma condição que nenhum registro do
+     * bloco satisfaz não são avaliadas no bloco, e blocos descartados por todas as regras não são lidos.
+     *
+     * @param zonas Mapa de zonas com o mesmo tamanho de bloco ou null.
+     */
+    public void setZonas( MapaDeZonas zonas )
+    {
+        if ( zonas != null && ( dados == null || zonas.tamanhoBloco() != tamanhoBloco ) )
+        {
+            throw new RuntimeException( "Mapa de zonas incompatível com a avaliação em blocos." );
+        }
+
+        this.zonas = zonas;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos de um lote de regras em uma única passagem.
+     *
+     * @param regras      Condições de cada regra.
+     * @param classes     Índice da classe de cada regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Para cada regra, array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[][] contar( List<List<Condicao>> regras, int[] classes, boolean treinamento )
+    {
+        // somente as colunas usadas pelo lote são lidas
+        final boolean[] usadas = new boolean[numColunas];
+
+        for ( List<Condicao> regra : regras )
+        {
+            for ( Condicao cond : regra )
+            {
+                usadas[cond.coluna()] = true;
+
+                if ( cond.colunaValor() >= 0 )
+                {
+                    usadas[cond.colunaValor()] = true;
+                }
+            }
+        }
+
+        final double[][] bloco = new double[numColunas][];
+
+        for ( int col = 0; col < numColunas; col++ )
+        {
+            if ( usadas[col] )
+            {
+                bloco[col] = new double[tamanhoBloco];
+            }
+        }
+
+        final int[] linhas = new int[tamanhoBloco];
+        final int[][] resultado = new int[regras.size()][2];
+
+        if ( dados != null )
+        {
+            final boolean[] ativas = zonas != null ? new boolean[regras.size()] : null;
+
+            for ( int inicio = 0, b = 0, n = dados.numLinhas(); inicio < n; inicio += tamanhoBloco, b++ )
+            {
+                final int len = Math.min( tamanhoBloco, n - inicio );
+
+                if ( ativas != null && !marcarAtivas( regras, b, ativas ) )
+                {
+                    continue;
+                }
+
+                for ( int col = 0; col < numColunas; col++ )
+                {
+                    if ( usadas[col] )
+                    {
+                        dados.copiar( col, inicio, bloco[col], len );
+                    }
+                }
+
+                for ( int i = 0; i < len; i++ )
+                {
+                    linhas[i] = inicio + i;
+                }
+
+                processar( regras, classes, treinamento, bloco, linhas, len, ativas, resultado );
+            }
+        }
+        else
+        {
+            // a transação do cursor ocupa a conexão, compartilhada pelas ilhas
+            synchronized ( conexao )
+            {
+                lerCursor( regras, classes, treinamento, usadas, bloco, linhas, resultado );
+            }
+        }
+
+        return resultado;
+    }
+
+    /**
+     * Lê a tabela por um cursor, processando um bloco a cada tamanhoBloco registros.
+     */
+    private void lerCursor( List<List<Condicao>> regras, int[] classes, boolean treinamento, boolean[] usadas,
+                            double[][] bloco, int[] linhas, int[][] resultado )
+    {
+        try
+        {
+            // o driver só usa cursor (fetch size) dentro de uma transação
+            final boolean autoCommit = conexao.getAutoCommit();
+            conexao.setAutoCommit( false );
+
+            try ( PreparedStatement ps = conexao.prepareStatement( sql ) )
+            {
+                ps.setFetchSize( tamanhoBloco );
+
+                try ( ResultSet rs = ps.executeQuery() )
+                {
+                    int len = 0;
+
+                    while ( rs.next() )
+                    {
+                        linhas[len] = kpastas.linha( rs.getString( "col_id" ) );
+
+                        for ( int col = 0; col < numColunas; col++ )
+                        {
+                            if ( usadas[col] )
+                            {
+                                final double valor = rs.getDouble( col + 2 );
+                                bloco[col][len] = rs.wasNull() ? Double.NaN : valor;
+                            }
+                        }
+
+                        if ( ++len == tamanhoBloco )
+                        {
+                            processar( regras, classes, treinamento, bloco, linhas, len, null, resultado );
+                            len = 0;
+                        }
+                    }
+
+                    if ( len > 0 )
+                    {
+                        processar( regras, classes, treinamento, bloco, linhas, len, null, resultado );
+                    }
+                }
+            }
+            finally
+            {
+                conexao.commit();
+                conexao.setAutoCommit( autoCommit );
+            }
+        }
+        catch ( SQLException e )
+        {
+            throw new RuntimeException( "Erro ao ler a tabela em blocos.", e );
+        }
+    }
+
+    /**
+     * Marca as regras que podem cobrir algum registro do bloco segundo o mapa de zonas.
+     *
+     * @return Verdadeiro se alguma regra está ativa no bloco.
+     */
+    private boolean marcarAtivas( List<List<Condicao>> regras, int b, boolean[] ativas )
+    {
+        boolean alguma = false;
+
+        for ( int r = 0, size = regras.size(); r < size; r++ )
+        {
+            ativas[r] = true;
+
+            for ( Condicao cond : regras.get( r ) )
+            {
+                if ( zonas.classificar( cond, b ) == MapaDeZonas.NENHUM )
+                {
+                    ativas[r] = false;
+                    break;
+                }
+            }
+
+            alguma |= ativas[r];
+        }
+
+        return alguma;
+    }
+
+    /**
+     * Avalia as regras do lote (todas ou apenas as ativas) sobre um bloco de registros e acumula os resultados.
+     */
+    private void processar( List<List<Condicao>> regras, int[] classes, boolean treinamento, double[][] bloco,
+                            int[] linhas, int len, boolean[] ativas, int[][] resultado )
+    {
+        final int numPalavras = Bits.palavras( len );
+        final long[] fase = new long[numPalavras];
+        final long[][] mascaraClasse = new long[kpastas.classes().size()][numPalavras];
+
+        for ( int i = 0; i < len; i++ )
+        {
+            final int linha = linhas[i];
+
+            if ( ( kpastas.pasta( linha ) == k ) != treinamento )
+            {
+                Bits.marcar( fase, i );
+            }
+
+            Bits.marcar( mascaraClasse[kpastas.classe( linha )], i );
+        }
+
+        final long[] mascara = new long[numPalavras];
+
+        for ( int r = 0, size = regras.size(); r < size; r++ )
+        {
+            if ( ativas != null && !ativas[r] )
+            {
+                continue;
+            }
+
+            System.arraycopy( fase, 0, mascara, 0, numPalavras );
+
+            // cada condição já conta os registros que restaram
+            int cobertos = -1;
+
+            for ( Condicao cond : regras.get( r ) )
+            {
+                cobertos = AvaliadorVetorial.avaliarBloco( cond, bloco, len, mascara );
+            }
+
+            if ( cobertos < 0 )
+            {
+                cobertos = Bits.contar( mascara );
+            }
+
+            if ( cobertos > 0 )
+            {
+                resultado[r][0] += Bits.contarInterseccao( mascara, mascaraClasse[classes[r]] );
+                resultado[r][1] += cobertos;
+            }
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Avaliação de regras coluna a coluna. Cada condição é comparada sobre blocos de 64 registros de uma coluna primitiva
+ * e o resultado é escrito diretamente em uma palavra da máscara de registros cobertos. Os laços são especializados por
+ * operador e o resultado de cada comparação é deslocado para o bit do registro em vez de desviar; o único desvio é o
+ * que pula as palavras já vazias. Se o JIT desenrola ou vetoriza esses laços depende da JVM.
+ *
+ * @author thiago
+ */
+public class AvaliadorVetorial
+{
+
+    /**
+     * Número de registros copiados por vez quando as colunas estão fora do heap (múltiplo de 64).
+     */
+    private static final int BLOCO_COPIA = 4096;
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final int numLinhas;
+
+    private final long[] todos;
+
+    private long[] mascaraTeste;
+
+    private Seletividade seletividade;
+
+    private MapaDeZonas zonas;
+
+    private ColunasDerivadas derivadas;
+
+    /**
+     * Arrays auxiliares das colunas fora do heap, reutilizados entre as consultas de cada thread.
+     */
+    private final ThreadLocal<double[][]> auxiliares = new ThreadLocal<>();
+
+    /**
+     * Construtor.
+     *
+     * @param dados   Base de dados em memória.
+     * @param kpastas K-Pastas.
+     */
+    public AvaliadorVetorial( Dados dados, KPastas kpastas )
+    {
+        this.dados = dados;
+        this.kpastas = kpastas;
+        this.numLinhas = dados.numLinhas();
+        this.todos = Bits.criarCheio( numLinhas );
+    }
+
+    /**
+     * Atualiza a pasta de teste atual.
+     *
+     * @param k Índice da pasta de teste.
+     */
+    public void atualizarPasta( int k )
+    {
+        this.mascaraTeste = kpastas.mascaraPasta( k );
+    }
+
+    /**
+     * Seta a estimativa de seletividade. As condições passam a ser aplicadas da mais seletiva para a menos seletiva, e
+     * a taxa de registros aceitos por cada condição é registrada.
+     *
+     * @param seletividade Estimativa de seletividade ou null.
+     */
+    public void setSeletividade( Seletividade seletividade )
+    {
+        this.seletividade = seletividade;
+    }
+
+    /**
+     * Seta o mapa de zonas. Condições de valor numérico passam a descartar ou aceitar blocos inteiros pelos valores
+     * mínimo e máximo do bloco.
+     *
+     * @param zonas Mapa de zonas (blocos múltiplos de 64 registros) ou null.
+     */
+    public void setZonas( MapaDeZonas zonas )
+    {
+        if ( zonas != null && zonas.tamanhoBloco() % 64 != 0 )
+        {
+            throw new RuntimeException( "O tamanho do bloco do mapa de zonas deve ser múltiplo de 64." );
+        }
+
+        this.zonas = zonas;
+    }
+
+    /**
+     * Seta as colunas de diferença. Condições entre atributos cujo par está materializado passam a ser comparadas
+     * com zero sobre uma única coluna.
+     *
+     * @param derivadas Colunas derivadas ou null.
+     */
+    public void setDerivadas( ColunasDerivadas derivadas )
+    {
+        this.derivadas = derivadas;
+    }
+
+    /**
+     * Cria a máscara inicial com os registros de treinamento ou teste.
+     *
+     * @param treinamento Se verdadeiro seleciona os registros de treinamento, senão os de teste.
+     * @return Máscara de registros.
+     */
+    public long[] criarMascara( boolean treinamento )
+    {
+        final long[] mascara = new long[todos.length];
+
+        for ( int w = 0; w < mascara.length; w++ )
+        {
+            mascara[w] = treinamento ? todos[w] & ~mascaraTeste[w] : mascaraTeste[w];
+        }
+
+        return mascara;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos por uma regra.
+     *
+     * @param regra       Condições da regra.
+     * @param classe      Índice da classe da regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( List<Condicao> regra, int classe, boolean treinamento )
+    {
+        final long[] mascara = criarMascara( treinamento );
+        final int cobertos = aplicar( regra, mascara );
+
+        return new int[] { cobertos == 0 ? 0 : Bits.contarInterseccao( mascara, kpastas.mascaraClasse( classe ) ),
+                           cobertos };
+    }
+
+    /**
+     * Retorna a máscara dos registros cobertos por uma regra.
+     *
+     * @param regra       Condições da regra.
+     * @param treinamento Se verdadeiro considera os registros de treinamento, senão os de teste.
+     * @return Máscara de registros cobertos.
+     */
+    public long[] cobrir( List<Condicao> regra, boolean treinamento )
+    {
+        final long[] mascara = criarMascara( treinamento );
+        aplicar( regra, mascara );
+
+        return mascara;
+    }
+
+    /**
+     * Aplica as condições da regra sobre a máscara (AND).
+     *
+     * @return Número de registros que restaram na máscara.
+     */
+    private int aplicar( List<Condicao> regra, long[] mascara )
+    {
+        if ( seletividade == null )
+        {
+            int cobertos = -1;
+
+            for ( int i = 0, size = regra.size(); i < size; i++ )
+            {
+                cobertos = avaliar( regra.get( i ), mascara );
+            }
+
+            return cobertos < 0 ? Bits.contar( mascara ) : cobertos;
+        }
+
+        final List<Condicao> ordenada = seletividade.ordenar( regra );
+
+        int antes = Bits.contar( mascara );
+
+        // a mais seletiva primeiro: as seguintes só avaliam as palavras não vazias
+        for ( int i = 0, size = ordenada.size(); i < size && antes > 0; i++ )
+        {
+            final Condicao cond = ordenada.get( i );
+            final int depois = avaliar( cond, mascara );
+
+            seletividade.observar( cond, antes, depois );
+            antes = depois;
+        }
+
+        return antes;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos por uma regra codificada como hiper-retângulo.
+     *
+     * @param regra       Hiper-retângulo.
+     * @param comparacoes Comparações entre atributos da regra.
+     * @param classe      Índice da classe da regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( Hiperretangulo regra, List<Condicao> comparacoes, int classe, boolean treinamento )
+    {
+        final long[] mascara = criarMascara( treinamento );
+        final int cobertos = aplicar( regra, comparacoes, mascara );
+
+        return new int[] { cobertos == 0 ? 0 : Bits.contarInterseccao( mascara, kpastas.mascaraClasse( classe ) ),
+                           cobertos };
+    }
+
+    /**
+     * Retorna a máscara dos registros cobertos por uma regra codificada como hiper-retângulo. Cada coluna ativa é
+     * percorrida uma única vez, testando os dois limites do intervalo.
+     *
+     * @param regra       Hiper-retângulo.
+     * @param comparacoes Comparações entre atributos da regra.
+     * @param treinamento Se verdadeiro considera os registros de treinamento, senão os de teste.
+     * @return Máscara de registros cobertos.
+     */
+    public long[] cobrir( Hiperretangulo regra, List<Condicao> comparacoes, boolean treinamento )
+    {
+        final long[] mascara = criarMascara( treinamento );
+        aplicar( regra, comparacoes, mascara );
+
+        return mascara;
+    }
+
+    /**
+     * Aplica os intervalos e as comparações do hiper-retângulo sobre a máscara (AND).
+     *
+     * @return Número de registros que restaram na máscara.
+     */
+    private int aplicar( Hiperretangulo regra, List<Condicao> comparacoes, long[] mascara )
+    {
+        int cobertos = -1;
+
+        for ( int col : regra.ativas() )
+        {
+            cobertos = avaliarIntervalo( col, regra.inferior( col ), regra.superior( col ), mascara );
+        }
+
+        for ( int i = 0, size = comparacoes.size(); i < size; i++ )
+        {
+            cobertos = avaliar( comparacoes.get( i ), mascara );
+        }
+
+        return cobertos < 0 ? Bits.contar( mascara ) : cobertos;
+    }
+
+    /**
+     * Aplica a condição sobre a máscara (AND). Palavras já vazias não são avaliadas. Os registros que restaram são
+     * contados na mesma passagem.
+     *
+     * @param cond    Condição.
+     * @param mascara Máscara de registros cobertos.
+     * @return Número de registros que restaram na máscara.
+     */
+    public int avaliar( Condicao cond, long[] mascara )
+    {
+        int colA = cond.coluna();
+        int colB = cond.colunaValor();
+        int operador = cond.operador();
+
+        // a operador b equivale a (a - b) operador 0 (exceto dois infinitos de mesmo sinal)
+        final double[] diferenca = colB >= 0 && derivadas != null ? derivadas.valores( cond ) : null;
+
+        if ( diferenca != null )
+        {
+            return compararConstante( diferenca, 0, 0, numLinhas, ColunasDerivadas.limiar( cond ).operador(), 0.0,
+                                      mascara );
+        }
+
+        // a < b equivale a b > a
+        if ( colB >= 0 && ( operador == Condicao.MENOR || operador == Condicao.MENOR_IGUAL ) )
+        {
+            colA = colB;
+            colB = cond.coluna();
+            operador = operador == Condicao.MENOR ? Condicao.MAIOR : Condicao.MAIOR_IGUAL;
+        }
+
+        if ( zonas != null && colB < 0 )
+        {
+            return avaliarPorZonas( cond, mascara );
+        }
+
+        if ( !dados.foraDoHeap() )
+        {
+            final double[] a = dados.valores( colA );
+
+            if ( colB < 0 )
+            {
+                return compararConstante( a, 0, 0, numLinhas, operador, cond.valor(), mascara );
+            }
+
+            return compararColunas( a, dados.valores( colB ), 0, 0, numLinhas, operador, mascara );
+        }
+
+        // colunas fora do heap: copia blocos de registros para arrays auxiliares
+        final double[][] aux = auxiliares( BLOCO_COPIA );
+        final double[] a = aux[0];
+        final double[] b = aux[1];
+        int total = 0;
+
+        for ( int inicio = 0; inicio < numLinhas; inicio += BLOCO_COPIA )
+        {
+            final int fim = Math.min( inicio + BLOCO_COPIA, numLinhas );
+
+            if ( vazio( mascara, inicio, fim ) )
+            {
+                continue;
+            }
+
+            dados.copiar( colA, inicio, a, fim - inicio );
+
+            if ( colB < 0 )
+            {
+                total += compararConstante( a, inicio, inicio, fim, operador, cond.valor(), mascara );
+            }
+            else
+            {
+                dados.copiar( colB, inicio, b, fim - inicio );
+                total += compararColunas( a, b, inicio, inicio, fim, operador, mascara );
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Aplica uma condição de valor numérico sobre a máscara (AND) bloco a bloco do mapa de zonas: blocos sem nenhum
+     * registro que a satisfaça são zerados, blocos em que todos a satisfazem ficam inalterados e apenas os demais são
+     * comparados.
+     */
+    private int avaliarPorZonas( Condicao cond, long[] mascara )
+    {
+        final int col = cond.coluna();
+        final int tamanho = zonas.tamanhoBloco();
+        final double[] a = dados.foraDoHeap() ? null : dados.valores( col );
+        final double[] bloco = a == null ? auxiliares( tamanho )[0] : null;
+        int total = 0;
+
+        for ( int b = 0, inicio = 0; inicio < numLinhas; b++, inicio += tamanho )
+        {
+            final int fim = Math.min( inicio + tamanho, numLinhas );
+
+            switch ( zonas.classificar( cond, b ) )
+            {
+                case MapaDeZonas.NENHUM:
+                    Arrays.fill( mascara, inicio >>> 6, ( fim + 63 ) >>> 6, 0L );
+                    break;
+                case MapaDeZonas.TODOS:
+                    total += contar( mascara, inicio, fim );
+                    break;
+                default:
+                    if ( vazio( mascara, inicio, fim ) )
+                    {
+                        break;
+                    }
+
+                    if ( a != null )
+                    {
+                        total += compararConstante( a, 0, inicio, fim, cond.operador(), cond.valor(), mascara );
+                    }
+                    else
+                    {
+                        dados.copiar( col, inicio, bloco, fim - inicio );
+                        total += compararConstante( bloco, inicio, inicio, fim, cond.operador(), cond.valor(),
+                                                    mascara );
+                    }
+                    break;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Aplica o intervalo [inferior, superior) de uma coluna sobre a máscara (AND), por blocos do mapa de zonas quando
+     * houver ou por blocos copiados quando a coluna estiver fora do heap.
+     */
+    private int avaliarIntervalo( int col, double inferior, double superior, long[] mascara )
+    {
+        final double[] a = dados.foraDoHeap() ? null : dados.valores( col );
+        final int tamanho = zonas != null ? zonas.tamanhoBloco() : a == null ? BLOCO_COPIA : Math.max( 1, numLinhas );
+        final double[] bloco = a == null ? auxiliares( tamanho )[0] : null;
+        int total = 0;
+
+        for ( int b = 0, inicio = 0; inicio < numLinhas; b++, inicio += tamanho )
+        {
+            final int fim = Math.min( inicio + tamanho, numLinhas );
+            final int zona = zonas != null ? zonas.classificar( col, inferior, superior, b ) : MapaDeZonas.PARCIAL;
+
+            if ( zona == MapaDeZonas.NENHUM )
+            {
+                Arrays.fill( mascara, inicio >>> 6, ( fim + 63 ) >>> 6, 0L );
+            }
+            else if ( zona == MapaDeZonas.TODOS )
+            {
+                total += contar( mascara, inicio, fim );
+            }
+            else if ( !vazio( mascara, inicio, fim ) )
+            {
+                if ( a != null )
+                {
+                    total += compararIntervalo( a, 0, inicio, fim, inferior, superior, mascara );
+                }
+                else
+                {
+                    dados.copiar( col, inicio, bloco, fim - inicio );
+                    total += compararIntervalo( bloco, inicio, inicio, fim, inferior, superior, mascara );
+                }
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Retorna os dois arrays auxiliares da thread atual, com ao menos o tamanho indicado.
+     */
+    private double[][] auxiliares( int tamanho )
+    {
+        double[][] aux = auxiliares.get();
+
+        if ( aux == null || aux[0].length < tamanho )
+        {
+            aux = new double[][] { new double[tamanho], new double[tamanho] };
+            auxiliares.set( aux );
+        }
+
+        return aux;
+    }
+
+    /**
+     * Aplica a condição sobre a máscara (AND) de um bloco de registros já copiado para arrays.
+     *
+     * @param cond    Condição.
+     * @param bloco   Valores do bloco por coluna (apenas as colunas usadas precisam estar preenchidas).
+     * @param len     Número de registros do bloco.
+     * @param mascara Máscara de registros cobertos do bloco.
+     * @return Número de registros que restaram na máscara, contados na mesma passagem.
+     */
+    public static int avaliarBloco( Condicao cond, double[][] bloco, int len, long[] mascara )
+    {
+        int colA = cond.coluna();
+        int colB = cond.colunaValor();
+        int operador = cond.operador();
+
+        if ( colB < 0 )
+        {
+            return compararConstante( bloco[colA], 0, 0, len, operador, cond.valor(), mascara );
+        }
+
+        // a < b equivale a b > a
+        if ( operador == Condicao.MENOR || operador == Condicao.MENOR_IGUAL )
+        {
+            colA = colB;
+            colB = cond.coluna();
+            operador = operador == Condicao.MENOR ? Condicao.MAIOR : Condicao.MAIOR_IGUAL;
+        }
+
+        return compararColunas( bloco[colA], bloco[colB], 0, 0, len, operador, mascara );
+    }
+
+    /**
+     * Conta os registros da máscara em [inicio, fim), sendo inicio múltiplo de 64.
+     */
+    private static int contar( long[] mascara, int inicio, int fim )
+    {
+        int total = 0;
+
+        for ( int w = inicio >>> 6, len = ( fim + 63 ) >>> 6; w < len; w++ )
+        {
+            total += Long.bitCount( mascara[w] );
+        }
+
+        return total;
+    }
+
+    /**
+     * Verifica se a máscara não possui registros em [inicio, fim).
+     */
+    private static boolean vazio( long[] mascara, int inicio, int fim )
+    {
+        for ( int w = inicio >>> 6, len = ( fim + 63 ) >>> 6; w < len; w++ )
+        {
+            if ( mascara[w] != 0 )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compara uma coluna com um valor numérico nos registros [inicio, fim), sendo inicio múltiplo de 64. O registro
+     * linha está na posição (linha - desloc) do array. Retorna os registros que restaram nas palavras percorridas,
+     * contados na mesma passagem.
+     */
+    private static int compararConstante( double[] a, int desloc, int inicio, int fim, int operador, double v,
+                                           long[] mascara )
+    {
+        final int numPalavras = ( fim + 63 ) >>> 6;
+        int total = 0;
+
+        switch ( operador )
+        {
+            case Condicao.MAIOR:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] > v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.MAIOR_IGUAL:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] >= v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.MENOR:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] < v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.MENOR_IGUAL:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] <= v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.IGUAL:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] == v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            default:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            final double x = a[base + j];
+                            bits |= ( x < v || x > v ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+        }
+
+        return total;
+    }
+
+    /**
+     * Testa o intervalo [inferior, superior) nos registros [inicio, fim), sendo inicio múltiplo de 64. O registro linha
+     * está na posição (linha - desloc) do array. Retorna os registros que restaram, contados na mesma passagem.
+     */
+    private static int compararIntervalo( double[] a, int desloc, int inicio, int fim, double inferior,
+                                           double superior, long[] mascara )
+    {
+        final int numPalavras = ( fim + 63 ) >>> 6;
+        int total = 0;
+
+        for ( int w = inicio >>> 6; w < numPalavras; w++ )
+        {
+            if ( mascara[w] != 0 )
+            {
+                final int base = ( w << 6 ) - desloc;
+                final int len = Math.min( 64, fim - ( w << 6 ) );
+                long bits = 0;
+                for ( int j = 0; j < len; j++ )
+                {
+                    final double x = a[base + j];
+                    bits |= ( x >= inferior & x < superior ? 1L : 0L ) << j;
+                }
+                total += Long.bitCount( mascara[w] &= bits );
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Compara duas colunas (operadores >, >=, = e !=) nos registros [inicio, fim), sendo inicio múltiplo de 64. O
+     * registro linha está na posição (linha - desloc) dos arrays. Retorna os registros que restaram, contados na mesma
+     * passagem.
+     */
+    private static int compararColunas( double[] a, double[] b, int desloc, int inicio, int fim, int operador,
+                                         long[] mascara )
+    {
+        final int numPalavras = ( fim + 63 ) >>> 6;
+        int total = 0;
+
+        switch ( operador )
+        {
+            case Condicao.MAIOR:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] > b[base + j] ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.MAIOR_IGUAL:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] >= b[base + j] ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            case Condicao.IGUAL:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            bits |= ( a[base + j] == b[base + j] ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+            default:
+                for ( int w = inicio >>> 6; w < numPalavras; w++ )
+                {
+                    if ( mascara[w] != 0 )
+                    {
+                        final int base = ( w << 6 ) - desloc;
+                        final int len = Math.min( 64, fim - ( w << 6 ) );
+                        long bits = 0;
+                        for ( int j = 0; j < len; j++ )
+                        {
+                            final double x = a[base + j];
+                            final double y = b[base + j];
+                            bits |= ( x < y || x > y ? 1L : 0L ) << j;
+                        }
+                        total += Long.bitCount( mascara[w] &= bits );
+                    }
+                }
+                break;
+        }
+
+        return total;
+    }
+}
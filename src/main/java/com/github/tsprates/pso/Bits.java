@@ -0,0 +1,152 @@
+package com.github.tsprates.pso;
+
+/**
+ * Operações sobre conjuntos de registros representados por mapas de bits (array de long, um bit por registro).
+ *
+ * @author thiago
+ */
+public class Bits
+{
+
+    /**
+     * Retorna o número de palavras (long) necessárias para n registros.
+     *
+     * @param n Número de registros.
+     * @return Número de palavras.
+     */
+    public static int palavras( int n )
+    {
+        return ( n + 63 ) >>> 6;
+    }
+
+    /**
+     * Cria um mapa de bits vazio.
+     *
+     * @param n Número de registros.
+     * @return Mapa de bits.
+     */
+    public static long[] criar( int n )
+    {
+        return new long[palavras( n )];
+    }
+
+    /**
+     * Cria um mapa de bits com todos os registros.
+     *
+     * @param n Número de registros.
+     * @return Mapa de bits.
+     */
+    public static long[] criarCheio( int n )
+    {
+        final long[] bits = criar( n );
+
+        for ( int i = 0; i < n; i++ )
+        {
+            marcar( bits, i );
+        }
+
+        return bits;
+    }
+
+    /**
+     * Marca o registro.
+     *
+     * @param bits  Mapa de bits.
+     * @param linha Índice do registro.
+     */
+    public static void marcar( long[] bits, int linha )
+    {
+        bits[linha >>> 6] |= 1L << linha;
+    }
+
+    /**
+     * Desmarca o registro.
+     *
+     * @param bits  Mapa de bits.
+     * @param linha Índice do registro.
+     */
+    public static void desmarcar( long[] bits, int linha )
+    {
+        bits[linha >>> 6] &= ~( 1L << linha );
+    }
+
+    /**
+     * Verifica se o registro está marcado.
+     *
+     * @param bits  Mapa de bits.
+     * @param linha Índice do registro.
+     * @return Verdadeiro se o registro está marcado.
+     */
+    public static boolean marcado( long[] bits, int linha )
+    {
+        return ( bits[linha >>> 6] & ( 1L << linha ) ) != 0;
+    }
+
+    /**
+     * Conta os registros marcados.
+     *
+     * @param bits Mapa de bits.
+     * @return Número de registros.
+     */
+    public static int contar( long[] bits )
+    {
+        int total = 0;
+
+        for ( long palavra : bits )
+        {
+            total += Long.bitCount( palavra );
+        }
+
+        return total;
+    }
+
+    /**
+     * Retorna o i-ésimo registro marcado.
+     *
+     * @param bits Mapa de bits.
+     * @param i    Ordem do registro marcado (a partir de 0).
+     * @return Índice do registro ou -1 se há menos de i + 1 registros marcados.
+     */
+    public static int selecionar( long[] bits, int i )
+    {
+        for ( int w = 0, len = bits.length; w < len; w++ )
+        {
+            final int n = Long.bitCount( bits[w] );
+
+            if ( i < n )
+            {
+                long palavra = bits[w];
+
+                for ( ; i > 0; i-- )
+                {
+                    palavra &= palavra - 1;
+                }
+
+                return ( w << 6 ) + Long.numberOfTrailingZeros( palavra );
+            }
+
+            i -= n;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Conta os registros marcados em ambos os mapas de bits.
+     *
+     * @param a Mapa de bits.
+     * @param b Mapa de bits.
+     * @return Número de registros da interseção.
+     */
+    public static int contarInterseccao( long[] a, long[] b )
+    {
+        int total = 0;
+
+        for ( int w = 0, len = a.length; w < len; w++ )
+        {
+            total += Long.bitCount( a[w] & b[w] );
+        }
+
+        return total;
+    }
+}
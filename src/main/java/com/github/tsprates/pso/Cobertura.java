@@ -0,0 +1,187 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registros de treinamento cobertos por uma regra em uma pasta. É mantido pela partícula para que a avaliação da
+ * posição seguinte parta dos registros que ainda satisfazem a regra anterior, em vez de percorrer toda a base.
+ * <p>
+ * Conjuntos esparsos são guardados como lista de registros (4 bytes por registro), os demais como mapa de bits.
+ *
+ * @author thiago
+ */
+public class Cobertura
+{
+
+    private final Set<String> condicoes;
+
+    private final int pasta;
+
+    private final long[] palavras;
+
+    private final int[] linhas;
+
+    private final int cobertos;
+
+    /**
+     * Construtor.
+     *
+     * @param condicoes Condições WHERE da regra.
+     * @param pasta     Índice da pasta de teste.
+     * @param mascara   Mapa de bits dos registros cobertos.
+     */
+    public Cobertura( Collection<String> condicoes, int pasta, long[] mascara )
+    {
+        this( condicoes, pasta, mascara, Bits.contar( mascara ) );
+    }
+
+    /**
+     * Construtor (mapa de bits já contado).
+     */
+    private Cobertura( Collection<String> condicoes, int pasta, long[] mascara, int cobertos )
+    {
+        this.condicoes = new HashSet<>( condicoes );
+        this.pasta = pasta;
+        this.cobertos = cobertos;
+
+        // a lista ocupa menos que o mapa de bits abaixo de um registro a cada 32
+        if ( cobertos < mascara.length * 2 )
+        {
+            this.palavras = null;
+            this.linhas = new int[cobertos];
+
+            int i = 0;
+
+            for ( int w = 0; w < mascara.length; w++ )
+            {
+                for ( long palavra = mascara[w]; palavra != 0; palavra &= palavra - 1 )
+                {
+                    linhas[i++] = ( w << 6 ) + Long.numberOfTrailingZeros( palavra );
+                }
+            }
+        }
+        else
+        {
+            this.palavras = mascara;
+            this.linhas = null;
+        }
+    }
+
+    /**
+     * Construtor (lista de registros).
+     */
+    private Cobertura( Collection<String> condicoes, int pasta, int[] linhas )
+    {
+        this.condicoes = new HashSet<>( condicoes );
+        this.pasta = pasta;
+        this.palavras = null;
+        this.linhas = linhas;
+        this.cobertos = linhas.length;
+    }
+
+    /**
+     * Restringe os registros cobertos a uma nova regra. O custo é proporcional aos registros ainda cobertos.
+     *
+     * @param condicoes Condições WHERE da nova regra.
+     * @param novas     Condições a aplicar sobre os registros cobertos.
+     * @param dados     Base de dados em memória.
+     * @param varredura Avaliação por varredura das colunas.
+     * @param compilada Condições a aplicar já compiladas ou null.
+     * @return Registros cobertos pela nova regra.
+     */
+    public Cobertura restringir( Collection<String> condicoes, List<Condicao> novas, Dados dados,
+                                 AvaliadorVetorial varredura, RegraCompilada compilada )
+    {
+        if ( palavras != null )
+        {
+            // palavras vazias não são avaliadas
+            final long[] mascara = palavras.clone();
+            int restantes = cobertos;
+
+            for ( int i = 0, size = novas.size(); i < size; i++ )
+            {
+                restantes = varredura.avaliar( novas.get( i ), mascara );
+            }
+
+            return new Cobertura( condicoes, pasta, mascara, restantes );
+        }
+
+        final int[] restantes = new int[cobertos];
+        int n = 0;
+
+        for ( int linha : linhas )
+        {
+            boolean ok = true;
+
+            if ( compilada != null )
+            {
+                ok = compilada.testar( linha );
+            }
+            else
+            {
+                for ( int i = 0, size = novas.size(); ok && i < size; i++ )
+                {
+                    ok = novas.get( i ).testar( dados, linha );
+                }
+            }
+
+            if ( ok )
+            {
+                restantes[n++] = linha;
+            }
+        }
+
+        return new Cobertura( condicoes, pasta, Arrays.copyOf( restantes, n ) );
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos.
+     *
+     * @param classe  Índice da classe da regra.
+     * @param kpastas K-Pastas.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( int classe, KPastas kpastas )
+    {
+        if ( palavras != null )
+        {
+            return new int[] { Bits.contarInterseccao( palavras, kpastas.mascaraClasse( classe ) ), cobertos };
+        }
+
+        int tp = 0;
+
+        for ( int linha : linhas )
+        {
+            if ( kpastas.classe( linha ) == classe )
+            {
+                tp++;
+            }
+        }
+
+        return new int[] { tp, cobertos };
+    }
+
+    /**
+     * Retorna as condições WHERE da regra.
+     *
+     * @return Condições WHERE.
+     */
+    public Set<String> condicoes()
+    {
+        return condicoes;
+    }
+
+    /**
+     * Retorna a pasta de teste em que os registros foram avaliados.
+     *
+     * @return Índice da pasta.
+     */
+    public int pasta()
+    {
+        return pasta;
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.tsprates.pso;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Colunas de diferença (colunaA - colunaB) materializadas para as condições entre atributos. A condição
+ * "a operador b" equivale a "(a - b) operador 0", que é um limiar sobre uma única coluna: pode ser avaliada pelo
+ * índice ordenado (busca binária) e pela varredura de uma coluna em vez de duas. A equivalência vale para valores
+ * finitos (a subtração em ponto flutuante só é zero quando a = b); dois infinitos de mesmo sinal resultam em NaN.
+ * <p>
+ * Somente os pares usados em regras avaliadas ao menos {@link #MIN_USOS} vezes são materializados, cada um com seu
+ * índice ordenado. As colunas usadas menos recentemente são descartadas ao exceder o limite de memória. Os métodos
+ * são sincronizados, pois as colunas são compartilhadas pelas ilhas.
+ *
+ * @author thiago
+ */
+public class ColunasDerivadas
+{
+
+    /**
+     * Número de avaliações de regras com o par de colunas antes de materializá-lo (pares de uma única regra
+     * perturbada não compensam a ordenação).
+     */
+    private static final int MIN_USOS = 2;
+
+    /**
+     * Memória aproximada por registro de uma coluna derivada: valores, permutação, valores ordenados e grupos do
+     * índice.
+     */
+    private static final long BYTES_POR_REGISTRO = 24;
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final int numColunas;
+
+    private final long limite;
+
+    private final Map<Integer, Integer> usos = new HashMap<>();
+
+    private final LinkedHashMap<Integer, Derivada> cache = new LinkedHashMap<>( 16, 0.75f, true );
+
+    private int k = -1;
+
+    /**
+     * Construtor.
+     *
+     * @param dados   Base de dados em memória.
+     * @param kpastas K-Pastas.
+     * @param memoria Limite de memória das colunas derivadas em bytes.
+     */
+    public ColunasDerivadas( Dados dados, KPastas kpastas, long memoria )
+    {
+        this.dados = dados;
+        this.kpastas = kpastas;
+        this.numColunas = dados.numColunas();
+        this.limite = memoria / ( BYTES_POR_REGISTRO * Math.max( 1, dados.numLinhas() ) );
+    }
+
+    /**
+     * Atualiza a pasta de teste atual dos índices das colunas derivadas.
+     *
+     * @param k Índice da pasta de teste.
+     */
+    public synchronized void atualizarPasta( int k )
+    {
+        this.k = k;
+
+        for ( Derivada derivada : cache.values() )
+        {
+            derivada.varredura.atualizarPasta( k );
+            derivada.indice.atualizarPasta( k );
+        }
+    }
+
+    /**
+     * Registra a avaliação de uma regra. Os pares de colunas comparados com frequência são materializados.
+     *
+     * @param regra Condições da regra.
+     */
+    public synchronized void registrar( List<Condicao> regra )
+    {
+        for ( int i = 0, size = regra.size(); i < size; i++ )
+        {
+            final Condicao cond = regra.get( i );
+
+            if ( cond.colunaValor() < 0 )
+            {
+                continue;
+            }
+
+            final Integer chave = chave( cond );
+
+            if ( cache.containsKey( chave ) )
+            {
+                continue;
+            }
+
+            final Integer n = usos.get( chave );
+            final int total = n == null ? 1 : n + 1;
+
+            // nenhuma coluna cabe no limite de memória
+            if ( limite == 0 )
+            {
+                return;
+            }
+
+            if ( total >= MIN_USOS )
+            {
+                usos.remove( chave );
+                materializar( chave );
+            }
+            else
+            {
+                usos.put( chave, total );
+            }
+        }
+    }
+
+    /**
+     * Retorna o índice ordenado da coluna de diferença de uma condição entre atributos.
+     *
+     * @param cond Condição entre atributos.
+     * @return Índice da coluna derivada (coluna 0) ou null se o par não estiver materializado.
+     * @see #limiar(Condicao)
+     */
+    public synchronized IndiceOrdenado indice( Condicao cond )
+    {
+        final Derivada derivada = obter( cond );
+        return derivada == null ? null : derivada.indice;
+    }
+
+    /**
+     * Retorna os valores da coluna de diferença de uma condição entre atributos.
+     *
+     * @param cond Condição entre atributos.
+     * @return Valores por registro (não deve ser alterado) ou null se o par não estiver materializado.
+     */
+    public synchronized double[] valores( Condicao cond )
+    {
+        final Derivada derivada = obter( cond );
+        return derivada == null ? null : derivada.valores;
+    }
+
+    /**
+     * Converte a condição entre atributos no limiar equivalente sobre a coluna de diferença (coluna 0 do índice).
+     *
+     * @param cond Condição "a operador b".
+     * @return Condição "(a - b) operador 0", com a coluna de menor índice como minuendo.
+     */
+    public static Condicao limiar( Condicao cond )
+    {
+        int operador = cond.operador();
+
+        // b < a equivale a (a - b) > 0
+        if ( cond.coluna() > cond.colunaValor() )
+        {
+            switch ( operador )
+            {
+                case Condicao.MAIOR:
+                    operador = Condicao.MENOR;
+                    break;
+                case Condicao.MAIOR_IGUAL:
+                    operador = Condicao.MENOR_IGUAL;
+                    break;
+                case Condicao.MENOR:
+                    operador = Condicao.MAIOR;
+                    break;
+                case Condicao.MENOR_IGUAL:
+                    operador = Condicao.MAIOR_IGUAL;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new Condicao( cond.toString(), 0, operador, 0.0, -1 );
+    }
+
+    /**
+     * Retorna o número de colunas derivadas materializadas.
+     *
+     * @return Número de colunas.
+     */
+    public synchronized int numColunas()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Retorna a coluna derivada materializada da condição (acesso mais recente) ou null.
+     */
+    private Derivada obter( Condicao cond )
+    {
+        return cond.colunaValor() < 0 ? null : cache.get( chave( cond ) );
+    }
+
+    /**
+     * Chave do par de colunas (ordenado).
+     */
+    private Integer chave( Condicao cond )
+    {
+        final int a = Math.min( cond.coluna(), cond.colunaValor() );
+        final int b = Math.max( cond.coluna(), cond.colunaValor() );
+
+        return a * numColunas + b;
+    }
+
+    /**
+     * Materializa a coluna de diferença do par e seu índice, descartando as menos usadas além do limite.
+     */
+    private void materializar( Integer chave )
+    {
+        final int a = chave / numColunas;
+        final int b = chave % numColunas;
+        final int numLinhas = dados.numLinhas();
+
+        final Dados diferenca = new Dados( Collections.singletonList( dados.coluna( a ) + " - " + dados.coluna( b ) ),
+                                           numLinhas );
+
+        for ( int linha = 0; linha < numLinhas; linha++ )
+        {
+            final double x = dados.valor( a, linha );
+            final double y = dados.valor( b, linha );
+
+            // iguais (inclusive infinitos) têm diferença zero; ausentes permanecem NaN
+            diferenca.setValor( 0, linha, x == y ? 0.0 : x - y );
+        }
+
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( diferenca, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( diferenca, kpastas, varredura );
+
+        if ( k >= 0 )
+        {
+            varredura.atualizarPasta( k );
+            indice.atualizarPasta( k );
+        }
+
+        cache.put( chave, new Derivada( diferenca.valores( 0 ), indice, varredura ) );
+
+        final Iterator<Integer> it = cache.keySet().iterator();
+
+        while ( cache.size() > limite )
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Coluna de diferença materializada.
+     */
+    private static class Derivada
+    {
+
+        private final double[] valores;
+
+        private final IndiceOrdenado indice;
+
+        private final AvaliadorVetorial varredura;
+
+        /**
+         * Construtor.
+         */
+        Derivada( double[] valores, IndiceOrdenado indice, AvaliadorVetorial varredura )
+        {
+            this.valores = valores;
+            this.indice = indice;
+            this.varredura = varredura;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.tsprates.pso;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache de regras compiladas ({@link RegraCompilada}), identificadas pelo texto das condições. As regras usadas menos
+ * recentemente são descartadas ao atingir o limite, de modo que as regras frequentes (ex.: repositório gbest)
+ * permanecem compiladas.
+ *
+ * @author thiago
+ */
+public class CompiladorRegras
+{
+
+    private final Dados dados;
+
+    private final Map<String, RegraCompilada> cache;
+
+    /**
+     * Construtor.
+     *
+     * @param dados  Base de dados em memória (colunas no heap).
+     * @param limite Número máximo de regras compiladas mantidas.
+     */
+    public CompiladorRegras( Dados dados, final int limite )
+    {
+        if ( dados.foraDoHeap() )
+        {
+            throw new RuntimeException( "A compilação de regras requer as colunas no heap." );
+        }
+
+        this.dados = dados;
+        this.cache = new LinkedHashMap<String, RegraCompilada>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, RegraCompilada> eldest )
+            {
+                return size() > limite;
+            }
+        };
+    }
+
+    /**
+     * Retorna a regra compilada, compilando-a se não estiver no cache.
+     *
+     * @param regra Condições da regra.
+     * @return Regra compilada.
+     */
+    public RegraCompilada compilar( List<Condicao> regra )
+    {
+        final StringBuilder sb = new StringBuilder();
+
+        for ( int i = 0, size = regra.size(); i < size; i++ )
+        {
+            sb.append( i == 0 ? "(" : ") AND (" ).append( regra.get( i ) );
+        }
+
+        final String chave = sb.append( ")" ).toString();
+
+        // o cache é compartilhado pelas ilhas; a compilação é feita fora do bloqueio
+        RegraCompilada compilada;
+
+        synchronized ( cache )
+        {
+            compilada = cache.get( chave );
+        }
+
+        if ( compilada == null )
+        {
+            compilada = RegraCompilada.compilar( regra, dados );
+
+            synchronized ( cache )
+            {
+                cache.put( chave, compilada );
+            }
+        }
+
+        return compilada;
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.tsprates.pso;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.Map;
+
+/**
+ * Condição de uma cláusula WHERE (atributo, operador e valor numérico ou outro atributo) já interpretada sobre as
+ * colunas da base de dados em memória.
+ *
+ * @author thiago
+ */
+public class Condicao
+{
+
+    public static final int MAIOR = 0;
+
+    public static final int MAIOR_IGUAL = 1;
+
+    public static final int MENOR = 2;
+
+    public static final int MENOR_IGUAL = 3;
+
+    public static final int IGUAL = 4;
+
+    public static final int DIFERENTE = 5;
+
+    private final String texto;
+
+    private final int coluna;
+
+    private final int operador;
+
+    private final double valor;
+
+    private final int colunaValor;
+
+    /**
+     * Construtor.
+     *
+     * @param texto       Condição no formato "atributo operador valor".
+     * @param coluna      Índice da coluna.
+     * @param operador    Operador.
+     * @param valor       Valor numérico (ignorado se a condição comparar duas colunas).
+     * @param colunaValor Índice da coluna comparada ou -1 caso a condição use um valor numérico.
+     */
+    public Condicao( String texto, int coluna, int operador, double valor, int colunaValor )
+    {
+        this.texto = texto;
+        this.coluna = coluna;
+        this.operador = operador;
+        this.valor = valor;
+        this.colunaValor = colunaValor;
+    }
+
+    /**
+     * Interpreta uma condição no formato gerado por {@link Formatador#formatarCondicaoWhere}.
+     *
+     * @param texto Condição "atributo operador valor".
+     * @param dados Base de dados em memória.
+     * @return Condição interpretada.
+     */
+    public static Condicao interpretar( String texto, Dados dados )
+    {
+        return interpretar( texto, dados.indiceColunas() );
+    }
+
+    /**
+     * Interpreta uma condição no formato gerado por {@link Formatador#formatarCondicaoWhere}.
+     *
+     * @param texto         Condição "atributo operador valor".
+     * @param indiceColunas Índice de cada coluna pelo nome.
+     * @return Condição interpretada.
+     */
+    public static Condicao interpretar( String texto, Map<String, Integer> indiceColunas )
+    {
+        final String[] termo = texto.split( " " );
+
+        final int coluna = indice( indiceColunas, termo[0] );
+
+        if ( termo.length != 3 || coluna < 0 )
+        {
+            throw new RuntimeException( "Condição inválida: " + texto );
+        }
+
+        final int operador = interpretarOperador( termo[1] );
+
+        if ( NumberUtils.isNumber( termo[2] ) )
+        {
+            return new Condicao( texto, coluna, operador, Double.parseDouble( termo[2] ), -1 );
+        }
+
+        final int colunaValor = indice( indiceColunas, termo[2] );
+
+        if ( colunaValor < 0 )
+        {
+            throw new RuntimeException( "Condição inválida: " + texto );
+        }
+
+        return new Condicao( texto, coluna, operador, Double.NaN, colunaValor );
+    }
+
+    /**
+     * Retorna o índice da coluna ou -1 caso não exista.
+     */
+    private static int indice( Map<String, Integer> indiceColunas, String coluna )
+    {
+        final Integer indice = indiceColunas.get( coluna );
+        return indice == null ? -1 : indice;
+    }
+
+    /**
+     * Converte o operador SQL.
+     *
+     * @param oper Operador SQL.
+     * @return Código do operador.
+     */
+    private static int interpretarOperador( String oper )
+    {
+        switch ( oper )
+        {
+            case ">":
+                return MAIOR;
+            case ">=":
+                return MAIOR_IGUAL;
+            case "<":
+                return MENOR;
+            case "<=":
+                return MENOR_IGUAL;
+            case "=":
+                return IGUAL;
+            case "!=":
+            case "<>":
+                return DIFERENTE;
+            default:
+                throw new RuntimeException( "Operador inválido: " + oper );
+        }
+    }
+
+    /**
+     * Compara dois valores pelo operador. Valores ausentes (NaN) nunca satisfazem a condição, como o NULL nas
+     * comparações SQL. Um NaN gravado na própria tabela é tratado como ausente, ao contrário do PostgreSQL, que o
+     * considera igual a si mesmo e maior que qualquer número.
+     *
+     * @param operador Operador.
+     * @param a        Valor do atributo.
+     * @param b        Valor comparado.
+     * @return Verdadeiro se a condição é satisfeita.
+     */
+    public static boolean comparar( int operador, double a, double b )
+    {
+        switch ( operador )
+        {
+            case MAIOR:
+                return a > b;
+            case MAIOR_IGUAL:
+                return a >= b;
+            case MENOR:
+                return a < b;
+            case MENOR_IGUAL:
+                return a <= b;
+            case IGUAL:
+                return a == b;
+            default:
+                return a < b || a > b;
+        }
+    }
+
+    /**
+     * Testa a condição para um registro.
+     *
+     * @param dados Base de dados em memória.
+     * @param linha Índice do registro.
+     * @return Verdadeiro se o registro satisfaz a condição.
+     */
+    public boolean testar( Dados dados, int linha )
+    {
+        final double b = colunaValor < 0 ? valor : dados.valor( colunaValor, linha );
+        return comparar( operador, dados.valor( coluna, linha ), b );
+    }
+
+    /**
+     * Verifica se a condição compara o atributo com um valor numérico por meio de um limiar (intervalo contínuo de
+     * valores ordenados).
+     *
+     * @return Verdadeiro se for uma condição de limiar.
+     */
+    public boolean limiar()
+    {
+        return colunaValor < 0 && operador != DIFERENTE;
+    }
+
+    /**
+     * Verifica se todo valor que satisfaz esta condição também satisfaz a outra (ex.: "x > 5" implica "x >= 3").
+     * Somente condições de valor numérico sobre a mesma coluna são comparadas.
+     *
+     * @param outra Condição.
+     * @return Verdadeiro se esta condição implica a outra.
+     */
+    public boolean implica( Condicao outra )
+    {
+        if ( colunaValor >= 0 || outra.colunaValor >= 0 || coluna != outra.coluna )
+        {
+            return false;
+        }
+
+        if ( operador == IGUAL )
+        {
+            return comparar( outra.operador, valor, outra.valor );
+        }
+
+        final boolean inferior = operador == MAIOR || operador == MAIOR_IGUAL;
+        final boolean outraInferior = outra.operador == MAIOR || outra.operador == MAIOR_IGUAL;
+        final boolean outraSuperior = outra.operador == MENOR || outra.operador == MENOR_IGUAL;
+
+        if ( inferior && outraInferior )
+        {
+            return valor > outra.valor || ( valor == outra.valor && ( operador == MAIOR
+                            || outra.operador == MAIOR_IGUAL ) );
+        }
+
+        if ( !inferior && operador != DIFERENTE && outraSuperior )
+        {
+            return valor < outra.valor || ( valor == outra.valor && ( operador == MENOR
+                            || outra.operador == MENOR_IGUAL ) );
+        }
+
+        return false;
+    }
+
+    /**
+     * Retorna o índice da coluna.
+     *
+     * @return Índice da coluna.
+     */
+    public int coluna()
+    {
+        return coluna;
+    }
+
+    /**
+     * Retorna o operador.
+     *
+     * @return Código do operador.
+     */
+    public int operador()
+    {
+        return operador;
+    }
+
+    /**
+     * Retorna o valor numérico.
+     *
+     * @return Valor numérico.
+     */
+    public double valor()
+    {
+        return valor;
+    }
+
+    /**
+     * Retorna o índice da coluna comparada.
+     *
+     * @return Índice da coluna ou -1 caso a condição use um valor numérico.
+     */
+    public int colunaValor()
+    {
+        return colunaValor;
+    }
+
+    @Override
+    public String toString()
+    {
+        return texto;
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.tsprates.pso;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base de dados em memória, armazenada por colunas de valores primitivos. Os registros seguem a mesma numeração de
+ * {@link KPastas}.
+ * <p>
+ * As colunas podem ficar no heap (arrays de double) ou fora dele, em buffers diretos ou mapeados de um arquivo. Fora do
+ * heap os valores das colunas não ocupam o heap nem são percorridos pelo coletor de lixo; as estruturas por registro
+ * continuam no heap (IDs, classes e pastas, as máscaras de 1 bit por registro e, se usados, o índice ordenado e a
+ * discretização).
+ * <p>
+ * As varreduras sequenciais copiam blocos de registros ({@link #copiar}); os registros isolados (verificações
+ * residuais do índice e da discretização, amostra da estimativa) são lidos valor a valor ({@link #valor}).
+ *
+ * @author thiago
+ */
+public class Dados
+{
+
+    private final String[] colunas;
+
+    private final Map<String, Integer> indiceColunas = new HashMap<>();
+
+    private final double[][] valores;
+
+    private final DoubleBuffer[] buffers;
+
+    private final int numLinhas;
+
+    /**
+     * Construtor (colunas no heap).
+     *
+     * @param colunas   Colunas (atributos) da base de dados.
+     * @param numLinhas Número de registros.
+     */
+    public Dados( List<String> colunas, int numLinhas )
+    {
+        this( colunas, numLinhas, new double[colunas.size()][numLinhas], null );
+    }
+
+    /**
+     * Construtor.
+     *
+     * @param colunas   Colunas (atributos) da base de dados.
+     * @param numLinhas Número de registros.
+     * @param valores   Colunas no heap ou null.
+     * @param buffers   Colunas fora do heap ou null.
+     */
+    private Dados( List<String> colunas, int numLinhas, double[][] valores, DoubleBuffer[] buffers )
+    {
+        this.colunas = colunas.toArray( new String[colunas.size()] );
+        this.numLinhas = numLinhas;
+        this.valores = valores;
+        this.buffers = buffers;
+
+        for ( int i = 0; i < this.colunas.length; i++ )
+        {
+            indiceColunas.put( this.colunas[i], i );
+        }
+    }
+
+    /**
+     * Cria uma base de dados com as colunas fora do heap.
+     *
+     * @param colunas   Colunas (atributos) da base de dados.
+     * @param numLinhas Número de registros.
+     * @param arquivo   Arquivo mapeado em memória ou null para buffers diretos.
+     * @return Base de dados.
+     */
+    public static Dados criarForaDoHeap( List<String> colunas, int numLinhas, Path arquivo )
+    {
+        final long bytesColuna = (long) numLinhas * 8;
+
+        if ( bytesColuna > Integer.MAX_VALUE )
+        {
+            throw new RuntimeException( "Número de registros excede o limite de um buffer por coluna." );
+        }
+
+        final DoubleBuffer[] buffers = new DoubleBuffer[colunas.size()];
+
+        if ( arquivo == null )
+        {
+            for ( int i = 0; i < buffers.length; i++ )
+            {
+                buffers[i] = ByteBuffer.allocateDirect( (int) bytesColuna ).order( ByteOrder.nativeOrder() )
+                                       .asDoubleBuffer();
+            }
+        }
+        else
+        {
+            // o mapeamento continua válido após o fechamento do canal
+            try ( FileChannel canal = FileChannel.open( arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                        StandardOpenOption.WRITE ) )
+            {
+                for ( int i = 0; i < buffers.length; i++ )
+                {
+                    buffers[i] = canal.map( FileChannel.MapMode.READ_WRITE, i * bytesColuna, bytesColuna )
+                                      .order( ByteOrder.nativeOrder() ).asDoubleBuffer();
+                }
+            }
+            catch ( IOException e )
+            {
+                throw new RuntimeException( "Erro ao mapear o arquivo de colunas.", e );
+            }
+        }
+
+        return new Dados( colunas, numLinhas, null, buffers );
+    }
+
+    /**
+     * Retorna o valor de um atributo do registro.
+     *
+     * @param coluna Índice da coluna.
+     * @param linha  Índice do registro.
+     * @return Valor do atributo (NaN se ausente).
+     */
+    public double valor( int coluna, int linha )
+    {
+        return valores != null ? valores[coluna][linha] : buffers[coluna].get( linha );
+    }
+
+    /**
+     * Retorna os valores de uma coluna no heap.
+     *
+     * @param coluna Índice da coluna.
+     * @return Valores da coluna por registro (não deve ser alterado).
+     * @see #foraDoHeap()
+     */
+    public double[] valores( int coluna )
+    {
+        if ( valores == null )
+        {
+            throw new RuntimeException( "Colunas armazenadas fora do heap." );
+        }
+
+        return valores[coluna];
+    }
+
+    /**
+     * Copia os valores de registros consecutivos de uma coluna.
+     *
+     * @param coluna  Índice da coluna.
+     * @param inicio  Índice do primeiro registro.
+     * @param destino Array de destino.
+     * @param len     Número de registros.
+     */
+    public void copiar( int coluna, int inicio, double[] destino, int len )
+    {
+        if ( valores != null )
+        {
+            System.arraycopy( valores[coluna], inicio, destino, 0, len );
+        }
+        else
+        {
+            final DoubleBuffer buffer = buffers[coluna].duplicate();
+            buffer.position( inicio );
+            buffer.get( destino, 0, len );
+        }
+    }
+
+    /**
+     * Verifica se as colunas estão armazenadas fora do heap.
+     *
+     * @return Verdadeiro se as colunas estão em buffers diretos ou mapeados.
+     */
+    public boolean foraDoHeap()
+    {
+        return valores == null;
+    }
+
+    /**
+     * Seta o valor de um atributo do registro.
+     *
+     * @param coluna Índice da coluna.
+     * @param linha  Índice do registro.
+     * @param valor  Valor do atributo (NaN se ausente).
+     */
+    public void setValor( int coluna, int linha, double valor )
+    {
+        if ( valores != null )
+        {
+            valores[coluna][linha] = valor;
+        }
+        else
+        {
+            buffers[coluna].put( linha, valor );
+        }
+    }
+
+    /**
+     * Retorna o índice da coluna.
+     *
+     * @param coluna Nome da coluna.
+     * @return Índice da coluna ou -1 caso não exista.
+     */
+    public int indiceColuna( String coluna )
+    {
+        final Integer indice = indiceColunas.get( coluna );
+        return indice == null ? -1 : indice;
+    }
+
+    /**
+     * Retorna o índice de cada coluna pelo nome.
+     *
+     * @return Mapa não modificável.
+     */
+    public Map<String, Integer> indiceColunas()
+    {
+        return Collections.unmodifiableMap( indiceColunas );
+    }
+
+    /**
+     * Retorna o nome da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Nome da coluna.
+     */
+    public String coluna( int coluna )
+    {
+        return colunas[coluna];
+    }
+
+    /**
+     * Retorna o número de colunas.
+     *
+     * @return Número de colunas.
+     */
+    public int numColunas()
+    {
+        return colunas.length;
+    }
+
+    /**
+     * Retorna o número de registros.
+     *
+     * @return Número de registros.
+     */
+    public int numLinhas()
+    {
+        return numLinhas;
+    }
+}
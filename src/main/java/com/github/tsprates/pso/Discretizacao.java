@@ -0,0 +1,381 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.tsprates.pso.Formatador.formatarValorNumericoWhere;
+
+/**
+ * Discretização das colunas em faixas (quantis) calculadas a partir dos dados. Os limiares das condições são
+ * ajustados às bordas das faixas e cada borda possui mapas de bits pré-calculados dos registros abaixo dela, de modo
+ * que uma condição de limiar na borda é avaliada por operações sobre o mapa de bits (uma palavra a cada 64 registros),
+ * sem ler os valores das colunas. As demais condições continuam testadas registro a registro.
+ *
+ * @author thiago
+ */
+public class Discretizacao
+{
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final double[][] bordas;
+
+    // registros com valor < borda e <= borda, por coluna e borda
+    private final long[][][] menores;
+
+    private final long[][][] menoresIguais;
+
+    // registros com valor não ausente, por coluna
+    private final long[][] validos;
+
+    private long[] mascaraTeste;
+
+    private CompiladorRegras compilador;
+
+    private Seletividade seletividade;
+
+    /**
+     * Construtor.
+     *
+     * @param dados    Base de dados em memória.
+     * @param indice   Índice ordenado por coluna.
+     * @param kpastas  K-Pastas.
+     * @param numFaixas Número de faixas (quantis) por coluna.
+     */
+    public Discretizacao( Dados dados, IndiceOrdenado indice, KPastas kpastas, int numFaixas )
+    {
+        if ( numFaixas < 1 )
+        {
+            throw new RuntimeException( "Número de faixas inválido." );
+        }
+
+        this.dados = dados;
+        this.kpastas = kpastas;
+
+        final int numCols = dados.numColunas();
+        final int numLinhas = dados.numLinhas();
+
+        this.bordas = new double[numCols][];
+        this.menores = new long[numCols][][];
+        this.menoresIguais = new long[numCols][][];
+        this.validos = new long[numCols][];
+
+        for ( int col = 0; col < numCols; col++ )
+        {
+            final double[] ord = indice.ordenados( col );
+            final int[] ordem = indice.ordem( col );
+            final int numValidos = indice.numValidos( col );
+
+            bordas[col] = calcularBordas( ord, numValidos, numFaixas );
+
+            final int numBordas = bordas[col].length;
+
+            menores[col] = new long[numBordas][];
+            menoresIguais[col] = new long[numBordas][];
+
+            // mapas de bits acumulados na ordem crescente dos valores
+            final long[] acumulado = Bits.criar( numLinhas );
+            int pos = 0;
+
+            for ( int b = 0; b < numBordas; b++ )
+            {
+                final double borda = bordas[col][b];
+
+                final int lt = IndiceOrdenado.limiteInferior( ord, numValidos, borda );
+                final int le = IndiceOrdenado.limiteSuperior( ord, numValidos, borda );
+
+                for ( ; pos < lt; pos++ )
+                {
+                    Bits.marcar( acumulado, ordem[pos] );
+                }
+
+                menores[col][b] = acumulado.clone();
+
+                for ( ; pos < le; pos++ )
+                {
+                    Bits.marcar( acumulado, ordem[pos] );
+                }
+
+                menoresIguais[col][b] = acumulado.clone();
+            }
+
+            for ( ; pos < numValidos; pos++ )
+            {
+                Bits.marcar( acumulado, ordem[pos] );
+            }
+
+            validos[col] = acumulado;
+        }
+    }
+
+    /**
+     * Calcula as bordas das faixas de uma coluna, já arredondadas como na cláusula WHERE.
+     *
+     * @param ord        Valores ordenados.
+     * @param numValidos Número de valores válidos.
+     * @param numFaixas  Número de faixas.
+     * @return Bordas distintas em ordem crescente.
+     */
+    static double[] calcularBordas( double[] ord, int numValidos, int numFaixas )
+    {
+        final List<Double> lista = new ArrayList<>();
+
+        if ( numValidos > 0 )
+        {
+            for ( int b = 0; b <= numFaixas; b++ )
+            {
+                final int pos = (int) ( (long) b * ( numValidos - 1 ) / numFaixas );
+                final double borda = arredondar( ord[pos] );
+
+                if ( lista.isEmpty() || lista.get( lista.size() - 1 ) < borda )
+                {
+                    lista.add( borda );
+                }
+            }
+        }
+
+        final double[] arr = new double[lista.size()];
+
+        for ( int i = 0; i < arr.length; i++ )
+        {
+            arr[i] = lista.get( i );
+        }
+
+        return arr;
+    }
+
+    /**
+     * Arredonda o valor para 3 casas decimais, conforme {@link Formatador#formatarValorNumericoWhere}.
+     *
+     * @param valor Valor numérico.
+     * @return Valor arredondado.
+     */
+    private static double arredondar( double valor )
+    {
+        return Double.parseDouble( formatarValorNumericoWhere( valor ) );
+    }
+
+    /**
+     * Ajusta um valor à borda de faixa mais próxima da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @param valor  Valor numérico.
+     * @return Borda mais próxima (ou o próprio valor, caso a coluna não possua bordas).
+     */
+    public double ajustar( int coluna, double valor )
+    {
+        final double[] b = bordas[coluna];
+
+        if ( b.length == 0 )
+        {
+            return valor;
+        }
+
+        final int pos = IndiceOrdenado.limiteInferior( b, b.length, valor );
+
+        if ( pos == 0 )
+        {
+            return b[0];
+        }
+        else if ( pos == b.length )
+        {
+            return b[b.length - 1];
+        }
+        else
+        {
+            return ( valor - b[pos - 1] ) <= ( b[pos] - valor ) ? b[pos - 1] : b[pos];
+        }
+    }
+
+    /**
+     * Atualiza a pasta de teste atual.
+     *
+     * @param k Índice da pasta de teste.
+     */
+    public void atualizarPasta( int k )
+    {
+        this.mascaraTeste = kpastas.mascaraPasta( k );
+    }
+
+    /**
+     * Seta o compilador de regras usado no teste registro a registro das condições restantes.
+     *
+     * @param compilador Compilador de regras ou null.
+     */
+    public void setCompilador( CompiladorRegras compilador )
+    {
+        this.compilador = compilador;
+    }
+
+    /**
+     * Seta a estimativa de seletividade usada para ordenar as condições restantes.
+     *
+     * @param seletividade Estimativa de seletividade ou null.
+     */
+    public void setSeletividade( Seletividade seletividade )
+    {
+        this.seletividade = seletividade;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos por uma regra. As condições de limiar cujo valor é uma
+     * borda de faixa são resolvidas pelos mapas de bits e as demais são testadas apenas nos registros restantes.
+     *
+     * @param regra       Condições da regra.
+     * @param classe      Índice da classe da regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos, ou null caso nenhuma condição
+     * possa ser resolvida pelos mapas de bits.
+     */
+    public int[] contar( List<Condicao> regra, int classe, boolean treinamento )
+    {
+        return avaliar( regra, classe, treinamento, null );
+    }
+
+    /**
+     * Retorna a máscara dos registros cobertos por uma regra, calculada na mesma passagem da contagem. Usada quando o
+     * conjunto de registros cobertos é mantido pela partícula (avaliação incremental).
+     *
+     * @param regra       Condições da regra.
+     * @param treinamento Se verdadeiro considera os registros de treinamento, senão os de teste.
+     * @return Máscara de registros cobertos ou null caso nenhuma condição possa ser resolvida pelos mapas de bits.
+     */
+    public long[] cobrir( List<Condicao> regra, boolean treinamento )
+    {
+        final long[] mascara = Bits.criar( dados.numLinhas() );
+
+        return avaliar( regra, 0, treinamento, mascara ) != null ? mascara : null;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos, gravando os registros cobertos na máscara de saída
+     * quando informada.
+     */
+    private int[] avaliar( List<Condicao> regra, int classe, boolean treinamento, long[] saida )
+    {
+        final int size = regra.size();
+
+        // cada termo é (incluidos & ~excluidos)
+        final long[][] incluidos = new long[size][];
+        final long[][] excluidos = new long[size][];
+        List<Condicao> restantes = new ArrayList<>();
+
+        int numTermos = 0;
+
+        for ( Condicao cond : regra )
+        {
+            final int b = cond.limiar() ? Arrays.binarySearch( bordas[cond.coluna()], cond.valor() ) : -1;
+
+            if ( b < 0 )
+            {
+                restantes.add( cond );
+                continue;
+            }
+
+            final int col = cond.coluna();
+
+            switch ( cond.operador() )
+            {
+                case Condicao.MENOR:
+                    incluidos[numTermos] = menores[col][b];
+                    break;
+                case Condicao.MENOR_IGUAL:
+                    incluidos[numTermos] = menoresIguais[col][b];
+                    break;
+                case Condicao.MAIOR:
+                    incluidos[numTermos] = validos[col];
+                    excluidos[numTermos] = menoresIguais[col][b];
+                    break;
+                case Condicao.MAIOR_IGUAL:
+                    incluidos[numTermos] = validos[col];
+                    excluidos[numTermos] = menores[col][b];
+                    break;
+                default: // IGUAL
+                    incluidos[numTermos] = menoresIguais[col][b];
+                    excluidos[numTermos] = menores[col][b];
+                    break;
+            }
+
+            numTermos++;
+        }
+
+        if ( numTermos == 0 )
+        {
+            return null;
+        }
+
+        if ( seletividade != null )
+        {
+            restantes = seletividade.ordenar( restantes );
+        }
+
+        final long[] verdadeiros = kpastas.mascaraClasse( classe );
+        final int numRestantes = restantes.size();
+        final RegraCompilada compilada = compilador != null && numRestantes > 0 ? compilador.compilar( restantes )
+                        : null;
+
+        int tp = 0;
+        int cobertos = 0;
+
+        for ( int w = 0, len = verdadeiros.length; w < len; w++ )
+        {
+            long m = treinamento ? ~mascaraTeste[w] : mascaraTeste[w];
+
+            for ( int t = 0; t < numTermos && m != 0; t++ )
+            {
+                m &= incluidos[t][w];
+
+                if ( excluidos[t] != null )
+                {
+                    m &= ~excluidos[t][w];
+                }
+            }
+
+            // demais condições, apenas nos registros que restaram
+            if ( numRestantes > 0 && m != 0 )
+            {
+                long r = m;
+
+                while ( r != 0 )
+                {
+                    final long bit = r & -r;
+                    final int linha = ( w << 6 ) + Long.numberOfTrailingZeros( r );
+
+                    if ( compilada != null )
+                    {
+                        if ( !compilada.testar( linha ) )
+                        {
+                            m &= ~bit;
+                        }
+                    }
+                    else
+                    {
+                        for ( int i = 0; i < numRestantes; i++ )
+                        {
+                            if ( !restantes.get( i ).testar( dados, linha ) )
+                            {
+                                m &= ~bit;
+                                break;
+                            }
+                        }
+                    }
+
+                    r &= r - 1;
+                }
+            }
+
+            if ( saida != null )
+            {
+                saida[w] = m;
+            }
+
+            cobertos += Long.bitCount( m );
+            tp += Long.bitCount( m & verdadeiros[w] );
+        }
+
+        return new int[] { tp, cobertos };
+    }
+}
@@ -23,6 +23,11 @@ public class Distancia
      */
     public static Particula retornarParticulaMaisProxima( List<Particula> parts, Particula p )
     {
+        if ( parts instanceof Enxame )
+        {
+            return parts.get( Math.max( 0, ( (Enxame) parts ).maisProxima( p.fitness() ) ) );
+        }
+
         Particula particulaProxima = parts.get( 0 );
 
         double distancia = DIST_EUCL.compute( particulaProxima.fitness(), p.fitness() );
@@ -0,0 +1,309 @@
+package com.github.tsprates.pso;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Lista de partículas (enxame ou repositório de não dominadas) com o fitness armazenado de forma contígua: os
+ * objetivos de todas as partículas ficam em um único array de double, em vez de espalhados em um array por partícula.
+ * As buscas por dominância e pela partícula mais próxima percorrem esse array linearmente, sem acessar as partículas.
+ * <p>
+ * A partícula pertence a no máximo um enxame e informa ao enxame cada alteração do seu fitness.
+ *
+ * @author thiago
+ */
+public class Enxame
+                extends AbstractList<Particula>
+                implements RandomAccess
+{
+
+    /**
+     * Número de objetivos armazenados por partícula (complexidade, efetividade e acurácia).
+     */
+    private static final int OBJETIVOS = 3;
+
+    private Particula[] particulas;
+
+    private double[] fitness;
+
+    private int tamanho;
+
+    /**
+     * Construtor.
+     */
+    public Enxame()
+    {
+        this.particulas = new Particula[16];
+        this.fitness = new double[16 * OBJETIVOS];
+    }
+
+    @Override
+    public Particula get( int i )
+    {
+        verificarIndice( i, tamanho );
+        return particulas[i];
+    }
+
+    @Override
+    public int size()
+    {
+        return tamanho;
+    }
+
+    @Override
+    public Particula set( int i, Particula p )
+    {
+        verificarIndice( i, tamanho );
+
+        final Particula anterior = particulas[i];
+
+        // a anterior pode já ter sido posicionada em outro índice (ordenação)
+        if ( anterior != p && anterior.enxame() == this && anterior.indiceEnxame() == i )
+        {
+            anterior.vincular( null, -1 );
+        }
+
+        vincular( p, i );
+
+        return anterior;
+    }
+
+    @Override
+    public void add( int i, Particula p )
+    {
+        verificarIndice( i, tamanho + 1 );
+
+        if ( tamanho == particulas.length )
+        {
+            particulas = Arrays.copyOf( particulas, 2 * tamanho );
+            fitness = Arrays.copyOf( fitness, 2 * tamanho * OBJETIVOS );
+        }
+
+        deslocar( i, i + 1, tamanho - i );
+        tamanho++;
+        modCount++;
+
+        vincular( p, i );
+    }
+
+    @Override
+    public Particula remove( int i )
+    {
+        verificarIndice( i, tamanho );
+
+        final Particula removida = particulas[i];
+
+        deslocar( i + 1, i, tamanho - i - 1 );
+        particulas[--tamanho] = null;
+        modCount++;
+
+        removida.vincular( null, -1 );
+
+        return removida;
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( int i = 0; i < tamanho; i++ )
+        {
+            particulas[i].vincular( null, -1 );
+            particulas[i] = null;
+        }
+
+        tamanho = 0;
+        modCount++;
+    }
+
+    /**
+     * Retorna um objetivo da partícula.
+     *
+     * @param i        Índice da partícula.
+     * @param objetivo Índice do objetivo (0: complexidade, 1: efetividade, 2: acurácia).
+     * @return Valor do objetivo.
+     */
+    public double fitness( int i, int objetivo )
+    {
+        verificarIndice( i, tamanho );
+        return fitness[i * OBJETIVOS + objetivo];
+    }
+
+    /**
+     * Retorna o índice da partícula mais próxima no espaço de objetivos (distância Euclidiana).
+     *
+     * @param alvo Fitness de referência.
+     * @return Índice da partícula mais próxima ou -1 se o enxame estiver vazio.
+     */
+    public int maisProxima( double[] alvo )
+    {
+        if ( tamanho == 0 )
+        {
+            return -1;
+        }
+
+        int indice = 0;
+        double distancia = distancia( 0, alvo );
+
+        for ( int i = 1; i < tamanho; i++ )
+        {
+            final double d = distancia( i, alvo );
+
+            if ( d < distancia )
+            {
+                indice = i;
+                distancia = d;
+            }
+        }
+
+        return indice;
+    }
+
+    /**
+     * Quadrado da distância Euclidiana entre o fitness da partícula e o alvo.
+     */
+    private double distancia( int i, double[] alvo )
+    {
+        double d = 0.0;
+
+        for ( int j = 0, base = i * OBJETIVOS; j < OBJETIVOS; j++ )
+        {
+            final double dif = fitness[base + j] - alvo[j];
+            d += dif * dif;
+        }
+
+        return d;
+    }
+
+    /**
+     * Adiciona uma cópia da partícula se ela não for dominada, removendo as partículas que ela domina. Mesma semântica
+     * de {@link FronteiraPareto#atualizarParticulasNaoDominadas}, com uma única passagem pelo fitness contíguo.
+     *
+     * @param particula Partícula.
+     * @return 1 se a partícula foi incluída, 0 se não há relação de dominância ou -1 se a partícula é dominada.
+     */
+    public int atualizarNaoDominadas( Particula particula )
+    {
+        return atualizarNaoDominadas( particula, true );
+    }
+
+    /**
+     * Adiciona a partícula se ela não for dominada, removendo as partículas que ela domina.
+     *
+     * @param particula Partícula.
+     * @param copiar    Se verdadeiro inclui uma cópia reavaliada, senão a própria partícula.
+     * @return 1 se a partícula foi incluída, 0 se não há relação de dominância ou -1 se a partícula é dominada.
+     */
+    public int atualizarNaoDominadas( Particula particula, boolean copiar )
+    {
+        if ( tamanho == 0 )
+        {
+            add( copiar ? particula.clonar() : particula );
+            return 1;
+        }
+
+        final double c = particula.fitness()[0];
+        final double e = particula.fitness()[1];
+
+        boolean domina = false;
+        boolean ehDominada = false;
+        boolean repetida = false;
+
+        int mantidas = 0;
+
+        for ( int i = 0, base = 0; i < tamanho; i++, base += OBJETIVOS )
+        {
+            final double ci = fitness[base];
+            final double ei = fitness[base + 1];
+
+            final boolean naoDominada = c > ci || e > ei;
+
+            domina |= naoDominada;
+            ehDominada |= ci >= c && ei >= e && ( ci > c || ei > e );
+
+            // partículas dominadas pela nova são removidas (compactação no lugar)
+            if ( c >= ci && e >= ei && naoDominada )
+            {
+                particulas[i].vincular( null, -1 );
+                continue;
+            }
+
+            repetida |= ci == c && ei == e;
+
+            if ( mantidas != i )
+            {
+                particulas[mantidas] = particulas[i];
+                System.arraycopy( fitness, base, fitness, mantidas * OBJETIVOS, OBJETIVOS );
+                particulas[mantidas].vincular( this, mantidas );
+            }
+
+            mantidas++;
+        }
+
+        if ( mantidas != tamanho )
+        {
+            Arrays.fill( particulas, mantidas, tamanho, null );
+            tamanho = mantidas;
+            modCount++;
+        }
+
+        if ( domina && !ehDominada && !repetida )
+        {
+            add( copiar ? particula.clonar() : particula );
+            return 1;
+        }
+
+        return ehDominada ? -1 : 0;
+    }
+
+    /**
+     * Atualiza o fitness armazenado da partícula (chamado pela partícula).
+     *
+     * @param i       Índice da partícula.
+     * @param valores Fitness da partícula.
+     */
+    void atualizarFitness( int i, double[] valores )
+    {
+        System.arraycopy( valores, 0, fitness, i * OBJETIVOS, OBJETIVOS );
+    }
+
+    /**
+     * Associa a partícula ao índice.
+     */
+    private void vincular( Particula p, int i )
+    {
+        if ( p.enxame() != null && p.enxame() != this )
+        {
+            throw new RuntimeException( "A partícula já pertence a outro enxame." );
+        }
+
+        particulas[i] = p;
+        p.vincular( this, i );
+        atualizarFitness( i, p.fitness() );
+    }
+
+    /**
+     * Desloca as partículas e seus fitness, atualizando os índices.
+     */
+    private void deslocar( int origem, int destino, int n )
+    {
+        System.arraycopy( particulas, origem, particulas, destino, n );
+        System.arraycopy( fitness, origem * OBJETIVOS, fitness, destino * OBJETIVOS, n * OBJETIVOS );
+
+        for ( int i = destino; i < destino + n; i++ )
+        {
+            particulas[i].vincular( this, i );
+        }
+    }
+
+    /**
+     * Verifica o índice.
+     */
+    private static void verificarIndice( int i, int limite )
+    {
+        if ( i < 0 || i >= limite )
+        {
+            throw new IndexOutOfBoundsException( "Índice: " + i + ", tamanho: " + limite );
+        }
+    }
+}
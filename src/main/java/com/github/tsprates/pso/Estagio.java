@@ -0,0 +1,68 @@
+package com.github.tsprates.pso;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de um estágio do pipeline: partículas processadas e tempo de trabalho (sem as esperas nas filas), somados
+ * entre as threads do estágio.
+ *
+ * @author thiago
+ */
+public class Estagio
+{
+
+    private final String nome;
+
+    private final AtomicLong itens = new AtomicLong();
+
+    private final AtomicLong tempo = new AtomicLong();
+
+    /**
+     * Construtor.
+     *
+     * @param nome Nome do estágio.
+     */
+    public Estagio( String nome )
+    {
+        this.nome = nome;
+    }
+
+    /**
+     * Registra partículas processadas pelo estágio.
+     *
+     * @param n      Número de partículas.
+     * @param inicio Instante do início do processamento (System.nanoTime).
+     */
+    public void registrar( int n, long inicio )
+    {
+        itens.addAndGet( n );
+        tempo.addAndGet( System.nanoTime() - inicio );
+    }
+
+    /**
+     * Retorna o número de partículas processadas.
+     *
+     * @return Número de partículas.
+     */
+    public long itens()
+    {
+        return itens.get();
+    }
+
+    /**
+     * Retorna a vazão do estágio por thread.
+     *
+     * @return Partículas por segundo de trabalho.
+     */
+    public double vazao()
+    {
+        final long t = tempo.get();
+        return t == 0 ? 0.0 : itens.get() * 1e9 / t;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "%s: %d partículas, %.1f partículas/s", nome, itens(), vazao() );
+    }
+}
@@ -1,16 +1,30 @@
 package com.github.tsprates.pso;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.math3.distribution.NormalDistribution;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Classe Fitness.
@@ -20,43 +34,117 @@ import java.util.TreeMap;
 public class Fitness
 {
 
+    /**
+     * Limite de condições interpretadas mantidas em cache.
+     */
+    private static final int LIMITE_CONDICOES = 100000;
+
     private final Connection conexao;
 
     private final String tabela;
 
     private final String colId;
 
-    private final Map<String, List<String>> particulasPorClasse;
+    private final AtomicLong numAvaliacao = new AtomicLong();
 
-    private int totalSize = 0;
+    private final AtomicLong numAvaliacaoAmostra = new AtomicLong();
 
-    private long numAvaliacao = 0;
+    private final AtomicLong numAvaliacaoEvitada = new AtomicLong();
 
-    private List<List<String>> kpastas;
+    private KPastas kpastas;
 
     private int k = 0;
 
     private String notId;
 
+    private Dados dados;
+
+    private AvaliadorVetorial varredura;
+
+    private IndiceOrdenado indice;
+
+    private Discretizacao discretizacao;
+
+    private AvaliadorEmBlocos emBlocos;
+
+    private CompiladorRegras compilador;
+
+    private Seletividade seletividade;
+
+    private ColunasDerivadas derivadas;
+
+    private Map<String, Integer> indiceColunas;
+
+    private final Map<String, Condicao> condicoes = new ConcurrentHashMap<>();
+
+    private int tamanhoAmostra;
+
+    private double z;
+
+    private Random random;
+
+    private int[] amostra;
+
+    private PoolConexoes conexoes;
+
+    private ExecutorService executor;
+
     /**
      * Construtor.
      *
-     * @param conexao              Conexão DB.
-     * @param colId                Campo ID.
-     * @param tabela               Nome da tabela no banco de dados.
-     * @param particulasPorClasses Lista de partículas organizado por classes.
+     * @param conexao Conexão DB.
+     * @param colId   Campo ID.
+     * @param tabela  Nome da tabela no banco de dados.
      */
-    public Fitness( Connection conexao, String colId, String tabela, Map<String, List<String>> particulasPorClasses )
+    public Fitness( Connection conexao, String colId, String tabela )
     {
         this.conexao = conexao;
         this.colId = colId;
         this.tabela = tabela;
-        this.particulasPorClasse = particulasPorClasses;
+    }
 
-        for ( String saida : particulasPorClasses.keySet() )
-        {
-            totalSize += particulasPorClasses.get( saida ).size();
-        }
+    /**
+     * Construtor de cópia para uma ilha: compartilha a base de dados, os índices e a pasta atual, com contadores de
+     * avaliação e cache de condições próprios. A pasta deve ser alterada somente na calculadora original.
+     *
+     * @param outra Calculadora de fitness copiada.
+     */
+    public Fitness( Fitness outra )
+    {
+        this( outra, null );
+    }
+
+    /**
+     * Construtor de cópia para uma ilha com conexão própria: as consultas SQL, inclusive o cursor da avaliação em
+     * blocos, usam somente essa conexão, sem o conjunto de conexões da calculadora original.
+     *
+     * @param outra   Calculadora de fitness copiada.
+     * @param conexao Conexão DB da ilha ou null para compartilhar a conexão e o conjunto da original.
+     */
+    public Fitness( Fitness outra, Connection conexao )
+    {
+        this.conexao = conexao != null ? conexao : outra.conexao;
+        this.colId = outra.colId;
+        this.tabela = outra.tabela;
+        this.kpastas = outra.kpastas;
+        this.k = outra.k;
+        this.notId = outra.notId;
+        this.dados = outra.dados;
+        this.varredura = outra.varredura;
+        this.indice = outra.indice;
+        this.discretizacao = outra.discretizacao;
+        this.emBlocos = conexao != null && outra.emBlocos != null && outra.emBlocos.dados() == null
+                        ? outra.emBlocos.copiar( conexao ) : outra.emBlocos;
+        this.compilador = outra.compilador;
+        this.seletividade = outra.seletividade;
+        this.derivadas = outra.derivadas;
+        this.indiceColunas = outra.indiceColunas;
+        this.tamanhoAmostra = outra.tamanhoAmostra;
+        this.z = outra.z;
+        this.random = outra.random;
+        this.amostra = outra.amostra;
+        this.conexoes = conexao != null ? null : outra.conexoes;
+        this.executor = conexao != null ? null : outra.executor;
     }
 
     /**
@@ -67,7 +155,173 @@ public class Fitness
     public void setK( int k )
     {
         this.k = k;
-        notId = StringUtils.join( kpastas.get( k ), ", " );
+        notId = StringUtils.join( kpastas.listar( k ), ", " );
+
+        if ( varredura != null )
+        {
+            varredura.atualizarPasta( k );
+        }
+
+        if ( indice != null )
+        {
+            indice.atualizarPasta( k );
+        }
+
+        if ( discretizacao != null )
+        {
+            discretizacao.atualizarPasta( k );
+        }
+
+        if ( emBlocos != null )
+        {
+            emBlocos.atualizarPasta( k );
+        }
+
+        if ( derivadas != null )
+        {
+            derivadas.atualizarPasta( k );
+        }
+
+        if ( tamanhoAmostra > 0 )
+        {
+            amostra = kpastas.amostrar( k, tamanhoAmostra, random );
+        }
+    }
+
+    /**
+     * Habilita a estimativa do fitness em uma amostra estratificada dos registros de treinamento. Na avaliação de um
+     * lote, somente as partículas cujo intervalo de confiança da efetividade alcança a fronteira do repositório são
+     * avaliadas em toda a base; as demais recebem o fitness estimado. Requer a base de dados em memória ou a
+     * avaliação em blocos lidos de {@link Dados}.
+     *
+     * @param tamanho   Tamanho da amostra por pasta.
+     * @param confianca Nível de confiança do intervalo (ex.: 0.95).
+     * @param random    Gerador de números aleatórios.
+     */
+    public void setAmostra( int tamanho, double confianca, Random random )
+    {
+        if ( dados == null && ( emBlocos == null || emBlocos.dados() == null ) )
+        {
+            throw new RuntimeException( "A estimativa por amostra requer a base de dados em memória." );
+        }
+
+        this.tamanhoAmostra = tamanho;
+        this.z = new NormalDistribution().inverseCumulativeProbability( 0.5 + confianca / 2 );
+        this.random = random;
+    }
+
+    /**
+     * Seta a base de dados em memória. As regras passam a ser avaliadas pela varredura das colunas ou pelo índice
+     * ordenado, sem consultas SQL.
+     *
+     * @param dados     Base de dados em memória.
+     * @param varredura Avaliação por varredura das colunas.
+     * @param indice    Índice ordenado por coluna ou null.
+     */
+    public void setDados( Dados dados, AvaliadorVetorial varredura, IndiceOrdenado indice )
+    {
+        this.dados = dados;
+        this.varredura = varredura;
+        this.indice = indice;
+        this.indiceColunas = dados.indiceColunas();
+        this.condicoes.clear();
+    }
+
+    /**
+     * Seta o conjunto de conexões para as consultas SQL. As partículas de um lote passam a ser avaliadas
+     * simultaneamente, uma consulta em andamento por conexão, e o lote termina quando todas as consultas terminam.
+     *
+     * @param conexoes Conjunto de conexões.
+     */
+    public void setConexoes( PoolConexoes conexoes )
+    {
+        this.conexoes = conexoes;
+        this.executor = Executors.newFixedThreadPool( conexoes.tamanho(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                final Thread t = new Thread( r, "fitness-sql" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Encerra as threads das consultas simultâneas. As conexões do conjunto pertencem a quem o criou e são fechadas
+     * por ele. Deve ser chamado somente na calculadora original, não nas cópias.
+     */
+    public void encerrar()
+    {
+        if ( executor != null )
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Seta a avaliação em blocos. Lotes de regras passam a ser avaliados em uma única passagem sequencial pela
+     * tabela. Com os blocos lidos de um cursor SQL, uma regra isolada continua avaliada pela sua consulta SQL; com os
+     * blocos lidos de {@link Dados}, pela varredura das colunas.
+     *
+     * @param emBlocos      Avaliação em blocos.
+     * @param indiceColunas Índice de cada coluna pelo nome.
+     */
+    public void setEmBlocos( AvaliadorEmBlocos emBlocos, Map<String, Integer> indiceColunas )
+    {
+        this.emBlocos = emBlocos;
+        this.indiceColunas = indiceColunas;
+        this.condicoes.clear();
+
+        if ( emBlocos.dados() != null )
+        {
+            this.varredura = new AvaliadorVetorial( emBlocos.dados(), emBlocos.kpastas() );
+            this.varredura.atualizarPasta( k );
+        }
+    }
+
+    /**
+     * Seta o compilador de regras. Os testes registro a registro (amostra e registros cobertos esparsos) passam a usar
+     * as regras compiladas.
+     *
+     * @param compilador Compilador de regras.
+     */
+    public void setCompilador( CompiladorRegras compilador )
+    {
+        this.compilador = compilador;
+    }
+
+    /**
+     * Seta a estimativa de seletividade usada para ordenar as condições nos testes registro a registro.
+     *
+     * @param seletividade Estimativa de seletividade.
+     */
+    public void setSeletividade( Seletividade seletividade )
+    {
+        this.seletividade = seletividade;
+    }
+
+    /**
+     * Seta a discretização das colunas. Condições cujo limiar é uma borda de faixa passam a ser avaliadas pelos mapas
+     * de bits pré-calculados.
+     *
+     * @param discretizacao Discretização das colunas.
+     */
+    public void setDiscretizacao( Discretizacao discretizacao )
+    {
+        this.discretizacao = discretizacao;
+    }
+
+    /**
+     * Seta as colunas de diferença. Os pares de atributos comparados nas regras avaliadas são registrados para que os
+     * mais frequentes sejam materializados.
+     *
+     * @param derivadas Colunas derivadas.
+     */
+    public void setDerivadas( ColunasDerivadas derivadas )
+    {
+        this.derivadas = derivadas;
     }
 
     /**
@@ -75,7 +329,7 @@ public class Fitness
      *
      * @param kpastas
      */
-    public void setKPastas( List<List<String>> kpastas )
+    public void setKPastas( KPastas kpastas )
     {
         this.kpastas = kpastas;
     }
@@ -89,7 +343,7 @@ public class Fitness
     public double[] calcular( Particula part )
     {
         // atualiza o número de avaliação
-        numAvaliacao += 1;
+        numAvaliacao.incrementAndGet();
 
         final double[] r = realizarCalculo( part, true );
 
@@ -111,7 +365,7 @@ public class Fitness
     public double[] calcular( Particula part, boolean treinamento )
     {
         // atualiza o número de avaliação
-        numAvaliacao += 1;
+        numAvaliacao.incrementAndGet();
 
         final double[] r = realizarCalculo( part, treinamento );
 
@@ -132,8 +386,6 @@ public class Fitness
      */
     private List<String> consultaSql( String where, boolean treinamento )
     {
-        List<String> result = new ArrayList<>();
-
         String sql;
 
         if ( treinamento )
@@ -147,7 +399,35 @@ public class Fitness
                             + "AND " + where;
         }
 
-        try ( PreparedStatement ps = conexao.prepareStatement( sql ); ResultSet rs = ps.executeQuery() )
+        if ( conexoes != null )
+        {
+            final Connection c = conexoes.obter();
+
+            try
+            {
+                return executarConsulta( c, sql );
+            }
+            finally
+            {
+                conexoes.devolver( c );
+            }
+        }
+
+        // a conexão é compartilhada pelas ilhas
+        synchronized ( conexao )
+        {
+            return executarConsulta( conexao, sql );
+        }
+    }
+
+    /**
+     * Executa a consulta dos IDs.
+     */
+    private static List<String> executarConsulta( Connection c, String sql )
+    {
+        final List<String> result = new ArrayList<>();
+
+        try ( PreparedStatement ps = c.prepareStatement( sql ); ResultSet rs = ps.executeQuery() )
         {
 
             while ( rs.next() )
@@ -172,39 +452,699 @@ public class Fitness
      */
     private double[] realizarCalculo( Particula p, boolean treinamento )
     {
-        final String classe = p.classe();
-        final List<String> verdadeiros = new ArrayList<>( particulasPorClasse.get( classe ) );
+        final int classe = kpastas.indiceClasse( p.classe() );
+        final int[] totais = totais( classe, treinamento );
+        final int verdadeirosSize = totais[0];
+        final int total = totais[1];
+
+        // termos do vocabulário: interseção dos mapas de bits pré-calculados, sem interpretar condições WHERE
+        if ( p.termos() != null && dados != null )
+        {
+            final int[] r = p.vocabulario().contar( p.termos(), varredura.criarMascara( treinamento ),
+                                                    kpastas.mascaraClasse( classe ) );
+            return calcularMetricas( r[0], r[1], verdadeirosSize, total );
+        }
+
+        final RegraCanonica canonica = RegraCanonica.canonizar( p.posicao() );
+
+        // nenhum registro satisfaz a regra
+        if ( canonica.insatisfazivel() )
+        {
+            return calcularMetricas( 0, 0, verdadeirosSize, total );
+        }
+
+        // blocos lidos de Dados: uma regra isolada é avaliada pela varredura das colunas, sem uma passagem em blocos
+        // pela tabela inteira (com os blocos lidos de um cursor, pela consulta SQL abaixo)
+        if ( emBlocos != null && emBlocos.dados() != null )
+        {
+            final int[] r = varredura.contar( interpretar( canonica.condicoes() ), classe, treinamento );
+            return calcularMetricas( r[0], r[1], verdadeirosSize, total );
+        }
+
+        if ( dados != null )
+        {
+            final List<Condicao> regra = interpretar( canonica.condicoes() );
+
+            if ( derivadas != null )
+            {
+                derivadas.registrar( regra );
+            }
+
+            final Hiperretangulo hiperretangulo = p.hiperretangulo();
+
+            if ( treinamento )
+            {
+                final int[] r = contarIncremental( p, canonica.condicoes(), classe );
+
+                if ( r != null )
+                {
+                    return calcularMetricas( r[0], r[1], verdadeirosSize, total );
+                }
+
+                // os registros cobertos ficam com a partícula para a avaliação incremental da posição seguinte
+                final Cobertura cobertura = new Cobertura( canonica.condicoes(), k, cobrir( regra, hiperretangulo ) );
+                p.setCobertura( cobertura );
+
+                final int[] c = cobertura.contar( classe, kpastas );
+                return calcularMetricas( c[0], c[1], verdadeirosSize, total );
+            }
+
+            int[] r = null;
+
+            if ( discretizacao != null )
+            {
+                r = discretizacao.contar( regra, classe, false );
+            }
+
+            // hiper-retângulo: o intervalo ordenado da coluna mais seletiva ou uma passagem por coluna restringida
+            if ( r == null && indice != null )
+            {
+                r = hiperretangulo != null ? indice.contar( hiperretangulo, interpretar( hiperretangulo
+                                .comparacoes() ), classe, false ) : indice.contar( regra, classe, false );
+            }
+
+            if ( r == null && hiperretangulo != null )
+            {
+                r = varredura.contar( hiperretangulo, interpretar( hiperretangulo.comparacoes() ), classe, false );
+            }
+
+            if ( r == null )
+            {
+                r = varredura.contar( regra, classe, false );
+            }
+
+            return calcularMetricas( r[0], r[1], verdadeirosSize, total );
+        }
+
+        final List<String> consultaSql = consultaSql( canonica.whereSql(), treinamento );
+        final int consultaSqlSize = consultaSql.size();
+
+        // a consulta já filtra a pasta, resta verificar a classe de cada registro
+        int tp = 0;
+        for ( String id : consultaSql )
+        {
+            final int linha = kpastas.linha( id );
+
+            if ( linha >= 0 && kpastas.classe( linha ) == classe )
+            {
+                tp += 1;
+            }
+        }
+
+        return calcularMetricas( tp, consultaSqlSize, verdadeirosSize, total );
+    }
+
+    /**
+     * Retorna a máscara dos registros de treinamento cobertos pela regra: pelos mapas de bits da discretização, pelo
+     * intervalo da condição (ou, no hiper-retângulo, da coluna) mais seletiva do índice ordenado ou, se nenhum dos
+     * dois se aplicar, pela varredura das colunas.
+     *
+     * @param regra          Condições da regra.
+     * @param hiperretangulo Posição codificada como hiper-retângulo ou null.
+     * @return Máscara de registros cobertos.
+     */
+    private long[] cobrir( List<Condicao> regra, Hiperretangulo hiperretangulo )
+    {
+        long[] mascara = discretizacao != null ? discretizacao.cobrir( regra, true ) : null;
+
+        final List<Condicao> comparacoes = hiperretangulo != null ? interpretar( hiperretangulo.comparacoes() ) : null;
+
+        if ( mascara == null && indice != null )
+        {
+            mascara = hiperretangulo != null ? indice.cobrir( hiperretangulo, comparacoes, true ) : indice.cobrir(
+                            regra, true );
+        }
+
+        if ( mascara != null )
+        {
+            return mascara;
+        }
+
+        // hiper-retângulo: uma passagem por coluna restringida
+        if ( hiperretangulo != null )
+        {
+            return varredura.cobrir( hiperretangulo, comparacoes, true );
+        }
+
+        return varredura.cobrir( regra, true );
+    }
+
+    /**
+     * Avalia a partícula somente se ela puder não ser dominada pela partícula de referência (busca local). A
+     * complexidade é conhecida antes da avaliação e a efetividade é limitada por TP / verdadeiros, em que TP é limitado
+     * pelos verdadeiros positivos de cada condição isolada (índice ordenado) e, durante a varredura, pelos verdadeiros
+     * positivos das condições já aplicadas. A varredura é interrompida assim que o limite prova a dominância.
+     *
+     * @param part       Partícula candidata.
+     * @param referencia Partícula de referência.
+     * @return Falso se a candidata é dominada pela referência (o fitness não é atualizado), senão verdadeiro e a
+     * partícula é avaliada.
+     */
+    public boolean avaliarComPoda( Particula part, Particula referencia )
+    {
+        final double complexidade = 1.0 / part.numWhere();
+        final double[] ref = referencia.fitness();
+
+        if ( dados == null || complexidade > ref[0] || part.termos() != null )
+        {
+            part.avaliar();
+            return true;
+        }
+
+        final RegraCanonica canonica = RegraCanonica.canonizar( part.posicao() );
+
+        // efetividade nula: sempre dominada pela referência, que tem complexidade maior ou igual
+        if ( canonica.insatisfazivel() )
+        {
+            numAvaliacao.incrementAndGet();
+            return false;
+        }
+
+        final int classe = kpastas.indiceClasse( part.classe() );
+        final int[] totais = totais( classe, true );
+        final List<Condicao> regra = interpretar( canonica.condicoes() );
+
+        if ( indice != null )
+        {
+            for ( Condicao cond : regra )
+            {
+                if ( cond.limiar() && (double) indice.contar( Collections.singletonList( cond ), classe,
+                                                              true )[0] / totais[0] <= ref[1] )
+                {
+                    numAvaliacao.incrementAndGet();
+                    return false;
+                }
+            }
+        }
+
+        if ( regra.size() < 2 )
+        {
+            part.avaliar();
+            return true;
+        }
+
+        numAvaliacao.incrementAndGet();
+
+        final long[] mascara = varredura.criarMascara( true );
+        final long[] mascaraClasse = kpastas.mascaraClasse( classe );
+
+        int tp = 0;
+        int cobertos = 0;
+
+        for ( Condicao cond : regra )
+        {
+            cobertos = varredura.avaliar( cond, mascara );
+            tp = cobertos == 0 ? 0 : Bits.contarInterseccao( mascara, mascaraClasse );
+
+            if ( (double) tp / totais[0] <= ref[1] )
+            {
+                return false;
+            }
+        }
+
+        final double[] m = calcularMetricas( tp, cobertos, totais[0], totais[1] );
+        part.setFitness( new double[] { complexidade, m[0], m[1] } );
+
+        return true;
+    }
+
+    /**
+     * Avalia a partícula a partir dos registros cobertos pela sua posição anterior. É possível quando cada condição
+     * removida da posição anterior é implicada por alguma condição adicionada (acréscimo de condição ou limiar mais
+     * restritivo); então apenas as condições adicionadas são testadas, e somente sobre os registros ainda cobertos.
+     *
+     * @param p       Partícula.
+     * @param posicao Condições canônicas da posição atual.
+     * @param classe  Índice da classe.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos ou null se a posição anterior
+     * não puder ser reaproveitada.
+     */
+    private int[] contarIncremental( Particula p, Set<String> posicao, int classe )
+    {
+        final Cobertura anterior = p.cobertura();
+
+        if ( anterior == null || anterior.pasta() != k )
+        {
+            return null;
+        }
+
+        final List<String> adicionadas = new ArrayList<>();
+
+        for ( String where : posicao )
+        {
+            if ( !anterior.condicoes().contains( where ) )
+            {
+                adicionadas.add( where );
+            }
+        }
+
+        List<Condicao> novas = interpretar( adicionadas );
+
+        for ( String where : anterior.condicoes() )
+        {
+            if ( !posicao.contains( where ) && !implicada( interpretar( where ), novas ) )
+            {
+                return null;
+            }
+        }
 
-        final List<String> kpastaAtual = kpastas.get( k );
-        int total;
+        Cobertura cobertura = anterior;
+
+        if ( !novas.isEmpty() )
+        {
+            if ( seletividade != null )
+            {
+                novas = seletividade.ordenar( novas );
+            }
+
+            cobertura = anterior.restringir( posicao, novas, dados, varredura,
+                                             compilador != null ? compilador.compilar( novas ) : null );
+            p.setCobertura( cobertura );
+        }
+
+        return cobertura.contar( classe, kpastas );
+    }
+
+    /**
+     * Verifica se alguma das condições implica a condição removida.
+     */
+    private static boolean implicada( Condicao removida, List<Condicao> novas )
+    {
+        for ( Condicao cond : novas )
+        {
+            if ( cond.implica( removida ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Retorna o número de registros da classe e o total de registros da fase (treinamento ou teste).
+     *
+     * @param classe      Índice da classe.
+     * @param treinamento Treinamento.
+     * @return Array contendo o número de registros da classe e o total.
+     */
+    private int[] totais( int classe, boolean treinamento )
+    {
+        final int verdadeirosPasta = kpastas.contar( classe, k );
 
         if ( treinamento )
         {
-            verdadeiros.removeAll( kpastaAtual );
-            total = totalSize - kpastaAtual.size();
+            return new int[] { kpastas.tamanhoClasse( classe ) - verdadeirosPasta,
+                            kpastas.numLinhas() - kpastas.tamanho( k ) };
         }
         else
         {
-            verdadeiros.retainAll( kpastaAtual );
-            total = kpastaAtual.size();
+            return new int[] { verdadeirosPasta, kpastas.tamanho( k ) };
         }
+    }
 
-        final List<String> consultaSql = consultaSql( p.whereSql(), treinamento );
-        final int consultaSqlSize = consultaSql.size();
+    /**
+     * Avalia um lote de partículas (fase de treinamento). Somente as partículas alteradas desde a última avaliação são
+     * avaliadas. Com a avaliação em blocos o lote inteiro é avaliado em uma única passagem pela tabela (exceto uma
+     * única partícula alterada com os blocos lidos de um cursor SQL), senão cada partícula é avaliada
+     * individualmente (simultaneamente, com o conjunto de conexões SQL).
+     *
+     * @param lote Partículas.
+     */
+    public void avaliar( List<Particula> lote )
+    {
+        // partículas sem alteração de posição ou classe mantêm o fitness
+        final List<Particula> alteradas = new ArrayList<>( lote.size() );
+
+        for ( Particula part : lote )
+        {
+            if ( part.alterada() )
+            {
+                alteradas.add( part );
+            }
+        }
 
-        final int verdadeirosSize = verdadeiros.size();
+        numAvaliacaoEvitada.addAndGet( lote.size() - alteradas.size() );
 
-        double tp = 0.0;
-        for ( String id : consultaSql )
+        if ( emBlocos == null && conexoes != null && dados == null && alteradas.size() > 1 )
+        {
+            avaliarSimultaneamente( alteradas );
+        }
+        else if ( emBlocos == null || ( emBlocos.dados() == null && alteradas.size() == 1 ) )
+        {
+            for ( Particula part : alteradas )
+            {
+                part.avaliar();
+            }
+        }
+        else if ( !alteradas.isEmpty() )
+        {
+            final double[][] fits = calcularLote( alteradas, true );
+
+            for ( int i = 0, size = alteradas.size(); i < size; i++ )
+            {
+                alteradas.get( i ).setFitness( fits[i] );
+            }
+        }
+    }
+
+    /**
+     * Avalia as partículas simultaneamente pelas consultas SQL (uma tarefa por partícula) e aguarda todas as
+     * avaliações.
+     *
+     * @param alteradas Partículas.
+     */
+    private void avaliarSimultaneamente( List<Particula> alteradas )
+    {
+        final List<Future<?>> tarefas = new ArrayList<>( alteradas.size() );
+
+        for ( final Particula part : alteradas )
+        {
+            tarefas.add( executor.submit( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    part.avaliar();
+                }
+            } ) );
+        }
+
+        try
+        {
+            for ( Future<?> tarefa : tarefas )
+            {
+                tarefa.get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Avaliação das partículas interrompida.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Erro na avaliação de uma partícula.", e.getCause() );
+        }
+    }
+
+    /**
+     * Avalia um lote de partículas (fase de treinamento) em dois estágios quando a amostra está habilitada. Cada
+     * partícula é primeiro estimada na amostra; se mesmo o limite superior do intervalo de confiança da efetividade é
+     * dominado pela fronteira do repositório da sua classe, o fitness estimado é mantido, senão a partícula é
+     * avaliada em toda a base.
+     *
+     * @param lote        Partículas.
+     * @param repositorio Partículas não dominadas, divididas por classes.
+     * @see #setAmostra
+     */
+    public void avaliar( List<Particula> lote, Map<String, List<Particula>> repositorio )
+    {
+        if ( amostra == null )
+        {
+            avaliar( lote );
+            return;
+        }
+
+        final List<Particula> promissoras = new ArrayList<>();
+
+        for ( Particula part : lote )
+        {
+            if ( !part.alterada() )
+            {
+                numAvaliacaoEvitada.incrementAndGet();
+                continue;
+            }
+
+            final double[] estimativa = estimar( part );
+
+            if ( promissora( estimativa, repositorio.get( part.classe() ) ) )
+            {
+                promissoras.add( part );
+            }
+            else
+            {
+                part.setEstimativa( Arrays.copyOf( estimativa, 3 ) );
+            }
+        }
+
+        avaliar( promissoras );
+    }
+
+    /**
+     * Estima o fitness da partícula na amostra.
+     *
+     * @param part Partícula.
+     * @return Array contendo a complexidade, efetividade e acurácia estimadas e o limite superior da efetividade.
+     */
+    private double[] estimar( Particula part )
+    {
+        numAvaliacaoAmostra.incrementAndGet();
+
+        final int classe = kpastas.indiceClasse( part.classe() );
+        final long[] termos = part.termos();
+        final Hiperretangulo hiperretangulo = part.hiperretangulo();
+
+        // avaliação em blocos: os registros da amostra são lidos das mesmas colunas dos blocos
+        final Dados base = dados != null ? dados : emBlocos.dados();
+
+        final boolean insatisfazivel;
+        List<Condicao> regra;
+
+        if ( termos != null )
+        {
+            // termos do vocabulário: testados diretamente nos mapas de bits
+            insatisfazivel = false;
+            regra = Collections.emptyList();
+        }
+        else
+        {
+            final RegraCanonica canonica = RegraCanonica.canonizar( part.posicao() );
+
+            // hiper-retângulo: os intervalos são testados diretamente, restam as comparações entre atributos
+            insatisfazivel = canonica.insatisfazivel();
+            regra = interpretar( hiperretangulo != null ? hiperretangulo.comparacoes() : canonica.condicoes() );
+        }
+
+        if ( seletividade != null )
+        {
+            regra = seletividade.ordenar( regra );
+        }
+
+        final RegraCompilada compilada = compilador != null && !insatisfazivel && !regra.isEmpty()
+                        ? compilador.compilar( regra ) : null;
+
+        int tp = 0;
+        int fp = 0;
+        int positivos = 0;
+
+        for ( int linha : amostra )
+        {
+            final boolean verdadeiro = kpastas.classe( linha ) == classe;
+            boolean ok = !insatisfazivel && ( hiperretangulo == null || hiperretangulo.testar( base, linha ) );
+
+            if ( termos != null )
+            {
+                ok = part.vocabulario().testar( termos, linha );
+            }
+
+            if ( compilada != null )
+            {
+                ok = ok && compilada.testar( linha );
+            }
+            else
+            {
+                for ( int i = 0, size = regra.size(); ok && i < size; i++ )
+                {
+                    ok = regra.get( i ).testar( base, linha );
+                }
+            }
+
+            if ( verdadeiro )
+            {
+                positivos++;
+            }
+
+            if ( ok )
+            {
+                if ( verdadeiro )
+                {
+                    tp++;
+                }
+                else
+                {
+                    fp++;
+                }
+            }
+        }
+
+        final int negativos = amostra.length - positivos;
+        final double[] m = calcularMetricas( tp, tp + fp, positivos, amostra.length );
+
+        final double sensibilidade = (double) tp / positivos;
+        final double especificidade = (double) ( negativos - fp ) / negativos;
+
+        final double limite = limiteSuperior( sensibilidade, positivos ) * limiteSuperior( especificidade, negativos );
+
+        return new double[] { 1.0 / part.numWhere(), m[0], m[1], limite };
+    }
+
+    /**
+     * Limite superior do intervalo de confiança de Wilson de uma proporção (não se anula quando p = 0, ao contrário da
+     * aproximação normal).
+     */
+    private double limiteSuperior( double p, int n )
+    {
+        final double z2 = z * z;
+        final double centro = p + z2 / ( 2.0 * n );
+        final double margem = z * Math.sqrt( p * ( 1 - p ) / n + z2 / ( 4.0 * n * n ) );
+
+        return Math.min( 1.0, ( centro + margem ) / ( 1 + z2 / n ) );
+    }
+
+    /**
+     * Verifica se a partícula estimada pode não ser dominada pela fronteira, usando o limite superior da efetividade.
+     */
+    private static boolean promissora( double[] estimativa, List<Particula> fronteira )
+    {
+        // limite indefinido (classe ausente da amostra): avalia em toda a base
+        if ( Double.isNaN( estimativa[3] ) )
+        {
+            return true;
+        }
+
+        for ( Particula q : fronteira )
+        {
+            final double[] qfit = q.fitness();
+
+            if ( qfit[0] >= estimativa[0] && qfit[1] >= estimativa[3] && ( qfit[0] > estimativa[0]
+                            || qfit[1] > estimativa[3] ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Calcula o fitness de um lote de partículas em uma única passagem pela tabela.
+     *
+     * @param lote        Partículas.
+     * @param treinamento Se verdadeiro então fase de treinamento senão fase de teste.
+     * @return Fitness de cada partícula.
+     */
+    private double[][] calcularLote( List<Particula> lote, boolean treinamento )
+    {
+        final int size = lote.size();
+
+        // atualiza o número de avaliação
+        numAvaliacao.addAndGet( size );
+
+        final List<List<Condicao>> regras = new ArrayList<>( size );
+        final int[] classes = new int[size];
+        final int[] posicoes = new int[size];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            final Particula part = lote.get( i );
+            final RegraCanonica canonica = RegraCanonica.canonizar( part.posicao() );
+
+            classes[i] = kpastas.indiceClasse( part.classe() );
+
+            // regras insatisfazíveis ficam fora da passagem pela tabela
+            if ( canonica.insatisfazivel() )
+            {
+                posicoes[i] = -1;
+            }
+            else
+            {
+                posicoes[i] = regras.size();
+                regras.add( interpretar( canonica.condicoes() ) );
+            }
+        }
+
+        final int[] classesLote = new int[regras.size()];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( posicoes[i] >= 0 )
+            {
+                classesLote[posicoes[i]] = classes[i];
+            }
+        }
+
+        final int[][] r = regras.isEmpty() ? new int[0][] : emBlocos.contar( regras, classesLote, treinamento );
+        final double[][] fits = new double[size][];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            final int[] totais = totais( classes[i], treinamento );
+            final int[] contagem = posicoes[i] >= 0 ? r[posicoes[i]] : new int[2];
+            final double[] m = calcularMetricas( contagem[0], contagem[1], totais[0], totais[1] );
+
+            fits[i] = new double[] { 1.0 / lote.get( i ).numWhere(), m[0], m[1] };
+        }
+
+        return fits;
+    }
+
+    /**
+     * Converte a posição da partícula em condições sobre a base de dados em memória.
+     *
+     * @param posicao Condições WHERE da partícula.
+     * @return Lista de condições.
+     */
+    private List<Condicao> interpretar( Collection<String> posicao )
+    {
+        final List<Condicao> regra = new ArrayList<>( posicao.size() );
+
+        for ( String where : posicao )
+        {
+            regra.add( interpretar( where ) );
+        }
+
+        return regra;
+    }
+
+    /**
+     * Converte uma condição WHERE, mantendo as condições já interpretadas em cache.
+     *
+     * @param where Condição WHERE.
+     * @return Condição interpretada.
+     */
+    private Condicao interpretar( String where )
+    {
+        Condicao cond = condicoes.get( where );
+
+        if ( cond == null )
         {
-            if ( verdadeiros.contains( id ) )
+            if ( condicoes.size() >= LIMITE_CONDICOES )
             {
-                tp += 1.0;
+                condicoes.clear();
             }
+
+            cond = Condicao.interpretar( where, indiceColunas );
+            condicoes.put( where, cond );
         }
 
-        double fp = consultaSqlSize - tp;
-        double fn = verdadeirosSize - tp;
+        return cond;
+    }
+
+    /**
+     * Calcula a efetividade e acurácia a partir da matriz de confusão.
+     *
+     * @param verdadeirosPositivos Registros cobertos pela regra que pertencem à classe.
+     * @param cobertos             Registros cobertos pela regra.
+     * @param verdadeiros          Registros que pertencem à classe.
+     * @param total                Total de registros.
+     * @return Retorna a efetividade e acurácia calculada.
+     */
+    static double[] calcularMetricas( int verdadeirosPositivos, int cobertos, int verdadeiros, int total )
+    {
+        double tp = verdadeirosPositivos;
+        double fp = cobertos - tp;
+        double fn = verdadeiros - tp;
         double tn = total - fn - fp - tp;
 
         double sensibilidade = tp / ( tp + fn );
@@ -223,7 +1163,44 @@ public class Fitness
      */
     public long numAvaliacao()
     {
-        return numAvaliacao;
+        return numAvaliacao.get();
+    }
+
+    /**
+     * Retorna o número de estimativas do fitness na amostra.
+     *
+     * @return Número de estimativas.
+     */
+    public long numAvaliacaoAmostra()
+    {
+        return numAvaliacaoAmostra.get();
+    }
+
+    /**
+     * Retorna o número de avaliações evitadas por partículas inalteradas.
+     *
+     * @return Número de avaliações evitadas.
+     */
+    public long numAvaliacaoEvitada()
+    {
+        return numAvaliacaoEvitada.get();
+    }
+
+    /**
+     * Retorna o custo das avaliações em número de avaliações completas: cada estimativa custa a fração da base de
+     * treinamento contida na amostra.
+     *
+     * @return Custo das avaliações.
+     */
+    public double custoAvaliacao()
+    {
+        if ( amostra == null )
+        {
+            return numAvaliacao.get();
+        }
+
+        return numAvaliacao.get() + (double) numAvaliacaoAmostra.get() * amostra.length / ( kpastas.numLinhas()
+                        - kpastas.tamanho( k ) );
     }
 
     /**
@@ -233,7 +1210,19 @@ public class Fitness
      */
     public void setNumAvaliacao( int num )
     {
-        this.numAvaliacao = num;
+        this.numAvaliacao.set( num );
+    }
+
+    /**
+     * Acumula os contadores de avaliação de outra calculadora (ilha).
+     *
+     * @param outra Calculadora de fitness.
+     */
+    public void acumular( Fitness outra )
+    {
+        this.numAvaliacao.addAndGet( outra.numAvaliacao.get() );
+        this.numAvaliacaoAmostra.addAndGet( outra.numAvaliacaoAmostra.get() );
+        this.numAvaliacaoEvitada.addAndGet( outra.numAvaliacaoEvitada.get() );
     }
 
     /**
@@ -241,7 +1230,9 @@ public class Fitness
      */
     public void resetNumAvaliacao()
     {
-        this.numAvaliacao = 0;
+        this.numAvaliacao.set( 0 );
+        this.numAvaliacaoAmostra.set( 0 );
+        this.numAvaliacaoEvitada.set( 0 );
     }
 
     /**
@@ -254,6 +1245,35 @@ public class Fitness
     {
         Map<String, List<double[]>> mapFit = new TreeMap<>();
 
+        if ( emBlocos != null )
+        {
+            // todo o repositório em uma única passagem
+            final List<Particula> lote = new ArrayList<>();
+
+            for ( List<Particula> parts : repositorio.values() )
+            {
+                lote.addAll( parts );
+            }
+
+            final double[][] fits = calcularLote( lote, false );
+
+            int i = 0;
+
+            for ( Entry<String, List<Particula>> classePart : repositorio.entrySet() )
+            {
+                final List<double[]> lista = new ArrayList<>();
+
+                for ( int j = 0, size = classePart.getValue().size(); j < size; j++ )
+                {
+                    lista.add( fits[i++] );
+                }
+
+                mapFit.put( classePart.getKey(), lista );
+            }
+
+            return mapFit;
+        }
+
         for ( Entry<String, List<Particula>> classePart : repositorio.entrySet() )
         {
             String saida = classePart.getKey();
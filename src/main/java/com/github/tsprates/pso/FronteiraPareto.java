@@ -50,11 +50,35 @@ public class FronteiraPareto
      */
     public static int atualizarParticulasNaoDominadas( Collection<Particula> particulas, Particula particula )
     {
+        return atualizar( particulas, particula, true );
+    }
+
+    /**
+     * Adiciona a própria partícula, sem cópia nem reavaliação, se ela não for dominada (reunião dos repositórios das
+     * ilhas). Mesma semântica de {@link #atualizarParticulasNaoDominadas}.
+     *
+     * @param particulas Lista de partícula.
+     * @param particula  Partícula já avaliada, que não pertence a outra lista.
+     * @return 1 se a partícula foi incluída, 0 se não há relação de dominância ou -1 se a partícula é dominada.
+     */
+    public static int incluirParticulaNaoDominada( Collection<Particula> particulas, Particula particula )
+    {
+        return atualizar( particulas, particula, false );
+    }
+
+    private static int atualizar( Collection<Particula> particulas, Particula particula, boolean copiar )
+    {
+        // fitness contíguo: uma única passagem sem acessar as partículas
+        if ( particulas instanceof Enxame )
+        {
+            return ( (Enxame) particulas ).atualizarNaoDominadas( particula, copiar );
+        }
+
         double[] pfit = particula.fitness();
 
         if ( particulas.isEmpty() )
         {
-            particulas.add( particula.clonar() );
+            particulas.add( copiar ? particula.clonar() : particula );
             return 1;
         }
         else
@@ -92,7 +116,7 @@ public class FronteiraPareto
             // partículas não dominadas
             if ( domina && ehDominada == false && !particulas.contains( particula ) )
             {
-                particulas.add( particula.clonar() );
+                particulas.add( copiar ? particula.clonar() : particula );
                 return 1;
             }
 
@@ -0,0 +1,248 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.github.tsprates.pso.Formatador.formatarCondicaoWhere;
+import static com.github.tsprates.pso.Formatador.formatarValorNumericoWhere;
+
+/**
+ * Regra codificada como hiper-retângulo: um intervalo [inferior, superior) opcional por coluna e uma pequena lista de
+ * comparações entre atributos. As mutações e o cruzamento operam diretamente sobre os limites numéricos, e o teste de
+ * um registro percorre somente as colunas ativas, sem desvios por operador.
+ * <p>
+ * As colunas seguem a ordem da base de dados em memória. Os limites são arredondados para as casas decimais das
+ * condições WHERE, de modo que {@link #condicoes()} descreve exatamente o mesmo conjunto de registros.
+ *
+ * @author thiago
+ */
+public class Hiperretangulo
+{
+
+    private final List<String> colunas;
+
+    private final double[] inferiores;
+
+    private final double[] superiores;
+
+    private final Set<String> comparacoes;
+
+    private int[] ativas;
+
+    /**
+     * Construtor. Nenhuma coluna é restringida.
+     *
+     * @param colunas Nomes das colunas, na ordem da base de dados.
+     */
+    public Hiperretangulo( List<String> colunas )
+    {
+        this.colunas = colunas;
+        this.inferiores = new double[colunas.size()];
+        this.superiores = new double[colunas.size()];
+        this.comparacoes = new TreeSet<>();
+
+        Arrays.fill( inferiores, Double.NEGATIVE_INFINITY );
+        Arrays.fill( superiores, Double.POSITIVE_INFINITY );
+    }
+
+    /**
+     * Construtor de cópia.
+     *
+     * @param outro Hiper-retângulo copiado.
+     */
+    public Hiperretangulo( Hiperretangulo outro )
+    {
+        this.colunas = outro.colunas;
+        this.inferiores = outro.inferiores.clone();
+        this.superiores = outro.superiores.clone();
+        this.comparacoes = new TreeSet<>( outro.comparacoes );
+        this.ativas = outro.ativas;
+    }
+
+    /**
+     * Seta o limite inferior (inclusivo) da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @param valor  Limite ou -infinito para remover a restrição.
+     */
+    public void setInferior( int coluna, double valor )
+    {
+        inferiores[coluna] = arredondar( valor );
+        ativas = null;
+    }
+
+    /**
+     * Seta o limite superior (exclusivo) da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @param valor  Limite ou +infinito para remover a restrição.
+     */
+    public void setSuperior( int coluna, double valor )
+    {
+        superiores[coluna] = arredondar( valor );
+        ativas = null;
+    }
+
+    /**
+     * Retorna o limite inferior da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Limite inferior (inclusivo) ou -infinito.
+     */
+    public double inferior( int coluna )
+    {
+        return inferiores[coluna];
+    }
+
+    /**
+     * Retorna o limite superior da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Limite superior (exclusivo) ou +infinito.
+     */
+    public double superior( int coluna )
+    {
+        return superiores[coluna];
+    }
+
+    /**
+     * Retorna as colunas com algum limite.
+     *
+     * @return Índices das colunas restringidas.
+     */
+    public int[] ativas()
+    {
+        if ( ativas == null )
+        {
+            int n = 0;
+            final int[] cols = new int[inferiores.length];
+
+            for ( int col = 0; col < inferiores.length; col++ )
+            {
+                if ( inferiores[col] != Double.NEGATIVE_INFINITY || superiores[col] != Double.POSITIVE_INFINITY )
+                {
+                    cols[n++] = col;
+                }
+            }
+
+            ativas = Arrays.copyOf( cols, n );
+        }
+
+        return ativas;
+    }
+
+    /**
+     * Retorna as comparações entre atributos (condições WHERE "atributo operador atributo").
+     *
+     * @return Conjunto de comparações.
+     */
+    public Set<String> comparacoes()
+    {
+        return comparacoes;
+    }
+
+    /**
+     * Adiciona comparações entre atributos.
+     *
+     * @param where Condições WHERE "atributo operador atributo".
+     */
+    public void adicionarComparacoes( Collection<String> where )
+    {
+        comparacoes.addAll( where );
+    }
+
+    /**
+     * Remove uma comparação entre atributos.
+     *
+     * @param where Condição WHERE "atributo operador atributo".
+     */
+    public void removerComparacao( String where )
+    {
+        comparacoes.remove( where );
+    }
+
+    /**
+     * Retorna o número de condições WHERE equivalentes (limites finitos e comparações).
+     *
+     * @return Número de condições.
+     */
+    public int numCondicoes()
+    {
+        int n = comparacoes.size();
+
+        for ( int col : ativas() )
+        {
+            n += inferiores[col] != Double.NEGATIVE_INFINITY ? 1 : 0;
+            n += superiores[col] != Double.POSITIVE_INFINITY ? 1 : 0;
+        }
+
+        return n;
+    }
+
+    /**
+     * Converte o hiper-retângulo em condições WHERE ("coluna >= inferior" e "coluna < superior").
+     *
+     * @return Conjunto ordenado de condições WHERE.
+     */
+    public Set<String> condicoes()
+    {
+        final Set<String> where = new TreeSet<>( comparacoes );
+
+        for ( int col : ativas() )
+        {
+            if ( inferiores[col] != Double.NEGATIVE_INFINITY )
+            {
+                where.add( formatarCondicaoWhere( colunas.get( col ), ">=",
+                                                  formatarValorNumericoWhere( inferiores[col] ) ) );
+            }
+
+            if ( superiores[col] != Double.POSITIVE_INFINITY )
+            {
+                where.add( formatarCondicaoWhere( colunas.get( col ), "<",
+                                                  formatarValorNumericoWhere( superiores[col] ) ) );
+            }
+        }
+
+        return where;
+    }
+
+    /**
+     * Testa os intervalos para um registro (as comparações entre atributos não são testadas). Valores ausentes nunca
+     * satisfazem um intervalo.
+     *
+     * @param dados Base de dados em memória.
+     * @param linha Índice do registro.
+     * @return Verdadeiro se o registro pertence a todos os intervalos.
+     */
+    public boolean testar( Dados dados, int linha )
+    {
+        final int[] cols = ativas();
+        boolean ok = true;
+
+        for ( int i = 0; i < cols.length; i++ )
+        {
+            final int col = cols[i];
+            final double x = dados.valor( col, linha );
+
+            ok &= x >= inferiores[col] & x < superiores[col];
+        }
+
+        return ok;
+    }
+
+    /**
+     * Arredonda o limite para as casas decimais das condições WHERE.
+     */
+    private static double arredondar( double valor )
+    {
+        if ( Double.isInfinite( valor ) )
+        {
+            return valor;
+        }
+
+        return Math.round( valor * 1000.0 ) / 1000.0;
+    }
+}
@@ -0,0 +1,751 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice ordenado por coluna da base de dados em memória. Para cada coluna guarda a permutação dos registros em ordem
+ * crescente de valor, o que transforma uma condição de limiar (atributo contra valor numérico) em um intervalo
+ * contínuo encontrado por busca binária. Contagens acumuladas por grupo (classe x treinamento/teste) a cada
+ * {@link #BLOCO} posições permitem contar os verdadeiros positivos de um intervalo percorrendo no máximo {@link #BLOCO}
+ * posições em cada extremo, em vez do intervalo inteiro.
+ *
+ * @author thiago
+ */
+public class IndiceOrdenado
+{
+
+    /**
+     * Intervalo entre as contagens acumuladas.
+     */
+    private static final int BLOCO = 64;
+
+    /**
+     * Intervalos maiores que 1/8 dos registros são avaliados por varredura sequencial das colunas. O limite é
+     * heurístico: acima dele o acesso aleatório pela permutação ordenada tende a custar mais que a varredura.
+     */
+    private static final int FRACAO_VARREDURA = 8;
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final int numGrupos;
+
+    private final int[][] ordem;
+
+    private final double[][] ordenados;
+
+    private final int[] numValidos;
+
+    private final int[] grupoLinha;
+
+    private final int[][] marcos;
+
+    private final AvaliadorVetorial varredura;
+
+    private CompiladorRegras compilador;
+
+    private Seletividade seletividade;
+
+    private ColunasDerivadas derivadas;
+
+    /**
+     * Construtor. Ordena todas as colunas da base de dados.
+     *
+     * @param dados     Base de dados em memória.
+     * @param kpastas   K-Pastas.
+     * @param varredura Avaliação por varredura das colunas (intervalos pouco seletivos).
+     */
+    public IndiceOrdenado( Dados dados, KPastas kpastas, AvaliadorVetorial varredura )
+    {
+        this.dados = dados;
+        this.kpastas = kpastas;
+
+        final int numCols = dados.numColunas();
+        final int numLinhas = dados.numLinhas();
+
+        // grupo = classe * 2 + (1 se pertence à pasta de teste)
+        this.numGrupos = kpastas.classes().size() * 2;
+        this.grupoLinha = new int[numLinhas];
+
+        this.ordem = new int[numCols][];
+        this.ordenados = new double[numCols][];
+        this.numValidos = new int[numCols];
+        this.marcos = new int[numCols][];
+
+        this.varredura = varredura;
+
+        final int[] temp = new int[numLinhas];
+
+        for ( int col = 0; col < numCols; col++ )
+        {
+            final int[] idx = new int[numLinhas];
+            final double[] vals = new double[numLinhas];
+
+            int validos = 0;
+            int ausentes = numLinhas;
+
+            dados.copiar( col, 0, vals, numLinhas );
+
+            // valores ausentes (NaN) ficam no final e não pertencem a nenhum intervalo
+            for ( int linha = 0; linha < numLinhas; linha++ )
+            {
+                final double v = vals[linha];
+
+                if ( Double.isNaN( v ) )
+                {
+                    idx[--ausentes] = linha;
+                }
+                else
+                {
+                    idx[validos++] = linha;
+                }
+            }
+
+            ordenar( idx, validos, vals, temp );
+
+            final double[] ord = new double[validos];
+
+            for ( int i = 0; i < validos; i++ )
+            {
+                ord[i] = vals[idx[i]];
+            }
+
+            ordem[col] = idx;
+            ordenados[col] = ord;
+            numValidos[col] = validos;
+            marcos[col] = new int[( validos / BLOCO + 1 ) * numGrupos];
+        }
+    }
+
+    /**
+     * Atualiza as contagens acumuladas para a pasta de teste atual. A varredura é atualizada por {@link Fitness}.
+     *
+     * @param k Índice da pasta de teste.
+     */
+    public void atualizarPasta( int k )
+    {
+        final byte[] rotulos = kpastas.rotulos();
+
+        for ( int linha = 0, len = grupoLinha.length; linha < len; linha++ )
+        {
+            grupoLinha[linha] = kpastas.classe( linha ) * 2 + ( rotulos[linha] == k ? 1 : 0 );
+        }
+
+        final int[] cont = new int[numGrupos];
+
+        for ( int col = 0; col < ordem.length; col++ )
+        {
+            final int[] idx = ordem[col];
+            final int[] m = marcos[col];
+
+            Arrays.fill( cont, 0 );
+
+            for ( int i = 0, validos = numValidos[col]; i < validos; i++ )
+            {
+                if ( i % BLOCO == 0 )
+                {
+                    System.arraycopy( cont, 0, m, ( i / BLOCO ) * numGrupos, numGrupos );
+                }
+
+                cont[grupoLinha[idx[i]]]++;
+            }
+
+            if ( numValidos[col] % BLOCO == 0 )
+            {
+                System.arraycopy( cont, 0, m, ( numValidos[col] / BLOCO ) * numGrupos, numGrupos );
+            }
+        }
+    }
+
+    /**
+     * Seta o compilador de regras usado no teste registro a registro das demais condições.
+     *
+     * @param compilador Compilador de regras ou null.
+     */
+    public void setCompilador( CompiladorRegras compilador )
+    {
+        this.compilador = compilador;
+    }
+
+    /**
+     * Seta a estimativa de seletividade usada para ordenar as demais condições testadas no intervalo.
+     *
+     * @param seletividade Estimativa de seletividade ou null.
+     */
+    public void setSeletividade( Seletividade seletividade )
+    {
+        this.seletividade = seletividade;
+    }
+
+    /**
+     * Seta as colunas de diferença. Condições entre atributos cujo par está materializado passam a ser candidatas ao
+     * intervalo percorrido, pelo índice da coluna de diferença.
+     *
+     * @param derivadas Colunas derivadas ou null.
+     */
+    public void setDerivadas( ColunasDerivadas derivadas )
+    {
+        this.derivadas = derivadas;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos por uma regra (conjunção de condições).
+     *
+     * @param regra       Condições da regra.
+     * @param classe      Índice da classe da regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( List<Condicao> regra, int classe, boolean treinamento )
+    {
+        final int teste = treinamento ? 0 : 1;
+        final Selecao selecao = selecionar( regra );
+
+        if ( selecao != null && regra.size() == 1 )
+        {
+            // busca binária e as contagens acumuladas nos extremos (até BLOCO posições em cada um)
+            final int[] cont = new int[numGrupos];
+            selecao.indice.contarIntervalo( selecao.limiar.coluna(), selecao.lo, selecao.hi, cont );
+
+            int cobertos = 0;
+
+            for ( int g = teste; g < numGrupos; g += 2 )
+            {
+                cobertos += cont[g];
+            }
+
+            return new int[] { cont[classe * 2 + teste], cobertos };
+        }
+
+        if ( selecao == null || !selecao.seletiva() )
+        {
+            return varredura.contar( regra, classe, treinamento );
+        }
+
+        int tp = 0;
+        int cobertos = 0;
+
+        // percorre somente o intervalo da condição mais seletiva
+        final int[] idx = selecao.indice.ordem[selecao.limiar.coluna()];
+        final List<Condicao> demais = demais( regra, selecao.cond );
+        final RegraCompilada compilada = compilador != null ? compilador.compilar( demais ) : null;
+
+        for ( int i = selecao.lo; i < selecao.hi; i++ )
+        {
+            final int linha = idx[i];
+            final int g = grupoLinha[linha];
+
+            if ( ( g & 1 ) == teste && ( compilada != null ? compilada.testar( linha )
+                            : testarTodas( demais, linha ) ) )
+            {
+                cobertos++;
+
+                if ( ( g >> 1 ) == classe )
+                {
+                    tp++;
+                }
+            }
+        }
+
+        return new int[] { tp, cobertos };
+    }
+
+    /**
+     * Retorna a máscara dos registros cobertos por uma regra, percorrendo somente o intervalo da condição de limiar
+     * mais seletiva. Usada quando o conjunto de registros cobertos é mantido pela partícula (avaliação incremental).
+     *
+     * @param regra       Condições da regra.
+     * @param treinamento Se verdadeiro considera os registros de treinamento, senão os de teste.
+     * @return Máscara de registros cobertos ou null se nenhuma condição for seletiva o bastante (a varredura das
+     * colunas é mais barata).
+     */
+    public long[] cobrir( List<Condicao> regra, boolean treinamento )
+    {
+        final Selecao selecao = selecionar( regra );
+
+        if ( selecao == null || !selecao.seletiva() )
+        {
+            return null;
+        }
+
+        final int teste = treinamento ? 0 : 1;
+        final long[] mascara = Bits.criar( grupoLinha.length );
+        final int[] idx = selecao.indice.ordem[selecao.limiar.coluna()];
+        final List<Condicao> demais = demais( regra, selecao.cond );
+        final RegraCompilada compilada = compilador != null && !demais.isEmpty() ? compilador.compilar( demais )
+                        : null;
+
+        for ( int i = selecao.lo; i < selecao.hi; i++ )
+        {
+            final int linha = idx[i];
+
+            if ( ( grupoLinha[linha] & 1 ) == teste && ( compilada != null ? compilada.testar( linha )
+                            : testarTodas( demais, linha ) ) )
+            {
+                Bits.marcar( mascara, linha );
+            }
+        }
+
+        return mascara;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos por uma regra codificada como hiper-retângulo, percorrendo
+     * somente o intervalo ordenado da coluna ativa mais seletiva; as demais colunas e as comparações são testadas
+     * registro a registro. Intervalos pouco seletivos são avaliados pela varredura das colunas, uma passagem por
+     * coluna ativa.
+     *
+     * @param regra       Hiper-retângulo.
+     * @param comparacoes Comparações entre atributos da regra.
+     * @param classe      Índice da classe da regra.
+     * @param treinamento Se verdadeiro conta os registros de treinamento, senão os de teste.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( Hiperretangulo regra, List<Condicao> comparacoes, int classe, boolean treinamento )
+    {
+        final int teste = treinamento ? 0 : 1;
+        final int[] selecao = selecionar( regra );
+
+        if ( selecao != null && comparacoes.isEmpty() && regra.ativas().length == 1 )
+        {
+            // busca binária e as contagens acumuladas nos extremos (até BLOCO posições em cada um)
+            final int[] cont = new int[numGrupos];
+            contarIntervalo( selecao[0], selecao[1], selecao[2], cont );
+
+            int cobertos = 0;
+
+            for ( int g = teste; g < numGrupos; g += 2 )
+            {
+                cobertos += cont[g];
+            }
+
+            return new int[] { cont[classe * 2 + teste], cobertos };
+        }
+
+        if ( selecao == null || selecao[2] - selecao[1] > grupoLinha.length / FRACAO_VARREDURA )
+        {
+            return varredura.contar( regra, comparacoes, classe, treinamento );
+        }
+
+        int tp = 0;
+        int cobertos = 0;
+
+        final int[] idx = ordem[selecao[0]];
+        final RegraCompilada compilada = compilador != null && !comparacoes.isEmpty() ? compilador.compilar(
+                        comparacoes ) : null;
+
+        for ( int i = selecao[1]; i < selecao[2]; i++ )
+        {
+            final int linha = idx[i];
+            final int g = grupoLinha[linha];
+
+            if ( ( g & 1 ) == teste && testarIntervalos( regra, selecao[0], linha ) && ( compilada != null
+                            ? compilada.testar( linha ) : testarTodas( comparacoes, linha ) ) )
+            {
+                cobertos++;
+
+                if ( ( g >> 1 ) == classe )
+                {
+                    tp++;
+                }
+            }
+        }
+
+        return new int[] { tp, cobertos };
+    }
+
+    /**
+     * Retorna a máscara dos registros cobertos por uma regra codificada como hiper-retângulo, percorrendo somente o
+     * intervalo ordenado da coluna ativa mais seletiva.
+     *
+     * @param regra       Hiper-retângulo.
+     * @param comparacoes Comparações entre atributos da regra.
+     * @param treinamento Se verdadeiro considera os registros de treinamento, senão os de teste.
+     * @return Máscara de registros cobertos ou null se nenhum intervalo for seletivo o bastante (a varredura das
+     * colunas é mais barata).
+     */
+    public long[] cobrir( Hiperretangulo regra, List<Condicao> comparacoes, boolean treinamento )
+    {
+        final int[] selecao = selecionar( regra );
+
+        if ( selecao == null || selecao[2] - selecao[1] > grupoLinha.length / FRACAO_VARREDURA )
+        {
+            return null;
+        }
+
+        final int teste = treinamento ? 0 : 1;
+        final long[] mascara = Bits.criar( grupoLinha.length );
+        final int[] idx = ordem[selecao[0]];
+        final RegraCompilada compilada = compilador != null && !comparacoes.isEmpty() ? compilador.compilar(
+                        comparacoes ) : null;
+
+        for ( int i = selecao[1]; i < selecao[2]; i++ )
+        {
+            final int linha = idx[i];
+
+            if ( ( grupoLinha[linha] & 1 ) == teste && testarIntervalos( regra, selecao[0], linha ) && ( compilada
+                            != null ? compilada.testar( linha ) : testarTodas( comparacoes, linha ) ) )
+            {
+                Bits.marcar( mascara, linha );
+            }
+        }
+
+        return mascara;
+    }
+
+    /**
+     * Seleciona a coluna ativa do hiper-retângulo com o menor intervalo ordenado [inferior, superior).
+     *
+     * @return Array com a coluna e as posições inicial (inclusiva) e final (exclusiva) ou null se nenhuma coluna for
+     * restringida.
+     */
+    private int[] selecionar( Hiperretangulo regra )
+    {
+        int[] selecao = null;
+
+        for ( int col : regra.ativas() )
+        {
+            final double[] ord = ordenados[col];
+            final int validos = numValidos[col];
+
+            final int lo = limiteInferior( ord, validos, regra.inferior( col ) );
+            final int hi = Math.max( lo, limiteInferior( ord, validos, regra.superior( col ) ) );
+
+            if ( selecao == null || hi - lo < selecao[2] - selecao[1] )
+            {
+                selecao = new int[] { col, lo, hi };
+            }
+        }
+
+        return selecao;
+    }
+
+    /**
+     * Testa os intervalos das demais colunas ativas para um registro.
+     */
+    private boolean testarIntervalos( Hiperretangulo regra, int selecionada, int linha )
+    {
+        for ( int col : regra.ativas() )
+        {
+            if ( col != selecionada )
+            {
+                final double x = dados.valor( col, linha );
+
+                if ( !( x >= regra.inferior( col ) && x < regra.superior( col ) ) )
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Seleciona a condição de limiar mais seletiva (inclusive entre atributos, pela coluna de diferença).
+     *
+     * @return Condição e intervalo selecionados ou null se nenhuma condição for de limiar.
+     */
+    private Selecao selecionar( List<Condicao> regra )
+    {
+        Selecao selecao = null;
+
+        for ( Condicao cond : regra )
+        {
+            IndiceOrdenado indiceCond = this;
+            Condicao limiar = cond;
+
+            if ( cond.colunaValor() >= 0 && derivadas != null )
+            {
+                indiceCond = derivadas.indice( cond );
+                limiar = ColunasDerivadas.limiar( cond );
+            }
+
+            if ( indiceCond != null && limiar.limiar() )
+            {
+                final int[] intervalo = indiceCond.intervalo( limiar );
+
+                if ( selecao == null || intervalo[1] - intervalo[0] < selecao.hi - selecao.lo )
+                {
+                    selecao = new Selecao( cond, indiceCond, limiar, intervalo[0], intervalo[1] );
+                }
+            }
+        }
+
+        return selecao;
+    }
+
+    /**
+     * Demais condições da regra, da mais seletiva para a menos seletiva.
+     */
+    private List<Condicao> demais( List<Condicao> regra, Condicao selecionada )
+    {
+        final List<Condicao> demais = new ArrayList<>( regra );
+        demais.remove( selecionada );
+
+        return seletividade != null ? seletividade.ordenar( demais ) : demais;
+    }
+
+    /**
+     * Retorna o intervalo de posições ordenadas que satisfazem uma condição de limiar.
+     *
+     * @param cond Condição de limiar.
+     * @return Array com a posição inicial (inclusiva) e final (exclusiva).
+     */
+    public int[] intervalo( Condicao cond )
+    {
+        final int col = cond.coluna();
+        final double[] ord = ordenados[col];
+        final int validos = numValidos[col];
+        final double v = cond.valor();
+
+        switch ( cond.operador() )
+        {
+            case Condicao.MAIOR:
+                return new int[] { limiteSuperior( ord, validos, v ), validos };
+            case Condicao.MAIOR_IGUAL:
+                return new int[] { limiteInferior( ord, validos, v ), validos };
+            case Condicao.MENOR:
+                return new int[] { 0, limiteInferior( ord, validos, v ) };
+            case Condicao.MENOR_IGUAL:
+                return new int[] { 0, limiteSuperior( ord, validos, v ) };
+            case Condicao.IGUAL:
+                return new int[] { limiteInferior( ord, validos, v ), limiteSuperior( ord, validos, v ) };
+            default:
+                throw new RuntimeException( "Condição não é de limiar: " + cond );
+        }
+    }
+
+    /**
+     * Retorna a permutação ordenada dos registros da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Índices dos registros em ordem crescente de valor (não deve ser alterado).
+     */
+    public int[] ordem( int coluna )
+    {
+        return ordem[coluna];
+    }
+
+    /**
+     * Retorna os valores ordenados (sem ausentes) da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Valores em ordem crescente (não deve ser alterado).
+     */
+    public double[] ordenados( int coluna )
+    {
+        return ordenados[coluna];
+    }
+
+    /**
+     * Retorna o número de valores não ausentes da coluna.
+     *
+     * @param coluna Índice da coluna.
+     * @return Número de valores válidos.
+     */
+    public int numValidos( int coluna )
+    {
+        return numValidos[coluna];
+    }
+
+    /**
+     * Testa as condições para um registro, parando na primeira não satisfeita.
+     *
+     * @param regra Condições.
+     * @param linha Índice do registro.
+     * @return Verdadeiro se o registro satisfaz as condições.
+     */
+    private boolean testarTodas( List<Condicao> regra, int linha )
+    {
+        for ( int i = 0, size = regra.size(); i < size; i++ )
+        {
+            if ( !regra.get( i ).testar( dados, linha ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Acumula as contagens por grupo das posições ordenadas [lo, hi).
+     *
+     * @param col  Índice da coluna.
+     * @param lo   Posição inicial.
+     * @param hi   Posição final.
+     * @param cont Contagens por grupo.
+     */
+    private void contarIntervalo( int col, int lo, int hi, int[] cont )
+    {
+        acumularPrefixo( col, hi, cont, 1 );
+        acumularPrefixo( col, lo, cont, -1 );
+    }
+
+    /**
+     * Acumula as contagens por grupo das posições ordenadas [0, pos).
+     *
+     * @param col   Índice da coluna.
+     * @param pos   Posição final.
+     * @param cont  Contagens por grupo.
+     * @param sinal 1 para somar ou -1 para subtrair.
+     */
+    private void acumularPrefixo( int col, int pos, int[] cont, int sinal )
+    {
+        final int bloco = pos / BLOCO;
+        final int[] m = marcos[col];
+        final int[] idx = ordem[col];
+
+        for ( int g = 0; g < numGrupos; g++ )
+        {
+            cont[g] += sinal * m[bloco * numGrupos + g];
+        }
+
+        for ( int i = bloco * BLOCO; i < pos; i++ )
+        {
+            cont[grupoLinha[idx[i]]] += sinal;
+        }
+    }
+
+    /**
+     * Primeira posição com valor maior ou igual a v.
+     */
+    static int limiteInferior( double[] ord, int len, double v )
+    {
+        int lo = 0;
+        int hi = len;
+
+        while ( lo < hi )
+        {
+            final int mid = ( lo + hi ) >>> 1;
+
+            if ( ord[mid] < v )
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Primeira posição com valor maior que v.
+     */
+    static int limiteSuperior( double[] ord, int len, double v )
+    {
+        int lo = 0;
+        int hi = len;
+
+        while ( lo < hi )
+        {
+            final int mid = ( lo + hi ) >>> 1;
+
+            if ( ord[mid] <= v )
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Ordena (merge sort estável) os primeiros len índices pelos respectivos valores.
+     *
+     * @param idx  Índices dos registros.
+     * @param len  Número de índices ordenados.
+     * @param vals Valores por registro.
+     * @param temp Array auxiliar.
+     */
+    private static void ordenar( int[] idx, int len, double[] vals, int[] temp )
+    {
+        int[] orig = idx;
+        int[] dest = temp;
+
+        for ( int largura = 1; largura < len; largura *= 2 )
+        {
+            for ( int ini = 0; ini < len; ini += 2 * largura )
+            {
+                final int meio = Math.min( ini + largura, len );
+                final int fim = Math.min( ini + 2 * largura, len );
+
+                int a = ini;
+                int b = meio;
+                int d = ini;
+
+                while ( a < meio && b < fim )
+                {
+                    dest[d++] = vals[orig[b]] < vals[orig[a]] ? orig[b++] : orig[a++];
+                }
+
+                while ( a < meio )
+                {
+                    dest[d++] = orig[a++];
+                }
+
+                while ( b < fim )
+                {
+                    dest[d++] = orig[b++];
+                }
+            }
+
+            final int[] tmp = orig;
+            orig = dest;
+            dest = tmp;
+        }
+
+        if ( orig != idx )
+        {
+            System.arraycopy( orig, 0, idx, 0, len );
+        }
+    }
+
+    /**
+     * Condição de limiar selecionada e o seu intervalo de posições ordenadas.
+     */
+    private class Selecao
+    {
+
+        private final Condicao cond;
+
+        private final IndiceOrdenado indice;
+
+        private final Condicao limiar;
+
+        private final int lo;
+
+        private final int hi;
+
+        /**
+         * Construtor.
+         */
+        Selecao( Condicao cond, IndiceOrdenado indice, Condicao limiar, int lo, int hi )
+        {
+            this.cond = cond;
+            this.indice = indice;
+            this.limiar = limiar;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * Verifica se o intervalo é pequeno o bastante para ser percorrido pela permutação ordenada.
+         */
+        boolean seletiva()
+        {
+            return hi - lo <= grupoLinha.length / FRACAO_VARREDURA;
+        }
+    }
+}
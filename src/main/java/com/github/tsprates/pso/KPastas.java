@@ -0,0 +1,407 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Validação Cruzada K-Pastas estratificada, representada por um rótulo de pasta para cada registro.
+ *
+ * @author thiago
+ */
+public class KPastas
+{
+
+    private final int numK;
+
+    private final String[] ids;
+
+    private final int[] classeLinha;
+
+    private final int[][] linhasPorClasse;
+
+    private final List<String> classes;
+
+    private final Map<String, Integer> linhaPorId;
+
+    private final byte[] pasta;
+
+    private final int[] ordem;
+
+    private final int[] tamanhoPasta;
+
+    private final int[][] numPorClassePasta;
+
+    private final long[][] mascaraClasse;
+
+    private final long[][] mascaraPasta;
+
+    /**
+     * Construtor.
+     *
+     * @param numK         Número de K-Pastas.
+     * @param classes      Classes da base de dados (ordenadas).
+     * @param mapaClasseId Mapa de IDs de registros por classe.
+     */
+    public KPastas( int numK, List<String> classes, Map<String, List<String>> mapaClasseId )
+    {
+        if ( numK < 1 || numK > Byte.MAX_VALUE )
+        {
+            throw new RuntimeException( "Número de K-Pastas inválido." );
+        }
+
+        this.numK = numK;
+        this.classes = new ArrayList<>( classes );
+
+        int total = 0;
+
+        for ( String cl : this.classes )
+        {
+            total += mapaClasseId.get( cl ).size();
+        }
+
+        this.ids = new String[total];
+        this.classeLinha = new int[total];
+        this.linhasPorClasse = new int[this.classes.size()][];
+        this.linhaPorId = new HashMap<>( total * 2 );
+
+        int linha = 0;
+
+        for ( int c = 0, numClasses = this.classes.size(); c < numClasses; c++ )
+        {
+            final List<String> idsClasse = mapaClasseId.get( this.classes.get( c ) );
+            final int[] linhas = new int[idsClasse.size()];
+
+            for ( int i = 0, size = idsClasse.size(); i < size; i++ )
+            {
+                final String id = idsClasse.get( i );
+
+                ids[linha] = id;
+                classeLinha[linha] = c;
+                linhaPorId.put( id, linha );
+                linhas[i] = linha;
+
+                linha++;
+            }
+
+            linhasPorClasse[c] = linhas;
+        }
+
+        this.pasta = new byte[total];
+        this.ordem = new int[total];
+        this.tamanhoPasta = new int[numK];
+        this.numPorClassePasta = new int[this.classes.size()][numK];
+
+        this.mascaraClasse = new long[this.classes.size()][];
+
+        for ( int c = 0; c < linhasPorClasse.length; c++ )
+        {
+            mascaraClasse[c] = Bits.criar( total );
+
+            for ( int l : linhasPorClasse[c] )
+            {
+                Bits.marcar( mascaraClasse[c], l );
+            }
+        }
+
+        this.mascaraPasta = new long[numK][Bits.palavras( total )];
+    }
+
+    /**
+     * Sorteia as K-Pastas. Cada classe é embaralhada uma única vez e os seus registros são distribuídos em rodízio
+     * entre as pastas, continuando de onde a classe anterior parou (mesma estratificação do algoritmo original).
+     *
+     * @param random Gerador de números aleatórios.
+     */
+    public void embaralhar( Random random )
+    {
+        for ( int[] cont : numPorClassePasta )
+        {
+            Arrays.fill( cont, 0 );
+        }
+
+        Arrays.fill( tamanhoPasta, 0 );
+
+        for ( long[] mascara : mascaraPasta )
+        {
+            Arrays.fill( mascara, 0L );
+        }
+
+        int pos = 0;
+        int k = 0;
+
+        for ( int c = 0; c < linhasPorClasse.length; c++ )
+        {
+            final int[] linhas = linhasPorClasse[c];
+            final int inicio = pos;
+
+            System.arraycopy( linhas, 0, ordem, inicio, linhas.length );
+
+            // mesmo algoritmo de Collections.shuffle
+            for ( int i = linhas.length; i > 1; i-- )
+            {
+                final int j = inicio + random.nextInt( i );
+                final int tmp = ordem[inicio + i - 1];
+                ordem[inicio + i - 1] = ordem[j];
+                ordem[j] = tmp;
+            }
+
+            for ( int i = 0; i < linhas.length; i++, pos++ )
+            {
+                pasta[ordem[pos]] = (byte) k;
+                Bits.marcar( mascaraPasta[k], ordem[pos] );
+                tamanhoPasta[k]++;
+                numPorClassePasta[c][k]++;
+
+                k = ( k + 1 == numK ) ? 0 : k + 1;
+            }
+        }
+    }
+
+    /**
+     * Sorteia uma amostra estratificada dos registros de treinamento (fora da pasta de teste). Cada classe contribui
+     * proporcionalmente ao seu número de registros de treinamento, com pelo menos um registro.
+     *
+     * @param k       Índice da pasta de teste.
+     * @param tamanho Tamanho aproximado da amostra.
+     * @param random  Gerador de números aleatórios.
+     * @return Índices dos registros da amostra.
+     */
+    public int[] amostrar( int k, int tamanho, Random random )
+    {
+        final int numTreinamento = numLinhas() - tamanhoPasta[k];
+        final int[] amostra = new int[Math.min( tamanho, numTreinamento ) + linhasPorClasse.length];
+        int n = 0;
+
+        for ( int c = 0; c < linhasPorClasse.length; c++ )
+        {
+            final int[] treinamento = new int[linhasPorClasse[c].length - numPorClassePasta[c][k]];
+            int len = 0;
+
+            for ( int l : linhasPorClasse[c] )
+            {
+                if ( pasta[l] != k )
+                {
+                    treinamento[len++] = l;
+                }
+            }
+
+            final long cota = Math.round( (double) tamanho * len / numTreinamento );
+            final int m = (int) Math.min( len, Math.max( len > 0 ? 1 : 0, cota ) );
+
+            // Fisher-Yates parcial
+            for ( int i = 0; i < m; i++ )
+            {
+                final int j = i + random.nextInt( len - i );
+                final int tmp = treinamento[i];
+                treinamento[i] = treinamento[j];
+                treinamento[j] = tmp;
+
+                amostra[n++] = treinamento[i];
+            }
+        }
+
+        final int[] resultado = Arrays.copyOf( amostra, n );
+        Arrays.sort( resultado );
+
+        return resultado;
+    }
+
+    /**
+     * Retorna os IDs dos registros de uma pasta.
+     *
+     * @param k Índice da pasta.
+     * @return Lista de IDs da pasta.
+     */
+    public List<String> listar( int k )
+    {
+        final List<String> lista = new ArrayList<>( tamanhoPasta[k] );
+
+        for ( int linha : ordem )
+        {
+            if ( pasta[linha] == k )
+            {
+                lista.add( ids[linha] );
+            }
+        }
+
+        return lista;
+    }
+
+    /**
+     * Retorna os IDs dos registros de todas as pastas (usado pelo WEKA).
+     *
+     * @return Lista de K-Pastas estratificada.
+     */
+    public List<List<String>> listar()
+    {
+        final List<List<String>> lista = new ArrayList<>( numK );
+
+        for ( int k = 0; k < numK; k++ )
+        {
+            lista.add( new ArrayList<String>( tamanhoPasta[k] ) );
+        }
+
+        for ( int linha : ordem )
+        {
+            lista.get( pasta[linha] ).add( ids[linha] );
+        }
+
+        return lista;
+    }
+
+    /**
+     * Retorna o número de K-Pastas.
+     *
+     * @return Número de pastas.
+     */
+    public int numK()
+    {
+        return numK;
+    }
+
+    /**
+     * Retorna o número total de registros.
+     *
+     * @return Número de registros.
+     */
+    public int numLinhas()
+    {
+        return ids.length;
+    }
+
+    /**
+     * Retorna a pasta do registro.
+     *
+     * @param linha Índice do registro.
+     * @return Índice da pasta.
+     */
+    public int pasta( int linha )
+    {
+        return pasta[linha];
+    }
+
+    /**
+     * Retorna os rótulos de pasta de todos os registros.
+     *
+     * @return Array de rótulos (não deve ser alterado).
+     */
+    public byte[] rotulos()
+    {
+        return pasta;
+    }
+
+    /**
+     * Retorna o índice da classe do registro.
+     *
+     * @param linha Índice do registro.
+     * @return Índice da classe.
+     */
+    public int classe( int linha )
+    {
+        return classeLinha[linha];
+    }
+
+    /**
+     * Retorna o índice da classe.
+     *
+     * @param classe Nome da classe.
+     * @return Índice da classe.
+     */
+    public int indiceClasse( String classe )
+    {
+        return classes.indexOf( classe );
+    }
+
+    /**
+     * Retorna as classes.
+     *
+     * @return Lista de classes.
+     */
+    public List<String> classes()
+    {
+        return classes;
+    }
+
+    /**
+     * Retorna o ID do registro.
+     *
+     * @param linha Índice do registro.
+     * @return ID do registro.
+     */
+    public String id( int linha )
+    {
+        return ids[linha];
+    }
+
+    /**
+     * Retorna o índice do registro pelo ID.
+     *
+     * @param id ID do registro.
+     * @return Índice do registro ou -1 caso não exista.
+     */
+    public int linha( String id )
+    {
+        final Integer linha = linhaPorId.get( id );
+        return linha == null ? -1 : linha;
+    }
+
+    /**
+     * Retorna o número de registros da pasta.
+     *
+     * @param k Índice da pasta.
+     * @return Número de registros.
+     */
+    public int tamanho( int k )
+    {
+        return tamanhoPasta[k];
+    }
+
+    /**
+     * Retorna o número de registros da classe.
+     *
+     * @param classe Índice da classe.
+     * @return Número de registros.
+     */
+    public int tamanhoClasse( int classe )
+    {
+        return linhasPorClasse[classe].length;
+    }
+
+    /**
+     * Retorna o número de registros da classe na pasta.
+     *
+     * @param classe Índice da classe.
+     * @param k      Índice da pasta.
+     * @return Número de registros.
+     */
+    public int contar( int classe, int k )
+    {
+        return numPorClassePasta[classe][k];
+    }
+
+    /**
+     * Retorna o mapa de bits dos registros da classe.
+     *
+     * @param classe Índice da classe.
+     * @return Mapa de bits (não deve ser alterado).
+     */
+    public long[] mascaraClasse( int classe )
+    {
+        return mascaraClasse[classe];
+    }
+
+    /**
+     * Retorna o mapa de bits dos registros da pasta.
+     *
+     * @param k Índice da pasta.
+     * @return Mapa de bits (não deve ser alterado).
+     */
+    public long[] mascaraPasta( int k )
+    {
+        return mascaraPasta[k];
+    }
+}
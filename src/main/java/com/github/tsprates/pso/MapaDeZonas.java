@@ -0,0 +1,203 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de zonas: valores mínimo e máximo de cada coluna por bloco de registros consecutivos. Uma condição de valor
+ * numérico pode então descartar um bloco inteiro que não possui nenhum registro que a satisfaça, ou aceitá-lo inteiro
+ * quando todos os registros a satisfazem, sem percorrer os registros.
+ * <p>
+ * A eficácia depende da ordem dos registros: com a base ordenada por uma coluna (configuração zonas.ordem), os blocos
+ * dessa coluna ocupam faixas de valores estreitas.
+ *
+ * @author thiago
+ */
+public class MapaDeZonas
+{
+
+    /**
+     * Nenhum registro do bloco satisfaz a condição.
+     */
+    public static final int NENHUM = 0;
+
+    /**
+     * Todos os registros do bloco satisfazem a condição.
+     */
+    public static final int TODOS = 1;
+
+    /**
+     * É necessário testar os registros do bloco.
+     */
+    public static final int PARCIAL = 2;
+
+    private final int tamanhoBloco;
+
+    private final int numBlocos;
+
+    private final double[][] minimos;
+
+    private final double[][] maximos;
+
+    // blocos sem valores ausentes, por coluna
+    private final boolean[][] completos;
+
+    /**
+     * Construtor. Percorre todas as colunas da base de dados.
+     *
+     * @param dados        Base de dados em memória.
+     * @param tamanhoBloco Número de registros por bloco.
+     */
+    public MapaDeZonas( Dados dados, int tamanhoBloco )
+    {
+        if ( tamanhoBloco < 1 )
+        {
+            throw new RuntimeException( "Tamanho do bloco do mapa de zonas inválido." );
+        }
+
+        final int numCols = dados.numColunas();
+        final int numLinhas = dados.numLinhas();
+
+        this.tamanhoBloco = tamanhoBloco;
+        this.numBlocos = ( numLinhas + tamanhoBloco - 1 ) / tamanhoBloco;
+        this.minimos = new double[numCols][numBlocos];
+        this.maximos = new double[numCols][numBlocos];
+        this.completos = new boolean[numCols][numBlocos];
+
+        final double[] bloco = new double[tamanhoBloco];
+
+        for ( int col = 0; col < numCols; col++ )
+        {
+            Arrays.fill( minimos[col], Double.POSITIVE_INFINITY );
+            Arrays.fill( maximos[col], Double.NEGATIVE_INFINITY );
+
+            for ( int b = 0; b < numBlocos; b++ )
+            {
+                final int inicio = b * tamanhoBloco;
+                final int len = Math.min( tamanhoBloco, numLinhas - inicio );
+
+                dados.copiar( col, inicio, bloco, len );
+
+                boolean completo = true;
+
+                for ( int i = 0; i < len; i++ )
+                {
+                    final double v = bloco[i];
+
+                    if ( Double.isNaN( v ) )
+                    {
+                        completo = false;
+                    }
+                    else
+                    {
+                        minimos[col][b] = Math.min( minimos[col][b], v );
+                        maximos[col][b] = Math.max( maximos[col][b], v );
+                    }
+                }
+
+                completos[col][b] = completo;
+            }
+        }
+    }
+
+    /**
+     * Classifica o bloco para uma condição de valor numérico.
+     *
+     * @param cond  Condição (atributo contra valor numérico).
+     * @param bloco Índice do bloco.
+     * @return {@link #NENHUM}, {@link #TODOS} ou {@link #PARCIAL}.
+     */
+    public int classificar( Condicao cond, int bloco )
+    {
+        if ( cond.colunaValor() >= 0 )
+        {
+            return PARCIAL;
+        }
+
+        final int col = cond.coluna();
+        final double min = minimos[col][bloco];
+        final double max = maximos[col][bloco];
+        final boolean completo = completos[col][bloco];
+        final double v = cond.valor();
+
+        final boolean nenhum;
+        final boolean todos;
+
+        switch ( cond.operador() )
+        {
+            case Condicao.MAIOR:
+                nenhum = max <= v;
+                todos = min > v;
+                break;
+            case Condicao.MAIOR_IGUAL:
+                nenhum = max < v;
+                todos = min >= v;
+                break;
+            case Condicao.MENOR:
+                nenhum = min >= v;
+                todos = max < v;
+                break;
+            case Condicao.MENOR_IGUAL:
+                nenhum = min > v;
+                todos = max <= v;
+                break;
+            case Condicao.IGUAL:
+                nenhum = v < min || v > max;
+                todos = min == v && max == v;
+                break;
+            default:
+                nenhum = min == v && max == v;
+                todos = v < min || v > max;
+                break;
+        }
+
+        // blocos só com ausentes têm min > max e são descartados acima (exceto !=, testado registro a registro)
+        if ( nenhum )
+        {
+            return NENHUM;
+        }
+
+        return todos && completo ? TODOS : PARCIAL;
+    }
+
+    /**
+     * Classifica o bloco para um intervalo [inferior, superior) da coluna.
+     *
+     * @param col      Índice da coluna.
+     * @param inferior Limite inferior (inclusivo).
+     * @param superior Limite superior (exclusivo).
+     * @param bloco    Índice do bloco.
+     * @return {@link #NENHUM}, {@link #TODOS} ou {@link #PARCIAL}.
+     */
+    public int classificar( int col, double inferior, double superior, int bloco )
+    {
+        final double min = minimos[col][bloco];
+        final double max = maximos[col][bloco];
+
+        if ( max < inferior || min >= superior )
+        {
+            return NENHUM;
+        }
+
+        return completos[col][bloco] && min >= inferior && max < superior ? TODOS : PARCIAL;
+    }
+
+    /**
+     * Retorna o número de registros por bloco.
+     *
+     * @return Tamanho do bloco.
+     */
+    public int tamanhoBloco()
+    {
+        return tamanhoBloco;
+    }
+
+    /**
+     * Retorna o número de blocos.
+     *
+     * @return Número de blocos.
+     */
+    public int numBlocos()
+    {
+        return numBlocos;
+    }
+}
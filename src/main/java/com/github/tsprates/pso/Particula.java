@@ -30,6 +30,20 @@ public class Particula
 
     private Set<Particula> pbest;
 
+    private Cobertura cobertura;
+
+    private Hiperretangulo hiperretangulo;
+
+    private long[] termos;
+
+    private Vocabulario vocabulario;
+
+    private boolean alterada = true;
+
+    private Enxame enxame;
+
+    private int indiceEnxame = -1;
+
     /**
      * Construtor.
      *
@@ -40,16 +54,82 @@ public class Particula
      */
     public Particula( Set<String> posicao, String classe, Fitness fitness, Random random )
     {
-        this.posicao = new TreeSet<>( posicao );
-        this.strPos = join( posicao );
+        this( posicao, null, null, null, classe, fitness, random );
+    }
+
+    /**
+     * Construtor (posição codificada como hiper-retângulo).
+     *
+     * @param hiperretangulo Intervalos por coluna e comparações entre atributos.
+     * @param classe         Rótulo (nicho) da partícula.
+     * @param fitness        Calculadora de fitness.
+     * @param random         Gerador de números aleatórios.
+     */
+    public Particula( Hiperretangulo hiperretangulo, String classe, Fitness fitness, Random random )
+    {
+        this( hiperretangulo.condicoes(), hiperretangulo, null, null, classe, fitness, random );
+    }
+
+    /**
+     * Construtor (posição codificada como conjunto de bits sobre um vocabulário de condições).
+     *
+     * @param termos      Conjunto de bits dos termos do vocabulário (é copiado).
+     * @param vocabulario Vocabulário de condições.
+     * @param classe      Rótulo (nicho) da partícula.
+     * @param fitness     Calculadora de fitness.
+     * @param random      Gerador de números aleatórios.
+     */
+    public Particula( long[] termos, Vocabulario vocabulario, String classe, Fitness fitness, Random random )
+    {
+        this( null, null, termos, vocabulario, classe, fitness, random );
+    }
+
+    /**
+     * Construtor.
+     */
+    private Particula( Set<String> posicao, Hiperretangulo hiperretangulo, long[] termos, Vocabulario vocabulario,
+                       String classe, Fitness fitness, Random random )
+    {
+        this( posicao, hiperretangulo, termos, vocabulario, classe, fitness, random, null );
+    }
+
+    /**
+     * Construtor. Sem o fitness, a partícula é avaliada; com o fitness, fica pendente de avaliação.
+     */
+    private Particula( Set<String> posicao, Hiperretangulo hiperretangulo, long[] termos, Vocabulario vocabulario,
+                       String classe, Fitness fitness, Random random, double[] fit )
+    {
+        this.hiperretangulo = hiperretangulo;
+        this.vocabulario = vocabulario;
+
+        // as condições WHERE dos termos são geradas somente quando usadas
+        if ( termos != null )
+        {
+            this.termos = termos.clone();
+        }
+        else
+        {
+            this.posicao = new TreeSet<>( posicao );
+            this.strPos = join( posicao );
+        }
+
         this.classe = classe;
         this.pbest = new TreeSet<>();
         this.random = random;
 
         this.calculadoraFitness = fitness;
 
-        final Particula that = this;
-        this.fitness = calculadoraFitness.calcular( that );
+        if ( fit != null )
+        {
+            this.fitness = fit.clone();
+            this.alterada = true;
+        }
+        else
+        {
+            final Particula that = this;
+            this.fitness = calculadoraFitness.calcular( that );
+            this.alterada = false;
+        }
     }
 
     /**
@@ -59,7 +139,19 @@ public class Particula
      */
     public Particula( Particula p )
     {
-        this( p.posicao, p.classe, p.calculadoraFitness, p.random );
+        this( p.posicao, p.hiperretangulo, p.termos, p.vocabulario, p.classe, p.calculadoraFitness, p.random );
+    }
+
+    /**
+     * Construtor de cópia avaliada por outra calculadora de fitness (migração entre ilhas).
+     *
+     * @param p       Partícula.
+     * @param fitness Calculadora de fitness.
+     * @param random  Gerador de números aleatórios.
+     */
+    public Particula( Particula p, Fitness fitness, Random random )
+    {
+        this( p.posicao, p.hiperretangulo, p.termos, p.vocabulario, p.classe, fitness, random );
     }
 
     /**
@@ -69,18 +161,111 @@ public class Particula
      */
     public Set<String> posicao()
     {
+        if ( posicao == null )
+        {
+            posicao = vocabulario.condicoes( termos );
+            strPos = join( posicao );
+        }
+
         return posicao;
     }
 
     /**
-     * Seta uma nova posição da partícula.
+     * Seta uma nova posição da partícula. A codificação em hiper-retângulo ou em termos, se houver, é descartada.
      *
      * @param posicao Coleção de Strings da nova posição.
      */
     public void setPosicao( Collection<String> posicao )
     {
-        this.posicao = new TreeSet<>( posicao );
-        this.strPos = join( this.posicao );
+        atualizarPosicao( posicao );
+        this.hiperretangulo = null;
+        this.termos = null;
+    }
+
+    /**
+     * Retorna a posição codificada como hiper-retângulo.
+     *
+     * @return Hiper-retângulo ou null se a posição é um conjunto de condições livres.
+     */
+    public Hiperretangulo hiperretangulo()
+    {
+        return hiperretangulo;
+    }
+
+    /**
+     * Seta uma nova posição codificada como hiper-retângulo. O hiper-retângulo não deve ser alterado depois, pois pode
+     * ser compartilhado por cópias da partícula.
+     *
+     * @param hiperretangulo Intervalos por coluna e comparações entre atributos.
+     */
+    public void setHiperretangulo( Hiperretangulo hiperretangulo )
+    {
+        atualizarPosicao( hiperretangulo.condicoes() );
+        this.hiperretangulo = hiperretangulo;
+        this.termos = null;
+    }
+
+    /**
+     * Retorna a posição codificada como conjunto de bits sobre o vocabulário.
+     *
+     * @return Conjunto de bits dos termos (não deve ser alterado) ou null se a posição não usa o vocabulário.
+     */
+    public long[] termos()
+    {
+        return termos;
+    }
+
+    /**
+     * Retorna o vocabulário dos termos da posição.
+     *
+     * @return Vocabulário ou null.
+     */
+    public Vocabulario vocabulario()
+    {
+        return vocabulario;
+    }
+
+    /**
+     * Seta uma nova posição codificada como conjunto de bits sobre o vocabulário da partícula. Os bits são copiados,
+     * sem alocação quando a partícula já usa o vocabulário.
+     *
+     * @param novos Conjunto de bits dos termos.
+     */
+    public void setTermos( long[] novos )
+    {
+        if ( Arrays.equals( termos, novos ) )
+        {
+            return;
+        }
+
+        if ( termos == null )
+        {
+            termos = novos.clone();
+        }
+        else
+        {
+            System.arraycopy( novos, 0, termos, 0, novos.length );
+        }
+
+        this.hiperretangulo = null;
+        this.posicao = null;
+        this.strPos = null;
+        this.alterada = true;
+    }
+
+    /**
+     * Atualiza as condições WHERE da posição.
+     */
+    private void atualizarPosicao( Collection<String> posicao )
+    {
+        final Set<String> novaPosicao = new TreeSet<>( posicao );
+
+        if ( !novaPosicao.equals( posicao() ) )
+        {
+            this.posicao = novaPosicao;
+            this.strPos = join( this.posicao );
+            this.alterada = true;
+        }
     }
 
     /**
@@ -88,7 +273,104 @@ public class Particula
      */
     public void avaliar()
     {
-        this.fitness = calculadoraFitness.calcular( this );
+        atualizarFitness( calculadoraFitness.calcular( this ) );
+        this.alterada = false;
+    }
+
+    /**
+     * Seta o fitness já calculado da partícula (avaliação em lote).
+     *
+     * @param fitness Array contendo a complexidade, efetividade e acurácia.
+     */
+    public void setFitness( double[] fitness )
+    {
+        atualizarFitness( fitness );
+        this.alterada = false;
+    }
+
+    /**
+     * Seta o fitness estimado da partícula. A partícula continua pendente de avaliação completa.
+     *
+     * @param fitness Array contendo a complexidade, efetividade e acurácia estimadas.
+     */
+    public void setEstimativa( double[] fitness )
+    {
+        atualizarFitness( fitness );
+    }
+
+    /**
+     * Atualiza o fitness, inclusive o armazenado no enxame da partícula.
+     */
+    private void atualizarFitness( double[] fitness )
+    {
+        this.fitness = fitness;
+
+        if ( enxame != null )
+        {
+            enxame.atualizarFitness( indiceEnxame, fitness );
+        }
+    }
+
+    /**
+     * Retorna o enxame ao qual a partícula pertence.
+     *
+     * @return Enxame ou null.
+     */
+    public Enxame enxame()
+    {
+        return enxame;
+    }
+
+    /**
+     * Retorna o índice da partícula no seu enxame.
+     *
+     * @return Índice ou -1.
+     */
+    public int indiceEnxame()
+    {
+        return indiceEnxame;
+    }
+
+    /**
+     * Associa a partícula a um índice do enxame (chamado pelo enxame).
+     *
+     * @param enxame Enxame ou null para desassociar.
+     * @param indice Índice da partícula no enxame.
+     */
+    void vincular( Enxame enxame, int indice )
+    {
+        this.enxame = enxame;
+        this.indiceEnxame = indice;
+    }
+
+    /**
+     * Verifica se a posição ou a classe da partícula mudou desde a última avaliação.
+     *
+     * @return Verdadeiro se a partícula precisa ser avaliada.
+     */
+    public boolean alterada()
+    {
+        return alterada;
+    }
+
+    /**
+     * Retorna os registros cobertos na última avaliação em memória (ponto de partida da avaliação incremental).
+     *
+     * @return Registros cobertos ou null.
+     */
+    public Cobertura cobertura()
+    {
+        return cobertura;
+    }
+
+    /**
+     * Seta os registros cobertos na última avaliação em memória.
+     *
+     * @param cobertura Registros cobertos.
+     */
+    public void setCobertura( Cobertura cobertura )
+    {
+        this.cobertura = cobertura;
     }
 
     /**
@@ -98,13 +380,14 @@ public class Particula
      */
     public String whereSql()
     {
+        posicao();
         return strPos;
     }
 
     @Override
     public String toString()
     {
-        return strPos;
+        return whereSql();
     }
 
     /**
@@ -124,7 +407,11 @@ public class Particula
      */
     public void setClasse( String classe )
     {
-        this.classe = classe;
+        if ( !classe.equals( this.classe ) )
+        {
+            this.classe = classe;
+            this.alterada = true;
+        }
     }
 
     /**
@@ -134,6 +421,11 @@ public class Particula
      */
     public int numWhere()
     {
+        if ( termos != null )
+        {
+            return Bits.contar( termos );
+        }
+
         return posicao().size();
     }
 
@@ -257,6 +549,53 @@ public class Particula
      */
     public Particula clonar()
     {
-        return new Particula( posicao, classe, calculadoraFitness, random );
+        return new Particula( posicao, hiperretangulo, termos, vocabulario, classe, calculadoraFitness, random );
+    }
+
+    /**
+     * Assume a posição, a classe e o fitness de outra partícula (descendente escolhida), mantendo o pbest e o enxame.
+     *
+     * @param outra Partícula.
+     */
+    public void adotar( Particula outra )
+    {
+        this.posicao = outra.posicao != null ? new TreeSet<>( outra.posicao ) : null;
+        this.strPos = outra.strPos;
+        this.hiperretangulo = outra.hiperretangulo;
+        this.termos = outra.termos != null ? outra.termos.clone() : null;
+        this.vocabulario = outra.vocabulario;
+        this.classe = outra.classe;
+        this.cobertura = outra.cobertura;
+
+        atualizarFitness( outra.fitness.clone() );
+        this.alterada = outra.alterada;
+    }
+
+    /**
+     * Gera uma cópia sem reavaliá-la: o fitness, os registros cobertos e o estado de alteração são copiados, de modo
+     * que a cópia fica pendente de avaliação somente se a original estiver ou quando a sua posição mudar.
+     *
+     * @return Partícula copiada.
+     */
+    public Particula copiar()
+    {
+        return copiar( calculadoraFitness );
+    }
+
+    /**
+     * Gera uma cópia sem reavaliá-la associada a outra calculadora de fitness da mesma base de dados e pasta (reunião
+     * dos repositórios das ilhas).
+     *
+     * @param outra Calculadora de fitness.
+     * @return Partícula copiada.
+     */
+    public Particula copiar( Fitness outra )
+    {
+        final Particula copia = new Particula( posicao, hiperretangulo, termos, vocabulario, classe, outra, random,
+                                               fitness );
+        copia.cobertura = cobertura;
+        copia.alterada = alterada;
+
+        return copia;
     }
 }
@@ -0,0 +1,151 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Conjunto limitado de conexões com o banco de dados para consultas simultâneas. Cada conexão é usada por uma única
+ * thread de cada vez: a thread obtém a conexão, executa a consulta e a devolve. O conjunto é criado e fechado por
+ * quem o usa (ex.: {@link App}).
+ *
+ * @author thiago
+ */
+public class PoolConexoes
+                implements AutoCloseable
+{
+
+    private final BlockingQueue<Connection> livres;
+
+    private final int tamanho;
+
+    private volatile boolean fechado;
+
+    /**
+     * Construtor. Abre todas as conexões.
+     *
+     * @param db      Banco de dados.
+     * @param tamanho Número de conexões.
+     */
+    public PoolConexoes( DB db, int tamanho )
+    {
+        this( abrir( db, tamanho ) );
+    }
+
+    /**
+     * Construtor com as conexões já abertas.
+     *
+     * @param conexoes Conexões.
+     */
+    public PoolConexoes( List<Connection> conexoes )
+    {
+        if ( conexoes.isEmpty() )
+        {
+            throw new RuntimeException( "Número de conexões inválido." );
+        }
+
+        this.tamanho = conexoes.size();
+        this.livres = new ArrayBlockingQueue<>( tamanho, false, conexoes );
+    }
+
+    /**
+     * Abre as conexões.
+     */
+    private static List<Connection> abrir( DB db, int tamanho )
+    {
+        if ( tamanho < 1 )
+        {
+            throw new RuntimeException( "Número de conexões inválido." );
+        }
+
+        final List<Connection> conexoes = new ArrayList<>( tamanho );
+
+        for ( int i = 0; i < tamanho; i++ )
+        {
+            conexoes.add( db.conectar() );
+        }
+
+        return conexoes;
+    }
+
+    /**
+     * Obtém uma conexão livre, aguardando a devolução de outra se todas estiverem em uso.
+     *
+     * @return Conexão.
+     */
+    public Connection obter()
+    {
+        if ( fechado )
+        {
+            throw new RuntimeException( "Conjunto de conexões fechado." );
+        }
+
+        try
+        {
+            return livres.take();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Espera por conexão interrompida.", e );
+        }
+    }
+
+    /**
+     * Devolve a conexão obtida. Depois do fechamento do conjunto, a conexão devolvida é fechada.
+     *
+     * @param conexao Conexão.
+     */
+    public void devolver( Connection conexao )
+    {
+        livres.add( conexao );
+
+        if ( fechado )
+        {
+            fecharLivres();
+        }
+    }
+
+    /**
+     * Fecha as conexões livres; as que estiverem em uso são fechadas ao serem devolvidas.
+     */
+    @Override
+    public void close()
+    {
+        fechado = true;
+        fecharLivres();
+    }
+
+    /**
+     * Fecha e descarta as conexões livres.
+     */
+    private void fecharLivres()
+    {
+        Connection conexao;
+
+        while ( ( conexao = livres.poll() ) != null )
+        {
+            try
+            {
+                conexao.close();
+            }
+            catch ( SQLException e )
+            {
+                throw new RuntimeException( "Erro ao fechar a conexão.", e );
+            }
+        }
+    }
+
+    /**
+     * Retorna o número de conexões.
+     *
+     * @return Número de conexões.
+     */
+    public int tamanho()
+    {
+        return tamanho;
+    }
+}
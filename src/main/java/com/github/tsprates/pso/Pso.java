@@ -4,9 +4,25 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.math3.exception.NotStrictlyPositiveException;
 import org.apache.commons.math3.util.FastMath;
 
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static com.github.tsprates.pso.Formatador.*;
 import static com.github.tsprates.pso.FronteiraPareto.*;
@@ -25,8 +41,14 @@ public class Pso
 
     private final static double TURBULENCIA = 3;
 
+    private final static int TAMANHO_LOTE = 10000;
+
+    private final static int LIMITE_REGRAS_COMPILADAS = 4096;
+
     private final Connection conexao;
 
+    private final PoolConexoes conexoes;
+
     private final int NUM_K;
 
     private final Random random;
@@ -47,6 +69,50 @@ public class Pso
 
     private final String colClasse, colId;
 
+    private final String colunaOrdem;
+
+    private final boolean canonizacao;
+
+    private final boolean intervalos;
+
+    private final int numIlhas;
+
+    private final int intervaloMigracao;
+
+    private final int numMigrantes;
+
+    private final Queue<Particula> migrantes = new ConcurrentLinkedQueue<>();
+
+    private Pso destino;
+
+    private final boolean paraleloPorNicho;
+
+    private String classeNicho;
+
+    private Map<String, Pso> nichos;
+
+    private AtomicLongArray custos;
+
+    private int indiceNicho;
+
+    private int numMigrantesRecebidos;
+
+    private final int numTrabalhadores;
+
+    private RepositorioConcorrente arquivo;
+
+    private final int numAvaliadores;
+
+    private final int tamanhoLote;
+
+    private List<Estagio> estagios;
+
+    private final int threadsBusca;
+
+    private ExecutorService executorBusca;
+
+    private final int numDescendentes;
+
     private final List<String> colunas = new ArrayList<>();
 
     private final Map<String, Double> max = new HashMap<>();
@@ -59,11 +125,17 @@ public class Pso
 
     private final Map<String, List<Particula>> repositorio = new HashMap<>();
 
-    private final List<String> regrasVisitadas = new ArrayList<>();
+    private final Set<Object> regrasVisitadas = Collections.newSetFromMap( new ConcurrentHashMap<Object, Boolean>() );
+
+    private Enxame particulas = new Enxame();
+
+    private final KPastas kpastas;
+
+    private Dados dados;
 
-    private List<Particula> particulas = new ArrayList<>();
+    private Discretizacao discretizacao;
 
-    private List<List<String>> kpastas;
+    private Vocabulario vocabulario;
 
     private double[] valorMedioGlobal;
 
@@ -79,8 +151,25 @@ public class Pso
      * @param numKpastas Número de K-Pastas.
      */
     public Pso( Connection conexao, Properties config, Random r, Formatador formatador, int numKpastas )
+    {
+        this( conexao, null, config, r, formatador, numKpastas );
+    }
+
+    /**
+     * Construtor com o conjunto de conexões para as consultas SQL simultâneas de um mesmo lote.
+     *
+     * @param conexao    Conexão com banco de dados.
+     * @param conexoes   Conjunto de conexões (criado e fechado pelo chamador) ou null.
+     * @param config     Configurações.
+     * @param r          Gerador de números aleatórios.
+     * @param formatador Formatador de casas decimais.
+     * @param numKpastas Número de K-Pastas.
+     */
+    public Pso( Connection conexao, PoolConexoes conexoes, Properties config, Random r, Formatador formatador,
+                int numKpastas )
     {
         this.conexao = conexao;
+        this.conexoes = conexoes;
         this.tabela = config.getProperty( "tabela" );
         this.colClasse = config.getProperty( "saida" );
         this.colId = config.getProperty( "id" );
@@ -98,453 +187,2074 @@ public class Pso
 
         this.random = r;
 
+        this.colunaOrdem = config.getProperty( "zonas.ordem" );
+
+        // posições sem condições redundantes (altera a complexidade das regras)
+        this.canonizacao = Boolean.valueOf( config.getProperty( "canonizacao", "false" ) );
+
+        // codificação das posições: condições livres, hiper-retângulos (intervalos por coluna) ou conjuntos de bits
+        // sobre um vocabulário de condições
+        final String codificacao = config.getProperty( "codificacao", "condicoes" );
+
+        if ( !"condicoes".equalsIgnoreCase( codificacao ) && !"intervalos".equalsIgnoreCase( codificacao )
+                        && !"vocabulario".equalsIgnoreCase( codificacao ) )
+        {
+            throw new RuntimeException( "Codificação inválida: " + codificacao );
+        }
+
+        this.intervalos = "intervalos".equalsIgnoreCase( codificacao );
+
+        // modelo de ilhas: subenxames em paralelo com migração periódica das partículas não dominadas
+        this.numIlhas = Integer.valueOf( config.getProperty( "ilhas", "1" ) );
+        this.intervaloMigracao = Integer.valueOf( config.getProperty( "ilhas.migracao", "10" ) );
+        this.numMigrantes = Integer.valueOf( config.getProperty( "ilhas.migrantes", "1" ) );
+
+        if ( numIlhas < 1 || intervaloMigracao < 1 || numMigrantes < 0 )
+        {
+            throw new RuntimeException( "Configuração das ilhas inválida." );
+        }
+
+        // um nicho (classe) por thread, com limite de avaliações compartilhado
+        this.paraleloPorNicho = Boolean.valueOf( config.getProperty( "nichos.paralelos", "false" ) );
+
+        if ( paraleloPorNicho && numIlhas > 1 )
+        {
+            throw new RuntimeException( "As ilhas e os nichos paralelos não podem ser combinados." );
+        }
+
+        // PSO assíncrono (estado estacionário): threads movem e avaliam as partículas continuamente, sem iterações
+        this.numTrabalhadores = Integer.valueOf( config.getProperty( "assincrono", "0" ) );
+
+        if ( numTrabalhadores < 0 || numTrabalhadores > 0 && ( numIlhas > 1 || paraleloPorNicho ) )
+        {
+            throw new RuntimeException( "Configuração do PSO assíncrono inválida." );
+        }
+
+        // pipeline: geração, avaliação (em lotes, por várias threads) e atualização dos repositórios em estágios
+        this.numAvaliadores = Integer.valueOf( config.getProperty( "pipeline", "0" ) );
+        this.tamanhoLote = Integer.valueOf( config.getProperty( "pipeline.lote", "8" ) );
+
+        if ( numAvaliadores < 0 || tamanhoLote < 1 || numAvaliadores > 0 && ( numIlhas > 1 || paraleloPorNicho
+                        || numTrabalhadores > 0 ) )
+        {
+            throw new RuntimeException( "Configuração do pipeline inválida." );
+        }
+
+        // busca local especulativa: vizinhas de todo o repositório avaliadas em paralelo (0: busca sequencial)
+        this.threadsBusca = Integer.valueOf( config.getProperty( "busca.paralela", "0" ) );
+
+        if ( threadsBusca < 0 )
+        {
+            throw new RuntimeException( "Número de threads da busca local inválido." );
+        }
+
+        // descendentes por partícula a cada iteração, avaliadas em um único lote (1: somente a própria partícula)
+        this.numDescendentes = Integer.valueOf( config.getProperty( "descendentes", "1" ) );
+
+        if ( numDescendentes < 1 || numDescendentes > 1 && ( numTrabalhadores > 0 || numAvaliadores > 0 ) )
+        {
+            throw new RuntimeException( "Configuração das descendentes inválida." );
+        }
+
         carregarColunasTabela();
         carregarClasses();
         carregarClassePorId();
         carregarMaxMinColunasTabela();
 
-        this.enxameNicho = dividirNichoEnxame();
+        this.enxameNicho = dividirNichoEnxame( numParts );
 
         criarRepositorioGbest();
 
-        this.fitness = new Fitness( conexao, colId, tabela, mapaClasseId );
-    }
-
-    /**
-     * Carrega PSO.
-     */
-    public void carregar()
-    {
-        final long tempoInicial = System.nanoTime();
+        this.kpastas = new KPastas( NUM_K, new ArrayList<>( classes ), mapaClasseId );
 
-        // validação cruzada
-        kpastas = criarKpastas();
-        fitness.setKPastas( kpastas );
+        this.fitness = new Fitness( conexao, colId, tabela );
 
-        final Map<String, double[]> kpastasClasse = criarValorMedioKpastas();
+        final String avaliacao = config.getProperty( "avaliacao", "sql" );
 
-        for ( int i = 0; i < NUM_K; i++ )
+        // avaliação das regras em memória (padrão: consultas SQL)
+        if ( "memoria".equalsIgnoreCase( avaliacao ) )
         {
-            fitness.setK( i );
+            this.dados = carregarDados( config.getProperty( "armazenamento", "heap" ),
+                                        config.getProperty( "armazenamento.arquivo" ) );
 
-            particulas = criarEnxameInicial();
+            final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
 
-            resetRepositorioGbest();
+            // mapa de zonas (mínimo e máximo por bloco de registros)
+            final int tamanhoZona = Integer.valueOf( config.getProperty( "zonas", "0" ) );
+
+            if ( tamanhoZona > 0 )
+            {
+                varredura.setZonas( new MapaDeZonas( dados, tamanhoZona ) );
+            }
 
-            regrasVisitadas.clear();
+            // o índice ordenado mantém uma permutação por coluna no heap
+            IndiceOrdenado indice = null;
 
-            System.out.printf( "\nPartição: %d \n", i + 1 );
-            System.out.printf( "\nTeste: %s \n", kpastas.get( i ) );
+            if ( Boolean.valueOf( config.getProperty( "indice", "true" ) ) )
+            {
+                indice = new IndiceOrdenado( dados, kpastas, varredura );
+            }
 
-            fitness.resetNumAvaliacao();
+            fitness.setDados( dados, varredura, indice );
 
-            while ( fitness.numAvaliacao() < maxNumAvaliacao )
+            // discretização opcional das colunas em faixas (quantis)
+            final int numFaixas = Integer.valueOf( config.getProperty( "faixas", "0" ) );
+
+            if ( numFaixas > 0 )
             {
-                for ( int indexPart = 0; indexPart < numParts; indexPart++ )
+                if ( indice == null )
                 {
-                    Particula particula = particulas.get( indexPart );
+                    throw new RuntimeException( "A discretização em faixas requer o índice ordenado." );
+                }
 
-                    // gbest
-                    atualizarRepositorioGbest( particula );
+                this.discretizacao = new Discretizacao( dados, indice, kpastas, numFaixas );
+                fitness.setDiscretizacao( discretizacao );
+            }
 
-                    // pbest
-                    particula.atualizarPbest();
+            // vocabulário de condições (operadores e quantis por coluna) com os mapas de bits pré-calculados
+            if ( "vocabulario".equalsIgnoreCase( codificacao ) )
+            {
+                if ( indice == null )
+                {
+                    throw new RuntimeException( "A codificação por vocabulário requer o índice ordenado." );
+                }
 
-                    // operador de turbulência
-                    aplicarTurbulencia( indexPart );
+                this.vocabulario = new Vocabulario( dados, indice, Integer.valueOf(
+                                config.getProperty( "vocabulario.limiares", "8" ) ) );
+            }
 
-                    // atualiza posição da partícula
-                    atualizarPosicao( indexPart );
-                }
+            // condições avaliadas da mais seletiva para a menos seletiva
+            final Seletividade seletividade = new Seletividade( dados, indice );
 
-                buscaLocal();
+            varredura.setSeletividade( seletividade );
+            fitness.setSeletividade( seletividade );
+
+            if ( indice != null )
+            {
+                indice.setSeletividade( seletividade );
             }
 
-            mostrarTreinamento();
+            if ( discretizacao != null )
+            {
+                discretizacao.setSeletividade( seletividade );
+            }
 
-            // Fase de teste
-            Map<String, List<double[]>> teste = fitness.testar( repositorio );
-            mostrarTeste( teste );
+            // colunas de diferença para as condições entre atributos (limite de memória em MB)
+            final long memoriaDerivadas = Long.valueOf( config.getProperty( "derivadas", "0" ) ) * 1024 * 1024;
 
-            // seleciona as melhores efetividade
-            selecionarEfetividade( teste, kpastasClasse );
+            if ( memoriaDerivadas > 0 )
+            {
+                final ColunasDerivadas derivadas = new ColunasDerivadas( dados, kpastas, memoriaDerivadas );
+
+                fitness.setDerivadas( derivadas );
+                varredura.setDerivadas( derivadas );
+                seletividade.setDerivadas( derivadas );
+
+                if ( indice != null )
+                {
+                    indice.setDerivadas( derivadas );
+                }
+            }
+
+            // regras compiladas para os testes registro a registro (colunas no heap)
+            if ( Boolean.valueOf( config.getProperty( "compilacao", "false" ) ) )
+            {
+                final CompiladorRegras compilador = new CompiladorRegras( dados, LIMITE_REGRAS_COMPILADAS );
+
+                fitness.setCompilador( compilador );
+
+                if ( indice != null )
+                {
+                    indice.setCompilador( compilador );
+                }
+
+                if ( discretizacao != null )
+                {
+                    discretizacao.setCompilador( compilador );
+                }
+            }
         }
+        else if ( "blocos".equalsIgnoreCase( avaliacao ) )
+        {
+            // avaliação em lote por passagem sequencial em blocos (cursor SQL ou colunas fora do heap)
+            final int tamanhoBloco = Integer.valueOf( config.getProperty( "blocos.tamanho", "10000" ) );
+            final String armazenamento = config.getProperty( "armazenamento" );
 
-        calcularValorMedio( kpastasClasse );
+            if ( armazenamento == null )
+            {
+                final Map<String, Integer> indiceColunas = new HashMap<>();
 
-        valorMedioPorClasse = new TreeMap<>( kpastasClasse );
+                for ( int i = 0; i < colunas.size(); i++ )
+                {
+                    indiceColunas.put( colunas.get( i ), i );
+                }
 
-        // média das melhores efetividades
-        valorMedioGlobal = valorMedioGlobalKpastas( kpastasClasse );
+                fitness.setEmBlocos( new AvaliadorEmBlocos( conexao, tabela, colId, colunas, kpastas, tamanhoBloco ),
+                                     indiceColunas );
+            }
+            else
+            {
+                this.dados = carregarDados( armazenamento, config.getProperty( "armazenamento.arquivo" ) );
 
-        final long tempoFinal = System.nanoTime();
+                final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( dados, kpastas, tamanhoBloco );
 
-        System.out.printf( "\nTempo decorrido: %s\n", formatarTempoDecorrido( tempoInicial, tempoFinal ) );
-    }
+                // mapa de zonas com os mesmos blocos da passagem sequencial
+                if ( Integer.valueOf( config.getProperty( "zonas", "0" ) ) > 0 )
+                {
+                    emBlocos.setZonas( new MapaDeZonas( dados, tamanhoBloco ) );
+                }
 
-    /**
-     * Calcula o Valor Médio para as K-Pastas para cada classe.
-     *
-     * @param kpastasClasse Mapa K-Pastas para cada classe.
-     */
-    private void calcularValorMedio( Map<String, double[]> kpastasClasse )
-    {
-        // atualiza média das K-Pastas
-        for ( Entry<String, double[]> it : kpastasClasse.entrySet() )
+                fitness.setEmBlocos( emBlocos, dados.indiceColunas() );
+            }
+        }
+        else if ( conexoes != null )
         {
-            double[] arr = it.getValue();
-            arr[0] /= NUM_K;
-            arr[1] /= NUM_K;
-            kpastasClasse.put( it.getKey(), arr );
+            // consultas SQL simultâneas de um mesmo lote, uma por conexão do conjunto
+            fitness.setConexoes( conexoes );
         }
-    }
 
-    /**
-     * Calcula o Valor Médio Global.
-     *
-     * @param kpastasClasse Mapa K-Pastas para cada classe.
-     * @return Valor médio obtido do mapa K-Pastas para cada classe.
-     */
-    private double[] valorMedioGlobalKpastas( Map<String, double[]> kpastasClasse )
-    {
-        final double[] total = new double[2];
+        // cada ilha (ou nicho paralelo) consulta a tabela pela sua própria conexão do conjunto
+        final int numParalelos = numIlhas > 1 ? numIlhas : paraleloPorNicho ? classes.size() : 1;
 
-        for ( double d[] : kpastasClasse.values() )
+        if ( numParalelos > 1 && dados == null && ( conexoes == null || conexoes.tamanho() < numParalelos ) )
         {
-            total[0] += d[0];
-            total[1] += d[1];
+            throw new RuntimeException( "As ilhas e os nichos paralelos com a avaliação SQL requerem uma conexão do "
+                                                        + "conjunto (conexoes) para cada um." );
         }
 
-        final int size = classes.size();
+        if ( "vocabulario".equalsIgnoreCase( codificacao ) && vocabulario == null )
+        {
+            throw new RuntimeException( "A codificação por vocabulário requer a avaliação em memória." );
+        }
 
-        total[0] /= size;
-        total[1] /= size;
+        // estimativa do fitness em uma amostra estratificada antes da avaliação completa
+        final int tamanhoAmostra = Integer.valueOf( config.getProperty( "amostra", "0" ) );
 
-        return total;
+        if ( tamanhoAmostra > 0 )
+        {
+            if ( dados == null )
+            {
+                throw new RuntimeException( "A estimativa por amostra requer a base de dados em memória." );
+            }
+
+            fitness.setAmostra( tamanhoAmostra, Double.valueOf( config.getProperty( "amostra.confianca", "0.95" ) ),
+                                random );
+        }
     }
 
     /**
-     * Inicializa um mapa de resultados de valores médios para cada classe do enxame.
+     * Construtor de uma ilha ou nicho paralelo: compartilha a base de dados e as configurações do PSO de origem, com
+     * enxame, repositório, gerador de números aleatórios e calculadora de fitness próprios.
      *
-     * @return Cria um mapa com os resultados encontrados.
+     * @param origem          PSO de origem.
+     * @param enxameNicho     Número de partículas de cada nicho (classe) da ilha.
+     * @param maxNumAvaliacao Limite de avaliações da ilha.
+     * @param random          Gerador de números aleatórios da ilha.
+     * @param conexao         Conexão própria da ilha (avaliação SQL) ou null.
      */
-    private Map<String, double[]> criarValorMedioKpastas()
+    private Pso( Pso origem, Map<String, Integer> enxameNicho, int maxNumAvaliacao, Random random,
+                 Connection conexao )
     {
-        final Map<String, double[]> kpastasClasse = new HashMap<>();
+        this.conexao = conexao != null ? conexao : origem.conexao;
+        this.conexoes = null;
+        this.tabela = origem.tabela;
+        this.colClasse = origem.colClasse;
+        this.colId = origem.colId;
 
-        for ( String cl : classes )
+        this.w = origem.w;
+        this.c1 = origem.c1;
+        this.c2 = origem.c2;
+
+        int total = 0;
+
+        for ( int n : enxameNicho.values() )
         {
-            kpastasClasse.put( cl, new double[2] );
+            total += n;
         }
 
-        return kpastasClasse;
-    }
+        this.numParts = total;
+        this.maxNumAvaliacao = maxNumAvaliacao;
 
-    /**
-     * Seleciona a melhor efetividade para cada classe dos resultados.
-     *
-     * @param teste         Fitness por classe.
-     * @param kpastasClasse Mapa K-Pastas para cada classe.
-     */
-    private void selecionarEfetividade( Map<String, List<double[]>> teste, Map<String, double[]> kpastasClasse )
-    {
-        for ( Entry<String, List<double[]>> entrada : teste.entrySet() )
-        {
-            final String cl = entrada.getKey();
-            final List<double[]> fits = entrada.getValue();
+        this.format = origem.format;
+        this.NUM_K = origem.NUM_K;
+        this.random = random;
 
-            final double[] f = fits.get( 0 );
+        this.colunaOrdem = origem.colunaOrdem;
+        this.canonizacao = origem.canonizacao;
+        this.intervalos = origem.intervalos;
 
-            double maiorEfet = f[1];
-            double acur = f[2];
+        this.numIlhas = 1;
+        this.intervaloMigracao = origem.intervaloMigracao;
+        this.numMigrantes = origem.numMigrantes;
+        this.paraleloPorNicho = false;
+        this.numTrabalhadores = 0;
+        this.numAvaliadores = 0;
+        this.tamanhoLote = origem.tamanhoLote;
+        this.threadsBusca = origem.threadsBusca;
+        this.executorBusca = origem.executorBusca;
+        this.numDescendentes = origem.numDescendentes;
 
-            for ( double[] fit : fits )
-            {
-                if ( fit[1] > maiorEfet )
-                {
-                    maiorEfet = fit[1];
-                    acur = fit[2];
-                }
-            }
+        this.colunas.addAll( origem.colunas );
+        this.max.putAll( origem.max );
+        this.min.putAll( origem.min );
+        this.mapaClasseId.putAll( origem.mapaClasseId );
+        this.classes.addAll( origem.classes );
 
-            double[] arr = kpastasClasse.get( cl );
-            arr[0] += maiorEfet;
-            arr[1] += acur;
-            kpastasClasse.put( cl, arr );
-        }
+        this.enxameNicho = enxameNicho;
+
+        criarRepositorioGbest();
+
+        this.kpastas = origem.kpastas;
+        this.fitness = new Fitness( origem.fitness, conexao );
+
+        this.dados = origem.dados;
+        this.discretizacao = origem.discretizacao;
+        this.vocabulario = origem.vocabulario;
     }
 
     /**
-     * Mostra tabela de avaliação (teste).
-     *
-     * @param teste Lista de fitness encontrados por classe.
+     * Carrega PSO. As threads da busca local especulativa existem somente durante a execução.
      */
-    private void mostrarTeste( Map<String, List<double[]>> teste )
+    public void carregar()
     {
-        System.out.println( "\n\nFase de teste:\n" );
-
-        System.out.print( TAB_CABECALHO );
-        System.out.println();
-
-        for ( String cl : classes )
+        if ( threadsBusca > 0 )
         {
-            List<double[]> r = teste.get( cl );
-            List<Particula> rep = repositorio.get( cl );
+            executorBusca = Executors.newFixedThreadPool( threadsBusca, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread( Runnable r )
+                {
+                    final Thread t = new Thread( r, "busca-local" );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
 
-            for ( int i = 0, l = r.size(); i < l; i++ )
+        try
+        {
+            validarCruzado();
+        }
+        finally
+        {
+            if ( executorBusca != null )
             {
-                final double[] fit = r.get( i );
-                mostrarLinhaTabela( cl, fit, rep.get( i ).whereSql() );
+                executorBusca.shutdownNow();
+                executorBusca = null;
             }
         }
-
-        System.out.println();
     }
 
     /**
-     * Mostra tabela de resultados do treinamento.
+     * Validação cruzada: evolui e testa o repositório em cada pasta.
      */
-    private void mostrarTreinamento()
+    private void validarCruzado()
     {
-        System.out.println( "\n\nFase de treinamento:\n" );
+        final long tempoInicial = System.nanoTime();
 
-        System.out.println( TAB_CABECALHO );
+        // validação cruzada
+        kpastas.embaralhar( random );
+        fitness.setKPastas( kpastas );
 
-        final Map<String, List<Particula>> solucoes = new TreeMap<>( repositorio );
+        final Map<String, double[]> kpastasClasse = criarValorMedioKpastas();
 
-        for ( Entry<String, List<Particula>> parts : solucoes.entrySet() )
+        for ( int i = 0; i < NUM_K; i++ )
         {
-            String classe = parts.getKey();
-            List<Particula> listaParts = parts.getValue();
+            fitness.setK( i );
 
-            Collections.sort( listaParts );
+            System.out.printf( "\nPartição: %d \n", i + 1 );
+            System.out.printf( "\nTeste: %s \n", kpastas.listar( i ) );
 
-            for ( Particula part : listaParts )
+            if ( numIlhas > 1 )
             {
-                final double[] fit = part.fitness();
-                mostrarLinhaTabela( classe, fit, part.whereSql() );
+                resetRepositorioGbest();
+                fitness.resetNumAvaliacao();
+
+                evoluirIlhas();
+            }
+            else if ( paraleloPorNicho )
+            {
+                resetRepositorioGbest();
+                fitness.resetNumAvaliacao();
+
+                evoluirNichos();
+            }
+            else if ( numTrabalhadores > 0 )
+            {
+                evoluirAssincrono();
+            }
+            else if ( numAvaliadores > 0 )
+            {
+                evoluirPipeline();
+            }
+            else
+            {
+                iniciar();
+                evoluir();
             }
+
+            mostrarTreinamento();
+
+            mostrarAvaliacoes();
+
+            // Fase de teste
+            Map<String, List<double[]>> teste = fitness.testar( repositorio );
+            mostrarTeste( teste );
+
+            // seleciona as melhores efetividade
+            selecionarEfetividade( teste, kpastasClasse );
         }
+
+        calcularValorMedio( kpastasClasse );
+
+        valorMedioPorClasse = new TreeMap<>( kpastasClasse );
+
+        // média das melhores efetividades
+        valorMedioGlobal = valorMedioGlobalKpastas( kpastasClasse );
+
+        final long tempoFinal = System.nanoTime();
+
+        System.out.printf( "\nTempo decorrido: %s\n", formatarTempoDecorrido( tempoInicial, tempoFinal ) );
     }
 
     /**
-     * Monta uma linha da tabela de resultado do algoritmo.
+     * Cria o enxame inicial da pasta atual e reinicia o repositório e os contadores de avaliação.
+     */
+    private void iniciar()
+    {
+        particulas = criarEnxameInicial();
+
+        resetRepositorioGbest();
+
+        regrasVisitadas.clear();
+
+        fitness.resetNumAvaliacao();
+    }
+
+    /**
+     * Evolui o enxame até o limite de avaliações ou até estagnar. Em uma ilha, recebe as partículas que migraram a
+     * cada iteração e envia partículas não dominadas à ilha seguinte a cada intervalo de migração. Em um nicho
+     * paralelo, recebe as partículas que mudaram para a sua classe e transfere as que mudaram para outra.
+     */
+    private void evoluir()
+    {
+        int iteracao = 0;
+
+        while ( custoAvaliacao() < maxNumAvaliacao )
+        {
+            final double custoAnterior = fitness.custoAvaliacao();
+
+            if ( destino != null || classeNicho != null )
+            {
+                receberMigrantes();
+            }
+
+            if ( destino != null && ++iteracao % intervaloMigracao == 0 )
+            {
+                enviarMigrantes();
+            }
+
+            final List<List<Particula>> descendentes = numDescendentes > 1 ? new ArrayList<List<Particula>>(
+                            particulas.size() ) : null;
+
+            for ( int indexPart = 0; indexPart < particulas.size(); indexPart++ )
+            {
+                Particula particula = particulas.get( indexPart );
+
+                // gbest e pbest
+                atualizarMelhores( particula );
+
+                // operador de turbulência
+                aplicarTurbulencia( indexPart );
+
+                // atualiza posição da partícula
+                if ( descendentes != null )
+                {
+                    descendentes.add( gerarDescendentes( particula ) );
+                }
+                else
+                {
+                    atualizarPosicao( particula );
+                }
+            }
+
+            if ( descendentes != null )
+            {
+                selecionarDescendentes( descendentes );
+            }
+
+            if ( classeNicho != null )
+            {
+                transferirParticulas();
+            }
+
+            // avaliação das novas posições (em lote)
+            fitness.avaliar( particulas, repositorio );
+
+            buscaLocal();
+
+            if ( custos != null )
+            {
+                custos.set( indiceNicho, Double.doubleToLongBits( fitness.custoAvaliacao() ) );
+            }
+
+            // nenhuma partícula mudou e a busca local não avaliou nenhuma regra nova: o enxame estagnou
+            if ( fitness.custoAvaliacao() == custoAnterior )
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Encerra as threads da avaliação. As conexões pertencem ao chamador.
+     */
+    public void encerrar()
+    {
+        fitness.encerrar();
+    }
+
+    /**
+     * Repositório de partículas não dominadas de cada classe ao final da última evolução.
      *
-     * @param classe   Nicho do enxame.
-     * @param fo       Funções objetivo.
-     * @param whereSql Cláusula WHERE.
+     * @return Partículas não dominadas, divididas por classes.
      */
-    private void mostrarLinhaTabela( String classe, double[] fo, String whereSql )
+    Map<String, List<Particula>> repositorio()
     {
-        String compl = format.formatar( fo[0] );
-        String efet = format.formatar( fo[1] );
-        String acur = format.formatar( fo[2] );
+        return repositorio;
+    }
 
-        System.out.printf( TAB_LINHA, formatarClasse( classe ), compl, efet, acur, whereSql );
+    /**
+     * Estágios do pipeline da última evolução.
+     *
+     * @return Geração, avaliação e atualização, ou null se o pipeline não foi usado.
+     */
+    List<Estagio> estagios()
+    {
+        return estagios;
     }
 
     /**
-     * Operador de turbulência.
+     * Número de partículas recebidas pelas ilhas (ou transferidas entre os nichos) na última evolução.
      *
-     * @param indexPart Índice da partícula.
+     * @return Número de migrantes recebidos.
      */
-    private void aplicarTurbulencia( int indexPart )
+    int numMigrantesRecebidos()
     {
-        if ( ( indexPart % TURBULENCIA ) == 0 )
+        return numMigrantesRecebidos;
+    }
+
+    /**
+     * Número de partículas do enxame ao final da última evolução (nos nichos paralelos, a soma dos enxames de todos os
+     * nichos).
+     *
+     * @return Tamanho do enxame.
+     */
+    int tamanhoEnxame()
+    {
+        if ( paraleloPorNicho && nichos != null )
         {
-            perturbar( particulas.get( indexPart ), true );
+            int total = 0;
+
+            for ( Pso nicho : nichos.values() )
+            {
+                total += nicho.particulas.size();
+            }
+
+            return total;
         }
-        else if ( ( indexPart % TURBULENCIA ) == 1 )
+
+        return particulas.size();
+    }
+
+    /**
+     * Custo das avaliações que limita a evolução: o da própria calculadora de fitness ou, nos nichos paralelos, a
+     * soma dos custos publicados por todos os nichos.
+     */
+    private double custoAvaliacao()
+    {
+        if ( custos == null )
         {
-            perturbar( particulas.get( indexPart ), false );
+            return fitness.custoAvaliacao();
+        }
+
+        double total = 0.0;
+
+        for ( int i = 0, len = custos.length(); i < len; i++ )
+        {
+            total += Double.longBitsToDouble( custos.get( i ) );
         }
+
+        return total;
     }
 
     /**
-     * Atualiza posição.
+     * Evolui as ilhas em paralelo, uma thread por ilha, em topologia de anel. O enxame e o limite de avaliações são
+     * divididos entre as ilhas (ao menos uma partícula por nicho); o repositório final reúne as partículas não
+     * dominadas de todas as ilhas.
+     */
+    private void evoluirIlhas()
+    {
+        final int partsIlha = Math.max( classes.size(), numParts / numIlhas );
+        final int avaliacoesIlha = maxNumAvaliacao / numIlhas;
+
+        final List<Pso> ilhas = new ArrayList<>( numIlhas );
+
+        for ( int n = 0; n < numIlhas; n++ )
+        {
+            ilhas.add( new Pso( this, dividirNichoEnxame( partsIlha ), avaliacoesIlha, new Random(
+                            random.nextLong() ), obterConexao() ) );
+        }
+
+        for ( int n = 0; n < numIlhas; n++ )
+        {
+            ilhas.get( n ).destino = ilhas.get( ( n + 1 ) % numIlhas );
+        }
+
+        executar( ilhas );
+    }
+
+    /**
+     * Evolui os nichos (um por classe) em paralelo, uma thread por nicho, com o limite de avaliações compartilhado.
+     * Os nichos interagem somente pela mutação de classe: a partícula que muda de classe é transferida ao nicho da
+     * nova classe.
+     */
+    private void evoluirNichos()
+    {
+        final Map<String, Pso> porClasse = new HashMap<>();
+        final AtomicLongArray custosNichos = new AtomicLongArray( classes.size() );
+
+        int n = 0;
+
+        for ( String cl : classes )
+        {
+            final Pso nicho = new Pso( this, Collections.singletonMap( cl, enxameNicho.get( cl ) ), maxNumAvaliacao,
+                                       new Random( random.nextLong() ), obterConexao() );
+
+            nicho.classeNicho = cl;
+            nicho.nichos = porClasse;
+            nicho.custos = custosNichos;
+            nicho.indiceNicho = n++;
+
+            porClasse.put( cl, nicho );
+        }
+
+        executar( new ArrayList<>( porClasse.values() ) );
+
+        // partículas transferidas a um nicho que já havia terminado (limite de avaliações ou estagnação) voltam ao
+        // enxame desse nicho, sem avaliação: o enxame mantém o tamanho configurado
+        for ( Pso nicho : porClasse.values() )
+        {
+            Particula orfa;
+
+            while ( ( orfa = nicho.migrantes.poll() ) != null )
+            {
+                nicho.particulas.add( orfa );
+            }
+        }
+
+        nichos = porClasse;
+    }
+
+    /**
+     * Obtém a conexão própria de uma ilha ou nicho paralelo: com a avaliação SQL (consultas ou cursor), cada ilha usa
+     * uma conexão do conjunto, devolvida ao final da evolução.
      *
-     * @param indexPart Índice da partícula.
+     * @return Conexão ou null se a base de dados está em memória.
+     */
+    private Connection obterConexao()
+    {
+        return dados == null ? conexoes.obter() : null;
+    }
+
+    /**
+     * Executa as ilhas (ou nichos) em paralelo, uma thread por ilha, e reúne no repositório as partículas não
+     * dominadas de todas elas. O fitness das partículas reunidas já foi calculado pelas ilhas, dentro dos seus limites
+     * de avaliações: as cópias incluídas no repositório não são reavaliadas.
+     *
+     * @param ilhas PSOs das ilhas.
      */
-    private void atualizarPosicao( int indexPart )
+    private void executar( List<Pso> ilhas )
     {
-        final Particula part = particulas.get( indexPart );
+        final List<Runnable> tarefas = new ArrayList<>( ilhas.size() );
 
-        final List<String> partPos = new ArrayList<>( part.posicao() );
-        final int partPosSize = partPos.size();
+        numMigrantesRecebidos = 0;
 
-        // velocidade
-        if ( random.nextDouble() < w )
+        for ( final Pso ilha : ilhas )
         {
-            perturbar( part );
+            tarefas.add( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    ilha.iniciar();
+                    ilha.evoluir();
+                }
+            } );
         }
 
-        // pbest
-        if ( random.nextDouble() < c1 )
+        try
         {
-            final List<Particula> pbest = new ArrayList<>( part.getPbest() );
-            recombinar( pbest, part, partPos, partPosSize );
+            executarEmParalelo( tarefas );
+        }
+        finally
+        {
+            for ( Pso ilha : ilhas )
+            {
+                if ( ilha.conexao != conexao )
+                {
+                    conexoes.devolver( ilha.conexao );
+                }
+            }
         }
 
-        // gbest
-        if ( random.nextDouble() < c2 )
+        for ( Pso ilha : ilhas )
         {
-            final List<Particula> gbest = repositorio.get( part.classe() );
-            recombinar( gbest, part, partPos, partPosSize );
+            for ( String cl : classes )
+            {
+                final List<Particula> rep = repositorio.get( cl );
+
+                for ( Particula p : ilha.repositorio.get( cl ) )
+                {
+                    incluirParticulaNaoDominada( rep, p.copiar( fitness ) );
+                    verificarNumParticulas( random, rep );
+                }
+            }
+
+            numMigrantesRecebidos += ilha.numMigrantesRecebidos;
+            fitness.acumular( ilha.fitness );
         }
+    }
+
+    /**
+     * Executa as tarefas em paralelo, uma thread por tarefa, e aguarda o término de todas. As tarefas são aguardadas
+     * na ordem de término: o erro de uma tarefa interrompe as demais, mesmo as bloqueadas à espera dela.
+     *
+     * @param tarefas Tarefas.
+     */
+    private static void executarEmParalelo( List<Runnable> tarefas )
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool( tarefas.size() );
 
-        // avaliação da nova partícula
-        part.avaliar();
+        try
+        {
+            final CompletionService<Object> conclusao = new ExecutorCompletionService<>( executor );
+
+            for ( Runnable tarefa : tarefas )
+            {
+                conclusao.submit( tarefa, null );
+            }
+
+            for ( int i = 0; i < tarefas.size(); i++ )
+            {
+                conclusao.take().get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Evolução paralela interrompida.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Erro na evolução paralela.", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Busca Local.
+     * PSO assíncrono (estado estacionário): cada thread retira uma partícula da fila, atualiza o gbest e o pbest,
+     * move e avalia a partícula e a devolve à fila, sem esperar pelas demais. As partículas não dominadas são
+     * publicadas em um repositório compartilhado com cópia na escrita, lido sem bloqueio. A busca local é feita a
+     * cada passo em uma partícula não dominada aleatória da classe da partícula movida.
+     * <p>
+     * A evolução termina no limite de avaliações (contadores compartilhados) ou quando uma sequência de passos do
+     * tamanho do enxame não avalia nenhuma regra nova.
      */
-    private void buscaLocal()
+    private void evoluirAssincrono()
     {
-        for ( String cl : classes )
+        iniciar();
+
+        // com no máximo uma thread por partícula, a fila nunca está vazia quando uma thread retira a próxima
+        final Queue<Particula> fila = new ConcurrentLinkedQueue<Particula>( particulas );
+        final AtomicInteger passosSemAvaliacao = new AtomicInteger();
+        final int numThreads = Math.min( numTrabalhadores, particulas.size() );
+
+        final List<Runnable> tarefas = new ArrayList<>( numThreads );
+
+        for ( int n = 0; n < numThreads; n++ )
         {
-            final List<Particula> rep = repositorio.get( cl );
+            tarefas.add( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    while ( fitness.custoAvaliacao() < maxNumAvaliacao
+                                    && passosSemAvaliacao.get() < particulas.size() )
+                    {
+                        final Particula part = fila.poll();
+
+                        if ( part == null )
+                        {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        final double custoAnterior = fitness.custoAvaliacao();
+
+                        moverAssincrono( part );
+                        fila.offer( part );
+
+                        if ( fitness.custoAvaliacao() == custoAnterior )
+                        {
+                            passosSemAvaliacao.incrementAndGet();
+                        }
+                        else
+                        {
+                            passosSemAvaliacao.set( 0 );
+                        }
+                    }
+                }
+            } );
+        }
 
-            for ( int i = 0; i < rep.size(); i++ )
+        executarComArquivo( tarefas );
+    }
+
+    /**
+     * Executa as tarefas em paralelo com o repositório compartilhado e, ao final, copia as partículas não dominadas
+     * para o repositório da pasta.
+     *
+     * @param tarefas Tarefas.
+     */
+    private void executarComArquivo( List<Runnable> tarefas )
+    {
+        arquivo = new RepositorioConcorrente( classes );
+
+        try
+        {
+            executarEmParalelo( tarefas );
+
+            // repositório final (as cópias publicadas não pertencem a nenhum enxame)
+            for ( String cl : classes )
             {
-                final Particula p = rep.get( i );
-                buscaLocalPareto( p );
+                repositorio.get( cl ).addAll( arquivo.get( cl ) );
             }
         }
+        finally
+        {
+            arquivo = null;
+        }
+    }
+
+    /**
+     * Evolui o enxame em três estágios ligados por filas limitadas: a geração move as partículas (turbulência e
+     * velocidade), as threads de avaliação retiram lotes de partículas movidas e os avaliam, e a atualização aplica o
+     * gbest e o pbest na ordem de chegada e devolve a partícula à geração. Somente a atualização escreve no
+     * repositório compartilhado; a geração lê os seus instantâneos. Quando a fila de avaliação está cheia, a geração
+     * aguarda (contrapressão).
+     * <p>
+     * A cada volta (tantas partículas atualizadas quanto o tamanho do enxame), a atualização faz a busca local e
+     * verifica a estagnação, como ao fim de uma iteração síncrona.
+     */
+    private void evoluirPipeline()
+    {
+        iniciar();
+
+        final Estagio geracao = new Estagio( "Geração" );
+        final Estagio avaliacao = new Estagio( "Avaliação" );
+        final Estagio atualizacao = new Estagio( "Atualização" );
+
+        estagios = Arrays.asList( geracao, avaliacao, atualizacao );
+
+        // uma lista vazia encerra o estágio seguinte
+        final List<Particula> fim = Collections.emptyList();
+
+        final BlockingQueue<List<Particula>> movidas = new ArrayBlockingQueue<>( tamanhoLote * numAvaliadores );
+        final BlockingQueue<List<Particula>> avaliadas = new ArrayBlockingQueue<>( particulas.size()
+                        + numAvaliadores );
+        final BlockingQueue<Particula> prontas = new ArrayBlockingQueue<>( particulas.size() );
+        final AtomicBoolean estagnado = new AtomicBoolean();
+
+        // as partículas iniciais já foram avaliadas e começam pela atualização
+        avaliadas.add( new ArrayList<>( particulas ) );
+
+        final List<Runnable> tarefas = new ArrayList<>( numAvaliadores + 2 );
+
+        tarefas.add( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    while ( fitness.custoAvaliacao() < maxNumAvaliacao && !estagnado.get() )
+                    {
+                        final Particula part = prontas.take();
+                        final long inicio = System.nanoTime();
+
+                        aplicarTurbulencia( part.indiceEnxame() );
+                        atualizarPosicao( part );
+
+                        geracao.registrar( 1, inicio );
+                        movidas.put( Collections.singletonList( part ) );
+                    }
+
+                    for ( int n = 0; n < numAvaliadores; n++ )
+                    {
+                        movidas.put( fim );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+
+        for ( int n = 0; n < numAvaliadores; n++ )
+        {
+            tarefas.add( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        boolean encerrar = false;
+
+                        while ( !encerrar )
+                        {
+                            final List<Particula> primeira = movidas.take();
+
+                            if ( primeira.isEmpty() )
+                            {
+                                break;
+                            }
+
+                            final List<Particula> lote = new ArrayList<>( primeira );
+                            List<Particula> proxima;
+
+                            while ( lote.size() < tamanhoLote && ( proxima = movidas.poll() ) != null )
+                            {
+                                if ( proxima.isEmpty() )
+                                {
+                                    encerrar = true;
+                                    break;
+                                }
+
+                                lote.addAll( proxima );
+                            }
+
+                            final long inicio = System.nanoTime();
+
+                            fitness.avaliar( lote, arquivo.instantaneo() );
+
+                            avaliacao.registrar( lote.size(), inicio );
+                            avaliadas.put( lote );
+                        }
+
+                        avaliadas.put( fim );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            } );
+        }
+
+        tarefas.add( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    int encerrados = 0;
+                    int atualizadas = 0;
+                    double custoAnterior = fitness.custoAvaliacao();
+
+                    while ( encerrados < numAvaliadores )
+                    {
+                        final List<Particula> lote = avaliadas.take();
+
+                        if ( lote.isEmpty() )
+                        {
+                            encerrados++;
+                            continue;
+                        }
+
+                        final long inicio = System.nanoTime();
+
+                        for ( Particula part : lote )
+                        {
+                            // gbest e pbest
+                            atualizarMelhores( part );
+                        }
+
+                        atualizacao.registrar( lote.size(), inicio );
+
+                        for ( Particula part : lote )
+                        {
+                            prontas.put( part );
+
+                            if ( ++atualizadas % particulas.size() == 0 )
+                            {
+                                buscaLocal();
+
+                                // nenhuma regra nova avaliada na volta: o enxame estagnou
+                                if ( fitness.custoAvaliacao() == custoAnterior )
+                                {
+                                    estagnado.set( true );
+                                }
+
+                                custoAnterior = fitness.custoAvaliacao();
+                            }
+                        }
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+
+        executarComArquivo( tarefas );
+    }
+
+    /**
+     * Passo de uma partícula no PSO assíncrono.
+     *
+     * @param part Partícula retirada da fila (acessada somente por esta thread até voltar à fila).
+     */
+    private void moverAssincrono( Particula part )
+    {
+        final int indexPart = part.indiceEnxame();
+
+        // gbest e pbest
+        atualizarMelhores( part );
+
+        // operador de turbulência
+        aplicarTurbulencia( indexPart );
+
+        // atualiza posição da partícula
+        atualizarPosicao( part );
+
+        fitness.avaliar( Collections.singletonList( part ), arquivo.instantaneo() );
+
+        final List<Particula> rep = arquivo.get( part.classe() );
+
+        if ( !rep.isEmpty() )
+        {
+            buscaLocalPareto( rep.get( (int) Math.floor( rep.size() * random.nextDouble() ) ) );
+        }
+    }
+
+    /**
+     * Envia partículas não dominadas aleatórias de cada nicho à ilha seguinte. As condições WHERE são geradas antes do
+     * envio, de modo que a ilha de destino somente lê a partícula.
+     */
+    private void enviarMigrantes()
+    {
+        for ( String cl : classes )
+        {
+            final List<Particula> rep = repositorio.get( cl );
+
+            for ( int i = 0; i < numMigrantes && !rep.isEmpty(); i++ )
+            {
+                final Particula p = rep.get( (int) Math.floor( rep.size() * random.nextDouble() ) );
+
+                p.whereSql();
+                destino.migrantes.offer( p );
+            }
+        }
+    }
+
+    /**
+     * Inclui as partículas recebidas de outra ilha no repositório ou, em um nicho paralelo, no enxame, reavaliadas
+     * pela calculadora de fitness desta ilha.
+     */
+    private void receberMigrantes()
+    {
+        Particula migrante;
+
+        while ( ( migrante = migrantes.poll() ) != null )
+        {
+            final Particula part = new Particula( migrante, fitness, random );
+            numMigrantesRecebidos++;
+
+            if ( classeNicho != null )
+            {
+                part.setPbest( new ArrayList<>( migrante.getPbest() ) );
+                particulas.add( part );
+            }
+            else
+            {
+                atualizarRepositorioGbest( part );
+            }
+        }
+    }
+
+    /**
+     * Transfere as partículas que mudaram de classe ao nicho paralelo da nova classe.
+     */
+    private void transferirParticulas()
+    {
+        final Iterator<Particula> it = particulas.iterator();
+
+        while ( it.hasNext() )
+        {
+            final Particula p = it.next();
+
+            if ( !classeNicho.equals( p.classe() ) )
+            {
+                it.remove();
+
+                p.whereSql();
+                nichos.get( p.classe() ).migrantes.offer( p );
+            }
+        }
+    }
+
+    /**
+     * Verifica se a partícula mudou para a classe de outro nicho paralelo.
+     */
+    private boolean foraDoNicho( Particula p )
+    {
+        return classeNicho != null && !classeNicho.equals( p.classe() );
+    }
+
+    /**
+     * Calcula o Valor Médio para as K-Pastas para cada classe.
+     *
+     * @param kpastasClasse Mapa K-Pastas para cada classe.
+     */
+    private void calcularValorMedio( Map<String, double[]> kpastasClasse )
+    {
+        // atualiza média das K-Pastas
+        for ( Entry<String, double[]> it : kpastasClasse.entrySet() )
+        {
+            double[] arr = it.getValue();
+            arr[0] /= NUM_K;
+            arr[1] /= NUM_K;
+            kpastasClasse.put( it.getKey(), arr );
+        }
+    }
+
+    /**
+     * Calcula o Valor Médio Global.
+     *
+     * @param kpastasClasse Mapa K-Pastas para cada classe.
+     * @return Valor médio obtido do mapa K-Pastas para cada classe.
+     */
+    private double[] valorMedioGlobalKpastas( Map<String, double[]> kpastasClasse )
+    {
+        final double[] total = new double[2];
+
+        for ( double d[] : kpastasClasse.values() )
+        {
+            total[0] += d[0];
+            total[1] += d[1];
+        }
+
+        final int size = classes.size();
+
+        total[0] /= size;
+        total[1] /= size;
+
+        return total;
+    }
+
+    /**
+     * Inicializa um mapa de resultados de valores médios para cada classe do enxame.
+     *
+     * @return Cria um mapa com os resultados encontrados.
+     */
+    private Map<String, double[]> criarValorMedioKpastas()
+    {
+        final Map<String, double[]> kpastasClasse = new HashMap<>();
+
+        for ( String cl : classes )
+        {
+            kpastasClasse.put( cl, new double[2] );
+        }
+
+        return kpastasClasse;
+    }
+
+    /**
+     * Seleciona a melhor efetividade para cada classe dos resultados.
+     *
+     * @param teste         Fitness por classe.
+     * @param kpastasClasse Mapa K-Pastas para cada classe.
+     */
+    private void selecionarEfetividade( Map<String, List<double[]>> teste, Map<String, double[]> kpastasClasse )
+    {
+        for ( Entry<String, List<double[]>> entrada : teste.entrySet() )
+        {
+            final String cl = entrada.getKey();
+            final List<double[]> fits = entrada.getValue();
+
+            final double[] f = fits.get( 0 );
+
+            double maiorEfet = f[1];
+            double acur = f[2];
+
+            for ( double[] fit : fits )
+            {
+                if ( fit[1] > maiorEfet )
+                {
+                    maiorEfet = fit[1];
+                    acur = fit[2];
+                }
+            }
+
+            double[] arr = kpastasClasse.get( cl );
+            arr[0] += maiorEfet;
+            arr[1] += acur;
+            kpastasClasse.put( cl, arr );
+        }
+    }
+
+    /**
+     * Mostra tabela de avaliação (teste).
+     *
+     * @param teste Lista de fitness encontrados por classe.
+     */
+    private void mostrarTeste( Map<String, List<double[]>> teste )
+    {
+        System.out.println( "\n\nFase de teste:\n" );
+
+        System.out.print( TAB_CABECALHO );
+        System.out.println();
+
+        for ( String cl : classes )
+        {
+            List<double[]> r = teste.get( cl );
+            List<Particula> rep = repositorio.get( cl );
+
+            for ( int i = 0, l = r.size(); i < l; i++ )
+            {
+                final double[] fit = r.get( i );
+                mostrarLinhaTabela( cl, fit, rep.get( i ).whereSql() );
+            }
+        }
+
+        System.out.println();
+    }
+
+    /**
+     * Mostra tabela de resultados do treinamento.
+     */
+    private void mostrarTreinamento()
+    {
+        System.out.println( "\n\nFase de treinamento:\n" );
+
+        System.out.println( TAB_CABECALHO );
+
+        final Map<String, List<Particula>> solucoes = new TreeMap<>( repositorio );
+
+        for ( Entry<String, List<Particula>> parts : solucoes.entrySet() )
+        {
+            String classe = parts.getKey();
+            List<Particula> listaParts = parts.getValue();
+
+            Collections.sort( listaParts );
+
+            for ( Particula part : listaParts )
+            {
+                final double[] fit = part.fitness();
+                mostrarLinhaTabela( classe, fit, part.whereSql() );
+            }
+        }
+    }
+
+    /**
+     * Mostra o número de avaliações do fitness da partição.
+     */
+    private void mostrarAvaliacoes()
+    {
+        System.out.printf( "\nAvaliações: %d completas", fitness.numAvaliacao() );
+
+        if ( fitness.numAvaliacaoAmostra() > 0 )
+        {
+            System.out.printf( ", %d estimadas na amostra", fitness.numAvaliacaoAmostra() );
+        }
+
+        System.out.printf( ", %d evitadas (partículas inalteradas)", fitness.numAvaliacaoEvitada() );
+
+        System.out.println();
+
+        if ( estagios != null )
+        {
+            for ( Estagio estagio : estagios )
+            {
+                System.out.println( estagio );
+            }
+        }
+    }
+
+    /**
+     * Monta uma linha da tabela de resultado do algoritmo.
+     *
+     * @param classe   Nicho do enxame.
+     * @param fo       Funções objetivo.
+     * @param whereSql Cláusula WHERE.
+     */
+    private void mostrarLinhaTabela( String classe, double[] fo, String whereSql )
+    {
+        String compl = format.formatar( fo[0] );
+        String efet = format.formatar( fo[1] );
+        String acur = format.formatar( fo[2] );
+
+        System.out.printf( TAB_LINHA, formatarClasse( classe ), compl, efet, acur, whereSql );
+    }
+
+    /**
+     * Operador de turbulência.
+     *
+     * @param indexPart Índice da partícula.
+     */
+    private void aplicarTurbulencia( int indexPart )
+    {
+        if ( ( indexPart % TURBULENCIA ) == 0 )
+        {
+            perturbar( particulas.get( indexPart ), true );
+        }
+        else if ( ( indexPart % TURBULENCIA ) == 1 )
+        {
+            perturbar( particulas.get( indexPart ), false );
+        }
+    }
+
+    /**
+     * Gera as descendentes da partícula: cópias com o mesmo pbest, cada uma movida independentemente a partir da
+     * posição atual. As descendentes são avaliadas depois, em lote; a que não mudou de posição nem de classe mantém o
+     * fitness da partícula e não é reavaliada.
+     *
+     * @param part Partícula.
+     * @return Descendentes pendentes de avaliação.
+     */
+    private List<Particula> gerarDescendentes( Particula part )
+    {
+        final List<Particula> filhas = new ArrayList<>( numDescendentes );
+        final List<Particula> pbest = new ArrayList<>( part.getPbest() );
+
+        for ( int i = 0; i < numDescendentes; i++ )
+        {
+            final Particula filha = part.copiar();
+            filha.setPbest( pbest );
+
+            atualizarPosicao( filha );
+            filhas.add( filha );
+        }
+
+        return filhas;
+    }
+
+    /**
+     * Avalia as descendentes de todas as partículas em um único lote (passagem em blocos ou consultas simultâneas,
+     * conforme a avaliação configurada) e move cada partícula para uma descendente não dominada pelas demais, sorteada
+     * entre as não dominadas. As outras descendentes não dominadas são oferecidas ao repositório sem reavaliação.
+     *
+     * @param descendentes Descendentes de cada partícula do enxame, na ordem do enxame.
+     */
+    private void selecionarDescendentes( List<List<Particula>> descendentes )
+    {
+        final List<Particula> lote = new ArrayList<>( descendentes.size() * numDescendentes );
+
+        for ( List<Particula> filhas : descendentes )
+        {
+            lote.addAll( filhas );
+        }
+
+        fitness.avaliar( lote, repositorio );
+
+        for ( int i = 0; i < descendentes.size(); i++ )
+        {
+            final List<Particula> filhas = descendentes.get( i );
+            final List<Particula> naoDominadas = new ArrayList<>( filhas.size() );
+
+            for ( Particula a : filhas )
+            {
+                boolean dominada = false;
+
+                for ( Particula b : filhas )
+                {
+                    if ( b != a && verificarDominanciaEntre( b, a ) > 0 )
+                    {
+                        dominada = true;
+                        break;
+                    }
+                }
+
+                if ( !dominada )
+                {
+                    naoDominadas.add( a );
+                }
+            }
+
+            final Particula escolhida = naoDominadas.get( random.nextInt( naoDominadas.size() ) );
+            particulas.get( i ).adotar( escolhida );
+
+            // as demais não dominadas avaliadas em toda a base (não estimadas na amostra) concorrem ao repositório
+            // com o fitness já calculado no lote
+            for ( Particula filha : naoDominadas )
+            {
+                if ( filha != escolhida && !filha.alterada() )
+                {
+                    incluirNoRepositorioGbest( filha );
+                }
+            }
+        }
+    }
+
+    /**
+     * Atualiza posição.
+     *
+     * @param part Partícula.
+     */
+    private void atualizarPosicao( Particula part )
+    {
+        // os termos são alterados no lugar pela perturbação
+        final long[] partTermos = part.termos() != null ? part.termos().clone() : null;
+        final List<String> partPos = partTermos != null ? null : new ArrayList<>( part.posicao() );
+        final int partPosSize = partPos != null ? partPos.size() : 0;
+        final Hiperretangulo partHiper = part.hiperretangulo();
+
+        // velocidade
+        if ( random.nextDouble() < w )
+        {
+            perturbar( part );
+        }
+
+        // a partícula que mudou de nicho é recombinada com o repositório da nova classe após a transferência
+        if ( foraDoNicho( part ) )
+        {
+            return;
+        }
+
+        // pbest
+        if ( random.nextDouble() < c1 )
+        {
+            final List<Particula> pbest = new ArrayList<>( part.getPbest() );
+
+            if ( partHiper != null )
+            {
+                recombinarIntervalos( pbest, part, partHiper );
+            }
+            else if ( partTermos != null )
+            {
+                recombinarTermos( pbest, part, partTermos );
+            }
+            else
+            {
+                recombinar( pbest, part, partPos, partPosSize );
+            }
+        }
+
+        // gbest (vazio se a turbulência mudou a classe antes que alguma partícula da nova classe fosse incluída)
+        if ( random.nextDouble() < c2 )
+        {
+            final List<Particula> gbest = naoDominadas( part.classe() );
+
+            if ( gbest.isEmpty() )
+            {
+                return;
+            }
+
+            if ( partHiper != null )
+            {
+                recombinarIntervalos( gbest, part, partHiper );
+            }
+            else if ( partTermos != null )
+            {
+                recombinarTermos( gbest, part, partTermos );
+            }
+            else
+            {
+                recombinar( gbest, part, partPos, partPosSize );
+            }
+        }
+    }
+
+    /**
+     * Busca Local.
+     */
+    private void buscaLocal()
+    {
+        if ( executorBusca != null )
+        {
+            buscaLocalEspeculativa();
+            return;
+        }
+
+        for ( String cl : classes )
+        {
+            final List<Particula> rep = naoDominadas( cl );
+
+            for ( int i = 0; i < rep.size(); i++ )
+            {
+                final Particula p = rep.get( i );
+                buscaLocalPareto( p );
+            }
+        }
+    }
+
+    /**
+     * Busca local especulativa. Gera de uma vez as vizinhas de todas as partículas não dominadas (as mesmas
+     * perturbações sucessivas da busca local Pareto, sem avaliá-las), avalia todas as vizinhas em paralelo e aplica,
+     * na ordem do repositório, a primeira vizinha de cada partícula que não é dominada por ela. A geração e a
+     * aplicação são sequenciais, portanto o resultado não depende da ordem de término das avaliações.
+     */
+    private void buscaLocalEspeculativa()
+    {
+        final double len = FastMath.log( colunas.size() ) + 1;
+
+        final List<Particula> referencias = new ArrayList<>();
+        final List<List<Particula>> vizinhas = new ArrayList<>();
+        final List<Callable<Boolean>> tarefas = new ArrayList<>();
+
+        for ( String cl : classes )
+        {
+            for ( final Particula p : new ArrayList<>( naoDominadas( cl ) ) )
+            {
+                final Particula pl = p.clonar();
+                final List<Particula> candidatas = new ArrayList<>();
+
+                for ( int i = 0; i < len; i++ )
+                {
+                    perturbar( pl, false );
+
+                    final Object regra = pl.termos() != null ? BitSet.valueOf( pl.termos() ) : pl.whereSql();
+
+                    if ( !regrasVisitadas.add( regra ) )
+                    {
+                        continue;
+                    }
+
+                    final Particula candidata = pl.copiar();
+                    candidatas.add( candidata );
+
+                    // candidatas dominadas por p são descartadas sem avaliação completa
+                    tarefas.add( new Callable<Boolean>()
+                    {
+                        @Override
+                        public Boolean call()
+                        {
+                            return fitness.avaliarComPoda( candidata, p );
+                        }
+                    } );
+                }
+
+                referencias.add( p );
+                vizinhas.add( candidatas );
+            }
+        }
+
+        final List<Future<Boolean>> resultados;
+
+        try
+        {
+            resultados = executorBusca.invokeAll( tarefas );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Busca local interrompida.", e );
+        }
+
+        int t = 0;
+
+        for ( int i = 0; i < referencias.size(); i++ )
+        {
+            final Particula p = referencias.get( i );
+            boolean aplicada = false;
+
+            for ( Particula candidata : vizinhas.get( i ) )
+            {
+                final boolean avaliada = obterResultado( resultados.get( t++ ) );
+
+                if ( !aplicada && avaliada && verificarDominanciaEntre( candidata, p ) >= 0 )
+                {
+                    publicarVizinha( p.classe(), candidata );
+                    aplicada = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retorna o resultado de uma avaliação da busca local especulativa.
+     */
+    private static boolean obterResultado( Future<Boolean> resultado )
+    {
+        try
+        {
+            return resultado.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Busca local interrompida.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( "Erro na avaliação de uma vizinha.", e.getCause() );
+        }
+    }
+
+    /**
+     * Inclui a vizinha encontrada pela busca local no repositório da classe da partícula de origem.
+     *
+     * @param classe  Classe da partícula de origem.
+     * @param vizinha Vizinha não dominada pela partícula de origem.
+     */
+    private void publicarVizinha( String classe, Particula vizinha )
+    {
+        if ( arquivo != null )
+        {
+            arquivo.atualizar( classe, vizinha );
+        }
+        else
+        {
+            atualizarParticulasNaoDominadas( repositorio.get( classe ), vizinha );
+        }
+    }
+
+    /**
+     * Busca Local Pareto.
+     *
+     * @param p Partícula.
+     */
+    private void buscaLocalPareto( Particula p )
+    {
+        final String cl = p.classe();
+
+        final Particula pl = p.clonar();
+
+        final double len = FastMath.log( colunas.size() ) + 1;
+
+        for ( int i = 0; i < len; i++ )
+        {
+            perturbar( pl, false );
+
+            // termos do vocabulário: a própria posição identifica a regra, sem gerar a cláusula WHERE
+            final Object regra = pl.termos() != null ? BitSet.valueOf( pl.termos() ) : pl.whereSql();
+
+            if ( !regrasVisitadas.add( regra ) )
+            {
+                continue;
+            }
+
+            // candidatas dominadas por p são descartadas sem avaliação completa
+            if ( fitness.avaliarComPoda( pl, p ) && verificarDominanciaEntre( pl, p ) >= 0 )
+            {
+                publicarVizinha( cl, pl );
+                break;
+            }
+        }
+    }
+
+    /**
+     * Operador de crossover.
+     *
+     * @param bestParts   Gbest ou Pbest.
+     * @param part        Partícula.
+     * @param partPos     Posição da partícula.
+     * @param partPosSize Tamanho do vetor posição da partícula.
+     */
+    private void recombinar( List<Particula> bestParts, Particula part, List<String> partPos, int partPosSize )
+    {
+        final Particula bestPart = Distancia.retornarParticulaMaisProxima( bestParts, part );
+
+        final List<String> bestPos = new ArrayList<>( bestPart.posicao() );
+        final int bestPosSize = bestPos.size();
+
+        final List<String> newPos = new ArrayList<>();
+
+        int i = 0;
+
+        while ( i < bestPosSize )
+        {
+            if ( random.nextDouble() < 0.5 )
+            {
+                final int indexBest = (int) Math.floor( bestPosSize * random.nextDouble() );
+                newPos.add( bestPos.get( indexBest ) );
+            }
+            else
+            {
+                final int indexPart = (int) Math.floor( partPosSize * random.nextDouble() );
+                newPos.add( partPos.get( indexPart ) );
+            }
+
+            i++;
+        }
+
+        while ( i < partPosSize )
+        {
+            final int partSize = (int) Math.floor( partPosSize * random.nextDouble() );
+            newPos.add( partPos.get( partSize ) );
+            i++;
+        }
+
+        part.setPosicao( canonizar( new TreeSet<>( newPos ) ) );
+    }
+
+    /**
+     * Perturbação da partícula.
+     *
+     * @param p       Partícula.
+     * @param mutUnif Mutação Uniforme.
+     */
+    private void perturbar( Particula p, boolean mutUnif )
+    {
+        if ( p.hiperretangulo() != null )
+        {
+            perturbarIntervalos( p, mutUnif );
+            return;
+        }
+
+        if ( p.termos() != null )
+        {
+            perturbarTermos( p, mutUnif );
+            return;
+        }
+
+        final List<String> pos = new ArrayList<>( p.posicao() );
+
+        if ( random.nextDouble() < 0.5 )
+        {
+            pos.add( criarCondicao() );
+            alteraClasse(p);
+        }
+        else
+        {
+            final int index = (int) Math.floor( pos.size() * random.nextDouble() );
+            final String[] termo = pos.get( index ).split( " " );
+
+            String oper = termo[1];
+            String val = termo[2];
+
+            // Artigo: Empirical Study of Particle Swarm Optimization Mutation Operators
+            if ( NumberUtils.isNumber( termo[2] ) && random.nextDouble() < 0.5 )
+            {
+                final double newVal;
+
+                final double valor = Double.parseDouble( termo[2] );
+
+                if ( mutUnif )
+                {
+                    newVal = mutUniforme( termo[0], valor );
+                }
+                else
+                {
+                    newVal = mutGaussiana( termo[0], valor );
+                }
+
+                val = formatarValorNumericoWhere( ajustarFaixa( termo[0], newVal ) );
+            }
+            else
+            {
+                oper = mutOperador();
+            }
+
+            pos.set( index, formatarCondicaoWhere( termo[0], oper, val ) );
+        }
+
+        p.setPosicao( canonizar( new TreeSet<>( pos ) ) );
+    }
+
+    /**
+     * Perturbação da partícula codificada como hiper-retângulo: acrescenta uma restrição ou move um limite.
+     *
+     * @param p       Partícula.
+     * @param mutUnif Mutação Uniforme.
+     */
+    private void perturbarIntervalos( Particula p, boolean mutUnif )
+    {
+        final Hiperretangulo h = new Hiperretangulo( p.hiperretangulo() );
+        final int[] ativas = h.ativas();
+        final List<String> comparacoes = new ArrayList<>( h.comparacoes() );
+        final int numRestricoes = ativas.length + comparacoes.size();
+
+        if ( random.nextDouble() < 0.5 || numRestricoes == 0 )
+        {
+            adicionarRestricao( h );
+            alteraClasse( p );
+        }
+        else
+        {
+            final int index = (int) Math.floor( numRestricoes * random.nextDouble() );
+
+            if ( index < ativas.length )
+            {
+                moverLimite( h, ativas[index], mutUnif );
+            }
+            else
+            {
+                // comparação entre atributos: mutação do operador
+                final String comparacao = comparacoes.get( index - ativas.length );
+                final String[] termo = comparacao.split( " " );
+
+                h.removerComparacao( comparacao );
+                h.adicionarComparacoes( Collections.singleton( formatarCondicaoWhere( termo[0], mutOperador(),
+                                                                                      termo[2] ) ) );
+            }
+        }
+
+        p.setHiperretangulo( h );
+    }
+
+    /**
+     * Perturbação da partícula codificada por termos do vocabulário: acrescenta um termo ou substitui um termo pelo
+     * vizinho com outro limiar (mutação uniforme ou gaussiana em número de quantis) ou com outro operador.
+     *
+     * @param p       Partícula.
+     * @param mutUnif Mutação Uniforme.
+     */
+    private void perturbarTermos( Particula p, boolean mutUnif )
+    {
+        final long[] termos = p.termos().clone();
+        final int numTermos = Bits.contar( termos );
+
+        if ( random.nextDouble() < 0.5 || numTermos == 0 )
+        {
+            Bits.marcar( termos, vocabulario.sortear( random ) );
+            alteraClasse( p );
+        }
+        else
+        {
+            final int termo = Bits.selecionar( termos, (int) Math.floor( numTermos * random.nextDouble() ) );
+            final int novo;
+
+            if ( random.nextDouble() < 0.5 )
+            {
+                final int n = vocabulario.numLimiares( termo );
+                final int passo;
+
+                if ( mutUnif )
+                {
+                    passo = (int) Math.floor( n * random.nextDouble() ) - vocabulario.indiceLimiar( termo );
+                }
+                else
+                {
+                    // desvio de 10% dos limiares, como na mutação gaussiana dos valores
+                    passo = (int) Math.round( random.nextGaussian() * Math.max( 1.0, 0.1 * n ) );
+                }
+
+                novo = vocabulario.mover( termo, passo );
+            }
+            else
+            {
+                novo = vocabulario.trocarOperador( termo, random.nextInt( vocabulario.numOperadores() ) );
+            }
+
+            Bits.desmarcar( termos, termo );
+            Bits.marcar( termos, novo );
+        }
+
+        p.setTermos( termos );
     }
 
     /**
-     * Busca Local Pareto.
+     * Move um dos limites do intervalo da coluna (mutação uniforme ou gaussiana do valor) ou troca o lado do limite,
+     * de forma análoga à mutação do operador.
      *
-     * @param p Partícula.
+     * @param h       Hiper-retângulo.
+     * @param col     Índice da coluna.
+     * @param mutUnif Mutação Uniforme.
      */
-    private void buscaLocalPareto( Particula p )
+    private void moverLimite( Hiperretangulo h, int col, boolean mutUnif )
     {
-        final String cl = p.classe();
-        final List<Particula> rep = repositorio.get( cl );
+        final String coluna = colunas.get( col );
+        final double inferior = h.inferior( col );
+        final double superior = h.superior( col );
 
-        final Particula pl = p.clonar();
+        final boolean moverInferior = superior == Double.POSITIVE_INFINITY || ( inferior != Double.NEGATIVE_INFINITY
+                        && random.nextDouble() < 0.5 );
+        final double valor = moverInferior ? inferior : superior;
 
-        final double len = FastMath.log( colunas.size() ) + 1;
+        if ( random.nextDouble() < 0.5 )
+        {
+            final double novo = ajustarFaixa( coluna, mutUnif ? mutUniforme( coluna, valor )
+                                                              : mutGaussiana( coluna, valor ) );
 
-        for ( int i = 0; i < len; i++ )
+            final double outro = moverInferior ? superior : inferior;
+
+            // limites cruzados são trocados para manter o intervalo não vazio
+            h.setInferior( col, Math.min( novo, outro ) );
+            h.setSuperior( col, Math.max( novo, outro ) );
+        }
+        else if ( moverInferior )
         {
-            perturbar( pl, false );
+            h.setInferior( col, Double.NEGATIVE_INFINITY );
+            h.setSuperior( col, valor );
+        }
+        else
+        {
+            h.setInferior( col, valor );
+            h.setSuperior( col, Double.POSITIVE_INFINITY );
+        }
+    }
+
+    /**
+     * Acrescenta ao hiper-retângulo um limite sobre uma coluna aleatória (o limite oposto incompatível é removido) ou
+     * uma comparação entre atributos.
+     *
+     * @param h Hiper-retângulo.
+     */
+    private void adicionarRestricao( Hiperretangulo h )
+    {
+        final int numCols = colunas.size();
+        final int col = (int) Math.floor( numCols * random.nextDouble() );
 
-            final String where = pl.whereSql();
+        // mesma proporção de valores numéricos das condições livres
+        if ( random.nextDouble() < 0.9 || numCols < 2 )
+        {
+            final String coluna = colunas.get( col );
+            final double valor = ajustarFaixa( coluna, ( max.get( coluna ) - min.get( coluna ) ) * random.nextDouble()
+                            + min.get( coluna ) );
 
-            if ( regrasVisitadas.contains( where ) )
+            if ( random.nextDouble() < 0.5 )
             {
-                continue;
+                h.setInferior( col, valor );
+
+                if ( valor >= h.superior( col ) )
+                {
+                    h.setSuperior( col, Double.POSITIVE_INFINITY );
+                }
             }
             else
             {
-                regrasVisitadas.add( where );
-            }
-
-            pl.avaliar();
+                h.setSuperior( col, valor );
 
-            if ( verificarDominanciaEntre( pl, p ) >= 0 )
+                if ( valor <= h.inferior( col ) )
+                {
+                    h.setInferior( col, Double.NEGATIVE_INFINITY );
+                }
+            }
+        }
+        else
+        {
+            int index;
+            do
             {
-                atualizarParticulasNaoDominadas( rep, pl );
-                break;
+                index = (int) Math.floor( numCols * random.nextDouble() );
             }
+            while ( index == col ); // diferentes colunas
+
+            final String oper = LISTA_OPERADORES[selecionaIndiceListaOperadores()];
+
+            h.adicionarComparacoes( Collections.singleton( formatarCondicaoWhere( colunas.get( col ), oper,
+                                                                                  colunas.get( index ) ) ) );
         }
     }
 
     /**
-     * Operador de crossover.
+     * Cruzamento por coluna de partículas codificadas como hiper-retângulos. Os limites presentes nas duas partículas
+     * são combinados (ponto aleatório entre eles), os presentes em apenas uma são herdados com probabilidade 0.5, assim
+     * como as comparações entre atributos.
      *
-     * @param bestParts   Gbest ou Pbest.
-     * @param part        Partícula.
-     * @param partPos     Posição da partícula.
-     * @param partPosSize Tamanho do vetor posição da partícula.
+     * @param bestParts Gbest ou Pbest.
+     * @param part      Partícula.
+     * @param partHiper Posição da partícula.
      */
-    private void recombinar( List<Particula> bestParts, Particula part, List<String> partPos, int partPosSize )
+    private void recombinarIntervalos( List<Particula> bestParts, Particula part, Hiperretangulo partHiper )
     {
-        final Particula bestPart = Distancia.retornarParticulaMaisProxima( bestParts, part );
-
-        final List<String> bestPos = new ArrayList<>( bestPart.posicao() );
-        final int bestPosSize = bestPos.size();
+        final Hiperretangulo bestHiper = Distancia.retornarParticulaMaisProxima( bestParts, part ).hiperretangulo();
 
-        final List<String> newPos = new ArrayList<>();
+        if ( bestHiper == null )
+        {
+            return;
+        }
 
-        int i = 0;
+        final Hiperretangulo h = new Hiperretangulo( colunas );
 
-        while ( i < bestPosSize )
+        for ( int col = 0, numCols = colunas.size(); col < numCols; col++ )
         {
-            if ( random.nextDouble() < 0.5 )
+            final String coluna = colunas.get( col );
+            final double inferior = cruzarLimite( coluna, partHiper.inferior( col ), bestHiper.inferior( col ) );
+            final double superior = cruzarLimite( coluna, partHiper.superior( col ), bestHiper.superior( col ) );
+
+            if ( inferior < superior )
             {
-                final int indexBest = (int) Math.floor( bestPosSize * random.nextDouble() );
-                newPos.add( bestPos.get( indexBest ) );
+                h.setInferior( col, inferior );
+                h.setSuperior( col, superior );
             }
             else
             {
-                final int indexPart = (int) Math.floor( partPosSize * random.nextDouble() );
-                newPos.add( partPos.get( indexPart ) );
+                h.setInferior( col, partHiper.inferior( col ) );
+                h.setSuperior( col, partHiper.superior( col ) );
             }
-
-            i++;
         }
 
-        while ( i < partPosSize )
+        final Set<String> comparacoes = new TreeSet<>( partHiper.comparacoes() );
+        comparacoes.addAll( bestHiper.comparacoes() );
+
+        for ( String comparacao : comparacoes )
         {
-            final int partSize = (int) Math.floor( partPosSize * random.nextDouble() );
-            newPos.add( partPos.get( partSize ) );
-            i++;
+            final boolean ambas = partHiper.comparacoes().contains( comparacao ) && bestHiper.comparacoes().contains(
+                            comparacao );
+
+            if ( ambas || random.nextDouble() < 0.5 )
+            {
+                h.adicionarComparacoes( Collections.singleton( comparacao ) );
+            }
         }
 
-        part.setPosicao( newPos );
+        part.setHiperretangulo( h.numCondicoes() > 0 ? h : partHiper );
     }
 
     /**
-     * Perturbação da partícula.
+     * Cruzamento uniforme dos termos de partículas codificadas pelo vocabulário: cada bloco de 64 termos combina os
+     * bits das duas partículas segundo uma máscara aleatória.
      *
-     * @param p       Partícula.
-     * @param mutUnif Mutação Uniforme.
+     * @param bestParts  Gbest ou Pbest.
+     * @param part       Partícula.
+     * @param partTermos Posição da partícula.
      */
-    private void perturbar( Particula p, boolean mutUnif )
+    private void recombinarTermos( List<Particula> bestParts, Particula part, long[] partTermos )
     {
-        final List<String> pos = new ArrayList<>( p.posicao() );
+        final long[] bestTermos = Distancia.retornarParticulaMaisProxima( bestParts, part ).termos();
 
-        if ( random.nextDouble() < 0.5 )
+        if ( bestTermos == null )
         {
-            pos.add( criarCondicao() );
-            alteraClasse(p);
+            return;
         }
-        else
-        {
-            final int index = (int) Math.floor( pos.size() * random.nextDouble() );
-            final String[] termo = pos.get( index ).split( " " );
 
-            String oper = termo[1];
-            String val = termo[2];
+        final long[] termos = new long[partTermos.length];
 
-            // Artigo: Empirical Study of Particle Swarm Optimization Mutation Operators
-            if ( NumberUtils.isNumber( termo[2] ) && random.nextDouble() < 0.5 )
-            {
-                final double newVal;
+        for ( int w = 0; w < termos.length; w++ )
+        {
+            final long mascara = random.nextLong();
+            termos[w] = ( bestTermos[w] & mascara ) | ( partTermos[w] & ~mascara );
+        }
 
-                if ( mutUnif )
-                {
-                    newVal = mutUniforme( termo );
-                }
-                else
-                {
-                    newVal = mutGaussiana( termo );
-                }
+        part.setTermos( Bits.contar( termos ) > 0 ? termos : partTermos );
+    }
 
-                val = formatarValorNumericoWhere( newVal );
-            }
-            else
-            {
-                oper = mutOperador();
-            }
+    /**
+     * Combina um limite das duas partículas (infinito quando a coluna não tem o limite).
+     */
+    private double cruzarLimite( String coluna, double a, double b )
+    {
+        if ( Double.isInfinite( a ) && Double.isInfinite( b ) )
+        {
+            return a;
+        }
 
-            pos.set( index, formatarCondicaoWhere( termo[0], oper, val ) );
+        if ( Double.isInfinite( a ) || Double.isInfinite( b ) )
+        {
+            return random.nextDouble() < 0.5 ? a : b;
         }
 
-        p.setPosicao( pos );
+        return ajustarFaixa( coluna, a + ( b - a ) * random.nextDouble() );
     }
     
     /**
@@ -565,7 +2275,7 @@ public class Pso
     
     private String obtemClasseAleatoria()
     {
-    	final int rand = (int) random.nextDouble() * classes.size();
+        final int rand = (int) random.nextDouble() * classes.size();
         final Object[] classesArray = classes.toArray();
         final String novaClasse = classesArray[rand].toString();
         return novaClasse;
@@ -591,18 +2301,17 @@ public class Pso
     /**
      * Mutação Gaussiana.
      *
-     * @param termo
+     * @param coluna Nome da coluna.
+     * @param valor  Valor numérico.
      * @return
      */
-    private double mutGaussiana( String[] termo )
+    private double mutGaussiana( String coluna, double valor )
     {
-        final double valor = Double.parseDouble( termo[2] );
-
         try
         {
             // Proposta de Andrews (2006)
             // Mutação gaussiana
-            final double alfa = 0.1 * ( max.get( termo[0] ) - min.get( termo[0] ) ) + Double.MIN_VALUE;
+            final double alfa = 0.1 * ( max.get( coluna ) - min.get( coluna ) ) + Double.MIN_VALUE;
             final double r = random.nextGaussian() * alfa;
             return valor + r;
         }
@@ -615,23 +2324,39 @@ public class Pso
     /**
      * Mutação Uniforme.
      *
-     * @param termo
+     * @param coluna Nome da coluna.
+     * @param valor  Valor numérico.
      * @return
      */
-    private double mutUniforme( String[] termo )
+    private double mutUniforme( String coluna, double valor )
     {
-        final double valor = Double.parseDouble( termo[2] );
-
         // Proposta de Michalewitz (1996)
         // Mutação uniforme
         if ( random.nextDouble() < 0.5 )
         {
-            return valor + ( max.get( termo[0] ) - valor ) * random.nextDouble();
+            return valor + ( max.get( coluna ) - valor ) * random.nextDouble();
         }
         else
         {
-            return valor - ( valor - min.get( termo[0] ) ) * random.nextDouble();
+            return valor - ( valor - min.get( coluna ) ) * random.nextDouble();
+        }
+    }
+
+    /**
+     * Ajusta o valor à borda de faixa mais próxima da coluna, caso a discretização esteja habilitada.
+     *
+     * @param coluna Nome da coluna.
+     * @param valor  Valor numérico.
+     * @return Valor ajustado.
+     */
+    private double ajustarFaixa( String coluna, double valor )
+    {
+        if ( discretizacao == null )
+        {
+            return valor;
         }
+
+        return discretizacao.ajustar( dados.indiceColuna( coluna ), valor );
     }
 
     /**
@@ -676,7 +2401,18 @@ public class Pso
             mapaClasseId.put( cl, new ArrayList<String>() );
         }
 
-        final String sql = "SELECT " + colClasse + ", " + colId + " AS col_id " + "FROM " + tabela;
+        String sql = "SELECT " + colClasse + ", " + colId + " AS col_id " + "FROM " + tabela;
+
+        // registros de cada classe ordenados por uma coluna (blocos do mapa de zonas com faixas estreitas)
+        if ( colunaOrdem != null )
+        {
+            if ( !colunas.contains( colunaOrdem ) )
+            {
+                throw new RuntimeException( "Coluna de ordenação inválida: " + colunaOrdem );
+            }
+
+            sql += " ORDER BY " + colunaOrdem + ", " + colId;
+        }
 
         try ( PreparedStatement ps = conexao.prepareStatement( sql ); ResultSet rs = ps.executeQuery() )
         {
@@ -697,6 +2433,85 @@ public class Pso
         }
     }
 
+    /**
+     * Carrega os valores das colunas da tabela em memória.
+     *
+     * @param armazenamento Armazenamento das colunas: heap, direto (buffers fora do heap) ou arquivo (mapeado).
+     * @param arquivo       Caminho do arquivo mapeado.
+     * @return Base de dados em memória.
+     */
+    private Dados carregarDados( String armazenamento, String arquivo )
+    {
+        final Dados dados;
+
+        switch ( armazenamento.toLowerCase() )
+        {
+            case "heap":
+                dados = new Dados( colunas, kpastas.numLinhas() );
+                break;
+            case "direto":
+                dados = Dados.criarForaDoHeap( colunas, kpastas.numLinhas(), null );
+                break;
+            case "arquivo":
+                if ( arquivo == null )
+                {
+                    throw new RuntimeException( "Arquivo de colunas não definido (armazenamento.arquivo)." );
+                }
+                dados = Dados.criarForaDoHeap( colunas, kpastas.numLinhas(), Paths.get( arquivo ) );
+                break;
+            default:
+                throw new RuntimeException( "Armazenamento inválido: " + armazenamento );
+        }
+
+        final StringBuilder sb = new StringBuilder();
+
+        for ( String entrada : colunas )
+        {
+            sb.append( ", " ).append( entrada );
+        }
+
+        final String sql = "SELECT " + colId + " AS col_id" + sb.toString() + " FROM " + tabela;
+
+        try
+        {
+            // sem fetch size (e fora de uma transação) o driver traz a tabela inteira para o heap
+            final boolean autoCommit = conexao.getAutoCommit();
+            conexao.setAutoCommit( false );
+
+            try ( PreparedStatement ps = conexao.prepareStatement( sql ) )
+            {
+                ps.setFetchSize( TAMANHO_LOTE );
+
+                try ( ResultSet rs = ps.executeQuery() )
+                {
+                    final int numCols = colunas.size();
+
+                    while ( rs.next() )
+                    {
+                        final int linha = kpastas.linha( rs.getString( "col_id" ) );
+
+                        for ( int i = 0; i < numCols; i++ )
+                        {
+                            final double valor = rs.getDouble( i + 2 );
+                            dados.setValor( i, linha, rs.wasNull() ? Double.NaN : valor );
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                conexao.commit();
+                conexao.setAutoCommit( autoCommit );
+            }
+        }
+        catch ( SQLException e )
+        {
+            throw new RuntimeException( "Erro ao carregar a base de dados em memória.", e );
+        }
+
+        return dados;
+    }
+
     /**
      * Recupera as colunas da tabela.
      */
@@ -792,9 +2607,10 @@ public class Pso
     /**
      * Faz a divisão do total da população em nichos similares para cada classe do problema.
      *
+     * @param numParts Número total de partículas.
      * @return População de cada nicho.
      */
-    private Map<String, Integer> dividirNichoEnxame()
+    private Map<String, Integer> dividirNichoEnxame( int numParts )
     {
         final int numClasses = classes.size();
         final int numPopNicho = numParts / numClasses;
@@ -824,9 +2640,9 @@ public class Pso
      *
      * @return Lista contendo a população de partículas.
      */
-    private List<Particula> criarEnxameInicial()
+    private Enxame criarEnxameInicial()
     {
-        final List<Particula> newParts = new ArrayList<>();
+        final Enxame newParts = new Enxame();
 
         for ( String cl : enxameNicho.keySet() )
         {
@@ -855,10 +2671,46 @@ public class Pso
      */
     private Particula criarParticula( String classe )
     {
-        final Set<String> pos = criarWhere();
+        if ( intervalos )
+        {
+            return new Particula( criarHiperretangulo(), classe, fitness, random );
+        }
+
+        if ( vocabulario != null )
+        {
+            final long[] termos = new long[vocabulario.numPalavras()];
+
+            for ( int i = 0, maxWhere = sortearNumCondicoes(); i < maxWhere; i++ )
+            {
+                Bits.marcar( termos, vocabulario.sortear( random ) );
+            }
+
+            return new Particula( termos, vocabulario, classe, fitness, random );
+        }
+
+        final Set<String> pos = canonizar( criarWhere() );
         return new Particula( pos, classe, fitness, random );
     }
 
+    /**
+     * Substitui a posição pela sua forma canônica, se a canonização estiver habilitada. Posições insatisfazíveis são
+     * mantidas para que a busca possa se afastar delas.
+     *
+     * @param pos Condições WHERE.
+     * @return Condições WHERE canônicas ou a própria posição.
+     */
+    private Set<String> canonizar( Set<String> pos )
+    {
+        if ( !canonizacao )
+        {
+            return pos;
+        }
+
+        final RegraCanonica canonica = RegraCanonica.canonizar( pos );
+
+        return canonica.insatisfazivel() ? pos : canonica.condicoes();
+    }
+
     /**
      * Carrega as partículas iniciais não dominadas para cada objetivo do problema.
      *
@@ -882,11 +2734,8 @@ public class Pso
      */
     private Set<String> criarWhere()
     {
-        final int numCols = colunas.size();
         final Set<String> conjWhere = new HashSet<>();
-
-        final double r = (int) Math.floor( numCols * random.nextDouble() ) + 1;
-        final int maxWhere = (int) FastMath.ceil( FastMath.log( 2.0, r ) ) + 1;
+        final int maxWhere = sortearNumCondicoes();
 
         for ( int i = 0; i < maxWhere; i++ )
         {
@@ -897,6 +2746,34 @@ public class Pso
         return conjWhere;
     }
 
+    /**
+     * Cria um hiper-retângulo com restrições aleatórias (posição inicial da partícula).
+     *
+     * @return Hiper-retângulo.
+     */
+    private Hiperretangulo criarHiperretangulo()
+    {
+        final Hiperretangulo h = new Hiperretangulo( colunas );
+
+        for ( int i = 0, maxWhere = sortearNumCondicoes(); i < maxWhere; i++ )
+        {
+            adicionarRestricao( h );
+        }
+
+        return h;
+    }
+
+    /**
+     * Sorteia o número de condições de uma posição inicial.
+     *
+     * @return Número de condições.
+     */
+    private int sortearNumCondicoes()
+    {
+        final double r = (int) Math.floor( colunas.size() * random.nextDouble() ) + 1;
+        return (int) FastMath.ceil( FastMath.log( 2.0, r ) ) + 1;
+    }
+
     /**
      * Cria uma cláusula SQL WHERE, ou seja, a posição da partícula.
      *
@@ -922,7 +2799,7 @@ public class Pso
             final Double maxCol = max.get( coluna );
             final double newVal = ( maxCol - minCol ) * random.nextDouble() + minCol;
 
-            valor = formatarValorNumericoWhere( newVal );
+            valor = formatarValorNumericoWhere( ajustarFaixa( coluna, newVal ) );
         }
         else
         {
@@ -985,7 +2862,7 @@ public class Pso
         // Lista não dominados (gbest)
         for ( String cl : classes )
         {
-            repositorio.put( cl, new ArrayList<Particula>() );
+            repositorio.put( cl, new Enxame() );
         }
     }
 
@@ -1009,101 +2886,70 @@ public class Pso
     private void atualizarRepositorioGbest( Particula p )
     {
         final String classe = p.classe();
+
+        if ( arquivo != null )
+        {
+            arquivo.atualizar( classe, p );
+            return;
+        }
+
         final List<Particula> gbestLista = repositorio.get( classe );
 
         atualizarParticulasNaoDominadas( gbestLista, p );
 
-        final List<Particula> rep = new ArrayList<>( gbestLista );
-        repositorio.put( classe, rep );
-
         // Verifica o número de soluções não dominadas no repositório gbest
-        verificarNumParticulas( random, rep );
+        verificarNumParticulas( random, gbestLista );
     }
 
     /**
-     * Validação Cruzada K-Pastas.
+     * Atualiza o repositório gbest e o pbest com a partícula. Uma partícula com o fitness apenas estimado na amostra
+     * fica de fora até ser avaliada em toda a base: a cópia incluída seria reavaliada, fora do custo contabilizado
+     * pela avaliação em dois estágios.
+     *
+     * @param part Partícula.
      */
-    private List<List<String>> criarKpastas()
+    private void atualizarMelhores( Particula part )
     {
-        final List<List<String>> kpastasTemp = new ArrayList<>();
-
-        for ( int i = 0; i < NUM_K; i++ )
-        {
-            kpastasTemp.add( new ArrayList<String>() );
-        }
-
-        // Embaralha registros
-        final Map<String, List<String>> temp = new HashMap<>();
-        final int tempSize = randMapaClasseId( temp );
-
-        final List<String> listaClasses = new ArrayList<>( classes );
-
-        int k = 0;
-
-        for ( int i = 0; i < tempSize; )
+        if ( part.alterada() )
         {
-            for ( int j = 0, size = listaClasses.size(); j < size; )
-            {
-                String index = listaClasses.get( j );
-                List<String> ids = temp.get( index );
-
-                while ( k < NUM_K )
-                {
-                    if ( !ids.isEmpty() )
-                    {
-                        String id = ids.remove( 0 );
-                        kpastasTemp.get( k ).add( id );
-                        i++;
-                        k++;
-                    }
-                    else
-                    {
-                        break;
-                    }
-                }
-
-                if ( k == NUM_K )
-                {
-                    k = 0;
-                }
-                else
-                {
-                    j++;
-                }
-            }
+            return;
         }
 
-        return kpastasTemp;
+        atualizarRepositorioGbest( part );
+        part.atualizarPbest();
     }
 
     /**
-     * Cria um clone com elementos aleatórios do mapa classe {@link #mapaClasseId} e retorna o número total de
-     * elementos.
+     * Inclui no repositório uma cópia da partícula já avaliada, sem reavaliá-la, se ela não for dominada.
      *
-     * @param map Mapa de classe por ID.
-     * @return Número total de registro do mapa.
+     * @param p Partícula avaliada.
      */
-    private int randMapaClasseId( Map<String, List<String>> map )
+    private void incluirNoRepositorioGbest( Particula p )
     {
-        int total = 0;
+        final String classe = p.classe();
 
-        // Deep cloning
-        for ( String cl : classes )
+        if ( arquivo != null )
         {
-            map.put( cl, new ArrayList<String>() );
-
-            List<String> mapaClasseTemp = mapaClasseId.get( cl );
+            arquivo.atualizar( classe, p );
+            return;
+        }
 
-            for ( int i = 0, size = mapaClasseTemp.size(); i < size; i++ )
-            {
-                map.get( cl ).add( mapaClasseTemp.get( i ) );
-                total++;
-            }
+        final List<Particula> gbestLista = repositorio.get( classe );
 
-            Collections.shuffle( map.get( cl ), random );
-        }
+        incluirParticulaNaoDominada( gbestLista, p.copiar() );
+        verificarNumParticulas( random, gbestLista );
+    }
 
-        return total;
+    /**
+     * Retorna as partículas não dominadas da classe: no PSO assíncrono, o instantâneo atual do repositório
+     * compartilhado.
+     *
+     * @param classe Classe.
+     * @return Partículas não dominadas.
+     */
+    private List<Particula> naoDominadas( String classe )
+    {
+        return arquivo != null ? arquivo.get( classe ) : repositorio.get( classe );
     }
 
     /**
@@ -1113,7 +2959,7 @@ public class Pso
      */
     public List<List<String>> getKPasta()
     {
-        return kpastas;
+        return kpastas.listar();
     }
 
     /**
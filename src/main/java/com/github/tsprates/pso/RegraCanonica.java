@@ -0,0 +1,245 @@
+package com.github.tsprates.pso;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.github.tsprates.pso.Formatador.formatarCondicaoWhere;
+import static com.github.tsprates.pso.Formatador.formatarValorNumericoWhere;
+
+/**
+ * Forma canônica de uma regra. As condições de valor numérico sobre a mesma coluna são combinadas em um intervalo
+ * (limites inferior e superior, igualdade e valores excluídos), eliminando as redundantes (ex.: "x > 1 AND x > 2"
+ * equivale a "x > 2") e detectando as regras insatisfazíveis (ex.: "x != 3 AND x = 3" ou "x > 5 AND x < 2"), que não
+ * cobrem nenhum registro. Valores iguais escritos de formas diferentes são comparados numericamente. As condições
+ * entre colunas são mantidas.
+ *
+ * @author thiago
+ */
+public class RegraCanonica
+{
+
+    private final Set<String> condicoes;
+
+    private final boolean insatisfazivel;
+
+    /**
+     * Construtor.
+     */
+    private RegraCanonica( Set<String> condicoes, boolean insatisfazivel )
+    {
+        this.condicoes = condicoes;
+        this.insatisfazivel = insatisfazivel;
+    }
+
+    /**
+     * Canoniza as condições de uma posição.
+     *
+     * @param posicao Condições WHERE.
+     * @return Regra canônica.
+     */
+    public static RegraCanonica canonizar( Collection<String> posicao )
+    {
+        final Set<String> resultado = new TreeSet<>();
+        final Map<String, Intervalo> intervalos = new TreeMap<>();
+
+        for ( String where : posicao )
+        {
+            final String[] termo = where.split( " " );
+
+            if ( termo.length != 3 || !NumberUtils.isNumber( termo[2] ) )
+            {
+                resultado.add( where );
+                continue;
+            }
+
+            Intervalo intervalo = intervalos.get( termo[0] );
+
+            if ( intervalo == null )
+            {
+                intervalo = new Intervalo();
+                intervalos.put( termo[0], intervalo );
+            }
+
+            intervalo.adicionar( where, termo[1], Double.parseDouble( termo[2] ) );
+        }
+
+        for ( Map.Entry<String, Intervalo> entrada : intervalos.entrySet() )
+        {
+            if ( !entrada.getValue().escrever( entrada.getKey(), resultado ) )
+            {
+                return new RegraCanonica( new TreeSet<>( posicao ), true );
+            }
+        }
+
+        return new RegraCanonica( resultado, false );
+    }
+
+    /**
+     * Retorna as condições canônicas (as condições originais se a regra for insatisfazível).
+     *
+     * @return Conjunto ordenado de condições WHERE.
+     */
+    public Set<String> condicoes()
+    {
+        return condicoes;
+    }
+
+    /**
+     * Verifica se nenhum registro pode satisfazer a regra.
+     *
+     * @return Verdadeiro se a regra é insatisfazível.
+     */
+    public boolean insatisfazivel()
+    {
+        return insatisfazivel;
+    }
+
+    /**
+     * Retorna a cláusula WHERE das condições canônicas (chave normalizada da regra).
+     *
+     * @return String WHERE SQL.
+     */
+    public String whereSql()
+    {
+        return "(" + StringUtils.join( condicoes, ") AND (" ) + ")";
+    }
+
+    /**
+     * Intervalo de valores de uma coluna.
+     */
+    private static class Intervalo
+    {
+
+        private double inferior = Double.NEGATIVE_INFINITY;
+
+        private boolean inferiorIncluso;
+
+        private String textoInferior;
+
+        private double superior = Double.POSITIVE_INFINITY;
+
+        private boolean superiorIncluso;
+
+        private String textoSuperior;
+
+        private Double igual;
+
+        private String textoIgual;
+
+        private boolean vazio;
+
+        private final Map<Double, String> excluidos = new HashMap<>();
+
+        /**
+         * Restringe o intervalo pela condição.
+         */
+        void adicionar( String texto, String operador, double v )
+        {
+            switch ( operador )
+            {
+                case ">":
+                case ">=":
+                    final boolean incluso = operador.length() == 2;
+
+                    if ( v > inferior || ( v == inferior && inferiorIncluso && !incluso ) )
+                    {
+                        inferior = v;
+                        inferiorIncluso = incluso;
+                        textoInferior = texto;
+                    }
+                    break;
+                case "<":
+                case "<=":
+                    final boolean inclusoSup = operador.length() == 2;
+
+                    if ( v < superior || ( v == superior && superiorIncluso && !inclusoSup ) )
+                    {
+                        superior = v;
+                        superiorIncluso = inclusoSup;
+                        textoSuperior = texto;
+                    }
+                    break;
+                case "=":
+                    if ( igual != null && igual != v )
+                    {
+                        vazio = true;
+                    }
+
+                    igual = v;
+                    textoIgual = texto;
+                    break;
+                default: // != e <>
+                    excluidos.put( v, texto );
+                    break;
+            }
+        }
+
+        /**
+         * Escreve as condições canônicas do intervalo.
+         *
+         * @return Falso se o intervalo é vazio.
+         */
+        boolean escrever( String coluna, Set<String> resultado )
+        {
+            if ( vazio || inferior > superior || ( inferior == superior && !( inferiorIncluso && superiorIncluso ) ) )
+            {
+                return false;
+            }
+
+            // intervalo de um único ponto
+            if ( igual == null && inferior == superior )
+            {
+                igual = inferior;
+                textoIgual = formatarCondicaoWhere( coluna, "=", formatarValorNumericoWhere( inferior ) );
+            }
+
+            if ( igual != null )
+            {
+                if ( !dentro( igual ) || excluidos.containsKey( igual ) )
+                {
+                    return false;
+                }
+
+                resultado.add( textoIgual );
+                return true;
+            }
+
+            if ( textoInferior != null )
+            {
+                resultado.add( textoInferior );
+            }
+
+            if ( textoSuperior != null )
+            {
+                resultado.add( textoSuperior );
+            }
+
+            // valores excluídos fora do intervalo são redundantes
+            for ( Map.Entry<Double, String> excluido : excluidos.entrySet() )
+            {
+                if ( dentro( excluido.getKey() ) )
+                {
+                    resultado.add( excluido.getValue() );
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Verifica se o valor pertence ao intervalo.
+         */
+        private boolean dentro( double v )
+        {
+            return ( v > inferior || ( v == inferior && inferiorIncluso ) ) && ( v < superior || ( v == superior
+                            && superiorIncluso ) );
+        }
+    }
+}
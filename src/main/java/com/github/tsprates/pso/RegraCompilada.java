@@ -0,0 +1,185 @@
+package com.github.tsprates.pso;
+
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Regra (conjunção de condições) compilada em uma cadeia de {@link MethodHandle}s para o teste registro a registro.
+ * As colunas e os valores de cada condição são ligados aos handles na compilação, e a cadeia é montada com
+ * {@link MethodHandles#guardWithTest}, de modo que a regra é testada sem percorrer a lista de condições nem consultar
+ * o operador.
+ * <p>
+ * O ganho depende de o JIT especializar a cadeia no laço que a chama: no RegraCompiladaBenchmark (testes), cerca de
+ * metade do tempo da regra interpretada com uma única regra repetida, mas apenas 10% a 15% menos com 64 regras
+ * alternadas.
+ *
+ * @author thiago
+ */
+public class RegraCompilada
+{
+
+    private static final MethodHandle[] CONSTANTE = new MethodHandle[6];
+
+    private static final MethodHandle[] COLUNAS = new MethodHandle[6];
+
+    private static final MethodHandle VERDADEIRO;
+
+    private static final MethodHandle FALSO;
+
+    static
+    {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodType tipoConstante = MethodType.methodType( boolean.class, double[].class, double.class,
+                                                                int.class );
+        final MethodType tipoColunas = MethodType.methodType( boolean.class, double[].class, double[].class,
+                                                              int.class );
+        final String[] nomes = { "maior", "maiorIgual", "menor", "menorIgual", "igual", "diferente" };
+
+        try
+        {
+            for ( int op = 0; op < nomes.length; op++ )
+            {
+                CONSTANTE[op] = lookup.findStatic( RegraCompilada.class, nomes[op], tipoConstante );
+                COLUNAS[op] = lookup.findStatic( RegraCompilada.class, nomes[op], tipoColunas );
+            }
+        }
+        catch ( NoSuchMethodException | IllegalAccessException e )
+        {
+            throw new ExceptionInInitializerError( e );
+        }
+
+        VERDADEIRO = MethodHandles.dropArguments( MethodHandles.constant( boolean.class, true ), 0, int.class );
+        FALSO = MethodHandles.dropArguments( MethodHandles.constant( boolean.class, false ), 0, int.class );
+    }
+
+    private final MethodHandle teste;
+
+    /**
+     * Construtor. A cadeia fica em um {@link ConstantCallSite}, cujo alvo nunca muda.
+     *
+     * @param teste Handle (int)boolean que testa um registro.
+     */
+    private RegraCompilada( MethodHandle teste )
+    {
+        this.teste = new ConstantCallSite( teste ).dynamicInvoker();
+    }
+
+    /**
+     * Compila as condições de uma regra sobre as colunas no heap.
+     *
+     * @param regra Condições da regra.
+     * @param dados Base de dados em memória (colunas no heap).
+     * @return Regra compilada.
+     */
+    public static RegraCompilada compilar( List<Condicao> regra, Dados dados )
+    {
+        MethodHandle teste = VERDADEIRO;
+
+        // a primeira condição fica mais externa e é testada primeiro
+        for ( int i = regra.size() - 1; i >= 0; i-- )
+        {
+            final Condicao cond = regra.get( i );
+            final double[] a = dados.valores( cond.coluna() );
+
+            final MethodHandle condicao;
+
+            if ( cond.colunaValor() < 0 )
+            {
+                condicao = MethodHandles.insertArguments( CONSTANTE[cond.operador()], 0, a, cond.valor() );
+            }
+            else
+            {
+                condicao = MethodHandles.insertArguments( COLUNAS[cond.operador()], 0, a,
+                                                          dados.valores( cond.colunaValor() ) );
+            }
+
+            teste = teste == VERDADEIRO ? condicao : MethodHandles.guardWithTest( condicao, teste, FALSO );
+        }
+
+        return new RegraCompilada( teste );
+    }
+
+    /**
+     * Testa a regra para um registro.
+     *
+     * @param linha Índice do registro.
+     * @return Verdadeiro se o registro satisfaz todas as condições.
+     */
+    public boolean testar( int linha )
+    {
+        try
+        {
+            return (boolean) teste.invokeExact( linha );
+        }
+        catch ( Throwable e )
+        {
+            throw new RuntimeException( "Erro ao testar a regra compilada.", e );
+        }
+    }
+
+    private static boolean maior( double[] a, double v, int linha )
+    {
+        return a[linha] > v;
+    }
+
+    private static boolean maiorIgual( double[] a, double v, int linha )
+    {
+        return a[linha] >= v;
+    }
+
+    private static boolean menor( double[] a, double v, int linha )
+    {
+        return a[linha] < v;
+    }
+
+    private static boolean menorIgual( double[] a, double v, int linha )
+    {
+        return a[linha] <= v;
+    }
+
+    private static boolean igual( double[] a, double v, int linha )
+    {
+        return a[linha] == v;
+    }
+
+    private static boolean diferente( double[] a, double v, int linha )
+    {
+        final double x = a[linha];
+        return x < v || x > v;
+    }
+
+    private static boolean maior( double[] a, double[] b, int linha )
+    {
+        return a[linha] > b[linha];
+    }
+
+    private static boolean maiorIgual( double[] a, double[] b, int linha )
+    {
+        return a[linha] >= b[linha];
+    }
+
+    private static boolean menor( double[] a, double[] b, int linha )
+    {
+        return a[linha] < b[linha];
+    }
+
+    private static boolean menorIgual( double[] a, double[] b, int linha )
+    {
+        return a[linha] <= b[linha];
+    }
+
+    private static boolean igual( double[] a, double[] b, int linha )
+    {
+        return a[linha] == b[linha];
+    }
+
+    private static boolean diferente( double[] a, double[] b, int linha )
+    {
+        final double x = a[linha];
+        final double y = b[linha];
+        return x < y || x > y;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Repositório de partículas não dominadas compartilhado por várias threads. Cada classe mantém um instantâneo
+ * imutável da sua fronteira: a leitura não bloqueia, e a atualização copia o instantâneo, aplica a dominância e
+ * publica a nova lista (cópia na escrita). As escritas de uma classe são serializadas por uma trava própria da classe,
+ * de modo que classes diferentes são atualizadas em paralelo.
+ * <p>
+ * A partícula é descartada sem bloqueio quando o instantâneo lido já a domina (ou contém o mesmo fitness): a fronteira
+ * só melhora, portanto a partícula continuaria dominada. A cópia incluída mantém o fitness já calculado, sem nova
+ * avaliação, e as suas condições WHERE são geradas fora da trava.
+ *
+ * @author thiago
+ */
+public class RepositorioConcorrente
+{
+
+    private final Map<String, AtomicReference<List<Particula>>> instantaneos = new HashMap<>();
+
+    /**
+     * Construtor.
+     *
+     * @param classes Classes (nichos) do repositório.
+     */
+    public RepositorioConcorrente( Collection<String> classes )
+    {
+        for ( String cl : classes )
+        {
+            instantaneos.put( cl, new AtomicReference<>( Collections.<Particula>emptyList() ) );
+        }
+    }
+
+    /**
+     * Retorna as partículas não dominadas atuais da classe.
+     *
+     * @param classe Classe.
+     * @return Instantâneo imutável da fronteira.
+     */
+    public List<Particula> get( String classe )
+    {
+        return instantaneos.get( classe ).get();
+    }
+
+    /**
+     * Retorna os instantâneos atuais de todas as classes.
+     *
+     * @return Partículas não dominadas por classe.
+     */
+    public Map<String, List<Particula>> instantaneo()
+    {
+        final Map<String, List<Particula>> mapa = new HashMap<>();
+
+        for ( Map.Entry<String, AtomicReference<List<Particula>>> e : instantaneos.entrySet() )
+        {
+            mapa.put( e.getKey(), e.getValue().get() );
+        }
+
+        return mapa;
+    }
+
+    /**
+     * Adiciona uma cópia da partícula à fronteira da classe se ela não for dominada, removendo as partículas que ela
+     * domina. Mesma semântica de {@link FronteiraPareto#atualizarParticulasNaoDominadas}, exceto que a cópia não é
+     * reavaliada.
+     *
+     * @param classe    Classe.
+     * @param particula Partícula já avaliada.
+     * @return 1 se a partícula foi incluída, 0 se não há relação de dominância ou -1 se a partícula é dominada.
+     */
+    public int atualizar( String classe, Particula particula )
+    {
+        final AtomicReference<List<Particula>> ref = instantaneos.get( classe );
+        final double[] fit = particula.fitness();
+
+        final int previa = comparar( ref.get(), fit );
+
+        if ( previa <= 0 )
+        {
+            return previa;
+        }
+
+        // as condições WHERE são geradas antes da publicação: as threads leitoras somente leem a cópia
+        final Particula copia = particula.copiar();
+        copia.whereSql();
+
+        synchronized ( ref )
+        {
+            final List<Particula> atual = ref.get();
+            final List<Particula> nova = new ArrayList<>( atual.size() + 1 );
+
+            final double c = fit[0];
+            final double e = fit[1];
+
+            boolean domina = atual.isEmpty();
+            boolean ehDominada = false;
+            boolean repetida = false;
+
+            for ( int i = 0, size = atual.size(); i < size; i++ )
+            {
+                final Particula q = atual.get( i );
+                final double ci = q.fitness()[0];
+                final double ei = q.fitness()[1];
+
+                final boolean naoDominada = c > ci || e > ei;
+
+                domina |= naoDominada;
+                ehDominada |= ci >= c && ei >= e && ( ci > c || ei > e );
+
+                // partículas dominadas pela nova não são copiadas para o novo instantâneo
+                if ( c >= ci && e >= ei && naoDominada )
+                {
+                    continue;
+                }
+
+                repetida |= ci == c && ei == e;
+                nova.add( q );
+            }
+
+            if ( domina && !ehDominada && !repetida )
+            {
+                nova.add( copia );
+                ref.set( Collections.unmodifiableList( nova ) );
+                return 1;
+            }
+
+            if ( nova.size() != atual.size() )
+            {
+                ref.set( Collections.unmodifiableList( nova ) );
+            }
+
+            return ehDominada ? -1 : 0;
+        }
+    }
+
+    /**
+     * Verifica, sem bloqueio, se a partícula pode entrar na fronteira.
+     *
+     * @return 1 se pode entrar, 0 se já existe uma partícula com o mesmo fitness ou -1 se é dominada.
+     */
+    private static int comparar( List<Particula> fronteira, double[] fit )
+    {
+        int r = 1;
+
+        for ( int i = 0, size = fronteira.size(); i < size; i++ )
+        {
+            final double[] q = fronteira.get( i ).fitness();
+
+            if ( q[0] >= fit[0] && q[1] >= fit[1] && ( q[0] > fit[0] || q[1] > fit[1] ) )
+            {
+                return -1;
+            }
+
+            if ( q[0] == fit[0] && q[1] == fit[1] )
+            {
+                r = 0;
+            }
+        }
+
+        return r;
+    }
+}
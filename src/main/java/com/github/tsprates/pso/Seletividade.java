@@ -0,0 +1,177 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Estimativa da seletividade (fração de registros que satisfazem) de cada condição, usada para ordenar as condições de
+ * uma regra da mais seletiva para a menos seletiva. Assim a conjunção tende a descartar a maior parte dos registros
+ * (ou blocos de registros) nos primeiros testes.
+ * <p>
+ * Condições de valor numérico são estimadas pelo índice ordenado (tamanho do intervalo na base inteira, sem distinguir
+ * a pasta). As demais, e todas quando não há índice, pela taxa observada nas avaliações anteriores, acumulada por
+ * coluna, operador e coluna comparada. As taxas não são sincronizadas: com várias ilhas, atualizações concorrentes
+ * podem se perder, o que só altera a ordem das condições, nunca o resultado da avaliação.
+ *
+ * @author thiago
+ */
+public class Seletividade
+{
+
+    private final IndiceOrdenado indice;
+
+    private final int numColunas;
+
+    private final double numLinhas;
+
+    // contagens observadas: [coluna][operador * (numColunas + 1) + colunaValor + 1]
+    private final long[][] testados;
+
+    private final long[][] aceitos;
+
+    private ColunasDerivadas derivadas;
+
+    /**
+     * Construtor.
+     *
+     * @param dados  Base de dados em memória.
+     * @param indice Índice ordenado por coluna ou null.
+     */
+    public Seletividade( Dados dados, IndiceOrdenado indice )
+    {
+        this.indice = indice;
+        this.numColunas = dados.numColunas();
+        this.numLinhas = Math.max( 1, dados.numLinhas() );
+        this.testados = new long[numColunas][6 * ( numColunas + 1 )];
+        this.aceitos = new long[numColunas][6 * ( numColunas + 1 )];
+    }
+
+    /**
+     * Seta as colunas de diferença. Condições entre atributos cujo par está materializado passam a ser estimadas pelo
+     * índice da coluna de diferença.
+     *
+     * @param derivadas Colunas derivadas ou null.
+     */
+    public void setDerivadas( ColunasDerivadas derivadas )
+    {
+        this.derivadas = derivadas;
+    }
+
+    /**
+     * Estima a fração de registros que satisfazem a condição.
+     *
+     * @param cond Condição.
+     * @return Seletividade entre 0 e 1.
+     */
+    public double estimar( Condicao cond )
+    {
+        if ( indice != null && cond.colunaValor() < 0 )
+        {
+            return estimar( indice, cond );
+        }
+
+        final IndiceOrdenado diferenca = derivadas != null ? derivadas.indice( cond ) : null;
+
+        if ( diferenca != null )
+        {
+            return estimar( diferenca, ColunasDerivadas.limiar( cond ) );
+        }
+
+        final int i = posicao( cond );
+
+        // estimativa suavizada (0.5 sem observações)
+        return ( aceitos[cond.coluna()][i] + 1.0 ) / ( testados[cond.coluna()][i] + 2.0 );
+    }
+
+    /**
+     * Registra quantos registros testados satisfizeram a condição.
+     *
+     * @param cond     Condição.
+     * @param testados Número de registros testados.
+     * @param aceitos  Número de registros que satisfizeram a condição.
+     */
+    public void observar( Condicao cond, int testados, int aceitos )
+    {
+        final int i = posicao( cond );
+
+        this.testados[cond.coluna()][i] += testados;
+        this.aceitos[cond.coluna()][i] += aceitos;
+    }
+
+    /**
+     * Ordena as condições da mais seletiva para a menos seletiva.
+     *
+     * @param regra Condições da regra.
+     * @return Nova lista ordenada.
+     */
+    public List<Condicao> ordenar( List<Condicao> regra )
+    {
+        final int size = regra.size();
+
+        if ( size < 2 )
+        {
+            return regra;
+        }
+
+        final List<Condicao> ordenada = new ArrayList<>( regra );
+        final double[] estimativas = new double[size];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            estimativas[i] = estimar( regra.get( i ) );
+        }
+
+        final List<Integer> posicoes = new ArrayList<>( size );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            posicoes.add( i );
+        }
+
+        Collections.sort( posicoes, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer a, Integer b )
+            {
+                return Double.compare( estimativas[a], estimativas[b] );
+            }
+        } );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            ordenada.set( i, regra.get( posicoes.get( i ) ) );
+        }
+
+        return ordenada;
+    }
+
+    /**
+     * Estima a seletividade de uma condição de valor numérico pelo tamanho do intervalo no índice (base inteira).
+     */
+    private double estimar( IndiceOrdenado indice, Condicao cond )
+    {
+        if ( cond.limiar() )
+        {
+            final int[] intervalo = indice.intervalo( cond );
+            return ( intervalo[1] - intervalo[0] ) / numLinhas;
+        }
+
+        // != v: válidos menos os iguais a v
+        final double[] ord = indice.ordenados( cond.coluna() );
+        final int validos = indice.numValidos( cond.coluna() );
+        final int iguais = IndiceOrdenado.limiteSuperior( ord, validos, cond.valor() )
+                        - IndiceOrdenado.limiteInferior( ord, validos, cond.valor() );
+
+        return ( validos - iguais ) / numLinhas;
+    }
+
+    /**
+     * Posição das contagens da condição (operador e coluna comparada).
+     */
+    private int posicao( Condicao cond )
+    {
+        return cond.operador() * ( numColunas + 1 ) + cond.colunaValor() + 1;
+    }
+}
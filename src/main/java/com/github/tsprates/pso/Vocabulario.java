@@ -0,0 +1,348 @@
+package com.github.tsprates.pso;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.github.tsprates.pso.Formatador.formatarCondicaoWhere;
+import static com.github.tsprates.pso.Formatador.formatarValorNumericoWhere;
+
+/**
+ * Vocabulário fixo de condições candidatas: para cada coluna, os operadores de limiar combinados com os quantis dos
+ * valores. A posição de uma partícula passa a ser um conjunto de bits sobre o vocabulário, de modo que a mutação e o
+ * cruzamento são operações sobre bits, e cada termo possui o mapa de bits pré-calculado dos registros que o
+ * satisfazem: avaliar uma regra é uma interseção de mapas de bits.
+ * <p>
+ * Os termos de uma coluna são numerados por operador e, dentro do operador, em ordem crescente de limiar, o que
+ * permite mover o limiar somando um passo ao termo.
+ *
+ * @author thiago
+ */
+public class Vocabulario
+{
+
+    private static final String[] OPERADORES = { ">", ">=", "<", "<=" };
+
+    private final int[] inicioColuna;
+
+    private final int[] numLimiares;
+
+    private final int[] colunaTermo;
+
+    private final String[] textos;
+
+    private final long[][] mascaras;
+
+    /**
+     * Construtor. Calcula os limiares (quantis) e os mapas de bits de todos os termos.
+     *
+     * @param dados       Base de dados em memória.
+     * @param indice      Índice ordenado por coluna.
+     * @param numQuantis  Número de intervalos entre quantis por coluna.
+     */
+    public Vocabulario( Dados dados, IndiceOrdenado indice, int numQuantis )
+    {
+        if ( numQuantis < 1 )
+        {
+            throw new RuntimeException( "Número de quantis do vocabulário inválido." );
+        }
+
+        final int numCols = dados.numColunas();
+        final int numLinhas = dados.numLinhas();
+
+        final double[][] limiares = new double[numCols][];
+
+        this.inicioColuna = new int[numCols + 1];
+        this.numLimiares = new int[numCols];
+
+        for ( int col = 0; col < numCols; col++ )
+        {
+            limiares[col] = Discretizacao.calcularBordas( indice.ordenados( col ), indice.numValidos( col ),
+                                                          numQuantis );
+            numLimiares[col] = limiares[col].length;
+            inicioColuna[col + 1] = inicioColuna[col] + OPERADORES.length * numLimiares[col];
+        }
+
+        final int numTermos = inicioColuna[numCols];
+
+        this.colunaTermo = new int[numTermos];
+        this.textos = new String[numTermos];
+        this.mascaras = new long[numTermos][];
+
+        for ( int col = 0; col < numCols; col++ )
+        {
+            final double[] ord = indice.ordenados( col );
+            final int[] ordem = indice.ordem( col );
+            final int validos = indice.numValidos( col );
+            final int n = numLimiares[col];
+
+            // registros válidos e registros abaixo de cada limiar (acumulados na ordem crescente dos valores)
+            final long[] todos = Bits.criar( numLinhas );
+
+            for ( int pos = 0; pos < validos; pos++ )
+            {
+                Bits.marcar( todos, ordem[pos] );
+            }
+
+            final long[] acumulado = Bits.criar( numLinhas );
+            int pos = 0;
+
+            for ( int j = 0; j < n; j++ )
+            {
+                final double limiar = limiares[col][j];
+                final int lt = IndiceOrdenado.limiteInferior( ord, validos, limiar );
+                final int le = IndiceOrdenado.limiteSuperior( ord, validos, limiar );
+
+                for ( ; pos < lt; pos++ )
+                {
+                    Bits.marcar( acumulado, ordem[pos] );
+                }
+
+                final long[] menor = acumulado.clone();
+
+                for ( ; pos < le; pos++ )
+                {
+                    Bits.marcar( acumulado, ordem[pos] );
+                }
+
+                final long[] menorIgual = acumulado.clone();
+
+                // > v: válidos e não <= v; >= v: válidos e não < v
+                final long[] maior = new long[todos.length];
+                final long[] maiorIgual = new long[todos.length];
+
+                for ( int w = 0; w < todos.length; w++ )
+                {
+                    maior[w] = todos[w] & ~menorIgual[w];
+                    maiorIgual[w] = todos[w] & ~menor[w];
+                }
+
+                final long[][] porOperador = { maior, maiorIgual, menor, menorIgual };
+                final String valor = formatarValorNumericoWhere( limiar );
+
+                for ( int op = 0; op < OPERADORES.length; op++ )
+                {
+                    final int termo = inicioColuna[col] + op * n + j;
+
+                    colunaTermo[termo] = col;
+                    textos[termo] = formatarCondicaoWhere( dados.coluna( col ), OPERADORES[op], valor );
+                    mascaras[termo] = porOperador[op];
+                }
+            }
+        }
+    }
+
+    /**
+     * Retorna o número de termos do vocabulário.
+     *
+     * @return Número de termos.
+     */
+    public int numTermos()
+    {
+        return textos.length;
+    }
+
+    /**
+     * Retorna o número de palavras de 64 bits de uma posição.
+     *
+     * @return Número de palavras.
+     */
+    public int numPalavras()
+    {
+        return Bits.palavras( textos.length );
+    }
+
+    /**
+     * Retorna a condição WHERE de um termo.
+     *
+     * @param termo Índice do termo.
+     * @return Condição WHERE.
+     */
+    public String texto( int termo )
+    {
+        return textos[termo];
+    }
+
+    /**
+     * Converte uma posição em condições WHERE.
+     *
+     * @param termos Conjunto de bits dos termos.
+     * @return Conjunto ordenado de condições WHERE.
+     */
+    public Set<String> condicoes( long[] termos )
+    {
+        final Set<String> where = new TreeSet<>();
+
+        for ( int w = 0; w < termos.length; w++ )
+        {
+            for ( long palavra = termos[w]; palavra != 0; palavra &= palavra - 1 )
+            {
+                where.add( textos[( w << 6 ) + Long.numberOfTrailingZeros( palavra )] );
+            }
+        }
+
+        return where;
+    }
+
+    /**
+     * Conta os verdadeiros positivos e os registros cobertos pela interseção dos mapas de bits dos termos.
+     *
+     * @param termos        Conjunto de bits dos termos.
+     * @param mascara       Registros considerados (treinamento ou teste); é alterada.
+     * @param mascaraClasse Registros da classe da regra.
+     * @return Array contendo os verdadeiros positivos e o total de registros cobertos.
+     */
+    public int[] contar( long[] termos, long[] mascara, long[] mascaraClasse )
+    {
+        // o último termo é aplicado na mesma passagem das contagens
+        long[] ultimo = null;
+
+        for ( int w = 0; w < termos.length; w++ )
+        {
+            for ( long palavra = termos[w]; palavra != 0; palavra &= palavra - 1 )
+            {
+                if ( ultimo != null )
+                {
+                    long resto = 0;
+
+                    for ( int i = 0; i < mascara.length; i++ )
+                    {
+                        resto |= mascara[i] &= ultimo[i];
+                    }
+
+                    if ( resto == 0 )
+                    {
+                        return new int[] { 0, 0 };
+                    }
+                }
+
+                ultimo = mascaras[( w << 6 ) + Long.numberOfTrailingZeros( palavra )];
+            }
+        }
+
+        int tp = 0;
+        int cobertos = 0;
+
+        for ( int i = 0; i < mascara.length; i++ )
+        {
+            final long x = ultimo == null ? mascara[i] : ( mascara[i] &= ultimo[i] );
+            cobertos += Long.bitCount( x );
+            tp += Long.bitCount( x & mascaraClasse[i] );
+        }
+
+        return new int[] { tp, cobertos };
+    }
+
+    /**
+     * Testa os termos para um registro.
+     *
+     * @param termos Conjunto de bits dos termos.
+     * @param linha  Índice do registro.
+     * @return Verdadeiro se o registro satisfaz todos os termos.
+     */
+    public boolean testar( long[] termos, int linha )
+    {
+        for ( int w = 0; w < termos.length; w++ )
+        {
+            for ( long palavra = termos[w]; palavra != 0; palavra &= palavra - 1 )
+            {
+                if ( !Bits.marcado( mascaras[( w << 6 ) + Long.numberOfTrailingZeros( palavra )], linha ) )
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Sorteia um termo: coluna, operador e limiar uniformes.
+     *
+     * @param random Gerador de números aleatórios.
+     * @return Índice do termo ou -1 se o vocabulário estiver vazio.
+     */
+    public int sortear( Random random )
+    {
+        if ( textos.length == 0 )
+        {
+            return -1;
+        }
+
+        int col;
+
+        do
+        {
+            col = random.nextInt( numLimiares.length );
+        }
+        while ( numLimiares[col] == 0 );
+
+        return inicioColuna[col] + random.nextInt( OPERADORES.length ) * numLimiares[col] + random.nextInt(
+                        numLimiares[col] );
+    }
+
+    /**
+     * Move o limiar do termo, mantendo a coluna e o operador.
+     *
+     * @param termo Índice do termo.
+     * @param passo Número de quantis (positivo ou negativo).
+     * @return Índice do novo termo (limiar limitado aos extremos da coluna).
+     */
+    public int mover( int termo, int passo )
+    {
+        final int col = colunaTermo[termo];
+        final int n = numLimiares[col];
+        final int rel = termo - inicioColuna[col];
+        final int limiar = Math.max( 0, Math.min( n - 1, rel % n + passo ) );
+
+        return inicioColuna[col] + ( rel / n ) * n + limiar;
+    }
+
+    /**
+     * Troca o operador do termo, mantendo a coluna e o limiar.
+     *
+     * @param termo    Índice do termo.
+     * @param operador Índice do novo operador (0 a 3: &gt;, &gt;=, &lt;, &lt;=).
+     * @return Índice do novo termo.
+     */
+    public int trocarOperador( int termo, int operador )
+    {
+        final int col = colunaTermo[termo];
+        final int n = numLimiares[col];
+        final int rel = termo - inicioColuna[col];
+
+        return inicioColuna[col] + operador * n + rel % n;
+    }
+
+    /**
+     * Retorna a posição do limiar do termo entre os limiares da sua coluna.
+     *
+     * @param termo Índice do termo.
+     * @return Posição do limiar (0 é o menor).
+     */
+    public int indiceLimiar( int termo )
+    {
+        return ( termo - inicioColuna[colunaTermo[termo]] ) % numLimiares[colunaTermo[termo]];
+    }
+
+    /**
+     * Retorna o número de limiares da coluna do termo.
+     *
+     * @param termo Índice do termo.
+     * @return Número de limiares.
+     */
+    public int numLimiares( int termo )
+    {
+        return numLimiares[colunaTermo[termo]];
+    }
+
+    /**
+     * Retorna o número de operadores de cada coluna.
+     *
+     * @return Número de operadores.
+     */
+    public int numOperadores()
+    {
+        return OPERADORES.length;
+    }
+}
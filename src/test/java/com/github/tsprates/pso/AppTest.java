@@ -4,10 +4,16 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.mockito.Mockito.when;
 
@@ -205,4 +211,186 @@ public class AppTest
         assertEquals( 3, parts.size() );
         assertEquals( "[0.2, 0.3, 1.0][0.3, 0.4, 1.0][0.5, 0.1, 1.0]", depois.toString() );
     }
+
+    public void test_enxame_igual_a_lista_de_nao_dominadas()
+    {
+        final Random random = new Random( 5L );
+        final double[][] fits = new double[300][];
+
+        for ( int i = 0; i < fits.length; i++ )
+        {
+            // poucos valores distintos para testar empates
+            fits[i] = new double[] { random.nextInt( 8 ) / 8.0, random.nextInt( 8 ) / 8.0, random.nextDouble() };
+        }
+
+        Fitness fitness = Mockito.mock( Fitness.class );
+        when( fitness.calcular( Mockito.any( Particula.class ) ) ).thenAnswer( new Answer<double[]>()
+        {
+            @Override
+            public double[] answer( InvocationOnMock invocacao )
+            {
+                final String where = ( (Particula) invocacao.getArguments()[0] ).whereSql();
+                return fits[Integer.parseInt( where.substring( 5, where.length() - 1 ) )].clone();
+            }
+        } );
+
+        final List<Particula> lista = new ArrayList<>();
+        final Enxame enxame = new Enxame();
+
+        for ( int i = 0; i < fits.length; i++ )
+        {
+            final Particula part = new Particula( new HashSet<>( Arrays.asList( "x > " + i ) ), "a", fitness,
+                                                  random );
+
+            assertEquals( FronteiraPareto.atualizarParticulasNaoDominadas( lista, part ),
+                          enxame.atualizarNaoDominadas( part ) );
+            assertEquals( lista.size(), enxame.size() );
+
+            for ( int j = 0; j < lista.size(); j++ )
+            {
+                assertEquals( lista.get( j ).whereSql(), enxame.get( j ).whereSql() );
+                assertEquals( lista.get( j ).fitness()[1], enxame.fitness( j, 1 ) );
+                assertSame( enxame.get( j ),
+                            Distancia.retornarParticulaMaisProxima( enxame, enxame.get( j ) ) );
+            }
+
+            assertEquals( Distancia.retornarParticulaMaisProxima( lista, part ).whereSql(),
+                        Distancia.retornarParticulaMaisProxima( enxame, part ).whereSql() );
+        }
+
+        // o fitness contíguo acompanha a avaliação das partículas
+        final Particula primeira = enxame.get( 0 );
+        primeira.setFitness( new double[] { 0.9, 0.8, 0.7 } );
+        assertEquals( 0.8, enxame.fitness( 0, 1 ) );
+
+        enxame.clear();
+        assertNull( primeira.enxame() );
+    }
+
+    public void test_repositorio_concorrente_igual_a_lista_de_nao_dominadas() throws Exception
+    {
+        final Random random = new Random( 7L );
+        final double[][] fits = new double[300][];
+
+        for ( int i = 0; i < fits.length; i++ )
+        {
+            fits[i] = new double[] { random.nextInt( 8 ) / 8.0, random.nextInt( 8 ) / 8.0, random.nextDouble() };
+        }
+
+        final Fitness fitness = Mockito.mock( Fitness.class );
+        when( fitness.calcular( Mockito.any( Particula.class ) ) ).thenAnswer( new Answer<double[]>()
+        {
+            @Override
+            public double[] answer( InvocationOnMock invocacao )
+            {
+                final String where = ( (Particula) invocacao.getArguments()[0] ).whereSql();
+                return fits[Integer.parseInt( where.substring( 5, where.length() - 1 ) )].clone();
+            }
+        } );
+
+        final List<Particula> lista = new ArrayList<>();
+        final RepositorioConcorrente sequencial = new RepositorioConcorrente( Arrays.asList( "a" ) );
+        final List<Particula> parts = new ArrayList<>();
+
+        for ( int i = 0; i < fits.length; i++ )
+        {
+            final Particula part = new Particula( new HashSet<>( Arrays.asList( "x > " + i ) ), "a", fitness,
+                                                  random );
+            parts.add( part );
+
+            assertEquals( FronteiraPareto.atualizarParticulasNaoDominadas( lista, part ),
+                          sequencial.atualizar( "a", part ) );
+            assertEquals( lista.size(), sequencial.get( "a" ).size() );
+
+            for ( int j = 0; j < lista.size(); j++ )
+            {
+                assertEquals( lista.get( j ).whereSql(), sequencial.get( "a" ).get( j ).whereSql() );
+            }
+        }
+
+        // em paralelo, a fronteira final tem os mesmos valores de fitness
+        final RepositorioConcorrente paralelo = new RepositorioConcorrente( Arrays.asList( "a" ) );
+        final Thread[] threads = new Thread[4];
+
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            final int inicio = t;
+
+            threads[t] = new Thread( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = inicio; i < parts.size(); i += threads.length )
+                    {
+                        paralelo.atualizar( "a", parts.get( i ) );
+                    }
+                }
+            } );
+            threads[t].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        final Set<String> esperado = new TreeSet<>();
+        final Set<String> obtido = new TreeSet<>();
+
+        for ( Particula p : lista )
+        {
+            esperado.add( p.fitness()[0] + ":" + p.fitness()[1] );
+        }
+
+        for ( Particula p : paralelo.get( "a" ) )
+        {
+            obtido.add( p.fitness()[0] + ":" + p.fitness()[1] );
+        }
+
+        assertEquals( esperado, obtido );
+        assertEquals( lista.size(), paralelo.get( "a" ).size() );
+    }
+
+    public void test_repositorio_concorrente_sem_reavaliacao()
+    {
+        final Fitness fitness = Mockito.mock( Fitness.class );
+        when( fitness.calcular( Mockito.any( Particula.class ) ) ).thenReturn( new double[] { 0.5, 0.2, 0.8 } );
+
+        final Particula part = new Particula( new HashSet<>( Arrays.asList( "x > 1.000" ) ), "a", fitness,
+                                              new Random( 1L ) );
+        final RepositorioConcorrente repositorio = new RepositorioConcorrente( Arrays.asList( "a" ) );
+
+        // a cópia incluída mantém o fitness calculado na criação da partícula
+        assertEquals( 1, repositorio.atualizar( "a", part ) );
+
+        final Particula copia = repositorio.get( "a" ).get( 0 );
+        assertNotSame( part, copia );
+        assertTrue( Arrays.equals( part.fitness(), copia.fitness() ) );
+        assertEquals( part.whereSql(), copia.whereSql() );
+        Mockito.verify( fitness, Mockito.times( 1 ) ).calcular( Mockito.any( Particula.class ) );
+    }
+
+    public void test_particula_alterada_somente_quando_posicao_ou_classe_mudam()
+    {
+        Fitness fitness = Mockito.mock( Fitness.class );
+        when( fitness.calcular( Mockito.any( Particula.class ) ) ).thenReturn( new double[] { 0.5, 0.2, 0.8 } );
+
+        Particula part = new Particula( new HashSet<>( Arrays.asList( "x > 1.000", "y < 2.000" ) ), "a", fitness,
+                                        new Random( 1L ) );
+        assertFalse( part.alterada() );
+
+        part.setPosicao( Arrays.asList( "y < 2.000", "x > 1.000", "x > 1.000" ) );
+        part.setClasse( "a" );
+        assertFalse( part.alterada() );
+
+        part.setPosicao( Arrays.asList( "x > 1.000" ) );
+        assertTrue( part.alterada() );
+
+        part.avaliar();
+        assertFalse( part.alterada() );
+
+        part.setClasse( "b" );
+        assertTrue( part.alterada() );
+    }
 }
@@ -0,0 +1,103 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Testes da avaliação de lotes de regras em uma passagem por blocos.
+ */
+public class AvaliadorEmBlocosTest
+                extends DadosDeTeste
+{
+
+    private static final String[][] WHERE = { { "x > 2.250", "y < z" }, { "x != 2.000" }, { "y = 3.000", "z >= x" } };
+
+    private static final int[] CLASSES_LOTE = { 0, 1, 2 };
+
+    public void test_lote_em_blocos_igual_a_varredura_completa()
+    {
+        final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( dados, kpastas, 100 );
+        emBlocos.atualizarPasta( 5 );
+
+        verificar( emBlocos, dados, 5 );
+    }
+
+    public void test_bloco_maior_que_a_tabela()
+    {
+        final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( copiarForaDoHeap(), kpastas,
+                                                                  10 * kpastas.numLinhas() );
+        emBlocos.atualizarPasta( 8 );
+
+        verificar( emBlocos, dados, 8 );
+    }
+
+    public void test_regra_sem_condicoes_cobre_toda_a_fase()
+    {
+        final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( dados, kpastas, 64 );
+        emBlocos.atualizarPasta( 1 );
+
+        final List<List<Condicao>> regras = new ArrayList<>();
+        regras.add( Collections.<Condicao>emptyList() );
+
+        final int[] treinamento = emBlocos.contar( regras, new int[] { 2 }, true )[0];
+        final int[] teste = emBlocos.contar( regras, new int[] { 2 }, false )[0];
+
+        assertEquals( kpastas.tamanhoClasse( 2 ) - kpastas.contar( 2, 1 ), treinamento[0] );
+        assertEquals( kpastas.numLinhas() - kpastas.tamanho( 1 ), treinamento[1] );
+        assertEquals( kpastas.contar( 2, 1 ), teste[0] );
+        assertEquals( kpastas.tamanho( 1 ), teste[1] );
+
+        // lote vazio
+        assertEquals( 0, emBlocos.contar( new ArrayList<List<Condicao>>(), new int[0], true ).length );
+    }
+
+    public void test_configuracao_invalida()
+    {
+        try
+        {
+            new AvaliadorEmBlocos( dados, kpastas, 63 );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // bloco menor que uma palavra da máscara
+        }
+
+        final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( dados, kpastas, 128 );
+
+        try
+        {
+            emBlocos.setZonas( new MapaDeZonas( dados, 64 ) );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // os blocos do mapa de zonas devem coincidir com os da passagem
+        }
+    }
+
+    private void verificar( AvaliadorEmBlocos emBlocos, Dados dados, int k )
+    {
+        final List<List<Condicao>> regras = new ArrayList<>();
+
+        for ( String[] w : WHERE )
+        {
+            regras.add( regra( Arrays.asList( w ) ) );
+        }
+
+        for ( boolean treinamento : new boolean[] { true, false } )
+        {
+            final int[][] obtido = emBlocos.contar( regras, CLASSES_LOTE, treinamento );
+
+            for ( int i = 0; i < regras.size(); i++ )
+            {
+                final int[] esperado = varrer( dados, regras.get( i ), CLASSES_LOTE[i], treinamento, k );
+
+                assertEquals( Arrays.toString( WHERE[i] ), esperado[0], obtido[i][0] );
+                assertEquals( Arrays.toString( WHERE[i] ), esperado[1], obtido[i][1] );
+            }
+        }
+    }
+}
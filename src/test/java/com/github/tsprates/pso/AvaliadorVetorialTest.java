@@ -0,0 +1,153 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes da avaliação de regras coluna a coluna.
+ */
+public class AvaliadorVetorialTest
+                extends DadosDeTeste
+{
+
+    public void test_colunas_fora_do_heap()
+    {
+        final Dados foraDoHeap = copiarForaDoHeap();
+
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( foraDoHeap, kpastas );
+        varredura.atualizarPasta( 2 );
+
+        final String[][] regras = { { "x > 2.250", "y < z" }, { "x != 2.000", "z <= y" }, { "y = 3.000" } };
+
+        for ( String[] where : regras )
+        {
+            final List<Condicao> regra = regra( Arrays.asList( where ) );
+
+            for ( boolean treinamento : new boolean[] { true, false } )
+            {
+                final int[] esperado = varrer( regra, 0, treinamento, 2 );
+                final int[] obtido = varredura.contar( regra, 0, treinamento );
+
+                assertEquals( Arrays.toString( where ), esperado[0], obtido[0] );
+                assertEquals( Arrays.toString( where ), esperado[1], obtido[1] );
+            }
+        }
+    }
+
+    public void test_mascaras_sem_registros_alem_do_fim()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        varredura.atualizarPasta( 3 );
+
+        final long[] treinamento = varredura.criarMascara( true );
+        final long[] teste = varredura.criarMascara( false );
+
+        assertEquals( kpastas.numLinhas() - kpastas.tamanho( 3 ), Bits.contar( treinamento ) );
+        assertEquals( kpastas.tamanho( 3 ), Bits.contar( teste ) );
+
+        // a última palavra não possui bits além do último registro
+        final int resto = kpastas.numLinhas() % 64;
+
+        if ( resto > 0 )
+        {
+            assertEquals( 0L, treinamento[treinamento.length - 1] >>> resto );
+        }
+
+        // != aceita todos os valores válidos, nenhum bit além do último registro
+        final long[] diferente = varredura.cobrir( regra( Arrays.asList( "x != 1000.000" ) ), true );
+        assertEquals( varrer( regra( Arrays.asList( "x != 1000.000" ) ), 0, true, 3 )[1], Bits.contar( diferente ) );
+    }
+
+    public void test_ausentes_nunca_satisfazem()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        varredura.atualizarPasta( 0 );
+
+        int validos = 0;
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            validos += kpastas.pasta( linha ) != 0 && !Double.isNaN( dados.valor( 0, linha ) ) ? 1 : 0;
+        }
+
+        // x = x e x >= x excluem os ausentes, x != x não cobre nenhum registro
+        assertEquals( validos, varredura.contar( regra( Arrays.asList( "x = x" ) ), 0, true )[1] );
+        assertEquals( validos, varredura.contar( regra( Arrays.asList( "x >= x" ) ), 0, true )[1] );
+        assertEquals( 0, varredura.contar( regra( Arrays.asList( "x != x" ) ), 0, true )[1] );
+        assertEquals( 0, varredura.contar( regra( Arrays.asList( "x < x" ) ), 0, true )[1] );
+    }
+
+    public void test_bloco_parcial_igual_a_condicao()
+    {
+        final int len = 37;
+        final double[][] bloco = new double[COLUNAS.size()][len];
+
+        for ( int col = 0; col < COLUNAS.size(); col++ )
+        {
+            dados.copiar( col, 0, bloco[col], len );
+        }
+
+        for ( String where : new String[] { "x > 2.000", "y <= 3.500", "x < z", "z <= y", "x != y", "y = 3.000" } )
+        {
+            final Condicao cond = Condicao.interpretar( where, dados );
+            final long[] mascara = { -1L };
+
+            final int cobertos = AvaliadorVetorial.avaliarBloco( cond, bloco, len, mascara );
+            assertEquals( where, Bits.contar( mascara ), cobertos );
+
+            for ( int linha = 0; linha < 64; linha++ )
+            {
+                final boolean esperado = linha < len && cond.testar( dados, linha );
+                assertEquals( where, esperado, Bits.marcado( mascara, linha ) );
+            }
+        }
+    }
+
+    public void test_contagem_na_mesma_passagem()
+    {
+        final AvaliadorVetorial porZonas = new AvaliadorVetorial( dados, kpastas );
+        porZonas.setZonas( new MapaDeZonas( dados, 64 ) );
+
+        final AvaliadorVetorial[] avaliadores = { new AvaliadorVetorial( dados, kpastas ),
+                                                  new AvaliadorVetorial( copiarForaDoHeap(), kpastas ), porZonas };
+
+        for ( AvaliadorVetorial varredura : avaliadores )
+        {
+            varredura.atualizarPasta( 1 );
+
+            final long[] mascara = varredura.criarMascara( true );
+
+            // a máscara vai sendo restringida até ficar vazia
+            for ( String where : new String[] { "x >= 0.500", "y != 3.000", "x < z", "z > 100.000", "y > 1.000" } )
+            {
+                final int cobertos = varredura.avaliar( Condicao.interpretar( where, dados ), mascara );
+                assertEquals( where, Bits.contar( mascara ), cobertos );
+            }
+        }
+    }
+
+    public void test_ordem_por_seletividade()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        final Seletividade seletividade = new Seletividade( dados, indice );
+        varredura.setSeletividade( seletividade );
+        varredura.atualizarPasta( 4 );
+
+        final List<Condicao> regra = regra( Arrays.asList( "x >= 0.500", "y != 3.000", "x < z", "z > 5.500" ) );
+
+        assertEquals( "z > 5.500", seletividade.ordenar( regra ).get( 0 ).toString() );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            for ( boolean treinamento : new boolean[] { true, false } )
+            {
+                final int[] esperado = varrer( regra, 2, treinamento, 4 );
+                final int[] obtido = varredura.contar( regra, 2, treinamento );
+
+                assertEquals( esperado[0], obtido[0] );
+                assertEquals( esperado[1], obtido[1] );
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Banco de dados simulado sobre a base de dados em memória dos testes: responde às consultas do PSO (colunas,
+ * classes, IDs por classe, máximos e mínimos, carga das colunas e cursor) e às consultas dos IDs cobertos por uma
+ * cláusula WHERE. As conexões são objetos simulados (Mockito), sem servidor.
+ */
+public class BaseSimulada
+{
+
+    private final Dados dados;
+
+    private final KPastas kpastas;
+
+    private final List<String> classes;
+
+    private final List<String> colunas;
+
+    private final AtomicInteger numConsultas = new AtomicInteger();
+
+    private final AtomicInteger simultaneas = new AtomicInteger();
+
+    private final AtomicInteger maxSimultaneas = new AtomicInteger();
+
+    private volatile long atraso;
+
+    private volatile int falha = Integer.MAX_VALUE;
+
+    private volatile Runnable aoConsultar;
+
+    private final AtomicInteger numConsultasIds = new AtomicInteger();
+
+    /**
+     * Construtor.
+     *
+     * @param dados   Valores das colunas (ausentes como NaN, lidos como NULL).
+     * @param kpastas K-Pastas com os IDs e as classes dos registros.
+     * @param classes Nomes das classes.
+     * @param colunas Nomes das colunas.
+     */
+    public BaseSimulada( Dados dados, KPastas kpastas, List<String> classes, List<String> colunas )
+    {
+        this.dados = dados;
+        this.kpastas = kpastas;
+        this.classes = classes;
+        this.colunas = colunas;
+    }
+
+    /**
+     * Tempo de cada consulta dos IDs, para que as consultas simultâneas se sobreponham.
+     *
+     * @param milissegundos Atraso em milissegundos.
+     */
+    public void setAtraso( long milissegundos )
+    {
+        this.atraso = milissegundos;
+    }
+
+    /**
+     * Falha (SQLException) em todas as consultas dos IDs a partir da consulta indicada.
+     *
+     * @param consulta Número da primeira consulta dos IDs com falha (a partir de 1).
+     */
+    public void setFalha( int consulta )
+    {
+        this.falha = consulta;
+    }
+
+    /**
+     * Ação executada a cada consulta dos IDs, na thread da consulta.
+     *
+     * @param aoConsultar Ação.
+     */
+    public void setAoConsultar( Runnable aoConsultar )
+    {
+        this.aoConsultar = aoConsultar;
+    }
+
+    /**
+     * Número de consultas executadas.
+     */
+    public int numConsultas()
+    {
+        return numConsultas.get();
+    }
+
+    /**
+     * Maior número de consultas abertas ao mesmo tempo.
+     */
+    public int maxSimultaneas()
+    {
+        return maxSimultaneas.get();
+    }
+
+    /**
+     * Abre uma nova conexão simulada.
+     *
+     * @return Conexão.
+     */
+    public Connection conectar()
+    {
+        return Mockito.mock( Connection.class, new Answer<Object>()
+        {
+            @Override
+            public Object answer( InvocationOnMock invocation ) throws Throwable
+            {
+                switch ( invocation.getMethod().getName() )
+                {
+                    case "prepareStatement":
+                        return preparar( (String) invocation.getArguments()[0] );
+                    case "getAutoCommit":
+                        return true;
+                    default:
+                        return Mockito.RETURNS_DEFAULTS.answer( invocation );
+                }
+            }
+        } );
+    }
+
+    private PreparedStatement preparar( final String sql )
+    {
+        return Mockito.mock( PreparedStatement.class, new Answer<Object>()
+        {
+            private boolean aberta;
+
+            @Override
+            public Object answer( InvocationOnMock invocation ) throws Throwable
+            {
+                switch ( invocation.getMethod().getName() )
+                {
+                    case "executeQuery":
+                        aberta = true;
+                        registrarAbertura();
+                        numConsultas.incrementAndGet();
+                        return consultar( sql );
+                    case "close":
+                        if ( aberta )
+                        {
+                            aberta = false;
+                            simultaneas.decrementAndGet();
+                        }
+                        return null;
+                    default:
+                        return Mockito.RETURNS_DEFAULTS.answer( invocation );
+                }
+            }
+        } );
+    }
+
+    private void registrarAbertura()
+    {
+        final int abertas = simultaneas.incrementAndGet();
+        int max;
+
+        while ( abertas > ( max = maxSimultaneas.get() ) && !maxSimultaneas.compareAndSet( max, abertas ) )
+        {
+            // outra consulta atualizou o máximo
+        }
+    }
+
+    private ResultSet consultar( String sql ) throws InterruptedException, SQLException
+    {
+        final List<String> rotulos = new ArrayList<>();
+        final List<Object[]> linhas = new ArrayList<>();
+
+        if ( sql.startsWith( "SELECT * " ) )
+        {
+            rotulos.addAll( Arrays.asList( "id", "classe" ) );
+            rotulos.addAll( colunas );
+        }
+        else if ( sql.startsWith( "SELECT DISTINCT " ) )
+        {
+            rotulos.add( "classe" );
+
+            for ( String cl : classes )
+            {
+                linhas.add( new Object[] { cl } );
+            }
+        }
+        else if ( sql.startsWith( "SELECT classe, " ) )
+        {
+            rotulos.addAll( Arrays.asList( "classe", "col_id" ) );
+
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                linhas.add( new Object[] { classes.get( kpastas.classe( linha ) ), kpastas.id( linha ) } );
+            }
+        }
+        else if ( sql.contains( "max(" ) )
+        {
+            final Object[] valores = new Object[2 * colunas.size()];
+
+            for ( int col = 0; col < colunas.size(); col++ )
+            {
+                double max = Double.NEGATIVE_INFINITY;
+                double min = Double.POSITIVE_INFINITY;
+
+                for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+                {
+                    final double v = dados.valor( col, linha );
+
+                    if ( !Double.isNaN( v ) )
+                    {
+                        max = Math.max( max, v );
+                        min = Math.min( min, v );
+                    }
+                }
+
+                valores[2 * col] = max;
+                valores[2 * col + 1] = min;
+                rotulos.add( "max(" + colunas.get( col ) + ")" );
+                rotulos.add( "min(" + colunas.get( col ) + ")" );
+            }
+
+            linhas.add( valores );
+        }
+        else if ( sql.contains( " AS col_id, " ) )
+        {
+            // carga das colunas ou cursor
+            rotulos.add( "col_id" );
+            rotulos.addAll( colunas );
+
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                final Object[] valores = new Object[colunas.size() + 1];
+                valores[0] = kpastas.id( linha );
+
+                for ( int col = 0; col < colunas.size(); col++ )
+                {
+                    final double v = dados.valor( col, linha );
+                    valores[col + 1] = Double.isNaN( v ) ? null : v;
+                }
+
+                linhas.add( valores );
+            }
+        }
+        else
+        {
+            if ( numConsultasIds.incrementAndGet() >= falha )
+            {
+                throw new SQLException( "Falha simulada." );
+            }
+
+            if ( aoConsultar != null )
+            {
+                aoConsultar.run();
+            }
+
+            rotulos.add( "id" );
+
+            for ( String id : consultarIds( sql ) )
+            {
+                linhas.add( new Object[] { id } );
+            }
+
+            if ( atraso > 0 )
+            {
+                Thread.sleep( atraso );
+            }
+        }
+
+        return resultado( rotulos, linhas );
+    }
+
+    /**
+     * Consulta SELECT id AS id FROM tabela WHERE id [NOT] IN (...) AND (cond) AND (cond) ...
+     */
+    private List<String> consultarIds( String sql )
+    {
+        final int inicio = sql.indexOf( " IN (" ) + 5;
+        final int fim = sql.indexOf( ')', inicio );
+        final boolean treinamento = sql.contains( " NOT IN (" );
+        final Set<String> pasta = new HashSet<>( Arrays.asList( sql.substring( inicio, fim ).split( ", " ) ) );
+        final String where = sql.substring( sql.indexOf( "AND (", fim ) + 5, sql.length() - 1 );
+
+        final List<Condicao> regra = new ArrayList<>();
+
+        for ( String cond : where.split( "\\) AND \\(" ) )
+        {
+            regra.add( Condicao.interpretar( cond, dados ) );
+        }
+
+        final List<String> ids = new ArrayList<>();
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            boolean ok = pasta.contains( kpastas.id( linha ) ) != treinamento;
+
+            for ( Condicao cond : regra )
+            {
+                ok &= cond.testar( dados, linha );
+            }
+
+            if ( ok )
+            {
+                ids.add( kpastas.id( linha ) );
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Resultado de uma consulta: colunas lidas pelo rótulo ou pela posição (a partir de 1), NULL lido como zero
+     * seguido de wasNull verdadeiro.
+     */
+    private static ResultSet resultado( final List<String> rotulos, final List<Object[]> linhas )
+    {
+        final ResultSetMetaData metadata = Mockito.mock( ResultSetMetaData.class, new Answer<Object>()
+        {
+            @Override
+            public Object answer( InvocationOnMock invocation ) throws Throwable
+            {
+                switch ( invocation.getMethod().getName() )
+                {
+                    case "getColumnCount":
+                        return rotulos.size();
+                    case "getColumnName":
+                        return rotulos.get( (Integer) invocation.getArguments()[0] - 1 );
+                    default:
+                        return Mockito.RETURNS_DEFAULTS.answer( invocation );
+                }
+            }
+        } );
+
+        return Mockito.mock( ResultSet.class, new Answer<Object>()
+        {
+            private int atual = -1;
+
+            private boolean nulo;
+
+            @Override
+            public Object answer( InvocationOnMock invocation ) throws Throwable
+            {
+                final Object[] args = invocation.getArguments();
+
+                switch ( invocation.getMethod().getName() )
+                {
+                    case "next":
+                        return ++atual < linhas.size();
+                    case "getMetaData":
+                        return metadata;
+                    case "wasNull":
+                        return nulo;
+                    case "getString":
+                    {
+                        final Object v = valor( args[0] );
+                        return v != null ? v.toString() : null;
+                    }
+                    case "getDouble":
+                    {
+                        final Object v = valor( args[0] );
+                        return v != null ? ( (Number) v ).doubleValue() : 0.0;
+                    }
+                    default:
+                        return Mockito.RETURNS_DEFAULTS.answer( invocation );
+                }
+            }
+
+            private Object valor( Object coluna )
+            {
+                final int i = coluna instanceof String ? rotulos.indexOf( coluna ) : (Integer) coluna - 1;
+                final Object v = linhas.get( atual )[i];
+                nulo = v == null;
+
+                return v;
+            }
+        } );
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes dos registros cobertos mantidos pela partícula (avaliação incremental).
+ */
+public class CoberturaTest
+                extends DadosDeTeste
+{
+
+    public void test_cobertura_incremental_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        varredura.atualizarPasta( 1 );
+
+        final List<String> where = new ArrayList<>( Arrays.asList( "x >= 1.000" ) );
+        Cobertura cobertura = new Cobertura( where, 1, varredura.cobrir( regra( where ), true ) );
+
+        for ( String cond : new String[] { "y < 4.000", "z != 2.500", "x > y", "z > 1.250" } )
+        {
+            where.add( cond );
+            cobertura = cobertura.restringir( where, regra( Arrays.asList( cond ) ), dados, varredura, null );
+
+            for ( int classe = 0; classe < CLASSES.size(); classe++ )
+            {
+                final int[] esperado = varrer( regra( where ), classe, true, 1 );
+                final int[] obtido = cobertura.contar( classe, kpastas );
+
+                assertEquals( where.toString(), esperado[0], obtido[0] );
+                assertEquals( where.toString(), esperado[1], obtido[1] );
+            }
+        }
+    }
+
+    public void test_lista_esparsa_com_regra_compilada()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final CompiladorRegras compilador = new CompiladorRegras( dados, 4 );
+        varredura.atualizarPasta( 2 );
+
+        // poucos registros: guardados como lista em vez de mapa de bits
+        final List<String> where = new ArrayList<>( Arrays.asList( "x = 6.750" ) );
+        final Cobertura esparsa = new Cobertura( where, 2, varredura.cobrir( regra( where ), true ) );
+
+        where.add( "y >= z" );
+
+        final List<Condicao> novas = regra( Arrays.asList( "y >= z" ) );
+        final Cobertura interpretada = esparsa.restringir( where, novas, dados, varredura, null );
+        final Cobertura compilada = esparsa.restringir( where, novas, dados, varredura, compilador.compilar( novas ) );
+
+        for ( int classe = 0; classe < CLASSES.size(); classe++ )
+        {
+            final int[] esperado = varrer( regra( where ), classe, true, 2 );
+
+            assertTrue( Arrays.equals( esperado, interpretada.contar( classe, kpastas ) ) );
+            assertTrue( Arrays.equals( esperado, compilada.contar( classe, kpastas ) ) );
+        }
+
+        assertEquals( 2, compilada.pasta() );
+        assertTrue( compilada.condicoes().containsAll( where ) );
+    }
+
+    public void test_cobertura_vazia()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        varredura.atualizarPasta( 0 );
+
+        final List<String> where = new ArrayList<>( Arrays.asList( "x > 100.000" ) );
+        Cobertura cobertura = new Cobertura( where, 0, varredura.cobrir( regra( where ), true ) );
+
+        assertTrue( Arrays.equals( new int[] { 0, 0 }, cobertura.contar( 0, kpastas ) ) );
+
+        where.add( "y < 1.000" );
+        cobertura = cobertura.restringir( where, regra( Arrays.asList( "y < 1.000" ) ), dados, varredura, null );
+
+        assertTrue( Arrays.equals( new int[] { 0, 0 }, cobertura.contar( 1, kpastas ) ) );
+    }
+
+    public void test_implicacao_entre_condicoes()
+    {
+        assertTrue( Condicao.interpretar( "x > 2.000", dados ).implica( Condicao.interpretar( "x >= 2.000", dados ) ) );
+        assertTrue( Condicao.interpretar( "x <= 1.000", dados ).implica( Condicao.interpretar( "x < 1.500", dados ) ) );
+        assertTrue( Condicao.interpretar( "x = 1.000", dados ).implica( Condicao.interpretar( "x != 2.000", dados ) ) );
+        assertFalse( Condicao.interpretar( "x >= 2.000", dados ).implica( Condicao.interpretar( "x > 2.000",
+                                                                                                dados ) ) );
+        assertFalse( Condicao.interpretar( "x > 2.000", dados ).implica( Condicao.interpretar( "y > 1.000", dados ) ) );
+
+        // comparações entre atributos e != nunca implicam outra condição
+        assertFalse( Condicao.interpretar( "x > y", dados ).implica( Condicao.interpretar( "x > y", dados ) ) );
+        assertFalse( Condicao.interpretar( "x != 2.000", dados ).implica( Condicao.interpretar( "x != 2.000",
+                                                                                                dados ) ) );
+        assertFalse( Condicao.interpretar( "x < 2.000", dados ).implica( Condicao.interpretar( "x > 1.000",
+                                                                                               dados ) ) );
+    }
+}
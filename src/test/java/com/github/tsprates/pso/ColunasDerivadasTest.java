@@ -0,0 +1,139 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes das colunas de diferença materializadas para as condições entre atributos.
+ */
+public class ColunasDerivadasTest
+                extends DadosDeTeste
+{
+
+    public void test_colunas_derivadas_igual_a_varredura_completa()
+    {
+        final ColunasDerivadas derivadas = new ColunasDerivadas( dados, kpastas, 1L << 20 );
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+
+        varredura.setDerivadas( derivadas );
+        indice.setDerivadas( derivadas );
+        derivadas.atualizarPasta( 4 );
+        varredura.atualizarPasta( 4 );
+        indice.atualizarPasta( 4 );
+
+        // o par só é materializado na segunda regra avaliada
+        derivadas.registrar( regra( Arrays.asList( "x > y" ) ) );
+        assertEquals( 0, derivadas.numColunas() );
+        derivadas.registrar( regra( Arrays.asList( "y <= x", "z < 2.000" ) ) );
+        assertEquals( 1, derivadas.numColunas() );
+
+        final String[][] where = {
+                        { "x > y" },
+                        { "y > x" },
+                        { "x <= y" },
+                        { "y >= x", "z < 3.000" },
+                        { "x = y" },
+                        { "y != x", "x > 1.500" },
+                        { "x < y", "y > z" }
+        };
+
+        for ( String[] w : where )
+        {
+            final List<Condicao> regra = regra( Arrays.asList( w ) );
+
+            for ( int classe = 0; classe < CLASSES.size(); classe++ )
+            {
+                for ( boolean treinamento : new boolean[] { true, false } )
+                {
+                    final int[] esperado = varrer( regra, classe, treinamento, 4 );
+
+                    assertTrue( Arrays.toString( w ), Arrays.equals( esperado, indice.contar( regra, classe,
+                                                                                              treinamento ) ) );
+                    assertTrue( Arrays.toString( w ), Arrays.equals( esperado, varredura.contar( regra, classe,
+                                                                                                 treinamento ) ) );
+                }
+            }
+        }
+    }
+
+    public void test_limite_de_memoria()
+    {
+        // uma coluna: o par menos recente é descartado
+        final ColunasDerivadas limitada = new ColunasDerivadas( dados, kpastas, 24L * dados.numLinhas() );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            limitada.registrar( regra( Arrays.asList( "x > y", "y > z" ) ) );
+        }
+
+        assertEquals( 1, limitada.numColunas() );
+        assertNull( limitada.indice( Condicao.interpretar( "x > y", dados ) ) );
+        assertNotNull( limitada.indice( Condicao.interpretar( "z < y", dados ) ) );
+
+        // nenhuma coluna cabe no limite
+        final ColunasDerivadas semMemoria = new ColunasDerivadas( dados, kpastas, 24L * dados.numLinhas() - 1 );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            semMemoria.registrar( regra( Arrays.asList( "x > y" ) ) );
+        }
+
+        assertEquals( 0, semMemoria.numColunas() );
+        assertNull( semMemoria.valores( Condicao.interpretar( "x > y", dados ) ) );
+    }
+
+    public void test_diferenca_com_ausentes_e_infinitos()
+    {
+        final Dados pequena = new Dados( Arrays.asList( "a", "b" ), 4 );
+        final double[][] valores = {
+                        { 1.0, Double.NaN, Double.POSITIVE_INFINITY, 3.0 },
+                        { 2.0, 1.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY }
+        };
+
+        for ( int col = 0; col < 2; col++ )
+        {
+            for ( int linha = 0; linha < 4; linha++ )
+            {
+                pequena.setValor( col, linha, valores[col][linha] );
+            }
+        }
+
+        final ColunasDerivadas derivadas = new ColunasDerivadas( pequena, kpastas, 1L << 20 );
+        final Condicao cond = Condicao.interpretar( "a = b", pequena );
+
+        derivadas.registrar( Arrays.asList( cond ) );
+        derivadas.registrar( Arrays.asList( cond ) );
+
+        final double[] diferenca = derivadas.valores( cond );
+
+        // infinitos iguais têm diferença zero, como a = b; ausentes permanecem ausentes
+        assertEquals( -1.0, diferenca[0] );
+        assertTrue( Double.isNaN( diferenca[1] ) );
+        assertEquals( 0.0, diferenca[2] );
+        assertEquals( Double.POSITIVE_INFINITY, diferenca[3] );
+
+        for ( int linha = 0; linha < 4; linha++ )
+        {
+            assertEquals( cond.testar( pequena, linha ), Condicao.comparar( Condicao.IGUAL, diferenca[linha],
+                                                                            0.0 ) );
+        }
+    }
+
+    public void test_limiar_equivalente()
+    {
+        // a coluna de menor índice é o minuendo: y < x equivale a (x - y) > 0
+        assertEquals( Condicao.MAIOR, ColunasDerivadas.limiar( Condicao.interpretar( "y < x", dados ) ).operador() );
+        assertEquals( Condicao.MENOR_IGUAL, ColunasDerivadas.limiar( Condicao.interpretar( "y >= x", dados ) )
+                                                            .operador() );
+        assertEquals( Condicao.MAIOR, ColunasDerivadas.limiar( Condicao.interpretar( "x > y", dados ) ).operador() );
+        assertEquals( Condicao.DIFERENTE, ColunasDerivadas.limiar( Condicao.interpretar( "y != x", dados ) )
+                                                          .operador() );
+
+        final Condicao limiar = ColunasDerivadas.limiar( Condicao.interpretar( "z <= x", dados ) );
+
+        assertEquals( 0, limiar.coluna() );
+        assertEquals( 0.0, limiar.valor() );
+        assertEquals( -1, limiar.colunaValor() );
+    }
+}
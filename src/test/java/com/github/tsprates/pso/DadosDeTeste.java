@@ -0,0 +1,141 @@
+package com.github.tsprates.pso;
+
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Base de dados em memória compartilhada pelos testes da avaliação de regras: três classes, três colunas com poucos
+ * valores distintos (empates) e alguns valores ausentes, e a contagem de referência por teste registro a registro.
+ */
+public abstract class DadosDeTeste
+                extends TestCase
+{
+
+    protected static final List<String> CLASSES = Arrays.asList( "a", "b", "c" );
+
+    protected static final List<String> COLUNAS = Arrays.asList( "x", "y", "z" );
+
+    protected KPastas kpastas;
+
+    protected Dados dados;
+
+    @Override
+    protected void setUp()
+    {
+        final Random random = new Random( 7L );
+
+        final Map<String, List<String>> mapaClasseId = new HashMap<>();
+
+        int id = 1;
+
+        for ( String cl : CLASSES )
+        {
+            final List<String> ids = new ArrayList<>();
+
+            for ( int i = 0, len = 150 + random.nextInt( 100 ); i < len; i++ )
+            {
+                ids.add( String.valueOf( id++ ) );
+            }
+
+            mapaClasseId.put( cl, ids );
+        }
+
+        kpastas = new KPastas( 10, CLASSES, mapaClasseId );
+        kpastas.embaralhar( random );
+
+        dados = new Dados( COLUNAS, kpastas.numLinhas() );
+
+        for ( int linha = 0; linha < kpastas.numLinhas(); linha++ )
+        {
+            for ( int col = 0; col < COLUNAS.size(); col++ )
+            {
+                // poucos valores distintos para testar empates, alguns ausentes
+                final double valor = random.nextInt( 20 ) / 4.0 + kpastas.classe( linha );
+                dados.setValor( col, linha, random.nextDouble() < 0.02 ? Double.NaN : valor );
+            }
+        }
+    }
+
+    /**
+     * Cópia da base de dados com as colunas fora do heap.
+     */
+    protected Dados copiarForaDoHeap()
+    {
+        final Dados foraDoHeap = Dados.criarForaDoHeap( COLUNAS, dados.numLinhas(), null );
+
+        for ( int col = 0; col < COLUNAS.size(); col++ )
+        {
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                foraDoHeap.setValor( col, linha, dados.valor( col, linha ) );
+            }
+        }
+
+        return foraDoHeap;
+    }
+
+    /**
+     * Conexão simulada que responde às consultas SQL pela base de dados em memória.
+     */
+    protected Connection conectar()
+    {
+        return new BaseSimulada( dados, kpastas, CLASSES, COLUNAS ).conectar();
+    }
+
+    protected List<Condicao> regra( List<String> where )
+    {
+        final List<Condicao> regra = new ArrayList<>();
+
+        for ( String cond : where )
+        {
+            regra.add( Condicao.interpretar( cond, dados ) );
+        }
+
+        return regra;
+    }
+
+    protected int[] varrer( List<Condicao> regra, int classe, boolean treinamento, int k )
+    {
+        return varrer( dados, regra, classe, treinamento, k );
+    }
+
+    protected int[] varrer( Dados dados, List<Condicao> regra, int classe, boolean treinamento, int k )
+    {
+        int tp = 0;
+        int cobertos = 0;
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            if ( ( kpastas.pasta( linha ) != k ) != treinamento )
+            {
+                continue;
+            }
+
+            boolean ok = true;
+
+            for ( Condicao cond : regra )
+            {
+                ok &= cond.testar( dados, linha );
+            }
+
+            if ( ok )
+            {
+                cobertos++;
+
+                if ( kpastas.classe( linha ) == classe )
+                {
+                    tp++;
+                }
+            }
+        }
+
+        return new int[] { tp, cobertos };
+    }
+}
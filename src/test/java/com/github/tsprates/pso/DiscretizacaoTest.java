@@ -0,0 +1,133 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Testes da discretização das colunas em faixas.
+ */
+public class DiscretizacaoTest
+                extends DadosDeTeste
+{
+
+    public void test_discretizacao_igual_a_varredura_completa()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+        final Discretizacao discretizacao = new Discretizacao( dados, indice, kpastas, 8 );
+
+        final Random random = new Random( 3L );
+        final String[] operadores = { ">", ">=", "<", "<=", "=", "!=" };
+
+        for ( int k = 0; k < kpastas.numK(); k += 4 )
+        {
+            discretizacao.atualizarPasta( k );
+
+            for ( int i = 0; i < 200; i++ )
+            {
+                final List<Condicao> regra = new ArrayList<>();
+
+                for ( int j = 0, len = 1 + random.nextInt( 3 ); j < len; j++ )
+                {
+                    final int col = random.nextInt( COLUNAS.size() );
+                    final double valor = discretizacao.ajustar( col, random.nextDouble() * 8 );
+                    final String oper = operadores[random.nextInt( operadores.length )];
+
+                    regra.add( Condicao.interpretar( Formatador.formatarCondicaoWhere( COLUNAS.get( col ), oper,
+                                    Formatador.formatarValorNumericoWhere( valor ) ), dados ) );
+                }
+
+                if ( random.nextBoolean() )
+                {
+                    regra.add( Condicao.interpretar( "x < z", dados ) );
+                }
+
+                for ( boolean treinamento : new boolean[] { true, false } )
+                {
+                    final int[] esperado = varrer( regra, 1, treinamento, k );
+                    final int[] obtido = discretizacao.contar( regra, 1, treinamento );
+
+                    if ( obtido != null )
+                    {
+                        assertEquals( regra.toString(), esperado[0], obtido[0] );
+                        assertEquals( regra.toString(), esperado[1], obtido[1] );
+                    }
+                }
+            }
+        }
+    }
+
+    public void test_mascara_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        final Discretizacao discretizacao = new Discretizacao( dados, indice, kpastas, 8 );
+        varredura.atualizarPasta( 6 );
+        discretizacao.atualizarPasta( 6 );
+
+        final String borda = Formatador.formatarValorNumericoWhere( discretizacao.ajustar( 1, 3.0 ) );
+        final List<Condicao> regra = regra( Arrays.asList( "y > " + borda, "x < z" ) );
+
+        for ( boolean treinamento : new boolean[] { true, false } )
+        {
+            assertTrue( Arrays.equals( varredura.cobrir( regra, treinamento ), discretizacao.cobrir( regra,
+                                                                                                     treinamento ) ) );
+        }
+
+        assertNull( discretizacao.cobrir( regra( Arrays.asList( "x < z" ) ), true ) );
+    }
+
+    public void test_ajuste_limitado_as_bordas_extremas()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+        final Discretizacao discretizacao = new Discretizacao( dados, indice, kpastas, 4 );
+
+        for ( int col = 0; col < COLUNAS.size(); col++ )
+        {
+            final double[] ord = indice.ordenados( col );
+            final double menor = ord[0];
+            final double maior = ord[indice.numValidos( col ) - 1];
+
+            assertEquals( menor, discretizacao.ajustar( col, -1000.0 ) );
+            assertEquals( maior, discretizacao.ajustar( col, 1000.0 ) );
+
+            // uma borda é ajustada para ela mesma
+            final double borda = discretizacao.ajustar( col, ( menor + maior ) / 2 );
+            assertEquals( borda, discretizacao.ajustar( col, borda ) );
+        }
+    }
+
+    public void test_limiar_fora_das_bordas_nao_resolvido()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+        final Discretizacao discretizacao = new Discretizacao( dados, indice, kpastas, 4 );
+        discretizacao.atualizarPasta( 0 );
+
+        final double borda = discretizacao.ajustar( 0, 2.0 );
+        final String fora = Formatador.formatarValorNumericoWhere( borda + 0.001 );
+
+        // nenhuma condição é uma borda (!= e comparações entre atributos nunca são)
+        assertNull( discretizacao.contar( regra( Arrays.asList( "x > " + fora, "y != 2.000", "x < z" ) ), 0,
+                                          true ) );
+
+        // somente a condição na borda é resolvida pelos mapas de bits, as demais registro a registro
+        final List<Condicao> regra = regra( Arrays.asList( "x <= " + Formatador.formatarValorNumericoWhere( borda ),
+                                                           "y > " + fora, "x < z" ) );
+
+        assertTrue( Arrays.equals( varrer( regra, 0, true, 0 ), discretizacao.contar( regra, 0, true ) ) );
+    }
+
+    public void test_bordas_distintas()
+    {
+        assertEquals( 0, Discretizacao.calcularBordas( new double[0], 0, 4 ).length );
+
+        // coluna constante: uma única borda
+        assertTrue( Arrays.equals( new double[] { 2.0 }, Discretizacao.calcularBordas( new double[] { 2.0, 2.0, 2.0 },
+                                                                                        3, 8 ) ) );
+
+        // bordas arredondadas como na cláusula WHERE
+        assertTrue( Arrays.equals( new double[] { 0.123, 0.457 }, Discretizacao.calcularBordas(
+                        new double[] { 0.12345, 0.45678 }, 2, 1 ) ) );
+    }
+}
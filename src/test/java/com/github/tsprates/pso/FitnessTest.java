@@ -0,0 +1,319 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.mockito.Mockito;
+
+/**
+ * Testes da calculadora de fitness com a base de dados em memória.
+ */
+public class FitnessTest
+                extends DadosDeTeste
+{
+
+    public void test_poda_por_dominancia()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setDados( dados, varredura, new IndiceOrdenado( dados, kpastas, varredura ) );
+        fitness.setK( 0 );
+
+        final Random random = new Random( 5L );
+        final String[] operadores = { ">", ">=", "<", "<=", "!=" };
+        final Particula referencia = new Particula( new HashSet<>( Arrays.asList( "x > 1.000", "y > 1.000" ) ), "b",
+                                                    fitness, random );
+
+        int podadas = 0;
+
+        for ( int i = 0; i < 200; i++ )
+        {
+            final Set<String> pos = new HashSet<>();
+
+            for ( int j = 0, len = 1 + random.nextInt( 3 ); j < len; j++ )
+            {
+                pos.add( Formatador.formatarCondicaoWhere( COLUNAS.get( random.nextInt( COLUNAS.size() ) ),
+                                operadores[random.nextInt( operadores.length )],
+                                Formatador.formatarValorNumericoWhere( random.nextInt( 24 ) / 4.0 ) ) );
+            }
+
+            final Particula candidata = new Particula( pos, "b", fitness, random );
+            final double[] esperado = candidata.fitness();
+
+            if ( fitness.avaliarComPoda( candidata, referencia ) )
+            {
+                assertTrue( Arrays.equals( esperado, candidata.fitness() ) );
+            }
+            else
+            {
+                assertTrue( FronteiraPareto.verificarDominanciaEntre( candidata, referencia ) < 0 );
+                podadas++;
+            }
+        }
+
+        assertTrue( podadas > 0 );
+    }
+
+    public void test_avaliacao_incremental_pelo_indice()
+    {
+        final AvaliadorVetorial varredura = Mockito.spy( new AvaliadorVetorial( dados, kpastas ) );
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setDados( dados, varredura, new IndiceOrdenado( dados, kpastas, varredura ) );
+        fitness.setK( 3 );
+
+        final Fitness completa = new Fitness( null, "id", "tabela" );
+        completa.setKPastas( kpastas );
+        completa.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        completa.setK( 3 );
+
+        // condição seletiva: os registros cobertos vêm do intervalo do índice, sem varredura
+        final Random random = new Random( 6L );
+        final Particula p = new Particula( new HashSet<>( Arrays.asList( "x > 6.000" ) ), "c", fitness, random );
+
+        assertNotNull( p.cobertura() );
+
+        final List<String> where = Arrays.asList( "x > 6.000", "y < 4.000" );
+        p.setPosicao( where );
+        assertTrue( p.alterada() );
+        p.avaliar();
+
+        Mockito.verify( varredura, Mockito.never() ).cobrir( Mockito.anyListOf( Condicao.class ),
+                                                             Mockito.anyBoolean() );
+        assertEquals( where.size(), p.cobertura().condicoes().size() );
+
+        final Particula esperada = new Particula( new HashSet<>( where ), "c", completa, random );
+        assertTrue( Arrays.equals( esperada.fitness(), p.fitness() ) );
+    }
+
+    public void test_estimativa_com_avaliacao_em_blocos()
+    {
+        final Fitness memoria = new Fitness( null, "id", "tabela" );
+        memoria.setKPastas( kpastas );
+        memoria.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        memoria.setAmostra( 60, 0.95, new Random( 9L ) );
+        memoria.setK( 2 );
+
+        final Fitness emBlocos = new Fitness( null, "id", "tabela" );
+        emBlocos.setKPastas( kpastas );
+        emBlocos.setEmBlocos( new AvaliadorEmBlocos( dados, kpastas, 128 ), dados.indiceColunas() );
+        emBlocos.setAmostra( 60, 0.95, new Random( 9L ) );
+        emBlocos.setK( 2 );
+
+        // referência de complexidade e efetividade máximas: toda regra com duas condições ou mais fica estimada
+        final Random random = new Random( 4L );
+        final Particula referencia = new Particula( new HashSet<>( Arrays.asList( "x > 1.000" ) ), "b", memoria,
+                                                    random );
+        referencia.setFitness( new double[] { 1.0, 1.0, 1.0 } );
+
+        final Map<String, List<Particula>> repositorio = Collections.singletonMap( "b",
+                                                                                   Collections.singletonList(
+                                                                                                   referencia ) );
+
+        final String[][] where = { { "x > 1.000", "y < 4.000" }, { "x >= y", "z != 2.500" },
+                        { "x > 2.000", "y <= 3.000", "z > x" } };
+        final List<Particula> loteMemoria = new ArrayList<>();
+        final List<Particula> loteBlocos = new ArrayList<>();
+
+        for ( String[] w : where )
+        {
+            final Set<String> pos = new HashSet<>( Arrays.asList( w ) );
+
+            loteMemoria.add( pendente( pos, "b", memoria, random ) );
+            loteBlocos.add( pendente( pos, "b", emBlocos, random ) );
+        }
+
+        memoria.avaliar( loteMemoria, repositorio );
+        emBlocos.avaliar( loteBlocos, repositorio );
+
+        assertEquals( where.length, emBlocos.numAvaliacaoAmostra() );
+
+        for ( int i = 0; i < where.length; i++ )
+        {
+            assertTrue( loteBlocos.get( i ).alterada() );
+            assertTrue( Arrays.toString( where[i] ), Arrays.equals( loteMemoria.get( i ).fitness(), loteBlocos.get(
+                            i ).fitness() ) );
+        }
+    }
+
+    public void test_regra_isolada_pela_consulta_sql_com_cursor()
+    {
+        final Connection conexao = conectar();
+        final AvaliadorEmBlocos cursor = Mockito.spy( new AvaliadorEmBlocos( conexao, "tabela", "id", COLUNAS, kpastas,
+                                                                             128 ) );
+        final Fitness fitness = new Fitness( conexao, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setEmBlocos( cursor, dados.indiceColunas() );
+        fitness.setK( 1 );
+
+        final Fitness memoria = new Fitness( null, "id", "tabela" );
+        memoria.setKPastas( kpastas );
+        memoria.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        memoria.setK( 1 );
+
+        // uma partícula: consulta SQL, sem percorrer a tabela pelo cursor
+        final Random random = new Random( 8L );
+        final Set<String> pos = new HashSet<>( Arrays.asList( "x > 2.000", "y <= 4.500" ) );
+        final Particula p = new Particula( pos, "a", fitness, random );
+
+        p.setPosicao( Arrays.asList( "x > 2.500", "y <= 4.500" ) );
+        fitness.avaliar( Collections.singletonList( p ) );
+
+        Mockito.verify( cursor, Mockito.never() ).contar( Mockito.<List<List<Condicao>>>any(),
+                                                          Mockito.any( int[].class ), Mockito.anyBoolean() );
+        assertTrue( Arrays.equals( new Particula( new HashSet<>( p.posicao() ), "a", memoria, random ).fitness(),
+                                   p.fitness() ) );
+
+        // lote: uma única passagem pelo cursor
+        final List<Particula> lote = new ArrayList<>();
+        lote.add( pendente( pos, "a", fitness, random ) );
+        lote.add( pendente( pos, "b", fitness, random ) );
+
+        Mockito.doReturn( new int[][] { { 1, 2 }, { 1, 2 } } ).when( cursor ).contar(
+                        Mockito.<List<List<Condicao>>>any(), Mockito.any( int[].class ), Mockito.anyBoolean() );
+        fitness.avaliar( lote );
+
+        Mockito.verify( cursor, Mockito.times( 1 ) ).contar( Mockito.<List<List<Condicao>>>any(),
+                                                             Mockito.any( int[].class ), Mockito.eq( true ) );
+    }
+
+    public void test_regra_isolada_pela_varredura_com_blocos_em_memoria()
+    {
+        final AvaliadorEmBlocos emBlocos = Mockito.spy( new AvaliadorEmBlocos( dados, kpastas, 128 ) );
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setEmBlocos( emBlocos, dados.indiceColunas() );
+        fitness.setK( 3 );
+
+        final Fitness memoria = new Fitness( null, "id", "tabela" );
+        memoria.setKPastas( kpastas );
+        memoria.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        memoria.setK( 3 );
+
+        // uma regra isolada (treinamento e teste): varredura das colunas, sem uma passagem em blocos pela tabela
+        final Random random = new Random( 8L );
+        final Set<String> pos = new HashSet<>( Arrays.asList( "x > 2.000", "y <= z" ) );
+        final Particula p = new Particula( pos, "a", fitness, random );
+        final Particula q = new Particula( pos, "a", memoria, random );
+
+        assertTrue( Arrays.equals( q.fitness(), p.fitness() ) );
+        assertTrue( Arrays.equals( memoria.calcular( q, false ), fitness.calcular( p, false ) ) );
+        Mockito.verify( emBlocos, Mockito.never() ).contar( Mockito.<List<List<Condicao>>>any(),
+                                                            Mockito.any( int[].class ), Mockito.anyBoolean() );
+    }
+
+    public void test_consultas_sql_simultaneas()
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+        final List<Connection> lista = new ArrayList<>();
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            lista.add( base.conectar() );
+        }
+
+        final PoolConexoes conexoes = new PoolConexoes( lista );
+        final Fitness fitness = new Fitness( base.conectar(), "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setConexoes( conexoes );
+        fitness.setK( 4 );
+
+        final Fitness memoria = new Fitness( null, "id", "tabela" );
+        memoria.setKPastas( kpastas );
+        memoria.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        memoria.setK( 4 );
+
+        final String[][] where = { { "x > 1.000" }, { "y <= 3.500", "x != 2.000" }, { "z > x" },
+                        { "x >= 2.250", "z < 4.000" }, { "y = 3.000" }, { "x < y", "z > 1.500" } };
+        final Random random = new Random( 12L );
+        final List<Particula> lote = new ArrayList<>();
+
+        for ( int i = 0; i < where.length; i++ )
+        {
+            lote.add( pendente( new HashSet<>( Arrays.asList( where[i] ) ), CLASSES.get( i % 3 ), fitness, random ) );
+        }
+
+        base.setAtraso( 20 );
+        fitness.avaliar( lote );
+
+        // uma consulta em andamento por conexão do conjunto
+        assertTrue( base.maxSimultaneas() > 1 );
+        assertTrue( base.maxSimultaneas() <= conexoes.tamanho() );
+
+        for ( int i = 0; i < where.length; i++ )
+        {
+            final Particula p = lote.get( i );
+
+            assertFalse( p.alterada() );
+            assertTrue( Arrays.toString( where[i] ), Arrays.equals( new Particula( p.posicao(), p.classe(), memoria,
+                                                                                   random ).fitness(),
+                                                                    p.fitness() ) );
+        }
+
+        fitness.encerrar();
+        conexoes.close();
+    }
+
+    public void test_estimativa_requer_registros_em_memoria()
+    {
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setEmBlocos( new AvaliadorEmBlocos( null, "tabela", "id", COLUNAS, kpastas, 128 ),
+                             dados.indiceColunas() );
+
+        try
+        {
+            fitness.setAmostra( 60, 0.95, new Random( 9L ) );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // blocos lidos de um cursor SQL: os registros da amostra não estão disponíveis
+        }
+    }
+
+    public void test_copia_mantem_o_estado_da_original()
+    {
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        fitness.setK( 0 );
+
+        final Random random = new Random( 2L );
+        final Particula p = new Particula( new HashSet<>( Arrays.asList( "x > 2.000" ) ), "a", fitness, random );
+        final Particula copia = p.copiar();
+
+        // sem mudança de posição a cópia não é reavaliada
+        assertFalse( copia.alterada() );
+        assertSame( p.cobertura(), copia.cobertura() );
+        assertTrue( Arrays.equals( p.fitness(), copia.fitness() ) );
+
+        fitness.avaliar( Collections.singletonList( copia ) );
+        assertEquals( 1, fitness.numAvaliacaoEvitada() );
+
+        copia.setPosicao( Arrays.asList( "x > 2.000" ) );
+        assertFalse( copia.alterada() );
+
+        copia.setPosicao( Arrays.asList( "x > 2.000", "y > 1.000" ) );
+        assertTrue( copia.alterada() );
+        assertTrue( copia.copiar().alterada() );
+    }
+
+    /**
+     * Partícula pendente de avaliação na posição informada.
+     */
+    private static Particula pendente( Set<String> pos, String classe, Fitness fitness, Random random )
+    {
+        final Particula p = new Particula( new HashSet<>( Arrays.asList( "z > 100.000" ) ), classe, fitness, random );
+        p.setPosicao( pos );
+
+        return p;
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes das regras codificadas como hiper-retângulo.
+ */
+public class HiperretanguloTest
+                extends DadosDeTeste
+{
+
+    public void test_hiperretangulo_igual_as_condicoes()
+    {
+        final Hiperretangulo h = new Hiperretangulo( COLUNAS );
+        h.setInferior( 0, 1.2504 );
+        h.setSuperior( 0, 4.0 );
+        h.setSuperior( 2, 3.5 );
+        h.adicionarComparacoes( Arrays.asList( "x > y" ) );
+
+        final List<String> where = new ArrayList<>( h.condicoes() );
+
+        assertEquals( Arrays.asList( "x < 4.000", "x > y", "x >= 1.250", "z < 3.500" ), where );
+        assertEquals( 4, h.numCondicoes() );
+        assertTrue( Arrays.equals( new int[] { 0, 2 }, h.ativas() ) );
+
+        final List<Condicao> comparacoes = regra( Arrays.asList( "x > y" ) );
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final AvaliadorVetorial porZonas = new AvaliadorVetorial( dados, kpastas );
+        porZonas.setZonas( new MapaDeZonas( dados, 64 ) );
+
+        for ( int k = 0; k < 3; k++ )
+        {
+            varredura.atualizarPasta( k );
+            porZonas.atualizarPasta( k );
+
+            for ( int classe = 0; classe < CLASSES.size(); classe++ )
+            {
+                final int[] esperado = varrer( regra( where ), classe, false, k );
+
+                assertTrue( Arrays.equals( esperado, varredura.contar( h, comparacoes, classe, false ) ) );
+                assertTrue( Arrays.equals( esperado, porZonas.contar( h, comparacoes, classe, false ) ) );
+            }
+        }
+
+        final List<Condicao> intervalos = regra( Arrays.asList( "x < 4.000", "x >= 1.250", "z < 3.500" ) );
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            boolean ok = true;
+
+            for ( Condicao cond : intervalos )
+            {
+                ok &= cond.testar( dados, linha );
+            }
+
+            assertEquals( ok, h.testar( dados, linha ) );
+        }
+    }
+
+    public void test_limites_infinitos_removem_a_restricao()
+    {
+        final Hiperretangulo h = new Hiperretangulo( COLUNAS );
+
+        assertEquals( 0, h.ativas().length );
+        assertEquals( 0, h.numCondicoes() );
+        assertTrue( h.condicoes().isEmpty() );
+
+        h.setInferior( 1, 2.0 );
+        h.setSuperior( 1, 3.0 );
+        assertTrue( Arrays.equals( new int[] { 1 }, h.ativas() ) );
+
+        h.setInferior( 1, Double.NEGATIVE_INFINITY );
+        assertEquals( Arrays.asList( "y < 3.000" ), new ArrayList<>( h.condicoes() ) );
+
+        h.setSuperior( 1, Double.POSITIVE_INFINITY );
+        assertEquals( 0, h.ativas().length );
+
+        // sem colunas restringidas todos os registros pertencem ao hiper-retângulo, inclusive os com ausentes
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            assertTrue( h.testar( dados, linha ) );
+        }
+    }
+
+    public void test_ausentes_e_intervalo_vazio()
+    {
+        final Hiperretangulo h = new Hiperretangulo( COLUNAS );
+        h.setInferior( 0, -1000.0 );
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            assertEquals( !Double.isNaN( dados.valor( 0, linha ) ), h.testar( dados, linha ) );
+        }
+
+        // limite inferior igual ao superior: [v, v) não contém nenhum valor
+        h.setInferior( 0, 2.0 );
+        h.setSuperior( 0, 2.0004 );
+
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        varredura.atualizarPasta( 0 );
+
+        assertEquals( 2.0, h.superior( 0 ) );
+        assertEquals( 0, varredura.contar( h, new ArrayList<Condicao>(), 0, true )[1] );
+    }
+
+    public void test_copia_independente()
+    {
+        final Hiperretangulo h = new Hiperretangulo( COLUNAS );
+        h.setInferior( 0, 1.0 );
+        h.adicionarComparacoes( Arrays.asList( "x > y" ) );
+
+        final Hiperretangulo copia = new Hiperretangulo( h );
+        copia.setSuperior( 2, 3.0 );
+        copia.removerComparacao( "x > y" );
+
+        assertEquals( new ArrayList<>( Arrays.asList( "x > y", "x >= 1.000" ) ), new ArrayList<>( h.condicoes() ) );
+        assertEquals( new ArrayList<>( Arrays.asList( "x >= 1.000", "z < 3.000" ) ),
+                      new ArrayList<>( copia.condicoes() ) );
+        assertTrue( Arrays.equals( new int[] { 0 }, h.ativas() ) );
+    }
+}
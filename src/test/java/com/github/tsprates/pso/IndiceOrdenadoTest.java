@@ -0,0 +1,201 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes do índice ordenado por coluna.
+ */
+public class IndiceOrdenadoTest
+                extends DadosDeTeste
+{
+
+    public void test_contagem_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+
+        final String[][] regras = {
+                        { "x > 2.250" },
+                        { "y >= 3.000" },
+                        { "z < 1.500" },
+                        { "x = 2.000" },
+                        { "x != 2.000" },
+                        { "x > y" },
+                        { "x > 1.000", "y <= 4.250", "z != 3.000" },
+                        { "x >= 0.500", "x < 3.750", "y > z" },
+                        { "x > 100.000" }
+        };
+
+        for ( int k = 0; k < kpastas.numK(); k += 3 )
+        {
+            varredura.atualizarPasta( k );
+            indice.atualizarPasta( k );
+
+            for ( String[] where : regras )
+            {
+                final List<Condicao> regra = new ArrayList<>();
+
+                for ( String cond : where )
+                {
+                    regra.add( Condicao.interpretar( cond, dados ) );
+                }
+
+                for ( int classe = 0; classe < CLASSES.size(); classe++ )
+                {
+                    for ( boolean treinamento : new boolean[] { true, false } )
+                    {
+                        final int[] esperado = varrer( regra, classe, treinamento, k );
+                        final int[] obtido = indice.contar( regra, classe, treinamento );
+
+                        assertEquals( Arrays.toString( where ), esperado[0], obtido[0] );
+                        assertEquals( Arrays.toString( where ), esperado[1], obtido[1] );
+                    }
+                }
+            }
+        }
+    }
+
+    public void test_mascara_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        varredura.atualizarPasta( 4 );
+        indice.atualizarPasta( 4 );
+
+        for ( String[] where : new String[][] { { "x > 6.000" }, { "z <= 0.500", "y != 1.000", "x < y" } } )
+        {
+            final List<Condicao> regra = regra( Arrays.asList( where ) );
+
+            for ( boolean treinamento : new boolean[] { true, false } )
+            {
+                assertTrue( Arrays.toString( where ), Arrays.equals( varredura.cobrir( regra, treinamento ),
+                                                                     indice.cobrir( regra, treinamento ) ) );
+            }
+        }
+
+        // condição pouco seletiva: a varredura das colunas é mais barata
+        assertNull( indice.cobrir( regra( Arrays.asList( "x >= 0.000" ) ), true ) );
+    }
+
+    public void test_hiperretangulo_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        indice.setCompilador( new CompiladorRegras( dados, 4 ) );
+        varredura.atualizarPasta( 2 );
+        indice.atualizarPasta( 2 );
+
+        // intervalo estreito em y (percorrido pelo índice), amplo em x, com e sem comparação
+        final Hiperretangulo h = new Hiperretangulo( COLUNAS );
+        h.setInferior( 0, 0.5 );
+        h.setSuperior( 0, 6.0 );
+        h.setInferior( 1, 3.0 );
+        h.setSuperior( 1, 3.25 );
+
+        final Hiperretangulo somenteY = new Hiperretangulo( COLUNAS );
+        somenteY.setInferior( 1, 6.0 );
+
+        final List<Condicao> comparacao = regra( Arrays.asList( "x < z" ) );
+        final List<Condicao> nenhuma = new ArrayList<>();
+
+        for ( Object[] caso : new Object[][] { { h, comparacao }, { h, nenhuma }, { somenteY, nenhuma } } )
+        {
+            final Hiperretangulo regra = (Hiperretangulo) caso[0];
+            @SuppressWarnings( "unchecked" )
+            final List<Condicao> comparacoes = (List<Condicao>) caso[1];
+
+            for ( boolean treinamento : new boolean[] { true, false } )
+            {
+                assertTrue( Arrays.equals( varredura.cobrir( regra, comparacoes, treinamento ), indice.cobrir(
+                                regra, comparacoes, treinamento ) ) );
+
+                for ( int classe = 0; classe < CLASSES.size(); classe++ )
+                {
+                    assertTrue( Arrays.equals( varredura.contar( regra, comparacoes, classe, treinamento ),
+                                               indice.contar( regra, comparacoes, classe, treinamento ) ) );
+                }
+            }
+        }
+
+        // intervalos pouco seletivos: a varredura das colunas é mais barata
+        final Hiperretangulo amplo = new Hiperretangulo( COLUNAS );
+        amplo.setInferior( 2, 0.0 );
+
+        assertNull( indice.cobrir( amplo, comparacao, true ) );
+        assertTrue( Arrays.equals( varredura.contar( amplo, comparacao, 1, true ), indice.contar( amplo, comparacao,
+                                                                                                  1, true ) ) );
+    }
+
+    public void test_limites_da_busca_binaria_com_empates()
+    {
+        final double[] ord = { 1.0, 2.0, 2.0, 2.0, 3.0, 9.0 };
+
+        assertEquals( 1, IndiceOrdenado.limiteInferior( ord, 5, 2.0 ) );
+        assertEquals( 4, IndiceOrdenado.limiteSuperior( ord, 5, 2.0 ) );
+        assertEquals( 0, IndiceOrdenado.limiteInferior( ord, 5, 0.5 ) );
+        assertEquals( 0, IndiceOrdenado.limiteSuperior( ord, 5, 0.5 ) );
+
+        // somente as len primeiras posições são consideradas
+        assertEquals( 5, IndiceOrdenado.limiteInferior( ord, 5, 5.0 ) );
+        assertEquals( 5, IndiceOrdenado.limiteSuperior( ord, 5, 9.0 ) );
+        assertEquals( 0, IndiceOrdenado.limiteInferior( ord, 0, 1.0 ) );
+    }
+
+    public void test_ausentes_fora_dos_intervalos()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+
+        for ( int col = 0; col < COLUNAS.size(); col++ )
+        {
+            int validos = 0;
+
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                validos += Double.isNaN( dados.valor( col, linha ) ) ? 0 : 1;
+            }
+
+            assertEquals( validos, indice.numValidos( col ) );
+            assertTrue( validos < dados.numLinhas() );
+
+            // o intervalo mais amplo possível cobre somente os valores válidos
+            final Condicao todos = Condicao.interpretar( COLUNAS.get( col ) + " >= -1000.000", dados );
+            assertTrue( Arrays.equals( new int[] { 0, validos }, indice.intervalo( todos ) ) );
+        }
+
+        try
+        {
+            indice.intervalo( Condicao.interpretar( "x != 1.000", dados ) );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // != não é uma condição de limiar
+        }
+    }
+
+    public void test_coluna_sem_valores_validos()
+    {
+        final Dados vazia = new Dados( Arrays.asList( "x" ), kpastas.numLinhas() );
+
+        for ( int linha = 0; linha < vazia.numLinhas(); linha++ )
+        {
+            vazia.setValor( 0, linha, Double.NaN );
+        }
+
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( vazia, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( vazia, kpastas, varredura );
+        varredura.atualizarPasta( 0 );
+        indice.atualizarPasta( 0 );
+
+        assertEquals( 0, indice.numValidos( 0 ) );
+
+        for ( String where : new String[] { "x > 1.000", "x <= 1.000", "x = 1.000", "x != 1.000" } )
+        {
+            final List<Condicao> regra = Arrays.asList( Condicao.interpretar( where, vazia ) );
+
+            assertTrue( where, Arrays.equals( new int[] { 0, 0 }, indice.contar( regra, 0, true ) ) );
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.tsprates.pso;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Testes das K-Pastas estratificadas e da amostra de treinamento.
+ */
+public class KPastasTest
+                extends DadosDeTeste
+{
+
+    public void test_pastas_estratificadas()
+    {
+        for ( int c = 0; c < CLASSES.size(); c++ )
+        {
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+
+            for ( int k = 0; k < kpastas.numK(); k++ )
+            {
+                min = Math.min( min, kpastas.contar( c, k ) );
+                max = Math.max( max, kpastas.contar( c, k ) );
+            }
+
+            assertTrue( max - min <= 1 );
+        }
+    }
+
+    public void test_mascara_da_pasta_igual_aos_rotulos()
+    {
+        int total = 0;
+
+        for ( int k = 0; k < kpastas.numK(); k++ )
+        {
+            final long[] mascara = kpastas.mascaraPasta( k );
+
+            assertEquals( kpastas.tamanho( k ), Bits.contar( mascara ) );
+
+            for ( int linha = 0; linha < kpastas.numLinhas(); linha++ )
+            {
+                assertEquals( kpastas.pasta( linha ) == k, Bits.marcado( mascara, linha ) );
+            }
+
+            total += kpastas.tamanho( k );
+        }
+
+        assertEquals( kpastas.numLinhas(), total );
+    }
+
+    public void test_amostra_estratificada()
+    {
+        final int[] amostra = kpastas.amostrar( 3, 120, new Random( 1L ) );
+        final int[] porClasse = new int[CLASSES.size()];
+
+        for ( int linha : amostra )
+        {
+            assertTrue( kpastas.pasta( linha ) != 3 );
+            porClasse[kpastas.classe( linha )]++;
+        }
+
+        final int numTreinamento = kpastas.numLinhas() - kpastas.tamanho( 3 );
+
+        for ( int c = 0; c < CLASSES.size(); c++ )
+        {
+            final double esperado = 120.0 * ( kpastas.tamanhoClasse( c ) - kpastas.contar( c, 3 ) ) / numTreinamento;
+            assertTrue( Math.abs( porClasse[c] - esperado ) <= 1 );
+        }
+    }
+
+    public void test_amostra_minima_tem_todas_as_classes()
+    {
+        final int[] amostra = kpastas.amostrar( 0, 1, new Random( 2L ) );
+        final Set<Integer> classes = new HashSet<>();
+
+        for ( int linha : amostra )
+        {
+            classes.add( kpastas.classe( linha ) );
+        }
+
+        assertEquals( CLASSES.size(), classes.size() );
+    }
+
+    public void test_amostra_maior_que_o_treinamento()
+    {
+        final int[] amostra = kpastas.amostrar( 7, 10 * kpastas.numLinhas(), new Random( 3L ) );
+
+        // todos os registros de treinamento, cada um uma única vez e em ordem
+        assertEquals( kpastas.numLinhas() - kpastas.tamanho( 7 ), amostra.length );
+
+        for ( int i = 1; i < amostra.length; i++ )
+        {
+            assertTrue( amostra[i - 1] < amostra[i] );
+        }
+    }
+}
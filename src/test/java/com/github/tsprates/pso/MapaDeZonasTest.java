@@ -0,0 +1,139 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes do mapa de zonas (mínimo e máximo por bloco de registros).
+ */
+public class MapaDeZonasTest
+                extends DadosDeTeste
+{
+
+    public void test_mapa_de_zonas_igual_a_varredura_completa()
+    {
+        // coluna w ordenada dentro de cada classe, como com zonas.ordem
+        final List<String> colunas = Arrays.asList( "x", "y", "z", "w" );
+        final Dados comOrdem = Dados.criarForaDoHeap( colunas, dados.numLinhas(), null );
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            for ( int col = 0; col < COLUNAS.size(); col++ )
+            {
+                comOrdem.setValor( col, linha, dados.valor( col, linha ) );
+            }
+
+            comOrdem.setValor( 3, linha, linha % 97 == 0 ? Double.NaN : linha / 10.0 );
+        }
+
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( comOrdem, kpastas );
+        varredura.setZonas( new MapaDeZonas( comOrdem, 64 ) );
+        varredura.atualizarPasta( 6 );
+
+        final AvaliadorEmBlocos emBlocos = new AvaliadorEmBlocos( comOrdem, kpastas, 128 );
+        emBlocos.setZonas( new MapaDeZonas( comOrdem, 128 ) );
+        emBlocos.atualizarPasta( 6 );
+
+        final String[][] where = {
+                        { "w > 30.000", "x >= 1.000" },
+                        { "w <= 12.500", "y != 2.000" },
+                        { "w = 20.000" },
+                        { "w != 5.000", "z < 4.000" },
+                        { "w >= 100.000", "x < y" }
+        };
+
+        final List<List<Condicao>> regras = new ArrayList<>();
+
+        for ( String[] w : where )
+        {
+            final List<Condicao> regra = new ArrayList<>();
+
+            for ( String cond : w )
+            {
+                regra.add( Condicao.interpretar( cond, comOrdem ) );
+            }
+
+            regras.add( regra );
+        }
+
+        final int[][] lote = emBlocos.contar( regras, new int[] { 1, 1, 1, 1, 1 }, true );
+
+        for ( int i = 0; i < regras.size(); i++ )
+        {
+            final int[] esperado = varrer( comOrdem, regras.get( i ), 1, true, 6 );
+            final int[] obtido = varredura.contar( regras.get( i ), 1, true );
+
+            assertEquals( Arrays.toString( where[i] ), esperado[0], obtido[0] );
+            assertEquals( Arrays.toString( where[i] ), esperado[1], obtido[1] );
+            assertEquals( Arrays.toString( where[i] ), esperado[0], lote[i][0] );
+            assertEquals( Arrays.toString( where[i] ), esperado[1], lote[i][1] );
+        }
+    }
+
+    public void test_blocos_com_ausentes()
+    {
+        // blocos de 2 registros: [1, 2], [NaN, NaN], [5] na coluna x; [1, NaN], [3, 4], [5] na coluna y
+        final Dados pequena = new Dados( Arrays.asList( "x", "y" ), 5 );
+        final double[][] valores = { { 1, 2, Double.NaN, Double.NaN, 5 }, { 1, Double.NaN, 3, 4, 5 } };
+
+        for ( int col = 0; col < 2; col++ )
+        {
+            for ( int linha = 0; linha < 5; linha++ )
+            {
+                pequena.setValor( col, linha, valores[col][linha] );
+            }
+        }
+
+        final MapaDeZonas zonas = new MapaDeZonas( pequena, 2 );
+
+        assertEquals( 3, zonas.numBlocos() );
+
+        // bloco completo
+        assertEquals( MapaDeZonas.TODOS, zonas.classificar( Condicao.interpretar( "x >= 1.000", pequena ), 0 ) );
+        assertEquals( MapaDeZonas.PARCIAL, zonas.classificar( Condicao.interpretar( "x > 1.000", pequena ), 0 ) );
+        assertEquals( MapaDeZonas.NENHUM, zonas.classificar( Condicao.interpretar( "x > 2.000", pequena ), 0 ) );
+
+        // bloco só com ausentes: descartado por qualquer limiar, nunca aceito inteiro por !=
+        assertEquals( MapaDeZonas.NENHUM, zonas.classificar( Condicao.interpretar( "x > -9.000", pequena ), 1 ) );
+        assertEquals( MapaDeZonas.NENHUM, zonas.classificar( Condicao.interpretar( "x <= 9.000", pequena ), 1 ) );
+        assertEquals( MapaDeZonas.PARCIAL, zonas.classificar( Condicao.interpretar( "x != 1.000", pequena ), 1 ) );
+
+        // bloco com um ausente: nunca aceito inteiro, mesmo com todos os válidos satisfazendo a condição
+        assertEquals( MapaDeZonas.PARCIAL, zonas.classificar( Condicao.interpretar( "y = 1.000", pequena ), 0 ) );
+        assertEquals( MapaDeZonas.TODOS, zonas.classificar( Condicao.interpretar( "y != 1.000", pequena ), 1 ) );
+
+        // último bloco incompleto e comparações entre atributos
+        assertEquals( MapaDeZonas.TODOS, zonas.classificar( Condicao.interpretar( "y = 5.000", pequena ), 2 ) );
+        assertEquals( MapaDeZonas.PARCIAL, zonas.classificar( Condicao.interpretar( "x > y", pequena ), 2 ) );
+    }
+
+    public void test_intervalos_por_bloco()
+    {
+        final Dados pequena = new Dados( Arrays.asList( "x" ), 4 );
+
+        for ( int linha = 0; linha < 4; linha++ )
+        {
+            pequena.setValor( 0, linha, linha );
+        }
+
+        final MapaDeZonas zonas = new MapaDeZonas( pequena, 2 );
+
+        // [0, 1] e [2, 3] com o limite superior exclusivo
+        assertEquals( MapaDeZonas.TODOS, zonas.classificar( 0, 0.0, 2.0, 0 ) );
+        assertEquals( MapaDeZonas.NENHUM, zonas.classificar( 0, 0.0, 2.0, 1 ) );
+        assertEquals( MapaDeZonas.PARCIAL, zonas.classificar( 0, 1.0, 3.0, 1 ) );
+        assertEquals( MapaDeZonas.TODOS, zonas.classificar( 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                                                            1 ) );
+
+        try
+        {
+            new MapaDeZonas( pequena, 0 );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // tamanho de bloco inválido
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.mockito.Mockito;
+
+/**
+ * Testes do conjunto de conexões.
+ */
+public class PoolConexoesTest
+                extends TestCase
+{
+
+    public void test_obter_aguarda_a_devolucao()
+                    throws InterruptedException
+    {
+        final Connection a = Mockito.mock( Connection.class );
+        final PoolConexoes conexoes = new PoolConexoes( Collections.singletonList( a ) );
+
+        assertEquals( 1, conexoes.tamanho() );
+        assertSame( a, conexoes.obter() );
+
+        final CountDownLatch obtida = new CountDownLatch( 1 );
+
+        final Thread t = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                conexoes.obter();
+                obtida.countDown();
+            }
+        } );
+        t.start();
+
+        // nenhuma conexão livre até a devolução
+        assertFalse( obtida.await( 50, TimeUnit.MILLISECONDS ) );
+
+        conexoes.devolver( a );
+
+        assertTrue( obtida.await( 5, TimeUnit.SECONDS ) );
+        t.join();
+    }
+
+    public void test_fechar_as_conexoes()
+                    throws SQLException
+    {
+        final Connection a = Mockito.mock( Connection.class );
+        final Connection b = Mockito.mock( Connection.class );
+        final PoolConexoes conexoes = new PoolConexoes( Arrays.asList( a, b ) );
+
+        final Connection emUso = conexoes.obter();
+        conexoes.close();
+
+        // a livre é fechada imediatamente, a que está em uso ao ser devolvida
+        final Connection livre = emUso == a ? b : a;
+        Mockito.verify( livre ).close();
+        Mockito.verify( emUso, Mockito.never() ).close();
+
+        conexoes.devolver( emUso );
+        Mockito.verify( emUso ).close();
+
+        try
+        {
+            conexoes.obter();
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // conjunto fechado
+        }
+    }
+
+    public void test_conjunto_vazio()
+    {
+        try
+        {
+            new PoolConexoes( new ArrayList<Connection>() );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // ao menos uma conexão
+        }
+
+        try
+        {
+            new PoolConexoes( new DB(), 0 );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // nenhuma conexão é aberta
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.github.tsprates.pso;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.mockito.Mockito;
+
+/**
+ * Testes da evolução do PSO sobre o banco de dados simulado.
+ */
+public class PsoTest
+                extends DadosDeTeste
+{
+
+    private static final int NUM_PARTS = 12;
+
+    public void test_nichos_paralelos_conservam_o_enxame()
+    {
+        final Pso pso = criarPso( new BaseSimulada( dados, kpastas, CLASSES, COLUNAS ), null, "avaliacao",
+                                  "memoria", "nichos.paralelos", "true" );
+        pso.carregar();
+
+        // as partículas que mudam de classe passam de um nicho a outro, nenhuma se perde
+        assertEquals( NUM_PARTS, pso.tamanhoEnxame() );
+    }
+
+    public void test_ilhas_sql_requerem_uma_conexao_por_ilha()
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+
+        try
+        {
+            criarPso( base, null, "ilhas", "2" );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // a conexão principal seria compartilhada pelas ilhas
+        }
+
+        try
+        {
+            criarPso( base, new PoolConexoes( Arrays.asList( base.conectar() ) ), "ilhas", "2" );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // menos conexões que ilhas
+        }
+
+        // base de dados em memória: nenhuma conexão é necessária
+        criarPso( base, null, "ilhas", "2", "avaliacao", "memoria" );
+    }
+
+    public void test_ilhas_com_conexoes_proprias()
+                    throws Exception
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+        final Connection principal = base.conectar();
+        final Connection a = base.conectar();
+        final Connection b = base.conectar();
+        final PoolConexoes conexoes = new PoolConexoes( Arrays.asList( a, b ) );
+
+        final Properties config = configurar( "ilhas", "2", "maxiter", "120" );
+        final Pso pso = new Pso( principal, conexoes, config, new Random( 11L ), new Formatador(), 2 );
+        pso.carregar();
+
+        // a conexão principal somente carrega a tabela; cada ilha consulta pela sua conexão, devolvida ao final
+        Mockito.verify( principal, Mockito.times( 4 ) ).prepareStatement( Mockito.anyString() );
+        Mockito.verify( a, Mockito.atLeastOnce() ).prepareStatement( Mockito.anyString() );
+        Mockito.verify( b, Mockito.atLeastOnce() ).prepareStatement( Mockito.anyString() );
+
+        assertNotNull( conexoes.obter() );
+        assertNotNull( conexoes.obter() );
+
+        pso.encerrar();
+    }
+
+    public void test_ilhas_migram_e_reunem_os_repositorios()
+    {
+        final Pso pso = criarPso( new BaseSimulada( dados, kpastas, CLASSES, COLUNAS ), null, "avaliacao",
+                                  "memoria", "ilhas", "3", "ilhas.migracao", "1" );
+        pso.carregar();
+
+        assertTrue( pso.numMigrantesRecebidos() > 0 );
+
+        // o repositório reunido contém somente partículas não dominadas entre si
+        for ( String cl : CLASSES )
+        {
+            final List<Particula> rep = pso.repositorio().get( cl );
+            assertFalse( rep.isEmpty() );
+
+            for ( Particula p : rep )
+            {
+                for ( Particula q : rep )
+                {
+                    assertTrue( p == q || FronteiraPareto.verificarDominanciaEntre( p, q ) <= 0 );
+                }
+            }
+        }
+    }
+
+    public void test_reuniao_sem_reavaliacao()
+    {
+        final Fitness fitness = new Fitness( null, "id", "tabela" );
+        fitness.setKPastas( kpastas );
+        fitness.setDados( dados, new AvaliadorVetorial( dados, kpastas ), null );
+        fitness.setK( 0 );
+
+        final Random random = new Random( 3L );
+        final Particula p = new Particula( new HashSet<>( Arrays.asList( "x > 2.000" ) ), "a", fitness, random );
+        final Fitness origem = Mockito.spy( new Fitness( fitness ) );
+
+        // a partícula da ilha é incluída no repositório de origem com o fitness já calculado
+        final Enxame rep = new Enxame();
+        final Particula copia = p.copiar( origem );
+
+        assertEquals( 1, FronteiraPareto.incluirParticulaNaoDominada( rep, copia ) );
+        assertSame( copia, rep.get( 0 ) );
+        assertTrue( Arrays.equals( p.fitness(), rep.get( 0 ).fitness() ) );
+        Mockito.verify( origem, Mockito.never() ).calcular( Mockito.any( Particula.class ) );
+
+        // a atualização do repositório durante a evolução inclui uma cópia reavaliada
+        assertEquals( 1, FronteiraPareto.atualizarParticulasNaoDominadas( new Enxame(), copia ) );
+        Mockito.verify( origem ).calcular( Mockito.any( Particula.class ) );
+    }
+
+    public void test_busca_especulativa_independe_do_numero_de_threads()
+                    throws InterruptedException
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+
+        // uma thread: as vizinhas avaliadas sequencialmente, na ordem em que foram geradas
+        final Pso sequencial = criarPso( base, null, "avaliacao", "memoria", "busca.paralela", "1" );
+        sequencial.carregar();
+
+        final Pso paralela = criarPso( base, null, "avaliacao", "memoria", "busca.paralela", "4" );
+        paralela.carregar();
+
+        assertTrue( Arrays.equals( sequencial.valorMedioGlobal(), paralela.valorMedioGlobal() ) );
+
+        for ( String cl : CLASSES )
+        {
+            assertTrue( Arrays.equals( sequencial.valorMedioPorClasses().get( cl ), paralela.valorMedioPorClasses()
+                            .get( cl ) ) );
+            assertEquals( regras( sequencial.repositorio().get( cl ) ), regras( paralela.repositorio().get( cl ) ) );
+        }
+
+        // as threads da busca local são encerradas ao final da execução
+        for ( Thread t : Thread.getAllStackTraces().keySet() )
+        {
+            if ( "busca-local".equals( t.getName() ) )
+            {
+                t.join( 1000 );
+                assertFalse( t.isAlive() );
+            }
+        }
+    }
+
+    private static List<String> regras( List<Particula> rep )
+    {
+        final List<String> regras = new ArrayList<>();
+
+        for ( Particula p : rep )
+        {
+            regras.add( p.whereSql() );
+        }
+
+        return regras;
+    }
+
+    public void test_pipeline_conclui_o_lote_ao_esgotar_as_avaliacoes()
+    {
+        final Pso pso = criarPso( new BaseSimulada( dados, kpastas, CLASSES, COLUNAS ), null, "avaliacao",
+                                  "memoria", "pipeline", "2", "pipeline.lote", "4", "maxiter", "30" );
+        pso.carregar();
+
+        final List<Estagio> estagios = pso.estagios();
+
+        // toda partícula movida antes do limite é avaliada e atualizada, mesmo em um lote incompleto
+        assertTrue( estagios.get( 0 ).itens() > 0 );
+        assertEquals( estagios.get( 0 ).itens(), estagios.get( 1 ).itens() );
+        assertEquals( estagios.get( 1 ).itens() + NUM_PARTS, estagios.get( 2 ).itens() );
+    }
+
+    public void test_pipeline_limita_as_particulas_a_espera_da_avaliacao()
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+        final Pso pso = criarPso( base, null, "pipeline", "1", "pipeline.lote", "1", "maxiter", "60" );
+        final AtomicInteger maxEspera = new AtomicInteger();
+
+        // avaliação lenta: a geração alcança a avaliação e aguarda na fila limitada
+        base.setAtraso( 2 );
+        base.setAoConsultar( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final List<Estagio> estagios = pso.estagios();
+
+                if ( estagios != null )
+                {
+                    final int espera = (int) ( estagios.get( 0 ).itens() - estagios.get( 1 ).itens() );
+
+                    if ( espera > maxEspera.get() )
+                    {
+                        maxEspera.set( espera );
+                    }
+                }
+            }
+        } );
+
+        pso.carregar();
+
+        // uma partícula na fila, uma em avaliação e uma bloqueada na inclusão, entre as 12 do enxame
+        assertTrue( maxEspera.get() > 0 );
+        assertTrue( String.valueOf( maxEspera.get() ), maxEspera.get() <= 3 );
+    }
+
+    public void test_falha_na_avaliacao_interrompe_o_pipeline()
+                    throws InterruptedException
+    {
+        final BaseSimulada base = new BaseSimulada( dados, kpastas, CLASSES, COLUNAS );
+        final Pso pso = criarPso( base, null, "pipeline", "2", "pipeline.lote", "2" );
+        final AtomicReference<RuntimeException> erro = new AtomicReference<>();
+
+        // o enxame inicial (12 consultas) é avaliado antes do pipeline
+        base.setFalha( 30 );
+
+        final Thread execucao = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pso.carregar();
+                }
+                catch ( RuntimeException e )
+                {
+                    erro.set( e );
+                }
+            }
+        } );
+
+        execucao.start();
+        execucao.join( 10000 );
+
+        assertFalse( execucao.isAlive() );
+        assertNotNull( erro.get() );
+        assertEquals( "Erro na evolução paralela.", erro.get().getMessage() );
+    }
+
+    /**
+     * PSO com a configuração mínima e as entradas adicionais (chave, valor).
+     */
+    private Pso criarPso( BaseSimulada base, PoolConexoes conexoes, String... entradas )
+    {
+        return new Pso( base.conectar(), conexoes, configurar( entradas ), new Random( 11L ), new Formatador(), 2 );
+    }
+
+    private static Properties configurar( String... entradas )
+    {
+        final Properties config = new Properties();
+        config.setProperty( "tabela", "tabela" );
+        config.setProperty( "saida", "classe" );
+        config.setProperty( "id", "id" );
+        config.setProperty( "w", "0.7" );
+        config.setProperty( "c1", "0.5" );
+        config.setProperty( "c2", "0.5" );
+        config.setProperty( "npop", String.valueOf( NUM_PARTS ) );
+        config.setProperty( "maxiter", "400" );
+
+        for ( int i = 0; i < entradas.length; i += 2 )
+        {
+            config.setProperty( entradas[i], entradas[i + 1] );
+        }
+
+        return config;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Testes da forma canônica das regras.
+ */
+public class RegraCanonicaTest
+                extends DadosDeTeste
+{
+
+    public void test_regra_canonica_equivalente()
+    {
+        final String[][] where = {
+                        { "x > 1.000", "x > 2.000" },
+                        { "x >= 2.0", "x > 2.000", "y < 3.000" },
+                        { "x >= 2.000", "x <= 2.000", "y != 1.000" },
+                        { "x != 3.000", "x = 4.000" },
+                        { "x != 9.000", "x < 3.000", "x < y" },
+                        { "x != 3.000", "x = 3.000" },
+                        { "x > 5.000", "x < 2.000" },
+                        { "x > 2.000", "x <= 2.000" },
+                        { "x = 1.000", "x = 2.000" }
+        };
+
+        final int[] numCondicoes = { 1, 2, 2, 1, 2, 2, 2, 2, 2 };
+
+        for ( int i = 0; i < where.length; i++ )
+        {
+            final RegraCanonica canonica = RegraCanonica.canonizar( Arrays.asList( where[i] ) );
+
+            assertEquals( Arrays.toString( where[i] ), numCondicoes[i], canonica.condicoes().size() );
+            assertEquals( Arrays.toString( where[i] ), i >= 5, canonica.insatisfazivel() );
+
+            final int[] esperado = varrer( regra( Arrays.asList( where[i] ) ), 0, true, 2 );
+
+            if ( canonica.insatisfazivel() )
+            {
+                assertEquals( Arrays.toString( where[i] ), 0, esperado[1] );
+            }
+            else
+            {
+                final int[] obtido = varrer( regra( new ArrayList<>( canonica.condicoes() ) ), 0, true, 2 );
+
+                assertEquals( Arrays.toString( where[i] ), esperado[0], obtido[0] );
+                assertEquals( Arrays.toString( where[i] ), esperado[1], obtido[1] );
+            }
+        }
+
+        assertEquals( "(x = 2.000) AND (y != 1.000)",
+                      RegraCanonica.canonizar( Arrays.asList( where[2] ) ).whereSql() );
+    }
+
+    public void test_limites_de_mesmo_valor()
+    {
+        // o limite exclusivo prevalece sobre o inclusivo de mesmo valor, em qualquer ordem
+        assertEquals( new TreeSet<>( Arrays.asList( "x > 2.000" ) ), RegraCanonica.canonizar( Arrays.asList(
+                        "x > 2.000", "x >= 2.000" ) ).condicoes() );
+        assertEquals( new TreeSet<>( Arrays.asList( "x < 2.000" ) ), RegraCanonica.canonizar( Arrays.asList(
+                        "x <= 2.000", "x < 2.000" ) ).condicoes() );
+
+        // igualdades escritas de formas diferentes
+        assertFalse( RegraCanonica.canonizar( Arrays.asList( "x = 2.0", "x = 2.000" ) ).insatisfazivel() );
+
+        // intervalo semiaberto de um único ponto
+        assertTrue( RegraCanonica.canonizar( Arrays.asList( "x >= 2.000", "x < 2.000" ) ).insatisfazivel() );
+    }
+
+    public void test_valores_excluidos()
+    {
+        // <> equivale a != e valores excluídos fora do intervalo são redundantes
+        assertEquals( new TreeSet<>( Arrays.asList( "x > 2.000" ) ), RegraCanonica.canonizar( Arrays.asList(
+                        "x > 2.000", "x <> 1.000", "x != 2.000" ) ).condicoes() );
+        assertEquals( new TreeSet<>( Arrays.asList( "x != 3.000", "x > 2.000" ) ), RegraCanonica.canonizar(
+                        Arrays.asList( "x > 2.000", "x != 3.000" ) ).condicoes() );
+        assertTrue( RegraCanonica.canonizar( Arrays.asList( "x >= 2.000", "x <= 2.000", "x <> 2.000" ) )
+                                 .insatisfazivel() );
+    }
+
+    public void test_comparacoes_entre_atributos_mantidas()
+    {
+        // contradições entre atributos não são detectadas, somente as de valor numérico
+        final RegraCanonica canonica = RegraCanonica.canonizar( Arrays.asList( "x < y", "x > y", "y > 1.000",
+                                                                               "y > 0.500" ) );
+
+        assertFalse( canonica.insatisfazivel() );
+        assertEquals( new TreeSet<>( Arrays.asList( "x < y", "x > y", "y > 1.000" ) ), canonica.condicoes() );
+
+        // a regra insatisfazível mantém as condições originais
+        final RegraCanonica vazia = RegraCanonica.canonizar( Arrays.asList( "x < y", "z = 1.000", "z = 2.000" ) );
+
+        assertTrue( vazia.insatisfazivel() );
+        assertEquals( 3, vazia.condicoes().size() );
+    }
+}
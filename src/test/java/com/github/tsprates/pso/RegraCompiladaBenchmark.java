@@ -0,0 +1,121 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark do teste registro a registro: condições interpretadas ({@link Condicao#testar}) e regras compiladas
+ * ({@link RegraCompilada}). Não é executado pelos testes; uso:
+ * <p>
+ * {@code java -cp target/classes:target/test-classes com.github.tsprates.pso.RegraCompiladaBenchmark [registros]}
+ * <p>
+ * Mede uma única regra (cadeia sempre a mesma) e várias regras alternadas, como na verificação residual do índice:
+ * o menor tempo entre as repetições, em nanossegundos por registro (a primeira repetição inclui o aquecimento).
+ */
+public class RegraCompiladaBenchmark
+{
+
+    private static final String[] COLUNAS = { "a", "b", "c", "d" };
+
+    private static final String[] OPERADORES = { ">", ">=", "<", "<=", "!=" };
+
+    private static final int REPETICOES = 10;
+
+    private static volatile int resultado;
+
+    public static void main( String[] args )
+    {
+        final int numLinhas = args.length > 0 ? Integer.parseInt( args[0] ) : 2000000;
+        final Random random = new Random( 1L );
+
+        final Dados dados = new Dados( Arrays.asList( COLUNAS ), numLinhas );
+
+        for ( int col = 0; col < COLUNAS.length; col++ )
+        {
+            for ( int linha = 0; linha < numLinhas; linha++ )
+            {
+                dados.setValor( col, linha, random.nextInt( 1000 ) / 100.0 );
+            }
+        }
+
+        final List<List<Condicao>> regras = new ArrayList<>();
+
+        for ( int i = 0; i < 64; i++ )
+        {
+            final List<Condicao> regra = new ArrayList<>();
+
+            for ( int j = 0, len = 2 + random.nextInt( 3 ); j < len; j++ )
+            {
+                final String coluna = COLUNAS[random.nextInt( COLUNAS.length )];
+                final String oper = OPERADORES[random.nextInt( OPERADORES.length )];
+                final String valor = random.nextInt( 4 ) == 0 ? COLUNAS[random.nextInt( COLUNAS.length )]
+                                : Formatador.formatarValorNumericoWhere( 1 + random.nextDouble() * 8 );
+
+                regra.add( Condicao.interpretar( coluna + " " + oper + " " + valor, dados ) );
+            }
+
+            regras.add( regra );
+        }
+
+        final CompiladorRegras compilador = new CompiladorRegras( dados, regras.size() );
+        final List<RegraCompilada> compiladas = new ArrayList<>();
+
+        for ( List<Condicao> regra : regras )
+        {
+            compiladas.add( compilador.compilar( regra ) );
+        }
+
+        for ( int n : new int[] { 1, regras.size() } )
+        {
+            double interpretada = Double.MAX_VALUE;
+            double compilada = Double.MAX_VALUE;
+
+            for ( int r = 0; r < REPETICOES; r++ )
+            {
+                interpretada = Math.min( interpretada, interpretar( dados, regras.subList( 0, n ) ) );
+                compilada = Math.min( compilada, compilar( numLinhas, compiladas.subList( 0, n ) ) );
+            }
+
+            System.out.printf( "%2d regra(s): interpretada %6.2f ns/registro, compilada %6.2f ns/registro\n", n,
+                               interpretada, compilada );
+        }
+    }
+
+    private static double interpretar( Dados dados, List<List<Condicao>> regras )
+    {
+        final long inicio = System.nanoTime();
+        int cobertos = 0;
+
+        for ( int linha = 0, n = dados.numLinhas(); linha < n; linha++ )
+        {
+            final List<Condicao> regra = regras.get( linha % regras.size() );
+            boolean ok = true;
+
+            for ( int i = 0, size = regra.size(); ok && i < size; i++ )
+            {
+                ok = regra.get( i ).testar( dados, linha );
+            }
+
+            cobertos += ok ? 1 : 0;
+        }
+
+        resultado = cobertos;
+        return (double) ( System.nanoTime() - inicio ) / dados.numLinhas();
+    }
+
+    private static double compilar( int numLinhas, List<RegraCompilada> regras )
+    {
+        final long inicio = System.nanoTime();
+        int cobertos = 0;
+
+        for ( int linha = 0; linha < numLinhas; linha++ )
+        {
+            cobertos += regras.get( linha % regras.size() ).testar( linha ) ? 1 : 0;
+        }
+
+        resultado = cobertos;
+        return (double) ( System.nanoTime() - inicio ) / numLinhas;
+    }
+}
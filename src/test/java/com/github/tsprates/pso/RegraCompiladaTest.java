@@ -0,0 +1,87 @@
+package com.github.tsprates.pso;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Testes das regras compiladas em cadeias de MethodHandles.
+ */
+public class RegraCompiladaTest
+                extends DadosDeTeste
+{
+
+    public void test_regra_compilada_igual_a_interpretada()
+    {
+        final CompiladorRegras compilador = new CompiladorRegras( dados, 2 );
+
+        final String[][] regras = {
+                        { "x > 2.250", "y <= z" },
+                        { "x >= 1.000", "y < 4.000", "z = 3.000" },
+                        { "x != 2.000", "x < y", "z >= x", "y != z" },
+                        { "z <= 3.500" }
+        };
+
+        for ( String[] where : regras )
+        {
+            final List<Condicao> regra = regra( Arrays.asList( where ) );
+            final RegraCompilada compilada = compilador.compilar( regra );
+
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                boolean esperado = true;
+
+                for ( Condicao cond : regra )
+                {
+                    esperado &= cond.testar( dados, linha );
+                }
+
+                assertEquals( Arrays.toString( where ), esperado, compilada.testar( linha ) );
+            }
+        }
+    }
+
+    public void test_regra_sem_condicoes_aceita_todos()
+    {
+        final RegraCompilada compilada = RegraCompilada.compilar( Collections.<Condicao>emptyList(), dados );
+
+        for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+        {
+            assertTrue( compilada.testar( linha ) );
+        }
+    }
+
+    public void test_cache_limitado_pelas_menos_recentes()
+    {
+        final CompiladorRegras compilador = new CompiladorRegras( dados, 2 );
+
+        final RegraCompilada a = compilador.compilar( regra( Arrays.asList( "x > 1.000" ) ) );
+        final RegraCompilada b = compilador.compilar( regra( Arrays.asList( "y > 1.000" ) ) );
+
+        // acesso recente: a permanece e b é descartada ao compilar c
+        assertSame( a, compilador.compilar( regra( Arrays.asList( "x > 1.000" ) ) ) );
+        compilador.compilar( regra( Arrays.asList( "z > 1.000" ) ) );
+
+        assertSame( a, compilador.compilar( regra( Arrays.asList( "x > 1.000" ) ) ) );
+        assertNotSame( b, compilador.compilar( regra( Arrays.asList( "y > 1.000" ) ) ) );
+
+        // a ordem das condições faz parte da chave
+        final CompiladorRegras outro = new CompiladorRegras( dados, 4 );
+
+        assertNotSame( outro.compilar( regra( Arrays.asList( "x > 1.000", "y > 1.000" ) ) ),
+                       outro.compilar( regra( Arrays.asList( "y > 1.000", "x > 1.000" ) ) ) );
+    }
+
+    public void test_colunas_fora_do_heap_nao_compiladas()
+    {
+        try
+        {
+            new CompiladorRegras( copiarForaDoHeap(), 2 );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // a compilação liga os arrays das colunas aos handles
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.tsprates.pso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Testes do vocabulário de condições com mapas de bits pré-calculados.
+ */
+public class VocabularioTest
+                extends DadosDeTeste
+{
+
+    public void test_vocabulario_igual_a_varredura_completa()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        final Vocabulario vocabulario = new Vocabulario( dados, indice, 4 );
+        final Random random = new Random( 3L );
+
+        varredura.atualizarPasta( 4 );
+
+        for ( int i = 0; i < 50; i++ )
+        {
+            final long[] termos = new long[vocabulario.numPalavras()];
+
+            for ( int j = 0, n = 1 + random.nextInt( 3 ); j < n; j++ )
+            {
+                Bits.marcar( termos, vocabulario.sortear( random ) );
+            }
+
+            final List<String> where = new ArrayList<>( vocabulario.condicoes( termos ) );
+            final List<Condicao> regra = regra( where );
+
+            for ( int classe = 0; classe < CLASSES.size(); classe++ )
+            {
+                for ( boolean treinamento : new boolean[] { true, false } )
+                {
+                    assertTrue( where.toString(), Arrays.equals( varrer( regra, classe, treinamento, 4 ),
+                                                                 vocabulario.contar( termos, varredura.criarMascara(
+                                                                                 treinamento ), kpastas.mascaraClasse(
+                                                                                 classe ) ) ) );
+                }
+            }
+
+            for ( int linha = 0; linha < dados.numLinhas(); linha++ )
+            {
+                boolean ok = true;
+
+                for ( Condicao cond : regra )
+                {
+                    ok &= cond.testar( dados, linha );
+                }
+
+                assertEquals( ok, vocabulario.testar( termos, linha ) );
+            }
+        }
+    }
+
+    public void test_vizinhos_na_mesma_coluna()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+        final Vocabulario vocabulario = new Vocabulario( dados, indice, 4 );
+
+        for ( int termo = 0; termo < vocabulario.numTermos(); termo++ )
+        {
+            final String coluna = vocabulario.texto( termo ).split( " " )[0];
+            final String operador = vocabulario.texto( termo ).split( " " )[1];
+
+            // o limiar é limitado aos extremos da coluna
+            final int ultimo = vocabulario.mover( termo, 100 );
+            final int primeiro = vocabulario.mover( termo, -100 );
+
+            assertEquals( vocabulario.numLimiares( termo ) - 1, vocabulario.indiceLimiar( ultimo ) );
+            assertEquals( 0, vocabulario.indiceLimiar( primeiro ) );
+            assertEquals( termo, vocabulario.mover( termo, 0 ) );
+            assertTrue( vocabulario.texto( ultimo ).startsWith( coluna + " " + operador + " " ) );
+            assertTrue( vocabulario.texto( primeiro ).startsWith( coluna + " " + operador + " " ) );
+
+            // a troca de operador mantém coluna e limiar
+            for ( int op = 0; op < vocabulario.numOperadores(); op++ )
+            {
+                final int trocado = vocabulario.trocarOperador( termo, op );
+
+                assertEquals( vocabulario.indiceLimiar( termo ), vocabulario.indiceLimiar( trocado ) );
+                assertEquals( vocabulario.texto( termo ).split( " " )[2], vocabulario.texto( trocado ).split(
+                                " " )[2] );
+                assertTrue( vocabulario.texto( trocado ).startsWith( coluna + " " ) );
+            }
+        }
+    }
+
+    public void test_posicao_sem_termos_cobre_toda_a_fase()
+    {
+        final AvaliadorVetorial varredura = new AvaliadorVetorial( dados, kpastas );
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, varredura );
+        final Vocabulario vocabulario = new Vocabulario( dados, indice, 2 );
+
+        varredura.atualizarPasta( 9 );
+
+        final long[] termos = new long[vocabulario.numPalavras()];
+
+        assertTrue( vocabulario.condicoes( termos ).isEmpty() );
+        assertTrue( Arrays.equals( new int[] { kpastas.contar( 0, 9 ), kpastas.tamanho( 9 ) }, vocabulario.contar(
+                        termos, varredura.criarMascara( false ), kpastas.mascaraClasse( 0 ) ) ) );
+
+        // termos contraditórios: a interseção vazia termina a contagem
+        final int maior = vocabulario.mover( 0, 100 );
+        final int menor = vocabulario.trocarOperador( vocabulario.mover( 0, -100 ), 2 );
+
+        Bits.marcar( termos, maior );
+        Bits.marcar( termos, menor );
+
+        assertTrue( Arrays.equals( new int[] { 0, 0 }, vocabulario.contar( termos, varredura.criarMascara( true ),
+                                                                           kpastas.mascaraClasse( 0 ) ) ) );
+    }
+
+    public void test_numero_de_quantis_invalido()
+    {
+        final IndiceOrdenado indice = new IndiceOrdenado( dados, kpastas, new AvaliadorVetorial( dados, kpastas ) );
+
+        try
+        {
+            new Vocabulario( dados, indice, 0 );
+            fail();
+        }
+        catch ( RuntimeException e )
+        {
+            // pelo menos um intervalo por coluna
+        }
+    }
+}